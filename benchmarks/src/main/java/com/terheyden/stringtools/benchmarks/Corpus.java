@@ -0,0 +1,220 @@
+package com.terheyden.stringtools.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates deterministic benchmark input.
+ * The same (kind, size, profile) always produces the same text, so runs are comparable across commits.
+ */
+public final class Corpus {
+
+    /**
+     * How long the generated lines are.
+     */
+    public enum Profile {
+
+        /** 4 - 20 chars per line, like word lists and IDs. */
+        SHORT(4, 20),
+        /** 40 - 120 chars per line, like source code and prose. */
+        MEDIUM(40, 120),
+        /** 200 - 1000 chars per line, like log lines with payloads. */
+        LONG(200, 1000),
+        /** Mostly short lines with the occasional very long one. */
+        MIXED(1, 2000);
+
+        private final int minLen;
+        private final int maxLen;
+
+        Profile(int minLen, int maxLen) {
+            this.minLen = minLen;
+            this.maxLen = maxLen;
+        }
+
+        int nextLength(Random random) {
+            if (this == MIXED) {
+                // Skew towards short lines: 90% short, 10% anything up to the max.
+                return random.nextInt(10) == 0 ? 1 + random.nextInt(maxLen) : 1 + random.nextInt(40);
+            }
+            return minLen + random.nextInt(maxLen - minLen + 1);
+        }
+    }
+
+    /**
+     * What the generated lines look like.
+     */
+    public enum Kind {
+
+        /** Words and camelCase identifiers, ~30% repeated lines. */
+        TEXT,
+        /** Lines starting with "* ", "** " and "*** " bullets. */
+        BULLETS,
+        /** Semicolon separated rows for insertTemplateText. */
+        ROWS,
+        /** Java classes with documented private fields and getters. */
+        JAVA,
+        /** ActionScript classes with documented private vars and getters. */
+        FLEX
+    }
+
+    private static final String[] WORDS = {
+        "user", "name", "id", "account", "order", "status", "error", "request", "response", "value",
+        "the", "and", "for", "with", "from", "into", "cache", "index", "line", "text",
+        "userName", "USER_NAME", "user_name", "User Name", "orderId", "ERROR", "warn", "INFO", "42", "2011-10-05"
+    };
+
+    private static final String[] TYPES = {
+        "String", "int", "long", "boolean", "List<String>", "Map<String, Integer>", "Date", "byte[]"
+    };
+
+    private static final long SEED = 0x5eed5eedL;
+
+    private Corpus() {
+    }
+
+    /**
+     * Parses "512", "1KB", "64KB", "16MB" etc. into a char count.
+     */
+    public static int parseSize(String size) {
+
+        String upper = size.trim().toUpperCase();
+        long multiplier = 1;
+
+        if (upper.endsWith("KB")) {
+            multiplier = 1024;
+            upper = upper.substring(0, upper.length() - 2);
+        } else if (upper.endsWith("MB")) {
+            multiplier = 1024 * 1024;
+            upper = upper.substring(0, upper.length() - 2);
+        }
+
+        long chars = Long.parseLong(upper.trim()) * multiplier;
+
+        if (chars <= 0 || chars > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Unsupported corpus size: " + size);
+        }
+
+        return (int) chars;
+    }
+
+    public static String generate(Kind kind, String size, Profile profile) {
+        return generate(kind, parseSize(size), profile);
+    }
+
+    /**
+     * Generates roughly [chars] chars of text (never more), built from whole '\n' separated lines.
+     */
+    public static String generate(Kind kind, int chars, Profile profile) {
+
+        Random random = new Random(SEED ^ kind.ordinal() * 31L ^ profile.ordinal());
+        StringBuilder builder = new StringBuilder(chars + 1024);
+        StringBuilder line = new StringBuilder();
+
+        int fieldCount = 0;
+
+        while (builder.length() < chars) {
+
+            line.setLength(0);
+
+            switch (kind) {
+                case TEXT:
+                    appendWords(line, random, profile.nextLength(random));
+                    break;
+                case BULLETS:
+                    for (int count = random.nextInt(3); count >= 0; count--) {
+                        line.append('*');
+                    }
+                    line.append(' ');
+                    appendWords(line, random, profile.nextLength(random));
+                    break;
+                case ROWS:
+                    appendRow(line, random, profile.nextLength(random));
+                    break;
+                case JAVA:
+                    appendJavaField(line, random, fieldCount++);
+                    break;
+                case FLEX:
+                    appendFlexField(line, random, fieldCount++);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown corpus kind: " + kind);
+            }
+
+            if (builder.length() + line.length() + 1 > chars) {
+                break;
+            }
+
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+
+            builder.append(line);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * About 30% of lines repeat one of a small set of earlier lines, so dedupe has real work to do.
+     */
+    private static void appendWords(StringBuilder line, Random random, int targetLen) {
+
+        if (random.nextInt(10) < 3) {
+            line.append("repeated line number ").append(random.nextInt(1000));
+            return;
+        }
+
+        while (line.length() < targetLen) {
+            if (line.length() > 0) {
+                line.append(' ');
+            }
+            line.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        if (line.length() > targetLen && targetLen > 0) {
+            line.setLength(targetLen);
+        }
+    }
+
+    private static void appendRow(StringBuilder line, Random random, int targetLen) {
+
+        int column = 0;
+
+        while (line.length() < targetLen || column < 3) {
+            if (column > 0) {
+                line.append("; ");
+            }
+            line.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(100000));
+            column++;
+        }
+    }
+
+    private static void appendJavaField(StringBuilder block, Random random, int fieldNum) {
+
+        String type = TYPES[random.nextInt(TYPES.length)];
+        String name = "field" + fieldNum;
+        String capName = "Field" + fieldNum;
+
+        block.append("    /**\n");
+        block.append("     * The ").append(WORDS[random.nextInt(WORDS.length)]).append(" of this object.\n");
+        block.append("     */\n");
+        block.append("    private ").append(type).append(' ').append(name).append(";\n");
+        block.append('\n');
+        block.append("    public ").append(type).append(" get").append(capName).append("() {\n");
+        block.append("        return ").append(name).append(";\n");
+        block.append("    }\n");
+    }
+
+    private static void appendFlexField(StringBuilder block, Random random, int fieldNum) {
+
+        String name = "field" + fieldNum;
+
+        block.append("    /**\n");
+        block.append("     * The ").append(WORDS[random.nextInt(WORDS.length)]).append(" of this object.\n");
+        block.append("     */\n");
+        block.append("    private var _").append(name).append(":String;\n");
+        block.append('\n');
+        block.append("    public function get ").append(name).append("():String {\n");
+        block.append("        return _").append(name).append(";\n");
+        block.append("    }\n");
+    }
+}
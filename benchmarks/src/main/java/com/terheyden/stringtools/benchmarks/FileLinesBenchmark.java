@@ -0,0 +1,90 @@
+package com.terheyden.stringtools.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.terheyden.stringtools.StringTools;
+
+/**
+ * The file-to-file line operations, which spill to temp files once the memory budget runs out.
+ * A budget smaller than the file times the spilling; one bigger than it times the in-memory path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class FileLinesBenchmark {
+
+    @Param({ "1MB", "16MB", "100MB" })
+    public String size;
+
+    @Param({ "MEDIUM", "MIXED" })
+    public Corpus.Profile profile;
+
+    @Param({ "1MB", "64MB" })
+    public String memoryBudget;
+
+    private File inFile;
+    private File outFile;
+    private long budgetBytes;
+
+    @Setup
+    public void setup() throws IOException {
+
+        inFile = File.createTempFile("bench-in", ".txt");
+        outFile = File.createTempFile("bench-out", ".txt");
+        budgetBytes = Corpus.parseSize(memoryBudget);
+
+        String text = Corpus.generate(Corpus.Kind.TEXT, size, profile);
+        Files.write(inFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() {
+        inFile.delete();
+        outFile.delete();
+    }
+
+    @Benchmark
+    public long sortAlpha() throws IOException {
+        return StringTools.sortAlpha(inFile, outFile, false, budgetBytes);
+    }
+
+    @Benchmark
+    public long sortAlphaIgnoreCase() throws IOException {
+        return StringTools.sortAlpha(inFile, outFile, true, budgetBytes);
+    }
+
+    @Benchmark
+    public long sortAlphaReverse() throws IOException {
+        return StringTools.sortAlphaReverse(inFile, outFile, false, budgetBytes);
+    }
+
+    @Benchmark
+    public long removeDuplicateLines() throws IOException {
+        return StringTools.removeDuplicateLines(inFile, outFile, false, budgetBytes);
+    }
+
+    @Benchmark
+    public long removeDuplicateLinesIgnoreCase() throws IOException {
+        return StringTools.removeDuplicateLines(inFile, outFile, true, budgetBytes);
+    }
+}
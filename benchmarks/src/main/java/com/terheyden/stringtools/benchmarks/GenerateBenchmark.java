@@ -0,0 +1,87 @@
+package com.terheyden.stringtools.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.terheyden.stringtools.StringTools;
+import com.terheyden.stringtools.UuidGenerator;
+
+/**
+ * Generators have no input text, so they're sized by output count instead.
+ * generateUUIDs always uses the secure source; the write benchmarks compare both.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class GenerateBenchmark {
+
+    @Param({ "5", "1000", "100000" })
+    public int count;
+
+    private UuidGenerator secureGenerator;
+    private UuidGenerator fastGenerator;
+
+    @Setup
+    public void setup() {
+        secureGenerator = new UuidGenerator(UuidGenerator.Source.SECURE, UuidGenerator.Version.RANDOM);
+        fastGenerator = new UuidGenerator(UuidGenerator.Source.FAST, UuidGenerator.Version.RANDOM);
+    }
+
+    @Benchmark
+    public String generateUUIDs() {
+        return StringTools.generateUUIDs(count);
+    }
+
+    /**
+     * Bulk generation straight to a Writer that throws the chars away, so only generating and formatting is timed.
+     */
+    @Benchmark
+    public void writeUUIDsSecure(Blackhole blackhole) throws IOException {
+        secureGenerator.write(new BlackholeWriter(blackhole), count, UuidGenerator.Format.LOWER);
+    }
+
+    @Benchmark
+    public void writeUUIDsFast(Blackhole blackhole) throws IOException {
+        fastGenerator.write(new BlackholeWriter(blackhole), count, UuidGenerator.Format.LOWER);
+    }
+
+    private static final class BlackholeWriter extends Writer {
+
+        private final Blackhole blackhole;
+
+        BlackholeWriter(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            blackhole.consume(cbuf);
+            blackhole.consume(len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.terheyden.stringtools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.terheyden.stringtools.LinePipeline;
+import com.terheyden.stringtools.StringTools;
+
+/**
+ * Per-line transforms: indent, insert, trim, capitalize, bullets, templates and the split() they all share.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class LineOpsBenchmark {
+
+    @Param({ "1KB", "64KB", "1MB", "16MB", "100MB" })
+    public String size;
+
+    @Param({ "SHORT", "MEDIUM", "LONG", "MIXED" })
+    public Corpus.Profile profile;
+
+    private String text;
+    private String bullets;
+    private String rows;
+
+    @Setup
+    public void setup() {
+        text = Corpus.generate(Corpus.Kind.TEXT, size, profile);
+        bullets = Corpus.generate(Corpus.Kind.BULLETS, size, profile);
+        rows = Corpus.generate(Corpus.Kind.ROWS, size, profile);
+    }
+
+    @Benchmark
+    public String[] split() {
+        return StringTools.split(text);
+    }
+
+    @Benchmark
+    public String addIndent() {
+        return StringTools.addIndent(text, 4);
+    }
+
+    @Benchmark
+    public String removeIndent() {
+        return StringTools.addIndent(bullets, -2);
+    }
+
+    @Benchmark
+    public String insertTextBeginning() {
+        return StringTools.insertText(text, "// ", "beginning");
+    }
+
+    @Benchmark
+    public String insertTextEnd() {
+        return StringTools.insertText(text, ";", "end");
+    }
+
+    /**
+     * The same indent on one thread, to compare with addIndent's chunked run on big text.
+     */
+    @Benchmark
+    public String addIndentSequential() {
+        return new LinePipeline().indent(4).apply(text);
+    }
+
+    @Benchmark
+    public String capitalize() {
+        return StringTools.capitalize(text);
+    }
+
+    @Benchmark
+    public String trimChars() {
+        return StringTools.trimChars(bullets, " *", "begin + end");
+    }
+
+    @Benchmark
+    public String convertBulletMarkup() {
+        return StringTools.convertBulletMarkup(bullets, "* |** |*** ", "- |  - |    - ");
+    }
+
+    @Benchmark
+    public String convertBulletMarkupIndent() {
+        return StringTools.convertBulletMarkup(bullets, "* |** |*** ", "* |** |*** ", 1);
+    }
+
+    @Benchmark
+    public String insertTemplateText() {
+        return StringTools.insertTemplateText("INSERT INTO t VALUES ('%1', '%2', '%3');", rows);
+    }
+}
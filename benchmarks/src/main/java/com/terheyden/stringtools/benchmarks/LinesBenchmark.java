@@ -0,0 +1,141 @@
+package com.terheyden.stringtools.benchmarks;
+
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.terheyden.stringtools.RegexBudget;
+import com.terheyden.stringtools.RegexEngine;
+import com.terheyden.stringtools.StringTools;
+
+/**
+ * Whole-document line operations: sorting, dedupe and line filtering.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class LinesBenchmark {
+
+    @Param({ "1KB", "64KB", "1MB", "16MB", "100MB" })
+    public String size;
+
+    @Param({ "SHORT", "MEDIUM", "LONG", "MIXED" })
+    public Corpus.Profile profile;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.generate(Corpus.Kind.TEXT, size, profile);
+    }
+
+    @Benchmark
+    public String sortAlpha() {
+        return StringTools.sortAlpha(text);
+    }
+
+    @Benchmark
+    public String sortAlphaIgnoreCase() {
+        return StringTools.sortAlpha(text, true);
+    }
+
+    @Benchmark
+    public String sortAlphaReverse() {
+        return StringTools.sortAlphaReverse(text);
+    }
+
+    @Benchmark
+    public String sortAlphaReverseIgnoreCase() {
+        return StringTools.sortAlphaReverse(text, true);
+    }
+
+    @Benchmark
+    public String sortNatural() {
+        return StringTools.sortNatural(text, false, false);
+    }
+
+    @Benchmark
+    public String sortCollated() {
+        return StringTools.sortCollated(text, Locale.GERMANY, false, false);
+    }
+
+    /**
+     * Collator.compare() on every comparison, for comparison with sortCollated's keys.
+     */
+    @Benchmark
+    public String[] sortCollatedPerComparison() {
+        String[] lines = StringTools.split(text);
+        Arrays.sort(lines, Collator.getInstance(Locale.GERMANY));
+        return lines;
+    }
+
+    @Benchmark
+    public String removeDuplicateLines() {
+        return StringTools.removeDuplicateLines(text);
+    }
+
+    @Benchmark
+    public String removeDuplicateLinesIgnoreCase() {
+        return StringTools.removeDuplicateLines(text, true);
+    }
+
+    @Benchmark
+    public String removeLinesContaining() {
+        return StringTools.removeLinesContaining(false, text, "ERROR|warn");
+    }
+
+    @Benchmark
+    public String removeLinesNotContaining() {
+        return StringTools.removeLinesContaining(true, text, "user[A-Z_ ]?[Nn]ame");
+    }
+
+    /**
+     * Same filter on each engine; a regex with some backtracking to do.
+     */
+    @Benchmark
+    public String removeLinesContainingBacktracking() {
+        return StringTools.removeLinesContaining(false, text, "(e|a)\\w*r.*o", RegexBudget.UNLIMITED, RegexEngine.BACKTRACKING);
+    }
+
+    @Benchmark
+    public String removeLinesContainingLinear() {
+        return StringTools.removeLinesContaining(false, text, "(e|a)\\w*r.*o", RegexBudget.UNLIMITED, RegexEngine.LINEAR);
+    }
+
+    /**
+     * removeLinesContaining's literal alternation, with the regex run on every line as before.
+     */
+    @Benchmark
+    public String removeLinesContainingLiteralsBacktracking() {
+        return StringTools.removeLinesContaining(false, text, "ERROR|warn", RegexBudget.UNLIMITED, RegexEngine.BACKTRACKING);
+    }
+
+    /**
+     * A real regex, but only lines with "ERROR" or "warn" in them can match.
+     */
+    @Benchmark
+    public String removeLinesContainingPrefiltered() {
+        return StringTools.removeLinesContaining(false, text, "(ERROR|warn).*\\d{3}", RegexBudget.UNLIMITED, RegexEngine.AUTO);
+    }
+
+    @Benchmark
+    public String removeLinesContainingPrefilteredBacktracking() {
+        return StringTools.removeLinesContaining(false, text, "(ERROR|warn).*\\d{3}", RegexBudget.UNLIMITED, RegexEngine.BACKTRACKING);
+    }
+}
@@ -0,0 +1,58 @@
+package com.terheyden.stringtools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.terheyden.stringtools.StringTools;
+
+/**
+ * Regex and smart replace, plus the regex tester.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class ReplaceBenchmark {
+
+    @Param({ "1KB", "64KB", "1MB", "16MB", "100MB" })
+    public String size;
+
+    @Param({ "SHORT", "MEDIUM", "LONG", "MIXED" })
+    public Corpus.Profile profile;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.generate(Corpus.Kind.TEXT, size, profile);
+    }
+
+    @Benchmark
+    public String regexReplaceText() {
+        return StringTools.regexReplaceText(text, "\\s+(the|and)\\s+", " & ");
+    }
+
+    @Benchmark
+    public String smartReplaceText() {
+        return StringTools.smartReplaceText(text, "userName", "userAddr");
+    }
+
+    @Benchmark
+    public String getRegexInfo() {
+        return StringTools.getRegexInfo(text, "order(Id)?\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
+    }
+}
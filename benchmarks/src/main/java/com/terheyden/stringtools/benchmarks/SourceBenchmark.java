@@ -0,0 +1,56 @@
+package com.terheyden.stringtools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.terheyden.stringtools.StringTools;
+
+/**
+ * Source code transforms. Source files have a fixed line shape, so there's no line-length profile here.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class SourceBenchmark {
+
+    @Param({ "1KB", "64KB", "1MB", "16MB", "100MB" })
+    public String size;
+
+    private String javaSrc;
+    private String flexSrc;
+
+    @Setup
+    public void setup() {
+        javaSrc = Corpus.generate(Corpus.Kind.JAVA, size, Corpus.Profile.MEDIUM);
+        flexSrc = Corpus.generate(Corpus.Kind.FLEX, size, Corpus.Profile.MEDIUM);
+    }
+
+    @Benchmark
+    public String javaCopyVarDocs() {
+        return StringTools.javaCopyVarDocs(javaSrc);
+    }
+
+    @Benchmark
+    public String flexCopyVarDocs() {
+        return StringTools.flexCopyVarDocs(flexSrc);
+    }
+
+    @Benchmark
+    public String convertJavadocToMediaWiki() {
+        return StringTools.convertJavadocToMediaWiki(javaSrc);
+    }
+}
@@ -0,0 +1,221 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Finds any number of literal strings in one left-to-right scan of the text (Aho-Corasick).
+ * <p/>
+ * The trie is turned into a full DFA up front, so scanning is one table lookup per char no matter how many
+ * patterns there are. Chars that don't appear in any pattern all share one column of the table.
+ * Matching is exact and case-sensitive; nothing is treated as regex syntax.
+ */
+final class AhoCorasick {
+
+    /**
+     * Told about each match. Return false to stop scanning.
+     */
+    interface MatchListener {
+        boolean onMatch(int patternIndex, int start, int end);
+    }
+
+    private static final int ROOT = 0;
+
+    private final String[] patterns;
+
+    // Alphabet: chars used by the patterns, sorted. Column 0 of the table is "any other char".
+    private final char[] alphabet;
+    private final int[] asciiColumn = new int[128];
+    private final int width;
+
+    private final int[] delta;
+    private final int[] outPattern;
+    private final int[] dictLink;
+
+    /**
+     * @param patterns strings to look for. Empty strings never match. If the same string is given twice,
+     *                 matches are reported for the first index only.
+     */
+    AhoCorasick(String[] patterns) {
+
+        this.patterns = patterns.clone();
+
+        // Build the alphabet.
+
+        TreeSet<Character> charSet = new TreeSet<Character>();
+        for (String pattern : patterns) {
+            for (int count = 0; count < pattern.length(); count++) {
+                charSet.add(pattern.charAt(count));
+            }
+        }
+
+        alphabet = new char[charSet.size()];
+        int column = 0;
+        for (Character c : charSet) {
+            alphabet[column++] = c;
+            if (c < 128) {
+                asciiColumn[c] = column;
+            }
+        }
+
+        width = alphabet.length + 1;
+
+        // Build the trie.
+
+        List<Map<Integer, Integer>> childList = new ArrayList<Map<Integer, Integer>>();
+        List<Integer> outList = new ArrayList<Integer>();
+        childList.add(new HashMap<Integer, Integer>());
+        outList.add(-1);
+
+        for (int patternIndex = 0; patternIndex < patterns.length; patternIndex++) {
+
+            String pattern = patterns[patternIndex];
+
+            if (pattern.isEmpty()) {
+                continue;
+            }
+
+            int state = ROOT;
+
+            for (int count = 0; count < pattern.length(); count++) {
+
+                int col = columnOf(pattern.charAt(count));
+                Integer next = childList.get(state).get(col);
+
+                if (next == null) {
+                    next = childList.size();
+                    childList.add(new HashMap<Integer, Integer>());
+                    outList.add(-1);
+                    childList.get(state).put(col, next);
+                }
+
+                state = next;
+            }
+
+            if (outList.get(state) < 0) {
+                outList.set(state, patternIndex);
+            }
+        }
+
+        int stateCount = childList.size();
+        delta = new int[stateCount * width];
+        outPattern = new int[stateCount];
+        dictLink = new int[stateCount];
+        int[] fail = new int[stateCount];
+
+        for (int state = 0; state < stateCount; state++) {
+            outPattern[state] = outList.get(state);
+        }
+
+        // Breadth-first: fill in the DFA transitions, failure links and dictionary links.
+
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+
+        dictLink[ROOT] = -1;
+
+        for (int col = 0; col < width; col++) {
+            Integer child = childList.get(ROOT).get(col);
+            if (child != null) {
+                delta[ROOT * width + col] = child;
+                fail[child] = ROOT;
+                dictLink[child] = -1;
+                queue[tail++] = child;
+            } else {
+                delta[ROOT * width + col] = ROOT;
+            }
+        }
+
+        while (head < tail) {
+
+            int state = queue[head++];
+            Map<Integer, Integer> children = childList.get(state);
+
+            for (int col = 0; col < width; col++) {
+
+                Integer child = children.get(col);
+
+                if (child == null) {
+                    delta[state * width + col] = delta[fail[state] * width + col];
+                    continue;
+                }
+
+                delta[state * width + col] = child;
+
+                int childFail = delta[fail[state] * width + col];
+                fail[child] = childFail;
+                dictLink[child] = outPattern[childFail] >= 0 ? childFail : dictLink[childFail];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    int getPatternCount() {
+        return patterns.length;
+    }
+
+    String getPattern(int patternIndex) {
+        return patterns[patternIndex];
+    }
+
+    /**
+     * Reports every match in text[from, to), including overlapping ones, in order of where they end.
+     */
+    void findAll(CharSequence text, int from, int to, MatchListener listener) {
+
+        int state = ROOT;
+
+        for (int pos = from; pos < to; pos++) {
+
+            state = delta[state * width + columnOf(text.charAt(pos))];
+
+            int match = outPattern[state] >= 0 ? state : dictLink[state];
+
+            while (match >= 0) {
+
+                int patternIndex = outPattern[match];
+                int end = pos + 1;
+
+                if (!listener.onMatch(patternIndex, end - patterns[patternIndex].length(), end)) {
+                    return;
+                }
+
+                match = dictLink[match];
+            }
+        }
+    }
+
+    /**
+     * Does text[from, to) contain any of the patterns?
+     */
+    boolean containsAny(CharSequence text, int from, int to) {
+
+        int state = ROOT;
+
+        for (int pos = from; pos < to; pos++) {
+
+            state = delta[state * width + columnOf(text.charAt(pos))];
+
+            if (outPattern[state] >= 0 || dictLink[state] >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int columnOf(char c) {
+
+        if (c < 128) {
+            return asciiColumn[c];
+        }
+
+        int index = Arrays.binarySearch(alphabet, c);
+        return index < 0 ? 0 : index + 1;
+    }
+}
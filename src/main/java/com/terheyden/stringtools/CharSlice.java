@@ -0,0 +1,69 @@
+package com.terheyden.stringtools;
+
+/**
+ * A window onto part of another CharSequence. Nothing is copied until toString() is called.
+ * Slices are mutable so one can be re-pointed at line after line without allocating.
+ */
+final class CharSlice implements CharSequence {
+
+    private CharSequence text;
+    private int start;
+    private int end;
+
+    CharSlice() {
+        this("", 0, 0);
+    }
+
+    CharSlice(CharSequence text, int start, int end) {
+        set(text, start, end);
+    }
+
+    CharSlice set(CharSequence text, int start, int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    /**
+     * The underlying text. Together with {@link #start()} and {@link #end()} this lets callers
+     * use bulk methods like StringBuilder.append(CharSequence, int, int).
+     */
+    CharSequence text() {
+        return text;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+        }
+        return text.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int subStart, int subEnd) {
+        if (subStart < 0 || subEnd > end - start || subStart > subEnd) {
+            throw new IndexOutOfBoundsException("start " + subStart + ", end " + subEnd + ", length " + (end - start));
+        }
+        return new CharSlice(text, start + subStart, start + subEnd);
+    }
+
+    @Override
+    public String toString() {
+        return text.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,181 @@
+package com.terheyden.stringtools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The wire format between {@link StringToolsClient} and {@link StringToolsDaemon}.
+ * <p/>
+ * The client sends a request: version (int), token (UTF), request type (byte), and for a RUN request,
+ * its working directory (UTF) and the command line (int count, then a UTF each). Then it streams
+ * its stdin as STDIN frames, ending with an empty one.
+ * <p/>
+ * The daemon answers with STDOUT and STDERR frames as the command runs, then one EXIT frame.
+ * A frame is a type byte, an int length, and that many bytes; an EXIT frame is the type byte and an int exit code.
+ */
+final class DaemonProtocol {
+
+    static final int VERSION = 1;
+
+    // Request types.
+    static final byte RUN = 'R';
+    static final byte STOP = 'S';
+
+    // Frame types.
+    static final byte STDIN = 'I';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+
+    /**
+     * Largest frame either side sends. The reader checks it, so a bad length can't make it allocate gigabytes.
+     */
+    static final int MAX_FRAME_BYTES = 64 * 1024;
+
+    private DaemonProtocol() {
+        // Static only.
+    }
+
+    /**
+     * Where the daemon writes its port and token, and the client looks for them.
+     */
+    static File defaultInfoFile() {
+        return new File(new File(System.getProperty("user.home"), ".stringtools"), "daemon.properties");
+    }
+
+    static void writeExit(DataOutputStream out, int exitCode) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads a frame's length, and makes sure it's sane.
+     */
+    static int readLength(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Bad frame length: " + length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Sends everything written to it as frames of one type. STDOUT and STDERR streams share one socket,
+     * so frames are written while holding the DataOutputStream's lock.
+     */
+    static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte frameType;
+
+        FrameOutputStream(DataOutputStream out, byte frameType) {
+            this.out = out;
+            this.frameType = frameType;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            // An empty frame means end of input, so don't send one by accident.
+            while (len > 0) {
+
+                int frameLength = Math.min(len, MAX_FRAME_BYTES);
+
+                synchronized (out) {
+                    out.writeByte(frameType);
+                    out.writeInt(frameLength);
+                    out.write(b, off, frameLength);
+                }
+
+                off += frameLength;
+                len -= frameLength;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        /**
+         * Sends the empty frame that ends a STDIN stream.
+         */
+        void end() throws IOException {
+            synchronized (out) {
+                out.writeByte(frameType);
+                out.writeInt(0);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Reads the client's STDIN frames as one stream, up to the empty frame.
+     */
+    static final class FrameInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private int frameRemaining;
+        private boolean ended;
+
+        FrameInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            if (len == 0) {
+                return 0;
+            }
+
+            while (frameRemaining == 0) {
+
+                if (ended) {
+                    return -1;
+                }
+
+                byte frameType = in.readByte();
+
+                if (frameType != STDIN) {
+                    throw new IOException("Expected a STDIN frame, got " + (char) frameType);
+                }
+
+                frameRemaining = readLength(in);
+                ended = frameRemaining == 0;
+            }
+
+            int read = in.read(b, off, Math.min(len, frameRemaining));
+
+            if (read < 0) {
+                throw new IOException("Client hung up mid-frame");
+            }
+
+            frameRemaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.terheyden.stringtools;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Remembers the lines it has seen, so duplicates can be dropped in O(1) per line.
+ * The first occurrence of a line wins, same as {@link StringTools#removeDuplicateLines(String, boolean)}.
+ * <p/>
+ * Ignoring case means "equal after {@link String#toLowerCase()}". Plain ASCII lines are folded on the fly
+ * while hashing and comparing, so no lowercase copy is made. Anything else (non-ASCII, or a locale like
+ * Turkish with its own casing rules) falls back to a real toLowerCase() so the result is exactly the same.
+ */
+public class DuplicateLineFilter {
+
+    private final boolean ignoreCase;
+    private final boolean asciiFoldingSafe;
+    private final Set<Object> seenSet = new HashSet<Object>();
+
+    public DuplicateLineFilter(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+
+        // These locales lowercase 'I' differently, so ASCII isn't safe to fold by hand.
+        String lang = Locale.getDefault().getLanguage();
+        asciiFoldingSafe = !(lang.equals("tr") || lang.equals("az") || lang.equals("lt"));
+    }
+
+    /**
+     * @return true if this is the first time we've seen the line (keep it), false if it's a duplicate
+     */
+    public boolean add(String line) {
+
+        if (!ignoreCase) {
+            return seenSet.add(line);
+        }
+
+        if (asciiFoldingSafe && isAscii(line)) {
+            return seenSet.add(new FoldedLine(line, true));
+        }
+
+        return seenSet.add(new FoldedLine(line.toLowerCase(), false));
+    }
+
+    /**
+     * The hash this filter uses for a line. Lines the filter considers duplicates always hash the same,
+     * so it can be used to partition lines between several filters.
+     */
+    int keyHash(String line) {
+
+        if (!ignoreCase) {
+            return line.hashCode();
+        }
+
+        if (asciiFoldingSafe && isAscii(line)) {
+            return new FoldedLine(line, true).hashCode();
+        }
+
+        return line.toLowerCase().hashCode();
+    }
+
+    /**
+     * How many distinct lines we've seen.
+     */
+    public int size() {
+        return seenSet.size();
+    }
+
+    public void clear() {
+        seenSet.clear();
+    }
+
+    private static boolean isAscii(String line) {
+
+        for (int count = 0; count < line.length(); count++) {
+            if (line.charAt(count) >= 0x80) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static char asciiLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * A lowercase view of a line. Either the line is ASCII and gets lowercased char by char (needsFolding),
+     * or it's already been lowercased. Hash and equality both work on the lowercased chars,
+     * so the two kinds compare correctly with each other.
+     */
+    private static final class FoldedLine {
+
+        private final String line;
+        private final boolean needsFolding;
+        private final int hash;
+
+        FoldedLine(String line, boolean needsFolding) {
+            this.line = line;
+            this.needsFolding = needsFolding;
+
+            if (needsFolding) {
+                // Same as line.toLowerCase().hashCode(), without the copy.
+                int h = 0;
+                for (int count = 0; count < line.length(); count++) {
+                    h = 31 * h + asciiLower(line.charAt(count));
+                }
+                hash = h;
+            } else {
+                hash = line.hashCode();
+            }
+        }
+
+        char charAt(int index) {
+            char c = line.charAt(index);
+            return needsFolding ? asciiLower(c) : c;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof FoldedLine)) {
+                return false;
+            }
+
+            FoldedLine other = (FoldedLine) obj;
+
+            if (hash != other.hash || line.length() != other.line.length()) {
+                return false;
+            }
+
+            if (!needsFolding && !other.needsFolding) {
+                return line.equals(other.line);
+            }
+
+            for (int count = 0; count < line.length(); count++) {
+                if (charAt(count) != other.charAt(count)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.terheyden.stringtools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Removes duplicate lines from input that may be far larger than the heap.
+ * Same rules as {@link StringTools#removeDuplicateLines(String, boolean)}: the first occurrence of a line wins
+ * and the original order is kept.
+ * <p/>
+ * Small inputs are deduped in memory and streamed straight out. Once the distinct lines seen so far
+ * outgrow the memory budget, the rest of the input is hash-partitioned into temp files tagged with
+ * sequence numbers. Each partition is deduped on its own (re-partitioning it if it's still too big),
+ * and the survivors are merged back into input order by sequence number.
+ * <p/>
+ * A partition that's too big is only split into as many pieces as its distinct lines look like they need,
+ * and there are never more than {@link #MAX_PARTITION_FILES} partitions, so a tiny budget can't
+ * bury the temp dir in files; past that, partitions are deduped in memory, budget or not.
+ * <p/>
+ * Unlike the String version, lines are read with {@link BufferedReader#readLine()} (so "\r\n" is one line break),
+ * every output line ends with '\n', and the output isn't trimmed.
+ */
+public class ExternalDedupe {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * How many partitions to split spilled lines into, at most. Re-partitioning usually uses fewer.
+     */
+    private static final int FAN_OUT = 64;
+
+    /**
+     * How many partition files one dedupe may make in all.
+     */
+    private static final int MAX_PARTITION_FILES = 1024;
+
+    /**
+     * Bits for guessing how many distinct lines a partition has. Good for guesses up to a few times this.
+     */
+    private static final int COUNTING_BITS = 8192;
+
+    /**
+     * Stop re-partitioning after this many levels; a partition that's still too big then is
+     * almost certainly one huge set of hash collisions, so we just try it in memory.
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * Sequence number for lines that were already written during the in-memory phase.
+     * They only exist so later copies of them get dropped.
+     */
+    private static final long ALREADY_WRITTEN = -1;
+
+    private final long memoryBudget;
+    private final File tempDir;
+
+    /**
+     * @param memoryBudgetBytes roughly how much heap to use for remembering lines
+     * @param tempDir where to put spill files, or null for the system temp dir
+     */
+    public ExternalDedupe(long memoryBudgetBytes, File tempDir) {
+
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudgetBytes);
+        }
+
+        this.memoryBudget = memoryBudgetBytes;
+        this.tempDir = tempDir;
+    }
+
+    public ExternalDedupe(long memoryBudgetBytes) {
+        this(memoryBudgetBytes, null);
+    }
+
+    public ExternalDedupe() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Copies [in] to [out] minus duplicate lines. Doesn't close either one.
+     * @return how many lines were written
+     */
+    public long dedupe(Reader in, final Writer out, boolean ignoreCase) throws IOException {
+
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 64 * 1024);
+
+        // Phase 1: in memory, written out as we go.
+
+        DuplicateLineFilter filter = new DuplicateLineFilter(ignoreCase);
+        List<String> writtenList = new ArrayList<String>();
+        long usedBytes = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+
+            if (filter.add(line)) {
+
+                out.write(line);
+                out.write('\n');
+                writtenList.add(line);
+                usedBytes += SpillFile.estimateBytes(line) + 8;
+
+                if (usedBytes > memoryBudget) {
+                    break;
+                }
+            }
+        }
+
+        if (line == null) {
+            return writtenList.size();
+        }
+
+        // Phase 2: out of memory budget. Partition what's left, with what we've written first as markers.
+
+        final long[] writtenCount = { writtenList.size() };
+        int[] partitionCount = { 0 };
+        Partitions partitions = new Partitions(filter, 0, FAN_OUT, partitionCount);
+        List<File> runList = new ArrayList<File>();
+
+        try {
+
+            for (String written : writtenList) {
+                partitions.write(ALREADY_WRITTEN, written);
+            }
+
+            writtenList = null;
+            filter.clear();
+
+            long seq = 0;
+            while ((line = reader.readLine()) != null) {
+                partitions.write(seq++, line);
+            }
+
+            partitions.close();
+
+            // Phase 3: dedupe each partition into a run sorted by sequence number.
+
+            for (File partFile : partitions.getFiles()) {
+                dedupePartition(partFile, ignoreCase, 0, partitionCount, runList);
+            }
+
+        } catch (IOException e) {
+            partitions.closeQuietly();
+            partitions.deleteAll();
+            deleteAll(runList);
+            throw e;
+        }
+
+        // Phase 4: merge the runs back into input order.
+
+        RunMerger.merge(runList, RunMerger.SEQ_ORDER, tempDir, new RunMerger.RecordSink() {
+            @Override
+            public void write(long seq, String mergedLine) throws IOException {
+                out.write(mergedLine);
+                out.write('\n');
+                writtenCount[0]++;
+            }
+        });
+
+        return writtenCount[0];
+    }
+
+    /**
+     * Dedupes one partition into a run file, or re-partitions it if its distinct lines don't fit in memory.
+     * @param partitionCount partition files made so far, in a one-element array
+     */
+    private void dedupePartition(File partFile, boolean ignoreCase, int depth, int[] partitionCount, List<File> runList)
+        throws IOException {
+
+        DuplicateLineFilter filter = new DuplicateLineFilter(ignoreCase);
+        SpillFile.Input input = new SpillFile.Input(partFile);
+        SpillFile.Output run = new SpillFile.Output(SpillFile.create(tempDir, "dedupe-run"));
+        boolean canSplit = depth < MAX_DEPTH && partitionCount[0] < MAX_PARTITION_FILES;
+        long usedBytes = 0;
+        long distinctCount = 0;
+        boolean tooBig = false;
+
+        try {
+
+            while (input.next()) {
+
+                if (!filter.add(input.line())) {
+                    continue;
+                }
+
+                usedBytes += SpillFile.estimateBytes(input.line());
+                distinctCount++;
+
+                // Splitting can't make a single line any smaller.
+                if (usedBytes > memoryBudget && distinctCount > 1 && canSplit) {
+                    tooBig = true;
+                    break;
+                }
+
+                if (input.seq() != ALREADY_WRITTEN) {
+                    run.write(input.seq(), input.line());
+                }
+            }
+
+        } finally {
+            input.close();
+            run.close();
+        }
+
+        if (!tooBig) {
+            runList.add(run.getFile());
+            SpillFile.delete(partFile);
+            return;
+        }
+
+        // Split it again with a different hash salt, and try each piece. Only split it as many ways
+        // as it looks like it needs, so pieces come out around 3/4 of the budget.
+
+        SpillFile.delete(run.getFile());
+        filter.clear();
+
+        double estimatedBytes = estimateDistinct(partFile, filter) * usedBytes / distinctCount;
+        int fanOut = (int) Math.min(FAN_OUT, Math.ceil(estimatedBytes * 4 / 3 / memoryBudget));
+        fanOut = Math.max(2, Math.min(fanOut, MAX_PARTITION_FILES - partitionCount[0]));
+
+        Partitions subPartitions = new Partitions(filter, depth + 1, fanOut, partitionCount);
+        input = new SpillFile.Input(partFile);
+
+        try {
+            while (input.next()) {
+                subPartitions.write(input.seq(), input.line());
+            }
+        } finally {
+            input.close();
+            subPartitions.close();
+        }
+
+        SpillFile.delete(partFile);
+
+        for (File subFile : subPartitions.getFiles()) {
+            dedupePartition(subFile, ignoreCase, depth + 1, partitionCount, runList);
+        }
+    }
+
+    /**
+     * Roughly how many distinct lines a partition has, by linear counting: hash each line to one of
+     * {@link #COUNTING_BITS} bits, and see how many bits are left unset. Doesn't remember any lines.
+     */
+    private static double estimateDistinct(File partFile, DuplicateLineFilter filter) throws IOException {
+
+        BitSet bits = new BitSet(COUNTING_BITS);
+        SpillFile.Input input = new SpillFile.Input(partFile);
+
+        try {
+            while (input.next()) {
+                bits.set(partitionOf(filter.keyHash(input.line()), MAX_DEPTH + 1, COUNTING_BITS));
+            }
+        } finally {
+            input.close();
+        }
+
+        int unset = COUNTING_BITS - bits.cardinality();
+
+        // All set means more lines than we can count, so as many as possible.
+        return unset == 0 ? Double.MAX_VALUE : COUNTING_BITS * Math.log((double) COUNTING_BITS / unset);
+    }
+
+    private static void deleteAll(List<File> fileList) {
+        for (File file : fileList) {
+            SpillFile.delete(file);
+        }
+    }
+
+    /**
+     * A set of spill files that lines are hashed into. Lines the filter considers equal always land
+     * in the same file, and each file keeps the order its lines were written in.
+     */
+    private final class Partitions {
+
+        private final DuplicateLineFilter filter;
+        private final int salt;
+        private final SpillFile.Output[] outputs;
+        private final int[] partitionCount;
+
+        /**
+         * @param partitionCount partition files made so far, in a one-element array; counted up as files are made
+         */
+        Partitions(DuplicateLineFilter filter, int salt, int fanOut, int[] partitionCount) {
+            this.filter = filter;
+            this.salt = salt;
+            this.outputs = new SpillFile.Output[fanOut];
+            this.partitionCount = partitionCount;
+        }
+
+        void write(long seq, String line) throws IOException {
+
+            int part = partitionOf(filter.keyHash(line), salt, outputs.length);
+
+            if (outputs[part] == null) {
+                outputs[part] = new SpillFile.Output(SpillFile.create(tempDir, "dedupe-part"));
+                partitionCount[0]++;
+            }
+
+            outputs[part].write(seq, line);
+        }
+
+        List<File> getFiles() {
+
+            List<File> fileList = new ArrayList<File>();
+
+            for (SpillFile.Output output : outputs) {
+                if (output != null) {
+                    fileList.add(output.getFile());
+                }
+            }
+
+            return fileList;
+        }
+
+        void close() throws IOException {
+            for (SpillFile.Output output : outputs) {
+                if (output != null) {
+                    output.close();
+                }
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                // We're already cleaning up after an error.
+            }
+        }
+
+        void deleteAll() {
+            ExternalDedupe.deleteAll(getFiles());
+        }
+    }
+
+    /**
+     * Mixes the salt in and spreads the bits, so each level of partitioning splits lines differently.
+     */
+    private static int partitionOf(int hash, int salt, int fanOut) {
+
+        int h = hash ^ (salt * 0x9E3779B9);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+
+        return (h & 0x7FFFFFFF) % fanOut;
+    }
+}
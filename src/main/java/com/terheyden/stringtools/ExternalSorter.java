@@ -0,0 +1,167 @@
+package com.terheyden.stringtools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorts lines that may not fit in the heap, using an external merge sort.
+ * <p/>
+ * Lines are read into memory until the memory budget is used up, then that chunk is sorted and written
+ * to a temp file as a sorted run. At the end the runs are k-way merged straight into the output Writer.
+ * Input that fits in the budget never touches the disk.
+ * <p/>
+ * The sort is stable like {@link Arrays#sort(Object[], Comparator)}: lines that compare equal
+ * (e.g. "Apple" and "apple" when ignoring case) keep their input order, so the result matches
+ * {@link StringTools#sortAlpha(String, boolean)} line for line. Unlike the String version, lines are read
+ * with {@link BufferedReader#readLine()} (so "\r\n" is one line break), every output line ends with '\n',
+ * and blank lines are kept rather than trimmed away.
+ */
+public class ExternalSorter {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private final long memoryBudget;
+    private final File tempDir;
+
+    /**
+     * @param memoryBudgetBytes roughly how much heap to use for lines being sorted
+     * @param tempDir where to put the sorted runs, or null for the system temp dir
+     */
+    public ExternalSorter(long memoryBudgetBytes, File tempDir) {
+
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudgetBytes);
+        }
+
+        this.memoryBudget = memoryBudgetBytes;
+        this.tempDir = tempDir;
+    }
+
+    public ExternalSorter(long memoryBudgetBytes) {
+        this(memoryBudgetBytes, null);
+    }
+
+    public ExternalSorter() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Same ordering as sortAlpha / sortAlphaReverse.
+     * @return how many lines were written
+     */
+    public long sort(Reader in, Writer out, boolean ignoreCase, boolean reverse) throws IOException {
+        return sort(in, out, LineComparators.alpha(ignoreCase, reverse));
+    }
+
+    /**
+     * Copies the lines of [in] to [out] in sorted order. Doesn't close either one.
+     * @return how many lines were written
+     */
+    public long sort(Reader in, final Writer out, final Comparator<String> order) throws IOException {
+
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 64 * 1024);
+
+        List<String> chunkList = new ArrayList<String>();
+        List<File> runList = new ArrayList<File>();
+        long chunkStartSeq = 0;
+        long seq = 0;
+        long usedBytes = 0;
+        String line;
+
+        try {
+
+            while ((line = reader.readLine()) != null) {
+
+                chunkList.add(line);
+                seq++;
+                usedBytes += SpillFile.estimateBytes(line);
+
+                if (usedBytes > memoryBudget) {
+                    runList.add(writeRun(chunkList, chunkStartSeq, order));
+                    chunkList.clear();
+                    chunkStartSeq = seq;
+                    usedBytes = 0;
+                }
+            }
+
+            // Everything fit in memory? Then we're done.
+            if (runList.isEmpty()) {
+
+                String[] lineArr = chunkList.toArray(new String[chunkList.size()]);
+
+                for (int index : LineSorter.sortedOrder(lineArr, order)) {
+                    out.write(lineArr[index]);
+                    out.write('\n');
+                }
+
+                return lineArr.length;
+            }
+
+            if (!chunkList.isEmpty()) {
+                runList.add(writeRun(chunkList, chunkStartSeq, order));
+                chunkList.clear();
+            }
+
+        } catch (IOException e) {
+            for (File run : runList) {
+                SpillFile.delete(run);
+            }
+            throw e;
+        }
+
+        final long[] writtenCount = { 0 };
+
+        RunMerger.merge(runList, recordOrder(order), tempDir, new RunMerger.RecordSink() {
+            @Override
+            public void write(long recordSeq, String sortedLine) throws IOException {
+                out.write(sortedLine);
+                out.write('\n');
+                writtenCount[0]++;
+            }
+        });
+
+        return writtenCount[0];
+    }
+
+    /**
+     * Sorts one chunk and writes it out as a run. Each line is tagged with its input position,
+     * which breaks ties during the merge.
+     */
+    private File writeRun(List<String> chunkList, long startSeq, Comparator<String> order) throws IOException {
+
+        String[] lineArr = chunkList.toArray(new String[chunkList.size()]);
+
+        // Stable sort of positions, so equal lines stay in input order and keep the right sequence numbers.
+        int[] indexArr = LineSorter.sortedOrder(lineArr, order);
+
+        SpillFile.Output run = new SpillFile.Output(SpillFile.create(tempDir, "sort-run"));
+
+        try {
+            for (int index : indexArr) {
+                run.write(startSeq + index, lineArr[index]);
+            }
+        } finally {
+            run.close();
+        }
+
+        return run.getFile();
+    }
+
+    private static Comparator<SpillFile.Input> recordOrder(final Comparator<String> order) {
+        return new Comparator<SpillFile.Input>() {
+            @Override
+            public int compare(SpillFile.Input o1, SpillFile.Input o2) {
+
+                int result = order.compare(o1.line(), o2.line());
+                return result != 0 ? result : Long.compare(o1.seq(), o2.seq());
+            }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package com.terheyden.stringtools;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of values (latencies, in nanoseconds) in log-linear buckets, the way HdrHistogram does it:
+ * each power of two is split into {@link #SUB_BUCKETS} equal buckets, so any value reads back within
+ * 1/64 of what was recorded, and the whole range up to an hour fits in a few thousand counters.
+ * <p/>
+ * Recording is one atomic increment and never blocks, so any number of threads can record at once.
+ * Percentiles are read off a copy of the counts, so they're consistent enough, but not a snapshot.
+ */
+final class LatencyHistogram {
+
+    /**
+     * Buckets per power of two, past the first 2 * SUB_BUCKETS values, which get a bucket each.
+     */
+    static final int SUB_BUCKETS = 64;
+
+    /**
+     * Bits of a value that pick its bucket: the highest one set, and the SUB_BUCKET_BITS - 1 after it.
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /**
+     * Anything longer is counted as this; about an hour, in nanoseconds.
+     */
+    static final long MAX_VALUE = (1L << 42) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+    private final LongAdder total = new LongAdder();
+
+    void record(long value) {
+
+        long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+
+        counts.incrementAndGet(bucketIndex(clamped));
+        total.add(clamped);
+    }
+
+    /**
+     * The smallest value of the bucket the given percentile of recorded values falls in, or 0 if there are none.
+     * @param percentile 0 to 100
+     */
+    long valueAtPercentile(double percentile) {
+
+        long[] copy = copyCounts();
+        long count = 0;
+
+        for (long bucketCount : copy) {
+            count += bucketCount;
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        // The rank'th value, counting from 1, is the one we want.
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+
+        for (int index = 0; index < copy.length; index++) {
+
+            seen += copy[index];
+
+            if (seen >= rank) {
+                return bucketStart(index);
+            }
+        }
+
+        return bucketStart(copy.length - 1);
+    }
+
+    /**
+     * The smallest value of the highest bucket anything was recorded in, or 0 if there's nothing.
+     */
+    long max() {
+
+        for (int index = counts.length() - 1; index >= 0; index--) {
+            if (counts.get(index) > 0) {
+                return bucketStart(index);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * The sum of everything recorded, exactly.
+     */
+    long total() {
+        return total.sum();
+    }
+
+    void reset() {
+
+        for (int index = 0; index < counts.length(); index++) {
+            counts.set(index, 0);
+        }
+
+        total.reset();
+    }
+
+    private long[] copyCounts() {
+
+        long[] copy = new long[counts.length()];
+
+        for (int index = 0; index < copy.length; index++) {
+            copy[index] = counts.get(index);
+        }
+
+        return copy;
+    }
+
+    static int bucketIndex(long value) {
+
+        if (value < SUB_BUCKETS * 2) {
+            return (int) value;
+        }
+
+        // value >>> shift is in [SUB_BUCKETS, SUB_BUCKETS * 2): the top bit and the ones after it.
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long bucketStart(int index) {
+
+        if (index < SUB_BUCKETS * 2) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index - shift * SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,299 @@
+package com.terheyden.stringtools;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The line orderings used by the sort operations, shared by the in-memory and external sorts
+ * so they always agree.
+ */
+public final class LineComparators {
+
+    private static final Comparator<String> ALPHA = new AlphaComparator(false, false);
+    private static final Comparator<String> ALPHA_IGNORE_CASE = new AlphaComparator(true, false);
+    private static final Comparator<String> ALPHA_REVERSE = new AlphaComparator(false, true);
+    private static final Comparator<String> ALPHA_REVERSE_IGNORE_CASE = new AlphaComparator(true, true);
+
+    private LineComparators() {
+    }
+
+    /**
+     * Plain UTF-16 ordering ({@link String#compareTo(String)}), or {@link String#compareToIgnoreCase(String)}.
+     * Nulls go first, or last when reversed.
+     */
+    public static Comparator<String> alpha(boolean ignoreCase, boolean reverse) {
+
+        if (reverse) {
+            return ignoreCase ? ALPHA_REVERSE_IGNORE_CASE : ALPHA_REVERSE;
+        }
+
+        return ignoreCase ? ALPHA_IGNORE_CASE : ALPHA;
+    }
+
+    /**
+     * Like alpha(), except runs of digits compare as numbers, so "file2" sorts before "file10".
+     * Only ASCII digits count. Numbers that differ only in leading zeros ("a01", "a1") go in alpha order.
+     * Nulls go first, or last when reversed.
+     */
+    public static Comparator<String> natural(boolean ignoreCase, boolean reverse) {
+        return new NaturalComparator(ignoreCase, reverse);
+    }
+
+    /**
+     * The locale's own ordering, e.g. accents after plain letters and "ch" after "h" in Czech.
+     * @param ignoreCase compare at {@link Collator#SECONDARY} strength, so only case differences don't count
+     */
+    public static Comparator<String> collated(Locale locale, boolean ignoreCase, boolean reverse) {
+
+        Collator collator = Collator.getInstance(locale);
+        collator.setStrength(ignoreCase ? Collator.SECONDARY : Collator.TERTIARY);
+        collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+
+        return new CollatorComparator(collator, reverse);
+    }
+
+    /**
+     * Package-private so {@link LineSorter} can recognize it and sort without calling it.
+     */
+    static final class AlphaComparator implements Comparator<String> {
+
+        private final boolean ignoreCase;
+        private final boolean reverse;
+
+        AlphaComparator(boolean ignoreCase, boolean reverse) {
+            this.ignoreCase = ignoreCase;
+            this.reverse = reverse;
+        }
+
+        boolean ignoreCase() {
+            return ignoreCase;
+        }
+
+        boolean reverse() {
+            return reverse;
+        }
+
+        @Override
+        public int compare(String o1, String o2) {
+
+            if (reverse) {
+                String temp = o1;
+                o1 = o2;
+                o2 = temp;
+            }
+
+            if (o1 == null) {
+                return -1;
+            }
+
+            if (o2 == null) {
+                return 1;
+            }
+
+            if (ignoreCase) {
+                return o1.compareToIgnoreCase(o2);
+            } else {
+                return o1.compareTo(o2);
+            }
+        }
+    }
+
+    /**
+     * An ordering that compares a key computed from each line. {@link LineSorter} computes each line's key once
+     * and sorts the keys; compare() works out both keys every time, which is fine for a merge but not for a sort.
+     * compare() goes through the keys too, even for a Collator, because Collator.compare() and CollationKey
+     * don't always agree (e.g. French, on punctuation), and every sort path must give the same order.
+     */
+    abstract static class KeyedComparator<K> implements Comparator<String> {
+
+        private final boolean reverse;
+
+        KeyedComparator(boolean reverse) {
+            this.reverse = reverse;
+        }
+
+        boolean reverse() {
+            return reverse;
+        }
+
+        abstract K key(String line);
+
+        abstract int compareKeys(K key1, K key2);
+
+        /**
+         * A copy for one thread, when computing keys isn't thread-safe (or is, but under a lock).
+         */
+        KeyedComparator<K> fork() {
+            return this;
+        }
+
+        @Override
+        public int compare(String o1, String o2) {
+
+            if (reverse) {
+                String temp = o1;
+                o1 = o2;
+                o2 = temp;
+            }
+
+            if (o1 == null) {
+                return o2 == null ? 0 : -1;
+            }
+
+            if (o2 == null) {
+                return 1;
+            }
+
+            return compareKeys(key(o1), key(o2));
+        }
+    }
+
+    private static final class NaturalComparator extends KeyedComparator<NaturalKey> {
+
+        private final boolean ignoreCase;
+
+        NaturalComparator(boolean ignoreCase, boolean reverse) {
+            super(reverse);
+            this.ignoreCase = ignoreCase;
+        }
+
+        @Override
+        NaturalKey key(String line) {
+            return new NaturalKey(line, ignoreCase);
+        }
+
+        @Override
+        int compareKeys(NaturalKey key1, NaturalKey key2) {
+
+            int result = key1.compareChunks(key2);
+
+            if (result != 0) {
+                return result;
+            }
+
+            return ignoreCase ? key1.line.compareToIgnoreCase(key2.line) : key1.line.compareTo(key2.line);
+        }
+    }
+
+    /**
+     * A line cut into runs of digits and runs of everything else.
+     */
+    private static final class NaturalKey {
+
+        final String line;
+
+        /**
+         * Digit runs without their leading zeros; other runs folded if ignoring case.
+         */
+        private final String[] chunks;
+        private final boolean[] numeric;
+
+        NaturalKey(String line, boolean ignoreCase) {
+
+            this.line = line;
+
+            List<String> chunkList = new ArrayList<String>();
+            List<Boolean> numericList = new ArrayList<Boolean>();
+            int start = 0;
+
+            while (start < line.length()) {
+
+                boolean digits = isDigit(line.charAt(start));
+                int end = start + 1;
+                while (end < line.length() && isDigit(line.charAt(end)) == digits) {
+                    end++;
+                }
+
+                chunkList.add(digits ? stripZeros(line, start, end) : text(line, start, end, ignoreCase));
+                numericList.add(digits);
+                start = end;
+            }
+
+            this.chunks = chunkList.toArray(new String[chunkList.size()]);
+            this.numeric = new boolean[chunks.length];
+            for (int count = 0; count < numeric.length; count++) {
+                numeric[count] = numericList.get(count);
+            }
+        }
+
+        int compareChunks(NaturalKey other) {
+
+            int end = Math.min(chunks.length, other.chunks.length);
+
+            for (int index = 0; index < end; index++) {
+
+                String chunk1 = chunks[index];
+                String chunk2 = other.chunks[index];
+
+                // Without leading zeros, the longer number is the bigger one; no parsing, so no overflow.
+                if (numeric[index] && other.numeric[index] && chunk1.length() != chunk2.length()) {
+                    return chunk1.length() - chunk2.length();
+                }
+
+                int result = chunk1.compareTo(chunk2);
+                if (result != 0) {
+                    return result;
+                }
+            }
+
+            return chunks.length - other.chunks.length;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static String stripZeros(String line, int start, int end) {
+            while (start < end - 1 && line.charAt(start) == '0') {
+                start++;
+            }
+            return line.substring(start, end);
+        }
+
+        private static String text(String line, int start, int end, boolean ignoreCase) {
+
+            if (!ignoreCase) {
+                return line.substring(start, end);
+            }
+
+            char[] folded = new char[end - start];
+            for (int index = start; index < end; index++) {
+                folded[index - start] = LineSorter.fold(line.charAt(index));
+            }
+
+            return new String(folded);
+        }
+    }
+
+    private static final class CollatorComparator extends KeyedComparator<CollationKey> {
+
+        private final Collator collator;
+
+        CollatorComparator(Collator collator, boolean reverse) {
+            super(reverse);
+            this.collator = collator;
+        }
+
+        @Override
+        CollationKey key(String line) {
+            return collator.getCollationKey(line);
+        }
+
+        @Override
+        int compareKeys(CollationKey key1, CollationKey key2) {
+            return key1.compareTo(key2);
+        }
+
+        /**
+         * Collators lock around every call, so each thread gets its own.
+         */
+        @Override
+        KeyedComparator<CollationKey> fork() {
+            return new CollatorComparator((Collator) collator.clone(), reverse());
+        }
+    }
+}
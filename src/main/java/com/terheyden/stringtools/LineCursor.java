@@ -0,0 +1,152 @@
+package com.terheyden.stringtools;
+
+/**
+ * Walks the lines of a CharSequence by offset, without copying them.
+ * <pre>
+ *     LineCursor cursor = new LineCursor(text);
+ *     while (cursor.next()) {
+ *         builder.append(text, cursor.start(), cursor.end());
+ *     }
+ * </pre>
+ * "\n", "\r\n" and "\r" each end a line, and aren't part of it. A line break at the very end of the text
+ * doesn't start another (empty) line, so "a\nb\n" is two lines; text with no line breaks, including "",
+ * is one line.
+ */
+public final class LineCursor {
+
+    private final CharSequence text;
+    private final int end;
+    private final CharSlice slice = new CharSlice();
+
+    private int pos;
+    private boolean done;
+    private int lineStart;
+    private int lineEnd;
+
+    public LineCursor(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * Walks the lines of text[start, end).
+     */
+    public LineCursor(CharSequence text, int start, int end) {
+
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length());
+        }
+
+        this.text = text;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * Lines the way {@link StringTools#split(String)} has always seen them: trailing empty lines are dropped,
+     * and text that's nothing but line breaks has no lines at all.
+     */
+    public static LineCursor withoutTrailingEmptyLines(CharSequence text) {
+
+        int contentEnd = contentEnd(text);
+        LineCursor cursor = new LineCursor(text, 0, contentEnd);
+
+        if (contentEnd == 0 && text.length() > 0) {
+            cursor.done = true;
+        }
+
+        return cursor;
+    }
+
+    /**
+     * The offset just past the last char that isn't '\r' or '\n'.
+     */
+    public static int contentEnd(CharSequence text) {
+
+        int contentEnd = text.length();
+
+        while (contentEnd > 0 && isLineBreak(text.charAt(contentEnd - 1))) {
+            contentEnd--;
+        }
+
+        return contentEnd;
+    }
+
+    static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Moves to the next line.
+     * @return false if there are no more lines
+     */
+    public boolean next() {
+
+        if (done) {
+            return false;
+        }
+
+        int index = pos;
+        while (index < end && !isLineBreak(text.charAt(index))) {
+            index++;
+        }
+
+        lineStart = pos;
+        lineEnd = index;
+
+        if (index == end) {
+            // Last line, with no line break after it.
+            pos = end;
+            done = true;
+            return true;
+        }
+
+        pos = text.charAt(index) == '\r' && index + 1 < end && text.charAt(index + 1) == '\n' ? index + 2 : index + 1;
+
+        // A line break at the very end doesn't start another line.
+        if (pos == end) {
+            done = true;
+        }
+
+        return true;
+    }
+
+    /**
+     * Where the current line starts.
+     */
+    public int start() {
+        return lineStart;
+    }
+
+    /**
+     * Where the current line ends, not counting its line break.
+     */
+    public int end() {
+        return lineEnd;
+    }
+
+    /**
+     * Where the next line starts (just past the current line's line break).
+     */
+    public int nextStart() {
+        return pos;
+    }
+
+    public int length() {
+        return lineEnd - lineStart;
+    }
+
+    /**
+     * The current line as a view onto the text. The same object is reused for every line,
+     * so copy it (toString()) if you need to keep it.
+     */
+    public CharSequence line() {
+        return slice.set(text, lineStart, lineEnd);
+    }
+
+    /**
+     * The current line, copied into a String.
+     */
+    public String lineString() {
+        return text.subSequence(lineStart, lineEnd).toString();
+    }
+}
@@ -0,0 +1,308 @@
+package com.terheyden.stringtools;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a line contains a match for a regex, on whichever engine suits the regex.
+ * Like {@link LineStage}, a filter has per-run state: {@link #fork()} a copy for each run.
+ * <p/>
+ * On AUTO, the regex is first checked for literals (see {@link RegexLiterals}). A regex that's just a literal,
+ * or a few alternatives of them, is searched for with indexOf() or Aho-Corasick instead of a regex engine.
+ * Otherwise, if every match has to contain one of some literals, lines without any of them are skipped
+ * without running the regex. Literal scans can't blow up, so they don't count against the budget.
+ */
+abstract class LineFilter {
+
+    /**
+     * A prefilter on shorter literals than this would pass nearly every line, and just add a scan.
+     */
+    static final int MIN_PREFILTER_LENGTH = 2;
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if the regex is invalid
+     * @throws IllegalArgumentException if the engine is LINEAR and the regex can't run on it
+     */
+    static LineFilter compile(String regex, RegexEngine engine, RegexBudget budget) {
+
+        // Always compiled, so a bad regex fails the same way on every engine.
+        Pattern pattern = PatternCache.getShared().compile(regex);
+
+        switch (engine) {
+
+            case BACKTRACKING:
+                return new BacktrackingFilter(pattern, budget);
+
+            case LINEAR:
+                return new LinearFilter(LinearRegex.compile(regex), budget);
+
+            case AUTO:
+            default:
+                RegexLiterals literals = RegexLiterals.analyze(regex);
+                Set<String> exact = literals.getExact();
+
+                if (exact != null && !exact.contains("")) {
+                    return literalFilter(exact);
+                }
+
+                LinearRegex linearRegex = LinearRegex.tryCompile(regex);
+                LineFilter filter = linearRegex != null ? new AutoFilter(linearRegex, pattern, budget) : new BacktrackingFilter(pattern, budget);
+
+                if (literals.getRequiredLength() >= MIN_PREFILTER_LENGTH) {
+                    return new PrefilteredFilter(literalFilter(literals.getRequired()), filter);
+                }
+
+                return filter;
+        }
+    }
+
+    /**
+     * Finds lines containing any of the (non-empty) strings.
+     */
+    private static LineFilter literalFilter(Set<String> strings) {
+        return strings.size() == 1 ? new LiteralFilter(strings.iterator().next()) : new MultiLiteralFilter(strings);
+    }
+
+    /**
+     * Does the line contain a match?
+     */
+    abstract boolean find(CharSequence line);
+
+    /**
+     * A copy for one run, with its own matcher state and a fresh budget.
+     */
+    abstract LineFilter fork();
+
+    /**
+     * Which engine actually runs the regex.
+     */
+    abstract RegexEngine getEngine();
+
+    private static final class BacktrackingFilter extends LineFilter {
+
+        private final Pattern pattern;
+        private final Matcher matcher;
+        private final RegexBudget.Guard guard;
+
+        BacktrackingFilter(Pattern pattern, RegexBudget budget) {
+            this(pattern, budget.start());
+        }
+
+        BacktrackingFilter(Pattern pattern, RegexBudget.Guard guard) {
+            this.pattern = pattern;
+            this.matcher = pattern.matcher("");
+            this.guard = guard;
+        }
+
+        @Override
+        boolean find(CharSequence line) {
+            return matcher.reset(guard.wrap(line)).find();
+        }
+
+        @Override
+        LineFilter fork() {
+            return new BacktrackingFilter(pattern, guard.getBudget());
+        }
+
+        @Override
+        RegexEngine getEngine() {
+            return RegexEngine.BACKTRACKING;
+        }
+
+        @Override
+        public String toString() {
+            return "BacktrackingFilter[" + pattern.pattern() + "]";
+        }
+    }
+
+    private static final class LinearFilter extends LineFilter {
+
+        private final LinearRegex regex;
+        private final LinearRegex.Searcher searcher;
+        private final RegexBudget.Guard guard;
+
+        LinearFilter(LinearRegex regex, RegexBudget budget) {
+            this.regex = regex;
+            this.searcher = regex.searcher();
+            this.guard = budget.start();
+        }
+
+        @Override
+        boolean find(CharSequence line) {
+            return searcher.find(guard.wrap(line));
+        }
+
+        @Override
+        LineFilter fork() {
+            return new LinearFilter(regex, guard.getBudget());
+        }
+
+        @Override
+        RegexEngine getEngine() {
+            return RegexEngine.LINEAR;
+        }
+
+        @Override
+        public String toString() {
+            return "LinearFilter[" + regex.pattern() + "]";
+        }
+    }
+
+    /**
+     * The linear engine, except for lines with surrogates, where it and java.util.regex could disagree.
+     */
+    private static final class AutoFilter extends LineFilter {
+
+        private final LinearRegex regex;
+        private final LinearRegex.Searcher searcher;
+        private final BacktrackingFilter fallback;
+        private final RegexBudget.Guard guard;
+
+        AutoFilter(LinearRegex regex, Pattern pattern, RegexBudget budget) {
+            this.regex = regex;
+            this.searcher = regex.searcher();
+            this.guard = budget.start();
+            this.fallback = new BacktrackingFilter(pattern, guard);
+        }
+
+        @Override
+        boolean find(CharSequence line) {
+
+            int result = searcher.find(guard.wrap(line), true);
+
+            if (result == LinearRegex.UNDECIDED) {
+                return fallback.find(line);
+            }
+
+            return result == LinearRegex.FOUND;
+        }
+
+        @Override
+        LineFilter fork() {
+            return new AutoFilter(regex, fallback.pattern, guard.getBudget());
+        }
+
+        @Override
+        RegexEngine getEngine() {
+            return RegexEngine.LINEAR;
+        }
+
+        @Override
+        public String toString() {
+            return "AutoFilter[" + regex.pattern() + "]";
+        }
+    }
+
+    /**
+     * A regex that's just a literal. indexOf() is a JIT intrinsic on String and StringBuilder, and beats
+     * a hand-written Boyer-Moore-Horspool scan at line lengths.
+     */
+    private static final class LiteralFilter extends LineFilter {
+
+        private final String literal;
+
+        LiteralFilter(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        boolean find(CharSequence line) {
+
+            if (line instanceof StringBuilder) {
+                return ((StringBuilder) line).indexOf(literal) >= 0;
+            }
+
+            return line.toString().contains(literal);
+        }
+
+        /**
+         * No state, so no copy needed.
+         */
+        @Override
+        LineFilter fork() {
+            return this;
+        }
+
+        /**
+         * Not a regex engine, but linear time all the same.
+         */
+        @Override
+        RegexEngine getEngine() {
+            return RegexEngine.LINEAR;
+        }
+
+        @Override
+        public String toString() {
+            return "LiteralFilter[" + literal + "]";
+        }
+    }
+
+    /**
+     * A regex that's just a set of literals, like "ERROR|FATAL", searched for in one pass.
+     */
+    private static final class MultiLiteralFilter extends LineFilter {
+
+        private final Set<String> literals;
+        private final AhoCorasick automaton;
+
+        MultiLiteralFilter(Set<String> literals) {
+            this.literals = literals;
+            this.automaton = new AhoCorasick(literals.toArray(new String[literals.size()]));
+        }
+
+        @Override
+        boolean find(CharSequence line) {
+            return automaton.containsAny(line, 0, line.length());
+        }
+
+        @Override
+        LineFilter fork() {
+            return this;
+        }
+
+        @Override
+        RegexEngine getEngine() {
+            return RegexEngine.LINEAR;
+        }
+
+        @Override
+        public String toString() {
+            return "MultiLiteralFilter" + literals;
+        }
+    }
+
+    /**
+     * Only runs the regex on lines that contain one of its required literals.
+     */
+    private static final class PrefilteredFilter extends LineFilter {
+
+        private final LineFilter prefilter;
+        private final LineFilter filter;
+
+        PrefilteredFilter(LineFilter prefilter, LineFilter filter) {
+            this.prefilter = prefilter;
+            this.filter = filter;
+        }
+
+        @Override
+        boolean find(CharSequence line) {
+            return prefilter.find(line) && filter.find(line);
+        }
+
+        @Override
+        LineFilter fork() {
+            return new PrefilteredFilter(prefilter, filter.fork());
+        }
+
+        @Override
+        RegexEngine getEngine() {
+            return filter.getEngine();
+        }
+
+        @Override
+        public String toString() {
+            return "PrefilteredFilter[" + prefilter + ", " + filter + "]";
+        }
+    }
+}
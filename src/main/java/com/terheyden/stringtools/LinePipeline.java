@@ -0,0 +1,645 @@
+package com.terheyden.stringtools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Chains per-line operations so they all run in a single pass over the text.
+ * <p/>
+ * Calling trimChars, then addIndent, then insertText splits and joins the whole document three times.
+ * A pipeline does the same work with one split, one reusable line buffer and one output buffer:
+ * <pre>
+ *     String result = new LinePipeline()
+ *         .trimChars(" *", "beginning")
+ *         .indent(2)
+ *         .insert("* ", "beginning")
+ *         .apply(text);
+ * </pre>
+ * Each stage behaves like the StringTools method of the same name. Lines are joined with '\n' and,
+ * unlike removeLinesContaining, the result isn't trimmed.
+ * A pipeline can be reused, and can be applied from several threads at once.
+ * <p/>
+ * A {@link #parallel()} pipeline splits big text into chunks at line breaks, runs the chunks on the
+ * common ForkJoinPool, and joins the results in order.
+ */
+public final class LinePipeline {
+
+    /**
+     * Chars read at a time by {@link #apply(Reader, Writer)}; grows if a line is longer.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Text shorter than this runs on the calling thread; splitting it up costs more than it saves.
+     */
+    static final int PARALLEL_THRESHOLD = 256 * 1024;
+
+    /**
+     * Smallest chunk handed to a pool thread.
+     */
+    private static final int MIN_CHUNK_SIZE = 32 * 1024;
+
+    /**
+     * Chunks per pool thread, so a thread that finishes early can steal more work.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final List<LineStage> stageList = new ArrayList<LineStage>();
+
+    private boolean parallel;
+
+    /**
+     * A regex budget covers all lines of a run, and its meter can't be shared between threads.
+     */
+    private boolean budgeted;
+
+    /**
+     * Adds a custom stage.
+     */
+    public LinePipeline add(LineStage stage) {
+        stageList.add(stage);
+        return this;
+    }
+
+    /**
+     * Runs big text on several cores; see {@link #runsInParallel(int)}.
+     * Every stage is forked once per chunk, so only use this when each line's result depends on that line alone.
+     */
+    public LinePipeline parallel() {
+        parallel = true;
+        return this;
+    }
+
+    /**
+     * Whether {@link #apply(CharSequence)} would split text of this length across threads: the pipeline
+     * must be {@link #parallel()}, the text at least {@link #PARALLEL_THRESHOLD} chars, there must be more
+     * than one core, and no regex stage may have a budget.
+     */
+    public boolean runsInParallel(int textLength) {
+        return parallel && !budgeted && textLength >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * @param indentAmt spaces to add; negative to remove them, same as {@link StringTools#addIndent(String, int)}
+     */
+    public LinePipeline indent(int indentAmt) {
+        if (indentAmt != 0) {
+            stageList.add(new IndentStage(indentAmt));
+        }
+        return this;
+    }
+
+    /**
+     * @param whereStr "end" to append, anything else to prepend
+     * @see StringTools#insertText(String, String, String)
+     */
+    public LinePipeline insert(String insertText, String whereStr) {
+        stageList.add(new InsertStage(insertText, whereStr.toLowerCase().equals("end")));
+        return this;
+    }
+
+    /**
+     * @param fromBeginningOrEndStr "beginning", "end" or "begin + end"
+     * @see StringTools#trimChars(String, String, String)
+     */
+    public LinePipeline trimChars(String charsToTrim, String fromBeginningOrEndStr) {
+
+        // Same as trimChars(): bad args mean do nothing.
+        if (charsToTrim == null || fromBeginningOrEndStr == null || charsToTrim.length() == 0) {
+            return this;
+        }
+
+        boolean fromBOL = fromBeginningOrEndStr.equals("beginning") || fromBeginningOrEndStr.equals("begin + end");
+        boolean fromEOL = fromBeginningOrEndStr.equals("end") || fromBeginningOrEndStr.equals("begin + end");
+
+        if (fromBOL || fromEOL) {
+            stageList.add(new TrimStage(charsToTrim, fromBOL, fromEOL));
+        }
+
+        return this;
+    }
+
+    /**
+     * @see StringTools#capitalize(String)
+     */
+    public LinePipeline capitalize() {
+        stageList.add(CapitalizeStage.INSTANCE);
+        return this;
+    }
+
+    /**
+     * @see StringTools#convertBulletMarkup(String, String, String, int)
+     */
+    public LinePipeline convertBullets(String srcMarkup, String destMarkup, int indentAmt) {
+        stageList.add(new BulletStage(srcMarkup, destMarkup, indentAmt));
+        return this;
+    }
+
+    /**
+     * Drops lines that do (or don't) contain a match for the regex.
+     * @see StringTools#removeLinesContaining(boolean, String, String)
+     */
+    public LinePipeline removeLinesContaining(boolean removeLinesNotContaining, String containRegex) {
+        return removeLinesContaining(removeLinesNotContaining, containRegex, RegexBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget how long matching may take, over all lines of each {@link #apply(CharSequence)} call
+     * @see StringTools#removeLinesContaining(boolean, String, String, RegexBudget)
+     */
+    public LinePipeline removeLinesContaining(boolean removeLinesNotContaining, String containRegex, RegexBudget budget) {
+        return removeLinesContaining(removeLinesNotContaining, containRegex, budget, RegexEngine.AUTO);
+    }
+
+    /**
+     * @param engine which regex engine to match with; AUTO picks the linear-time one when the regex allows
+     * @see StringTools#removeLinesContaining(boolean, String, String, RegexBudget, RegexEngine)
+     */
+    public LinePipeline removeLinesContaining(
+        boolean removeLinesNotContaining, String containRegex, RegexBudget budget, RegexEngine engine) {
+
+        stageList.add(new FilterStage(LineFilter.compile(containRegex, engine, budget), removeLinesNotContaining));
+        budgeted |= !budget.isUnlimited();
+        return this;
+    }
+
+    /**
+     * Runs every stage over every line of the text.
+     * Lines are split the same way as {@link StringTools#split(String)}.
+     */
+    public String apply(CharSequence text) {
+
+        if (runsInParallel(text.length())) {
+            return applyParallel(text);
+        }
+
+        StringBuilder out = new StringBuilder(text.length() + text.length() / 8 + 16);
+        apply(text, LineCursor.withoutTrailingEmptyLines(text), out);
+        return out.toString();
+    }
+
+    /**
+     * Streams lines from [in] to [out], a buffer at a time, so input of any size can be processed.
+     * Lines are split the same way, but unlike {@link #apply(CharSequence)}, every line written ends with '\n'
+     * and blank lines at the end are kept. Doesn't close either one.
+     * @return how many lines were written
+     */
+    public long apply(Reader in, Writer out) throws IOException {
+
+        LineWriter lineWriter = new LineWriter(forkStages(), out);
+        char[] buf = new char[STREAM_BUFFER_SIZE];
+        int length = 0;
+        boolean eof = false;
+
+        while (!eof) {
+
+            int read = in.read(buf, length, buf.length - length);
+            if (read < 0) {
+                eof = true;
+            } else {
+                length += read;
+            }
+
+            int start = 0;
+            int pos = 0;
+
+            while (pos < length) {
+
+                char c = buf[pos];
+
+                if (c != '\n' && c != '\r') {
+                    pos++;
+                    continue;
+                }
+
+                // A '\r' at the end of the buffer might be the start of "\r\n"; wait for the next read to know.
+                if (c == '\r' && pos + 1 == length && !eof) {
+                    break;
+                }
+
+                lineWriter.write(buf, start, pos);
+                pos += c == '\r' && pos + 1 < length && buf[pos + 1] == '\n' ? 2 : 1;
+                start = pos;
+            }
+
+            if (eof) {
+                if (start < length) {
+                    lineWriter.write(buf, start, length);
+                }
+                break;
+            }
+
+            // Keep the unfinished line, and make room for more of it.
+            length -= start;
+            System.arraycopy(buf, start, buf, 0, length);
+            if (length == buf.length) {
+                char[] bigger = new char[buf.length * 2];
+                System.arraycopy(buf, 0, bigger, 0, length);
+                buf = bigger;
+            }
+        }
+
+        return lineWriter.written;
+    }
+
+    /**
+     * The chunked run, whatever {@link #runsInParallel(int)} says. Package-private so tests on one core can reach it.
+     */
+    String applyParallel(CharSequence text) {
+
+        int contentEnd = LineCursor.contentEnd(text);
+        if (contentEnd == 0) {
+            // Nothing but line breaks, so no lines.
+            return "";
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, contentEnd / (ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD));
+
+        List<Chunk> chunkList = new ArrayList<Chunk>();
+        int start = 0;
+
+        while (start < contentEnd) {
+            int end = chunkEnd(text, start + chunkSize, contentEnd);
+            chunkList.add(new Chunk(start, end));
+            start = end;
+        }
+
+        Chunk[] chunks = chunkList.toArray(new Chunk[chunkList.size()]);
+        ForkJoinPool.commonPool().invoke(new ChunkTask(this, text, chunks, 0, chunks.length));
+
+        int length = chunks.length;
+        for (Chunk chunk : chunks) {
+            length += chunk.out.length();
+        }
+
+        StringBuilder out = new StringBuilder(length);
+        boolean firstLine = true;
+
+        for (Chunk chunk : chunks) {
+
+            // A chunk whose lines were all dropped adds nothing, not even a line break.
+            if (chunk.lineCount == 0) {
+                continue;
+            }
+
+            if (!firstLine) {
+                out.append('\n');
+            }
+
+            out.append(chunk.out);
+            firstLine = false;
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Where a chunk that would like to end at [pos] really ends: just past the next line break,
+     * counting "\r\n" as one.
+     */
+    private static int chunkEnd(CharSequence text, int pos, int contentEnd) {
+
+        while (pos < contentEnd && !LineCursor.isLineBreak(text.charAt(pos))) {
+            pos++;
+        }
+
+        if (pos >= contentEnd) {
+            return contentEnd;
+        }
+
+        return text.charAt(pos) == '\r' && text.charAt(pos + 1) == '\n' ? pos + 2 : pos + 1;
+    }
+
+    /**
+     * @return how many lines were written
+     */
+    private int apply(CharSequence text, LineCursor cursor, StringBuilder out) {
+
+        LineStage[] stages = forkStages();
+
+        StringBuilder line = new StringBuilder(128);
+        boolean firstLine = true;
+        int lineCount = 0;
+
+        while (cursor.next()) {
+
+            line.setLength(0);
+            line.append(text, cursor.start(), cursor.end());
+
+            if (!applyStages(stages, line)) {
+                continue;
+            }
+
+            if (!firstLine) {
+                out.append('\n');
+            }
+
+            out.append(line);
+            firstLine = false;
+            lineCount++;
+        }
+
+        return lineCount;
+    }
+
+    private LineStage[] forkStages() {
+
+        LineStage[] stages = new LineStage[stageList.size()];
+        for (int count = 0; count < stages.length; count++) {
+            stages[count] = stageList.get(count).fork();
+        }
+
+        return stages;
+    }
+
+    private static boolean applyStages(LineStage[] stages, StringBuilder line) {
+
+        for (LineStage stage : stages) {
+            if (!stage.apply(line)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static boolean startsWith(StringBuilder line, String prefix) {
+
+        if (prefix.length() > line.length()) {
+            return false;
+        }
+
+        for (int count = 0; count < prefix.length(); count++) {
+            if (line.charAt(count) != prefix.charAt(count)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * One piece of a parallel run: text[start, end), and what the stages made of it.
+     */
+    private static final class Chunk {
+
+        final int start;
+        final int end;
+        final StringBuilder out;
+        int lineCount;
+
+        Chunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.out = new StringBuilder(end - start + (end - start) / 8 + 16);
+        }
+    }
+
+    /**
+     * Runs chunks[from, to), halving the range until it's one chunk.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LinePipeline pipeline;
+        private final CharSequence text;
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+
+        ChunkTask(LinePipeline pipeline, CharSequence text, Chunk[] chunks, int from, int to) {
+            this.pipeline = pipeline;
+            this.text = text;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(pipeline, text, chunks, from, middle), new ChunkTask(pipeline, text, chunks, middle, to));
+                return;
+            }
+
+            Chunk chunk = chunks[from];
+            chunk.lineCount = pipeline.apply(text, new LineCursor(text, chunk.start, chunk.end), chunk.out);
+        }
+    }
+
+    /**
+     * Runs the stages over each streamed line, and writes the ones that survive.
+     */
+    private static final class LineWriter {
+
+        private final LineStage[] stages;
+        private final Writer out;
+        private final StringBuilder line = new StringBuilder(128);
+        private char[] lineChars = new char[128];
+        private long written;
+
+        LineWriter(LineStage[] stages, Writer out) {
+            this.stages = stages;
+            this.out = out;
+        }
+
+        void write(char[] buf, int start, int end) throws IOException {
+
+            line.setLength(0);
+            line.append(buf, start, end - start);
+
+            if (!applyStages(stages, line)) {
+                return;
+            }
+
+            // Writer.append(CharSequence) would make a String of every line.
+            if (lineChars.length < line.length() + 1) {
+                lineChars = new char[Math.max(line.length() + 1, lineChars.length * 2)];
+            }
+
+            line.getChars(0, line.length(), lineChars, 0);
+            lineChars[line.length()] = '\n';
+            out.write(lineChars, 0, line.length() + 1);
+            written++;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////
+    ///////////// STAGES
+
+    private static final class IndentStage extends LineStage {
+
+        private final int indentAmt;
+        private final String indentStr;
+
+        IndentStage(int indentAmt) {
+            this.indentAmt = indentAmt;
+
+            StringBuilder builder = new StringBuilder(Math.abs(indentAmt));
+            for (int i = 0; i < Math.abs(indentAmt); i++) {
+                builder.append(" ");
+            }
+
+            this.indentStr = builder.toString();
+        }
+
+        @Override
+        public boolean apply(StringBuilder line) {
+
+            if (indentAmt > 0) {
+                line.insert(0, indentStr);
+            } else if (startsWith(line, indentStr)) {
+                line.delete(0, indentStr.length());
+            } else {
+                // Not indented enough; same as String.trim().
+                int end = line.length();
+                while (end > 0 && line.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                line.setLength(end);
+
+                int start = 0;
+                while (start < end && line.charAt(start) <= ' ') {
+                    start++;
+                }
+                line.delete(0, start);
+            }
+
+            return true;
+        }
+    }
+
+    private static final class InsertStage extends LineStage {
+
+        private final String insertText;
+        private final boolean eol;
+
+        InsertStage(String insertText, boolean eol) {
+            this.insertText = insertText;
+            this.eol = eol;
+        }
+
+        @Override
+        public boolean apply(StringBuilder line) {
+            if (eol) line.append(insertText);
+            else line.insert(0, insertText);
+            return true;
+        }
+    }
+
+    private static final class TrimStage extends LineStage {
+
+        private final TrimSet trimSet;
+        private final boolean fromBOL;
+        private final boolean fromEOL;
+
+        TrimStage(String charsToTrim, boolean fromBOL, boolean fromEOL) {
+            this.trimSet = TrimSet.of(charsToTrim);
+            this.fromBOL = fromBOL;
+            this.fromEOL = fromEOL;
+        }
+
+        @Override
+        public boolean apply(StringBuilder line) {
+
+            int start = fromBOL ? trimSet.trimStart(line, 0, line.length()) : 0;
+            int end = fromEOL ? trimSet.trimEnd(line, start, line.length()) : line.length();
+
+            // Cut the end first so the front delete shifts as little as possible.
+            line.setLength(end);
+            line.delete(0, start);
+
+            return true;
+        }
+    }
+
+    private static final class CapitalizeStage extends LineStage {
+
+        static final CapitalizeStage INSTANCE = new CapitalizeStage();
+
+        @Override
+        public boolean apply(StringBuilder line) {
+            // Same as StringUtils.capitalize().
+            if (line.length() > 0) {
+                line.setCharAt(0, Character.toTitleCase(line.charAt(0)));
+            }
+            return true;
+        }
+    }
+
+    private static final class BulletStage extends LineStage {
+
+        private final String[] origBullets;
+        private final String[] newBullets;
+        private final int indentAmt;
+
+        BulletStage(String srcMarkup, String destMarkup, int indentAmt) {
+
+            // Split bullet styles:
+            this.origBullets = srcMarkup.split("\\|");
+            this.newBullets = destMarkup.split("\\|");
+            this.indentAmt = indentAmt;
+
+            if (origBullets.length != newBullets.length) {
+                throw new IllegalArgumentException("Bullet syntax length is not equal!");
+            }
+        }
+
+        @Override
+        public boolean apply(StringBuilder line) {
+
+            for (int count = origBullets.length - 1; count >= 0; count--) {
+
+                if (startsWith(line, origBullets[count])) {
+
+                    // They can indent / outdent during conversion.
+                    int offset = count + indentAmt;
+
+                    if (offset >= origBullets.length) {
+                        offset = origBullets.length - 1;
+                    }
+
+                    String newBullet = offset < 0 ? "" : newBullets[offset];
+
+                    line.replace(0, origBullets[count].length(), newBullet);
+                    break;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class FilterStage extends LineStage {
+
+        private final LineFilter filter;
+        private final boolean removeLinesNotContaining;
+
+        FilterStage(LineFilter filter, boolean removeLinesNotContaining) {
+            this.filter = filter;
+            this.removeLinesNotContaining = removeLinesNotContaining;
+        }
+
+        @Override
+        public boolean apply(StringBuilder line) {
+            boolean matchFound = filter.find(line);
+            return removeLinesNotContaining ? matchFound : !matchFound;
+        }
+
+        /**
+         * Each run gets its own matcher state, and a fresh regex budget.
+         */
+        @Override
+        public LineStage fork() {
+            return new FilterStage(filter.fork(), removeLinesNotContaining);
+        }
+    }
+}
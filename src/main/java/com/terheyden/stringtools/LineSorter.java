@@ -0,0 +1,541 @@
+package com.terheyden.stringtools;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sorts lines in {@link LineComparators#alpha(boolean, boolean)} order, without calling a Comparator.
+ * The keyed orderings, natural and collated, get each line's key computed once instead of per comparison.
+ * <p/>
+ * It's a multi-key (three-way radix) quicksort: lines are partitioned on one char at a time, so a prefix
+ * shared by many lines is read once per partition instead of once per comparison. Ignoring case, each line
+ * is folded once up front, the same way {@link String#compareToIgnoreCase(String)} folds each char, rather
+ * than on every comparison. Big inputs sort on the common ForkJoinPool; the partitions are independent,
+ * so they can run on separate cores.
+ * <p/>
+ * The sort is stable like {@link Arrays#sort(Object[], Comparator)}: lines that only differ in case keep
+ * their input order. Lines with surrogate pairs, when ignoring case, and nulls fall back to a comparator sort,
+ * since newer JDKs fold surrogate pairs as whole code points.
+ */
+final class LineSorter {
+
+    /**
+     * Ranges smaller than this are insertion sorted.
+     */
+    private static final int INSERTION_SORT_SIZE = 12;
+
+    /**
+     * Inputs with fewer lines than this sort on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 64 * 1024;
+
+    /**
+     * Partitions smaller than this aren't worth handing to another thread.
+     */
+    private static final int FORK_SIZE = 8 * 1024;
+
+    /**
+     * Lines copied (or keyed) per task when building keys in parallel.
+     */
+    private static final int COPY_CHUNK_SIZE = 16 * 1024;
+
+    private final char[] keyChars;
+    private final int[] keyStarts;
+    private final int[] order;
+    private final boolean reverse;
+    private final boolean parallel;
+
+    /**
+     * @param keyChars every key, back to back
+     * @param keyStarts where each key starts in keyChars, plus where the last one ends
+     */
+    private LineSorter(char[] keyChars, int[] keyStarts, boolean reverse, boolean parallel) {
+
+        this.keyChars = keyChars;
+        this.keyStarts = keyStarts;
+        this.order = new int[keyStarts.length - 1];
+        this.reverse = reverse;
+        this.parallel = parallel;
+
+        for (int count = 0; count < order.length; count++) {
+            order[count] = count;
+        }
+    }
+
+    /**
+     * Sorts the lines in place.
+     */
+    static void sort(String[] lines, boolean ignoreCase, boolean reverse) {
+        sort(lines, LineComparators.alpha(ignoreCase, reverse));
+    }
+
+    /**
+     * Sorts the lines in place, stably.
+     */
+    static void sort(String[] lines, Comparator<String> lineOrder) {
+
+        int[] order = sortedOrder(lines, lineOrder);
+        String[] sorted = new String[lines.length];
+
+        for (int count = 0; count < order.length; count++) {
+            sorted[count] = lines[order[count]];
+        }
+
+        System.arraycopy(sorted, 0, lines, 0, lines.length);
+    }
+
+    /**
+     * The positions of the lines in sorted order, so callers can carry other data along.
+     * Works with any comparator; the alpha orderings take the fast path.
+     */
+    static int[] sortedOrder(String[] lines, Comparator<String> lineOrder) {
+        return sortedOrder(lines, lineOrder, lines.length >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1);
+    }
+
+    /**
+     * @param parallel whether to use the ForkJoinPool; package-private so tests on one core can force it
+     */
+    static int[] sortedOrder(String[] lines, Comparator<String> lineOrder, boolean parallel) {
+
+        if (lineOrder instanceof LineComparators.KeyedComparator) {
+            return keyedOrder(lines, (LineComparators.KeyedComparator<?>) lineOrder, parallel);
+        }
+
+        LineSorter sorter = null;
+
+        if (lineOrder instanceof LineComparators.AlphaComparator) {
+            LineComparators.AlphaComparator alpha = (LineComparators.AlphaComparator) lineOrder;
+            sorter = create(lines, alpha.ignoreCase(), alpha.reverse(), parallel);
+        }
+
+        if (sorter == null) {
+            return comparatorOrder(lines, lineOrder);
+        }
+
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(sorter.new SortTask(0, lines.length, 0));
+        } else {
+            sorter.sort(0, lines.length, 0);
+        }
+
+        // Sorted ascending, with ties in reverse input order; flipped, that's descending with ties in input order.
+        if (sorter.reverse) {
+            reverseRange(sorter.order, 0, sorter.order.length);
+        }
+
+        return sorter.order;
+    }
+
+    /**
+     * Copies the lines, folded if ignoring case, into one char[]. Reading keys from one array is far
+     * kinder to the cache than chasing a String per line, and folding needs no String per line.
+     * @return null if the fast path can't match the comparator
+     */
+    private static LineSorter create(String[] lines, boolean ignoreCase, boolean reverse, boolean parallel) {
+
+        int[] keyStarts = new int[lines.length + 1];
+        long totalLength = 0;
+
+        for (int count = 0; count < lines.length; count++) {
+
+            if (lines[count] == null) {
+                return null;
+            }
+
+            keyStarts[count] = (int) totalLength;
+            totalLength += lines[count].length();
+
+            if (totalLength > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+        }
+
+        keyStarts[lines.length] = (int) totalLength;
+        char[] keyChars = new char[(int) totalLength];
+
+        boolean copied = parallel
+            ? ForkJoinPool.commonPool().invoke(new CopyTask(lines, keyChars, keyStarts, ignoreCase, 0, lines.length))
+            : copyKeys(lines, keyChars, keyStarts, ignoreCase, 0, lines.length);
+
+        return copied ? new LineSorter(keyChars, keyStarts, reverse, parallel) : null;
+    }
+
+    /**
+     * Copies lines[from, to) into keyChars.
+     * @return false if a line has a surrogate and we're ignoring case
+     */
+    private static boolean copyKeys(String[] lines, char[] keyChars, int[] keyStarts, boolean ignoreCase, int from, int to) {
+
+        for (int count = from; count < to; count++) {
+
+            int start = keyStarts[count];
+            int end = keyStarts[count + 1];
+            lines[count].getChars(0, end - start, keyChars, start);
+
+            if (!ignoreCase) {
+                continue;
+            }
+
+            for (int index = start; index < end; index++) {
+
+                char c = keyChars[index];
+
+                if (Character.isSurrogate(c)) {
+                    return false;
+                }
+
+                keyChars[index] = fold(c);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The char as {@link String#compareToIgnoreCase(String)} sees it: lower case of upper case.
+     */
+    static char fold(char c) {
+
+        if (c < 0x80) {
+            // Most text is ASCII, and the Character tables cost more than the rest of the sort.
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static int[] comparatorOrder(final String[] lines, final Comparator<String> lineOrder) {
+
+        Integer[] indexArr = new Integer[lines.length];
+        for (int count = 0; count < indexArr.length; count++) {
+            indexArr[count] = count;
+        }
+
+        // Stable, so equal lines stay in input order.
+        Arrays.sort(indexArr, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return lineOrder.compare(lines[o1], lines[o2]);
+            }
+        });
+
+        int[] order = new int[indexArr.length];
+        for (int count = 0; count < order.length; count++) {
+            order[count] = indexArr[count];
+        }
+
+        return order;
+    }
+
+    /**
+     * Computes each line's key once, then merge sorts the keys; in parallel, that's {@link Arrays#parallelSort}.
+     * Both sorts are stable.
+     */
+    private static <K> int[] keyedOrder(String[] lines, final LineComparators.KeyedComparator<K> lineOrder, boolean parallel) {
+
+        for (String line : lines) {
+            if (line == null) {
+                return comparatorOrder(lines, lineOrder);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Keyed<K>[] keyed = (Keyed<K>[]) new Keyed<?>[lines.length];
+
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(new KeyTask<K>(lines, keyed, lineOrder, 0, lines.length));
+        } else {
+            computeKeys(lines, keyed, lineOrder, 0, lines.length);
+        }
+
+        final boolean reverse = lineOrder.reverse();
+
+        Comparator<Keyed<K>> keyOrder = new Comparator<Keyed<K>>() {
+            @Override
+            public int compare(Keyed<K> o1, Keyed<K> o2) {
+                return reverse ? lineOrder.compareKeys(o2.key, o1.key) : lineOrder.compareKeys(o1.key, o2.key);
+            }
+        };
+
+        if (parallel) {
+            Arrays.parallelSort(keyed, keyOrder);
+        } else {
+            Arrays.sort(keyed, keyOrder);
+        }
+
+        int[] order = new int[keyed.length];
+        for (int count = 0; count < order.length; count++) {
+            order[count] = keyed[count].index;
+        }
+
+        return order;
+    }
+
+    private static <K> void computeKeys(
+        String[] lines, Keyed<K>[] keyed, LineComparators.KeyedComparator<K> lineOrder, int from, int to) {
+
+        for (int count = from; count < to; count++) {
+            keyed[count] = new Keyed<K>(lineOrder.key(lines[count]), count);
+        }
+    }
+
+    /**
+     * Sorts order[from, to), whose keys all match up to [depth].
+     */
+    private void sort(int from, int to, int depth) {
+
+        while (to - from > INSERTION_SORT_SIZE) {
+
+            int[] bounds = partition(from, to, depth);
+            int lessEnd = bounds[0];
+            int greaterStart = bounds[1];
+
+            sort(from, lessEnd, depth);
+            sort(greaterStart, to, depth);
+
+            if (charAt(lessEnd, depth) < 0) {
+                // The middle keys all ended here, so they're equal.
+                sortTies(lessEnd, greaterStart);
+                return;
+            }
+
+            // Loop instead of recursing on the middle, which is usually the biggest part.
+            from = lessEnd;
+            to = greaterStart;
+            depth++;
+        }
+
+        insertionSort(from, to, depth);
+    }
+
+    /**
+     * Three-way partition of order[from, to) on the char at [depth].
+     * @return where the equal part starts and ends
+     */
+    private int[] partition(int from, int to, int depth) {
+
+        int pivot = medianOfThree(charAt(from, depth), charAt((from + to) >>> 1, depth), charAt(to - 1, depth));
+        int lessEnd = from;
+        int greaterStart = to;
+        int index = from;
+
+        while (index < greaterStart) {
+
+            int c = charAt(index, depth);
+
+            if (c < pivot) {
+                swap(lessEnd++, index++);
+            } else if (c > pivot) {
+                swap(index, --greaterStart);
+            } else {
+                index++;
+            }
+        }
+
+        return new int[] { lessEnd, greaterStart };
+    }
+
+    private void insertionSort(int from, int to, int depth) {
+
+        for (int index = from + 1; index < to; index++) {
+            for (int pos = index; pos > from && compare(pos - 1, pos, depth) > 0; pos--) {
+                swap(pos - 1, pos);
+            }
+        }
+    }
+
+    /**
+     * Compares the keys at two positions, knowing they match up to [depth]; ties go by input order.
+     */
+    private int compare(int pos1, int pos2, int depth) {
+
+        int key1 = order[pos1];
+        int key2 = order[pos2];
+        int start1 = keyStarts[key1];
+        int start2 = keyStarts[key2];
+        int length1 = keyStarts[key1 + 1] - start1;
+        int length2 = keyStarts[key2 + 1] - start2;
+        int end = Math.min(length1, length2);
+
+        for (int index = depth; index < end; index++) {
+            char c1 = keyChars[start1 + index];
+            char c2 = keyChars[start2 + index];
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+
+        if (length1 != length2) {
+            return length1 - length2;
+        }
+
+        return tieOrder(key1, key2);
+    }
+
+    private void sortTies(int from, int to) {
+
+        Arrays.sort(order, from, to);
+
+        if (reverse) {
+            reverseRange(order, from, to);
+        }
+    }
+
+    private int tieOrder(int index1, int index2) {
+        return reverse ? Integer.compare(index2, index1) : Integer.compare(index1, index2);
+    }
+
+    /**
+     * The char at [depth] of the key at a position, or -1 past its end.
+     */
+    private int charAt(int pos, int depth) {
+        int key = order[pos];
+        int index = keyStarts[key] + depth;
+        return index < keyStarts[key + 1] ? keyChars[index] : -1;
+    }
+
+    private void swap(int pos1, int pos2) {
+        int temp = order[pos1];
+        order[pos1] = order[pos2];
+        order[pos2] = temp;
+    }
+
+    private static int medianOfThree(int a, int b, int c) {
+        return a < b ? (b < c ? b : Math.max(a, c)) : (a < c ? a : Math.max(b, c));
+    }
+
+    private static void reverseRange(int[] arr, int from, int to) {
+        for (int left = from, right = to - 1; left < right; left++, right--) {
+            int temp = arr[left];
+            arr[left] = arr[right];
+            arr[right] = temp;
+        }
+    }
+
+    /**
+     * Sorts one range; partitions big enough to be worth it go to other threads.
+     */
+    private final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int depth;
+
+        SortTask(int from, int to, int depth) {
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from < FORK_SIZE) {
+                sort(from, to, depth);
+                return;
+            }
+
+            int[] bounds = partition(from, to, depth);
+            int lessEnd = bounds[0];
+            int greaterStart = bounds[1];
+
+            if (charAt(lessEnd, depth) < 0) {
+                invokeAll(new SortTask(from, lessEnd, depth), new SortTask(greaterStart, to, depth));
+                sortTies(lessEnd, greaterStart);
+            } else {
+                invokeAll(new SortTask(from, lessEnd, depth), new SortTask(lessEnd, greaterStart, depth + 1),
+                    new SortTask(greaterStart, to, depth));
+            }
+        }
+    }
+
+    /**
+     * Copies lines[from, to) into the keys, in halves.
+     * @return false if any line can't take the fast path
+     */
+    private static final class CopyTask extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] lines;
+        private final char[] keyChars;
+        private final int[] keyStarts;
+        private final boolean ignoreCase;
+        private final int from;
+        private final int to;
+
+        CopyTask(String[] lines, char[] keyChars, int[] keyStarts, boolean ignoreCase, int from, int to) {
+            this.lines = lines;
+            this.keyChars = keyChars;
+            this.keyStarts = keyStarts;
+            this.ignoreCase = ignoreCase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Boolean compute() {
+
+            if (to - from <= COPY_CHUNK_SIZE) {
+                return copyKeys(lines, keyChars, keyStarts, ignoreCase, from, to);
+            }
+
+            int middle = (from + to) >>> 1;
+            CopyTask right = new CopyTask(lines, keyChars, keyStarts, ignoreCase, middle, to);
+            right.fork();
+
+            boolean leftCopied = new CopyTask(lines, keyChars, keyStarts, ignoreCase, from, middle).compute();
+            return right.join() && leftCopied;
+        }
+    }
+
+    private static final class Keyed<K> {
+
+        final K key;
+        final int index;
+
+        Keyed(K key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Computes the keys of lines[from, to), in halves; each leaf forks the comparator.
+     */
+    private static final class KeyTask<K> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] lines;
+        private final Keyed<K>[] keyed;
+        private final LineComparators.KeyedComparator<K> lineOrder;
+        private final int from;
+        private final int to;
+
+        KeyTask(String[] lines, Keyed<K>[] keyed, LineComparators.KeyedComparator<K> lineOrder, int from, int to) {
+            this.lines = lines;
+            this.keyed = keyed;
+            this.lineOrder = lineOrder;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= COPY_CHUNK_SIZE) {
+                computeKeys(lines, keyed, lineOrder.fork(), from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new KeyTask<K>(lines, keyed, lineOrder, from, middle), new KeyTask<K>(lines, keyed, lineOrder, middle, to));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.terheyden.stringtools;
+
+/**
+ * One per-line step of a {@link LinePipeline}.
+ * Stages edit the line in place, so a pipeline of any length copies each line only once.
+ */
+public abstract class LineStage {
+
+    /**
+     * Transforms the line in place.
+     * @param line the current line, without its line break
+     * @return false to drop the line from the output
+     */
+    public abstract boolean apply(StringBuilder line);
+
+    /**
+     * Returns a copy of this stage for one run of the pipeline.
+     * Stages with per-run state (e.g. a reusable Matcher) must return a fresh copy so runs
+     * on different threads don't share it. Stateless stages can return themselves.
+     */
+    public LineStage fork() {
+        return this;
+    }
+}
@@ -0,0 +1,633 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A regex engine that answers "does this text contain a match?" in time linear in the length of the text,
+ * no matter what the regex is (RE2 style: a Thompson NFA, run as a DFA that's built lazily as it's needed).
+ * java.util.regex backtracks, so a regex like "(a|a)*?b" can take exponential time; this can't.
+ * <p/>
+ * Only the regular subset of java.util.regex syntax is supported, and within it results are exactly what
+ * Matcher.find() would say, for text without surrogates (chars outside the BMP, like emoji):
+ * <ul>
+ *     <li>literals, ".", [classes] with ranges and negation, \d \D \w \W \s \S, \t \n \r \f \a \e \xhh \\uhhhh, \Q...\E</li>
+ *     <li>groups (capturing, non-capturing and named; captures aren't reported), alternation</li>
+ *     <li>* + ? {n} {n,} {n,m}, greedy or lazy (which makes no difference to whether there's a match)</li>
+ *     <li>^ and $ (without MULTILINE)</li>
+ * </ul>
+ * Backreferences, lookaround, \b, possessive quantifiers, inline flags, class unions/intersections, \p{...}
+ * and the like aren't supported; {@link #isSupported(String)} says whether a regex qualifies.
+ * <p/>
+ * A surrogate pair is read as one code point, and matches only start on code point boundaries. java.util.regex
+ * mostly does the same, but not always (it depends on the regex and the JDK), so {@link RegexEngine#AUTO}
+ * hands lines with surrogates to java.util.regex rather than risk a different answer.
+ * <p/>
+ * Compiled regexes are immutable and thread-safe. Each {@link Searcher} keeps its own DFA cache, so use one
+ * searcher per thread.
+ */
+public final class LinearRegex {
+
+    /**
+     * Counted repetitions are expanded, so "a{1000}{1000}" style regexes could blow up. Past this many NFA nodes,
+     * the regex is treated as unsupported.
+     */
+    private static final int MAX_NODES = 10000;
+
+    /**
+     * A searcher starts its DFA cache over once it holds this many states, so memory stays bounded.
+     */
+    private static final int MAX_DFA_STATES = 2000;
+
+    private static final int MAX_CODE_POINT = RegexParser.MAX_CODE_POINT;
+
+    // Searcher.find(text, true) results.
+    static final int NOT_FOUND = 0;
+    static final int FOUND = 1;
+    static final int UNDECIDED = -1;
+
+    // NFA node types.
+    private static final int CHARS = 0;
+    private static final int SPLIT = 1;
+    private static final int BEGIN = 2;
+    private static final int END = 3;
+    private static final int MATCH = 4;
+
+    private final String regex;
+
+    // The NFA: node i has type[i], and goes on to out[i] (and out1[i] for a SPLIT). CHARS nodes have ranges[i].
+    private final int[] type;
+    private final int[] out;
+    private final int[] out1;
+    private final int[][] ranges;
+    private final int start;
+    private final boolean hasBegin;
+    private final boolean hasEnd;
+
+    // Code points are grouped into classes that every CHARS node treats the same way.
+    private final int[] classBounds;
+    private final int[] asciiClass = new int[128];
+
+    private LinearRegex(String regex, Nfa nfa) {
+
+        this.regex = regex;
+        this.type = nfa.typeArr();
+        this.out = nfa.outArr();
+        this.out1 = nfa.out1Arr();
+        this.ranges = nfa.rangesArr();
+        this.start = nfa.start;
+        this.hasBegin = nfa.hasBegin;
+        this.hasEnd = nfa.hasEnd;
+
+        TreeSet<Integer> boundSet = new TreeSet<Integer>();
+        for (int[] nodeRanges : ranges) {
+            if (nodeRanges != null) {
+                for (int index = 0; index < nodeRanges.length; index += 2) {
+                    boundSet.add(nodeRanges[index]);
+                    if (nodeRanges[index + 1] < MAX_CODE_POINT) {
+                        boundSet.add(nodeRanges[index + 1] + 1);
+                    }
+                }
+            }
+        }
+
+        classBounds = new int[boundSet.size()];
+        int index = 0;
+        for (Integer bound : boundSet) {
+            classBounds[index++] = bound;
+        }
+
+        for (int c = 0; c < 128; c++) {
+            asciiClass[c] = searchClass(c);
+        }
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if the regex isn't valid at all
+     * @throws IllegalArgumentException if it's valid, but uses features this engine doesn't support
+     */
+    public static LinearRegex compile(String regex) {
+
+        // Let java.util.regex report syntax errors, so they're the same whichever engine is used.
+        PatternCache.getShared().compile(regex);
+
+        try {
+            return build(regex);
+        } catch (RegexParser.UnsupportedException e) {
+            throw new IllegalArgumentException("Regex can't run in linear time (" + e.getMessage() + "): " + regex);
+        }
+    }
+
+    /**
+     * @return the compiled regex, or null if it's invalid or unsupported
+     */
+    static LinearRegex tryCompile(String regex) {
+
+        try {
+            PatternCache.getShared().compile(regex);
+            return build(regex);
+        } catch (RegexParser.UnsupportedException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // PatternSyntaxException.
+            return null;
+        }
+    }
+
+    /**
+     * Is the regex valid, and inside the subset this engine supports?
+     */
+    public static boolean isSupported(String regex) {
+        return tryCompile(regex) != null;
+    }
+
+    private static LinearRegex build(String regex) throws RegexParser.UnsupportedException {
+
+        RegexNode root = RegexParser.parse(regex);
+
+        Nfa nfa = new Nfa();
+        int matchNode = nfa.add(MATCH, -1, -1, null);
+        nfa.start = compile(root, nfa, matchNode);
+
+        return new LinearRegex(regex, nfa);
+    }
+
+    public String pattern() {
+        return regex;
+    }
+
+    /**
+     * A new searcher, with its own (empty) DFA cache.
+     */
+    public Searcher searcher() {
+        return new Searcher();
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+
+    private int classOf(int codePoint) {
+        return codePoint < 128 ? asciiClass[codePoint] : searchClass(codePoint);
+    }
+
+    /**
+     * How many class bounds are <= codePoint.
+     */
+    private int searchClass(int codePoint) {
+        int index = Arrays.binarySearch(classBounds, codePoint);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Some code point in the class; they all behave the same.
+     */
+    private int representative(int charClass) {
+        return charClass == 0 ? 0 : classBounds[charClass - 1];
+    }
+
+    private static boolean inRanges(int[] nodeRanges, int codePoint) {
+
+        // Ranges are sorted [lo, hi] pairs.
+        int low = 0;
+        int high = nodeRanges.length / 2 - 1;
+
+        while (low <= high) {
+
+            int mid = (low + high) >>> 1;
+
+            if (codePoint < nodeRanges[mid * 2]) {
+                high = mid - 1;
+            } else if (codePoint > nodeRanges[mid * 2 + 1]) {
+                low = mid + 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Would $ (without MULTILINE) match at pos? Same rules as java.util.regex: at the end,
+     * or before a line terminator that ends the text.
+     */
+    private static boolean dollarAt(CharSequence text, int pos, int end) {
+
+        if (pos == end) {
+            return true;
+        }
+
+        if (pos == end - 2) {
+            return text.charAt(pos) == '\r' && text.charAt(pos + 1) == '\n';
+        }
+
+        if (pos == end - 1) {
+
+            char c = text.charAt(pos);
+
+            if (c == '\n') {
+                // Not between "\r" and "\n".
+                return pos == 0 || text.charAt(pos - 1) != '\r';
+            }
+
+            return c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds matches with one compiled regex. Keeps a cache of DFA states between calls, so it isn't thread-safe.
+     */
+    public final class Searcher {
+
+        private final Map<Kernel, DState> stateMap = new HashMap<Kernel, DState>();
+
+        // Scratch space for closures and steps.
+        private final int[] marks = new int[type.length];
+        private int generation;
+        private final int[] stack = new int[type.length * 3 + 2];
+        private final int[] buffer = new int[type.length];
+
+        private final DState startState;
+
+        private Searcher() {
+            startState = intern(new int[] { start });
+        }
+
+        /**
+         * Does the text contain a match? Reads each char once.
+         */
+        public boolean find(CharSequence text) {
+            return find(text, false) == FOUND;
+        }
+
+        /**
+         * Like find(), but gives up with UNDECIDED at the first surrogate, for callers that want
+         * java.util.regex's exact answer for those lines.
+         */
+        int find(CharSequence text, boolean stopAtSurrogate) {
+
+            int end = text.length();
+            int tailStart = hasEnd ? end - 2 : Integer.MAX_VALUE;
+            DState state = startState;
+            int pos = 0;
+
+            while (true) {
+
+                // Cached states assume we're not at the start and $ doesn't match here. Otherwise work it out.
+                Closure closure = state.closure;
+
+                if ((pos == 0 && hasBegin) || pos >= tailStart) {
+                    closure = closure(state.kernel, pos == 0, hasEnd && dollarAt(text, pos, end));
+                }
+
+                if (closure.match) {
+                    return FOUND;
+                }
+
+                if (pos == end) {
+                    return NOT_FOUND;
+                }
+
+                char c = text.charAt(pos);
+
+                if (stopAtSurrogate && Character.isSurrogate(c)) {
+                    return UNDECIDED;
+                }
+
+                if (Character.isHighSurrogate(c) && pos + 1 < end && Character.isLowSurrogate(text.charAt(pos + 1))) {
+
+                    state = intern(step(closure, classOf(Character.toCodePoint(c, text.charAt(pos + 1)))));
+                    pos += 2;
+
+                } else {
+
+                    int charClass = classOf(c);
+
+                    if (closure == state.closure) {
+
+                        DState next = state.next[charClass];
+                        if (next == null) {
+                            next = intern(step(closure, charClass));
+                            state.next[charClass] = next;
+                        }
+                        state = next;
+
+                    } else {
+                        state = intern(step(closure, charClass));
+                    }
+
+                    pos++;
+                }
+            }
+        }
+
+        /**
+         * Where the closure's threads go on a char of the given class, plus a new thread at the start
+         * (find() tries a match at every position).
+         */
+        private int[] step(Closure closure, int charClass) {
+
+            nextGeneration();
+
+            int codePoint = representative(charClass);
+            int count = 0;
+
+            for (int node : closure.nodes) {
+
+                int target = out[node];
+
+                if (marks[target] != generation && inRanges(ranges[node], codePoint)) {
+                    marks[target] = generation;
+                    buffer[count++] = target;
+                }
+            }
+
+            if (marks[start] != generation) {
+                marks[start] = generation;
+                buffer[count++] = start;
+            }
+
+            int[] kernel = Arrays.copyOf(buffer, count);
+            Arrays.sort(kernel);
+            return kernel;
+        }
+
+        /**
+         * Follows the non-consuming edges from the kernel. The CHARS nodes reached are the live threads.
+         */
+        private Closure closure(int[] kernel, boolean atBegin, boolean atEnd) {
+
+            nextGeneration();
+
+            int count = 0;
+            int top = 0;
+            boolean match = false;
+
+            for (int index = kernel.length - 1; index >= 0; index--) {
+                stack[top++] = kernel[index];
+            }
+
+            while (top > 0) {
+
+                int node = stack[--top];
+
+                if (marks[node] == generation) {
+                    continue;
+                }
+
+                marks[node] = generation;
+
+                switch (type[node]) {
+
+                    case CHARS:
+                        buffer[count++] = node;
+                        break;
+
+                    case MATCH:
+                        match = true;
+                        break;
+
+                    case SPLIT:
+                        stack[top++] = out1[node];
+                        stack[top++] = out[node];
+                        break;
+
+                    case BEGIN:
+                        if (atBegin) {
+                            stack[top++] = out[node];
+                        }
+                        break;
+
+                    case END:
+                        if (atEnd) {
+                            stack[top++] = out[node];
+                        }
+                        break;
+
+                    default:
+                        throw new IllegalStateException("Bad node type: " + type[node]);
+                }
+            }
+
+            return new Closure(Arrays.copyOf(buffer, count), match);
+        }
+
+        private void nextGeneration() {
+
+            generation++;
+
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        private DState intern(int[] kernel) {
+
+            Kernel key = new Kernel(kernel);
+            DState state = stateMap.get(key);
+
+            if (state != null) {
+                return state;
+            }
+
+            if (stateMap.size() >= MAX_DFA_STATES) {
+                // Start the cache over. States we're still holding keep working; they just aren't shared.
+                stateMap.clear();
+            }
+
+            state = new DState(kernel, closure(kernel, false, false), classBounds.length + 1);
+            stateMap.put(key, state);
+            return state;
+        }
+    }
+
+    private static final class Closure {
+
+        final int[] nodes;
+        final boolean match;
+
+        Closure(int[] nodes, boolean match) {
+            this.nodes = nodes;
+            this.match = match;
+        }
+    }
+
+    /**
+     * One DFA state: the set of NFA nodes reached by the last char (the kernel), and where each char class goes.
+     */
+    private static final class DState {
+
+        final int[] kernel;
+        final Closure closure;
+        final DState[] next;
+
+        DState(int[] kernel, Closure closure, int classCount) {
+            this.kernel = kernel;
+            this.closure = closure;
+            this.next = new DState[classCount];
+        }
+    }
+
+    private static final class Kernel {
+
+        private final int[] nodes;
+        private final int hash;
+
+        Kernel(int[] nodes) {
+            this.nodes = nodes;
+            this.hash = Arrays.hashCode(nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Kernel && Arrays.equals(nodes, ((Kernel) obj).nodes);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // NFA
+
+    /**
+     * The NFA while it's being built.
+     */
+    private static final class Nfa {
+
+        private final List<Integer> typeList = new ArrayList<Integer>();
+        private final List<Integer> outList = new ArrayList<Integer>();
+        private final List<Integer> out1List = new ArrayList<Integer>();
+        private final List<int[]> rangesList = new ArrayList<int[]>();
+
+        int start;
+        boolean hasBegin;
+        boolean hasEnd;
+
+        int add(int nodeType, int nodeOut, int nodeOut1, int[] nodeRanges) throws RegexParser.UnsupportedException {
+
+            if (typeList.size() >= MAX_NODES) {
+                throw new RegexParser.UnsupportedException("too many states");
+            }
+
+            typeList.add(nodeType);
+            outList.add(nodeOut);
+            out1List.add(nodeOut1);
+            rangesList.add(nodeRanges);
+
+            return typeList.size() - 1;
+        }
+
+        void setOut(int node, int nodeOut) {
+            outList.set(node, nodeOut);
+        }
+
+        int[] typeArr() {
+            return toArray(typeList);
+        }
+
+        int[] outArr() {
+            return toArray(outList);
+        }
+
+        int[] out1Arr() {
+            return toArray(out1List);
+        }
+
+        int[][] rangesArr() {
+            return rangesList.toArray(new int[rangesList.size()][]);
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] arr = new int[list.size()];
+            for (int index = 0; index < arr.length; index++) {
+                arr[index] = list.get(index);
+            }
+            return arr;
+        }
+    }
+
+    /**
+     * Compiles a parsed node into NFA nodes that lead to [next].
+     * @return the node's entry
+     */
+    private static int compile(RegexNode node, Nfa nfa, int next) throws RegexParser.UnsupportedException {
+
+        if (node instanceof RegexNode.Chars) {
+            return nfa.add(CHARS, next, -1, ((RegexNode.Chars) node).ranges);
+        }
+
+        if (node instanceof RegexNode.Concat) {
+            List<RegexNode> nodeList = ((RegexNode.Concat) node).nodeList;
+            for (int index = nodeList.size() - 1; index >= 0; index--) {
+                next = compile(nodeList.get(index), nfa, next);
+            }
+            return next;
+        }
+
+        if (node instanceof RegexNode.Alt) {
+
+            List<RegexNode> nodeList = ((RegexNode.Alt) node).nodeList;
+            int entry = compile(nodeList.get(nodeList.size() - 1), nfa, next);
+
+            for (int index = nodeList.size() - 2; index >= 0; index--) {
+                entry = nfa.add(SPLIT, compile(nodeList.get(index), nfa, next), entry, null);
+            }
+
+            return entry;
+        }
+
+        if (node instanceof RegexNode.Repeat) {
+            return compileRepeat((RegexNode.Repeat) node, nfa, next);
+        }
+
+        if (node instanceof RegexNode.Anchor) {
+
+            if (((RegexNode.Anchor) node).begin) {
+                nfa.hasBegin = true;
+                return nfa.add(BEGIN, next, -1, null);
+            }
+
+            nfa.hasEnd = true;
+            return nfa.add(END, next, -1, null);
+        }
+
+        // Only the analysis parser makes opaque nodes.
+        throw new RegexParser.UnsupportedException("can't compile " + node.getClass().getSimpleName());
+    }
+
+    private static int compileRepeat(RegexNode.Repeat repeat, Nfa nfa, int next) throws RegexParser.UnsupportedException {
+
+        int entry;
+
+        if (repeat.max == RegexNode.INFINITE) {
+            // Loop: split -> node -> back to split, or on to next.
+            int split = nfa.add(SPLIT, -1, next, null);
+            nfa.setOut(split, compile(repeat.node, nfa, split));
+            entry = split;
+        } else {
+            // Optional copies, each one skippable.
+            entry = next;
+            for (int count = repeat.min; count < repeat.max; count++) {
+                entry = nfa.add(SPLIT, compile(repeat.node, nfa, entry), entry, null);
+            }
+        }
+
+        for (int count = 0; count < repeat.min; count++) {
+            entry = compile(repeat.node, nfa, entry);
+        }
+
+        return entry;
+    }
+}
@@ -1,5 +1,6 @@
 package com.terheyden.stringtools;
 
+import javax.swing.AbstractButton;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -7,15 +8,27 @@ import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.JTextComponent;
+import javax.swing.text.PlainDocument;
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
 import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.GraphicsEnvironment;
 import java.awt.Insets;
 import java.awt.Toolkit;
 import java.awt.datatransfer.DataFlavor;
@@ -31,8 +44,8 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -55,6 +68,7 @@ public class MainUI {
     private JButton bulletsRunButton;
     private JButton indentBulletsButton;
     private JButton undoButton;
+    private JButton redoButton;
     private JButton copyAllButton;
     private JButton cutAllButton;
     private JButton clearAllButton;
@@ -108,19 +122,91 @@ public class MainUI {
     private JButton indentOutdentExampleButton;
     private JComboBox removeLinesComboBox;
     private JCheckBox autoClipboardCheckBox;
+    private JProgressBar progressBar;
+    private JButton cancelButton;
+    private JButton metricsButton;
 
-    private Deque<String> undoDeque = new ArrayDeque<String>();
+    /**
+     * The regex tab waits this long after the last keystroke before matching.
+     */
+    private static final long REGEX_DEBOUNCE_MILLIS = 150;
+
+    /**
+     * The regex tab lists this many matches; past that it only counts them.
+     */
+    private static final int REGEX_MAX_SHOWN_MATCHES = 1000;
+
+    /**
+     * How much memory undo may take, in MB; set with -Dstringtools.undoMemoryMb=N.
+     */
+    private static final long UNDO_MEMORY_MB = Long.getLong("stringtools.undoMemoryMb", 256);
+
+    private UndoHistory undoHistory = new UndoHistory(UNDO_MEMORY_MB * 1024 * 1024);
+    private SwingWorker<String, Void> worker;
+    private RegexTester regexTester;
+
+    /**
+     * The main text as of the last regex test, so typing a regex doesn't copy it out on every keystroke.
+     */
+    private String regexText;
     private static Logger log = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     public MainUI() {
 
+        // Big text goes in and out of a piece table without being copied.
+        textArea1.setDocument(new PlainDocument(new PieceTableContent()));
+
+        regexTester = new RegexTester(new RegexTester.Listener() {
+            @Override
+            public void started() {
+                regexMatchTextArea.setText("");
+            }
+
+            @Override
+            public void matched(String matches) {
+                regexMatchTextArea.append(matches);
+            }
+
+            @Override
+            public void finished(int matchCount, int shownCount) {
+                String header = "Matches: " + matchCount
+                    + (shownCount < matchCount ? " (showing the first " + shownCount + ")" : "") + "\n";
+                regexMatchTextArea.insert(header, 0);
+            }
+
+            @Override
+            public void failed(String message) {
+                regexMatchTextArea.setText(message);
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                SwingUtilities.invokeLater(command);
+            }
+        }, REGEX_DEBOUNCE_MILLIS, REGEX_MAX_SHOWN_MATCHES);
+
+        textArea1.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                regexText = null;
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                regexText = null;
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
         // NEAT AUTO-CLIPBOARD STUFF:
 
         textArea1.addFocusListener(new FocusListener() {
             @Override
             public void focusGained(FocusEvent e) {
-                if (autoClipboardCheckBox.isSelected()) {
-                    backupForUndo();
+                if (autoClipboardCheckBox.isSelected() && worker == null) {
                     pasteClipboard();
                 }
             }
@@ -133,8 +219,7 @@ public class MainUI {
         textArea1.addMouseListener(new MouseListener() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (autoClipboardCheckBox.isSelected()) {
-                    backupForUndo();
+                if (autoClipboardCheckBox.isSelected() && worker == null) {
                     pasteClipboard();
                 }
             }
@@ -161,16 +246,26 @@ public class MainUI {
         addIndentButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.addIndent(getText(), getInt(indentAmtTextField)));
+                final int amount = getInt(indentAmtTextField);
+                runOperation("Adding indent", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.addIndent(text, amount);
+                    }
+                });
             }
         });
 
         removeIndentButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.addIndent(getText(), 0 - getInt(indentAmtTextField)));
+                final int amount = getInt(indentAmtTextField);
+                runOperation("Removing indent", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.addIndent(text, 0 - amount);
+                    }
+                });
             }
         });
         copyAllButton.addActionListener(new ActionListener() {
@@ -182,22 +277,29 @@ public class MainUI {
         cutAllButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
                 copyAllToClipboard();
-                setText("");
+                runOperation("Cutting", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return "";
+                    }
+                });
             }
         });
         clearAllButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText("");
+                runOperation("Clearing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return "";
+                    }
+                });
             }
         });
         pasteClipboardButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
                 pasteClipboard();
             }
         });
@@ -205,103 +307,186 @@ public class MainUI {
         undoButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                undo();
+                runWorker("Undoing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return undoHistory.undo(text);
+                    }
+                }, false);
+            }
+        });
+        redoButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                runWorker("Redoing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return undoHistory.redo(text);
+                    }
+                }, false);
+            }
+        });
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null) {
+                    worker.cancel(true);
+                }
+            }
+        });
+        metricsButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showMetrics();
             }
         });
 
         replaceTextButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-
                 // There are different types of replace.
                 String replaceTypeStr = replaceTypeComboBox.getSelectedItem().toString();
+                final boolean regex = replaceTypeStr.equals("Regex replace");
 
-                if (replaceTypeStr.equals("Regex replace")) {
-                    setText(StringTools.regexReplaceText(getText(), replaceWhatText.getText(), replaceWithText.getText()));
-                } else if (replaceTypeStr.equals("Smart replace")) {
-                    setText(StringTools.smartReplaceText(getText(), replaceWhatText.getText(), replaceWithText.getText()));
+                if (!regex && !replaceTypeStr.equals("Smart replace")) {
+                    return;
                 }
+
+                final String what = replaceWhatText.getText();
+                final String with = replaceWithText.getText();
+
+                runOperation("Replacing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return regex
+                            ? StringTools.regexReplaceText(text, what, with)
+                            : StringTools.smartReplaceText(text, what, with);
+                    }
+                });
             }
         });
         insertTextButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.insertText(getText(), insertTextArea.getText(), insertCombo.getSelectedItem().toString()));
+                final String insert = insertTextArea.getText();
+                final String where = insertCombo.getSelectedItem().toString();
+                runOperation("Inserting", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.insertText(text, insert, where);
+                    }
+                });
             }
         });
         convertJavaDocToMediaWikiButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.convertJavadocToMediaWiki(getText()));
+                runOperation("Converting", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.convertJavadocToMediaWiki(text);
+                    }
+                });
             }
         });
         capitalizeButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.capitalize(getText()));
+                runOperation("Capitalizing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.capitalize(text);
+                    }
+                });
             }
         });
         removeButton1.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.trimChars(getText(), textFieldRemoveChars.getText(), comboBoxRemoveBeginEnd1.getSelectedItem().toString()));
+                final String chars = textFieldRemoveChars.getText();
+                final String where = comboBoxRemoveBeginEnd1.getSelectedItem().toString();
+                runOperation("Removing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.trimChars(text, chars, where);
+                    }
+                });
             }
         });
         generateUUIDsButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.generateUUIDs(5));
+                final String uuids = StringTools.generateUUIDs(5);
+                runOperation("Generating", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return uuids;
+                    }
+                });
             }
         });
         uppercaseButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(getText().toUpperCase());
+                runOperation("Uppercasing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return text.toUpperCase();
+                    }
+                });
             }
         });
         lowercaseButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(getText().toLowerCase());
+                runOperation("Lowercasing", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return text.toLowerCase();
+                    }
+                });
             }
         });
         insertTemplateButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.insertTemplateText(insertTemplateTextField.getText(), getText()));
+                final String template = insertTemplateTextField.getText();
+                runOperation("Inserting", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.insertTemplateText(template, text);
+                    }
+                });
             }
         });
         showInsertExampleButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText("Bullet1\nBullet2\nBullet3");
                 insertTextArea.setText("* ");
+                runOperation("Showing example", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return "Bullet1\nBullet2\nBullet3";
+                    }
+                });
             }
         });
         showInsertFromTemplateButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText("Google; google.com\nYahoo; yahoo.com");
                 insertTemplateTextField.setText("<a href=\"http://www.%2\">%1</a>");
+                runOperation("Showing example", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return "Google; google.com\nYahoo; yahoo.com";
+                    }
+                });
             }
         });
         removeLinesButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
 
-                backupForUndo();
-
                 boolean doNotContain = false;
                 String text = removeLinesComboBox.getSelectedItem().toString();
 
@@ -311,28 +496,48 @@ public class MainUI {
                     doNotContain = true;
                 }
 
-                setText(StringTools.removeLinesContaining(doNotContain, getText(), textFieldRemoveLinesRegex.getText()));
+                final boolean notContaining = doNotContain;
+                final String regex = textFieldRemoveLinesRegex.getText();
+                runOperation("Removing lines", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.removeLinesContaining(notContaining, text, regex);
+                    }
+                });
             }
         });
         sortAZButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.sortAlpha(getText()));
+                runOperation("Sorting", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.sortAlpha(text);
+                    }
+                });
             }
         });
         sortZAButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.sortAlphaReverse(getText()));
+                runOperation("Sorting", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.sortAlphaReverse(text);
+                    }
+                });
             }
         });
         removeDuplicateLinesButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.removeDuplicateLines(getText(), ignoreCaseCheckBox.isSelected()));
+                final boolean ignoreCase = ignoreCaseCheckBox.isSelected();
+                runOperation("Removing duplicates", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.removeDuplicateLines(text, ignoreCase);
+                    }
+                });
             }
         });
         smartReplaceExampleButton.addActionListener(new ActionListener() {
@@ -375,8 +580,12 @@ public class MainUI {
         copyPropertyJavaDocsButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.javaCopyVarDocs(getText()));
+                runOperation("Copying JavaDocs", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.javaCopyVarDocs(text);
+                    }
+                });
             }
         });
 
@@ -384,8 +593,12 @@ public class MainUI {
         copyPrivateVarDocsButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.flexCopyVarDocs(getText()));
+                runOperation("Copying AsDocs", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.flexCopyVarDocs(text);
+                    }
+                });
             }
         });
 
@@ -396,11 +609,14 @@ public class MainUI {
         bulletsRunButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.convertBulletMarkup(
-                    getText(),
-                    bulletSrcTextField.getText(),
-                    bulletDestTextField.getText()));
+                final String src = bulletSrcTextField.getText();
+                final String dest = bulletDestTextField.getText();
+                runOperation("Converting bullets", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.convertBulletMarkup(text, src, dest);
+                    }
+                });
             }
         });
 
@@ -408,12 +624,13 @@ public class MainUI {
         indentBulletsButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.convertBulletMarkup(
-                    getText(),
-                    bulletSrcTextField.getText(),
-                    bulletSrcTextField.getText(),
-                    1));
+                final String src = bulletSrcTextField.getText();
+                runOperation("Indenting bullets", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.convertBulletMarkup(text, src, src, 1);
+                    }
+                });
             }
         });
 
@@ -421,12 +638,13 @@ public class MainUI {
         outdentBulletsButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                backupForUndo();
-                setText(StringTools.convertBulletMarkup(
-                    getText(),
-                    bulletSrcTextField.getText(),
-                    bulletSrcTextField.getText(),
-                    -1));
+                final String src = bulletSrcTextField.getText();
+                runOperation("Outdenting bullets", new TextOperation() {
+                    @Override
+                    String apply(String text) {
+                        return StringTools.convertBulletMarkup(text, src, src, -1);
+                    }
+                });
             }
         });
 
@@ -451,6 +669,136 @@ public class MainUI {
         });
     }
 
+    /**
+     * Runs a text operation off the event thread, so big text doesn't freeze the window.
+     * Buttons are disabled and the text is read-only until it finishes; then the result and its
+     * undo step go in together. A cancelled or failed run leaves the text and undo untouched.
+     * @param name shown on the progress bar
+     */
+    private void runOperation(String name, TextOperation operation) {
+        runWorker(name, operation, true);
+    }
+
+    /**
+     * @param recordUndo false for undo and redo themselves
+     */
+    private void runWorker(String name, final TextOperation operation, final boolean recordUndo) {
+
+        if (worker != null) {
+            return;
+        }
+
+        final String snapshot = getText();
+
+        worker = new SwingWorker<String, Void>() {
+
+            private UndoHistory.Change change;
+            private TextReplacement replacement;
+
+            @Override
+            protected String doInBackground() {
+
+                String result = operation.apply(snapshot);
+
+                // Diffing for the undo step and for the document can take as long as the operation,
+                // so they're done here too. Operations that changed nothing aren't worth an undo step.
+                if (result != null) {
+                    if (recordUndo && !result.equals(snapshot)) {
+                        change = undoHistory.prepare(snapshot, result);
+                    }
+                    replacement = TextReplacement.between(snapshot, result);
+                }
+
+                return result;
+            }
+
+            @Override
+            protected void done() {
+
+                worker = null;
+                setBusy(false, null);
+
+                if (isCancelled()) {
+                    return;
+                }
+
+                try {
+
+                    String result = get();
+
+                    // Null from undo or redo means there was nothing to do.
+                    if (result != null) {
+                        if (change != null) {
+                            undoHistory.commit(change);
+                        }
+
+                        replaceText(replacement, result);
+
+                        if (operation.autoCopy() && autoClipboardCheckBox.isSelected()) {
+                            copyAllToClipboard();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() == null ? e : e.getCause();
+                    log.warning(cause.toString());
+                    JOptionPane.showMessageDialog(panelMain, String.valueOf(cause.getMessage()),
+                        "StringTools", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+
+        setBusy(true, name);
+        worker.execute();
+    }
+
+    /**
+     * Cancelling stops waiting and throws the result away; the operations themselves
+     * don't check for interrupts, so the abandoned work runs on to the end in the background.
+     */
+    private void setBusy(boolean busy, String name) {
+
+        setButtonsEnabled(panelMain, !busy);
+        textArea1.setEditable(!busy);
+
+        progressBar.setIndeterminate(busy);
+        progressBar.setString(name);
+        progressBar.setVisible(busy);
+        cancelButton.setVisible(busy);
+    }
+
+    private void setButtonsEnabled(Container container, boolean enabled) {
+        for (Component component : container.getComponents()) {
+            if (component instanceof AbstractButton && component != cancelButton && component != metricsButton) {
+                component.setEnabled(enabled);
+            } else if (component instanceof Container) {
+                setButtonsEnabled((Container) component, enabled);
+            }
+        }
+    }
+
+    /**
+     * How each operation has done so far, in a dialog; it can be looked at while one runs.
+     */
+    private void showMetrics() {
+
+        JTextArea metricsArea = new JTextArea(OperationMetrics.dump());
+        metricsArea.setEditable(false);
+        metricsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, textArea1.getFont().getSize()));
+
+        JScrollPane scrollPane = new JScrollPane(metricsArea);
+        scrollPane.setPreferredSize(new Dimension(900, 300));
+
+        String[] options = { "Close", "Reset" };
+        int choice = JOptionPane.showOptionDialog(panelMain, scrollPane, "Operation metrics",
+            JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+
+        if (choice == 1) {
+            OperationMetrics.reset();
+        }
+    }
+
     private void copyAllToClipboard() {
         try {
             StringSelection ss = new StringSelection(getText());
@@ -465,9 +813,19 @@ public class MainUI {
 
         try {
             if (t != null && t.isDataFlavorSupported(DataFlavor.stringFlavor)) {
-                String text = (String) t.getTransferData(DataFlavor.stringFlavor);
-                // Set text area manually (don't use setText()) to avoid auto clipboard copy:
-                textArea1.setText(text);
+                final String text = (String) t.getTransferData(DataFlavor.stringFlavor);
+                runOperation("Pasting", new TextOperation() {
+                    @Override
+                    String apply(String oldText) {
+                        return text;
+                    }
+
+                    // Don't copy what was just pasted straight back to the clipboard.
+                    @Override
+                    boolean autoCopy() {
+                        return false;
+                    }
+                });
             }
         } catch (UnsupportedFlavorException x) {
             // ignore.
@@ -490,15 +848,30 @@ public class MainUI {
             flags |= Pattern.CASE_INSENSITIVE;
         }
 
-        regexMatchTextArea.setText(StringTools.getRegexInfo(getText(), regexInputExpressionTextField.getText(), flags));
+        if (regexText == null) {
+            regexText = getText();
+        }
+
+        // Matching runs in the background; results show up as they're found.
+        regexTester.test(regexText, regexInputExpressionTextField.getText(), flags);
     }
 
-    private void undo() {
-        if (undoDeque.isEmpty()) {
-            return;
+    /**
+     * Changes just the span that differs, so the text area keeps the layout of the lines that didn't change.
+     * Falls back to replacing everything if the text isn't what the replacement was worked out from.
+     */
+    private void replaceText(TextReplacement replacement, String text) {
+
+        try {
+            if (getText().equals(replacement.getBefore())) {
+                replacement.applyTo(textArea1.getDocument());
+                return;
+            }
+        } catch (BadLocationException e) {
+            log.warning(e.toString());
         }
 
-        setText(undoDeque.pop());
+        textArea1.setText(text);
     }
 
     private void setText(String text) {
@@ -508,10 +881,6 @@ public class MainUI {
         }
     }
 
-    private void backupForUndo() {
-        undoDeque.push(getText());
-    }
-
     private int getInt(JTextComponent textComponent) {
         return Integer.parseInt(textComponent.getText());
     }
@@ -520,10 +889,39 @@ public class MainUI {
         return textArea1.getText();
     }
 
+    /**
+     * One transform of the whole text. It runs off the event thread, so anything it needs from the UI
+     * has to be read beforehand.
+     */
+    private abstract static class TextOperation {
+
+        abstract String apply(String text);
+
+        /**
+         * Whether the result goes to the clipboard too, when auto-clipboard is on.
+         */
+        boolean autoCopy() {
+            return true;
+        }
+    }
+
     public static void main(String[] args) {
 
+        // Command line use, or no display to show a window on.
+        if (args.length > 0 || GraphicsEnvironment.isHeadless()) {
+            StringToolsCli.main(args);
+            return;
+        }
+
         log.severe("I'm in main!");
 
+        // Operations here are one at a time and at a person's pace, so recording them costs nothing noticeable.
+        if (System.getProperty(OperationMetrics.ENABLED_PROPERTY) == null) {
+            OperationMetrics.setEnabled(true);
+        }
+
+        OperationMetrics.registerMBean();
+
         try {
             log.config("Setting look-and-feel.");
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -888,11 +1286,14 @@ public class MainUI {
         textArea1.setText("");
         scrollPane3.setViewportView(textArea1);
         final JPanel panel10 = new JPanel();
-        panel10.setLayout(new GridLayoutManager(1, 6, new Insets(0, 0, 0, 0), -1, -1));
+        panel10.setLayout(new GridLayoutManager(1, 7, new Insets(0, 0, 0, 0), -1, -1));
         panelMain.add(panel10, new GridConstraints(3, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_BOTH, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, null, null, null, 0, false));
         undoButton = new JButton();
         undoButton.setText("Undo");
         panel10.add(undoButton, new GridConstraints(0, 5, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        redoButton = new JButton();
+        redoButton.setText("Redo");
+        panel10.add(redoButton, new GridConstraints(0, 6, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
         final Spacer spacer24 = new Spacer();
         panel10.add(spacer24, new GridConstraints(0, 1, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, 1, null, null, null, 0, false));
         copyAllButton = new JButton();
@@ -909,13 +1310,24 @@ public class MainUI {
         autoClipboardCheckBox.setText("Auto-clipboard");
         panel10.add(autoClipboardCheckBox, new GridConstraints(0, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
         final JPanel panel11 = new JPanel();
-        panel11.setLayout(new GridLayoutManager(1, 2, new Insets(0, 0, 0, 0), -1, -1));
+        panel11.setLayout(new GridLayoutManager(1, 5, new Insets(0, 0, 0, 0), -1, -1));
         panelMain.add(panel11, new GridConstraints(0, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_BOTH, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, null, null, null, 0, false));
         pasteClipboardButton = new JButton();
         pasteClipboardButton.setText("Paste Clipboard");
         panel11.add(pasteClipboardButton, new GridConstraints(0, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
         final Spacer spacer25 = new Spacer();
         panel11.add(spacer25, new GridConstraints(0, 1, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, 1, null, null, null, 0, false));
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        panel11.add(progressBar, new GridConstraints(0, 2, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        cancelButton = new JButton();
+        cancelButton.setText("Cancel");
+        cancelButton.setVisible(false);
+        panel11.add(cancelButton, new GridConstraints(0, 3, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        metricsButton = new JButton();
+        metricsButton.setText("Metrics");
+        panel11.add(metricsButton, new GridConstraints(0, 4, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
     }
 
     /** @noinspection ALL */
@@ -0,0 +1,139 @@
+package com.terheyden.stringtools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads a file through a memory map instead of read() calls, decoding straight out of the page cache.
+ * <p/>
+ * A file can be far bigger than one map (or the address space), so it's mapped a window at a time;
+ * a char split across two windows is carried over. Malformed input becomes U+FFFD, same as InputStreamReader.
+ */
+final class MappedFileReader extends Reader {
+
+    /**
+     * How much of the file is mapped at once.
+     */
+    static final int DEFAULT_WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private static final int CHAR_BUFFER_SIZE = 16 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final int windowBytes;
+    private final CharsetDecoder decoder;
+
+    // File offset of the current window's first byte.
+    private long windowStart;
+    private MappedByteBuffer window;
+    private boolean flushed;
+
+    // Decoded chars not handed out yet.
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    /**
+     * @param windowBytes how much of the file to map at once
+     */
+    MappedFileReader(File path, Charset charset, int windowBytes) throws IOException {
+
+        if (windowBytes < 16) {
+            throw new IllegalArgumentException("Window too small: " + windowBytes);
+        }
+
+        this.file = new RandomAccessFile(path, "r");
+        this.channel = file.getChannel();
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        chars.limit(0);
+
+        try {
+            map(0);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    MappedFileReader(File path, Charset charset) throws IOException {
+        this(path, charset, DEFAULT_WINDOW_BYTES);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+
+        if (window == null) {
+            throw new IOException("Reader closed");
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+
+        int count = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, count);
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowBytes, size - start));
+    }
+
+    /**
+     * Decodes the next chars into the char buffer.
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+
+        chars.clear();
+
+        while (chars.position() == 0 && !flushed) {
+
+            boolean lastWindow = windowStart + window.limit() >= size;
+            CoderResult result = decoder.decode(window, chars, lastWindow);
+
+            if (result.isOverflow()) {
+                break;
+            }
+
+            // Underflow: the window's used up, except maybe the first bytes of a char that continues in the next one.
+            if (!lastWindow) {
+                map(windowStart + window.position());
+                continue;
+            }
+
+            if (decoder.flush(chars).isOverflow()) {
+                break;
+            }
+
+            flushed = true;
+        }
+
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
@@ -0,0 +1,379 @@
+package com.terheyden.stringtools;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts, sizes, errors and latencies for every StringTools operation, so slow ones show up in batch jobs.
+ * <pre>
+ *     java -Dstringtools.metrics=true -cp stringtools.jar my.BatchJob    # and watch it in JConsole
+ *
+ *     OperationMetrics.setEnabled(true);
+ *     ...
+ *     System.err.print(OperationMetrics.dump());
+ * </pre>
+ * Off unless the stringtools.metrics system property is true, or it's turned on by {@link #setEnabled} or JMX.
+ * While it's off an operation only checks that it's off. While it's on, a call costs two clock reads,
+ * a few uncontended counter adds and one scan of its input and output for line breaks.
+ * <p/>
+ * Everything is recorded with atomic adds; nothing locks, so threads calling operations at once don't wait
+ * on each other. Reading is just as lock-free, so numbers read while operations run may be a call apart.
+ * <p/>
+ * The numbers are shown over JMX once {@link #registerMBean()} has been called, which it is if the property is set,
+ * and by the UI and the daemon on startup. See {@link OperationMetricsMXBean}.
+ */
+public final class OperationMetrics {
+
+    public static final String OBJECT_NAME = "com.terheyden.stringtools:type=OperationMetrics";
+
+    /**
+     * Set to true to turn metrics on at startup, and show them over JMX.
+     */
+    public static final String ENABLED_PROPERTY = "stringtools.metrics";
+
+    private static final Logger log = Logger.getLogger(OperationMetrics.class.getName());
+
+    /**
+     * What {@link Operation#start()} returns while metrics are off. nanoTime() can be anything, even negative,
+     * but not this, realistically.
+     */
+    private static final long OFF = Long.MIN_VALUE;
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /**
+     * Sorted, so dumps list operations by name.
+     */
+    private static final ConcurrentMap<String, Operation> operationMap = new ConcurrentSkipListMap<String, Operation>();
+
+    private static volatile boolean enabled;
+    private static boolean registered;
+
+    static {
+        if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+            enabled = true;
+            registerMBean();
+        }
+    }
+
+    private OperationMetrics() {
+        // Static only.
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Calls already running when this changes aren't recorded.
+     */
+    public static void setEnabled(boolean enabled) {
+        OperationMetrics.enabled = enabled;
+    }
+
+    /**
+     * Shows the metrics over JMX as {@value #OBJECT_NAME}. Doesn't turn them on. Calling it again does nothing.
+     */
+    public static synchronized void registerMBean() {
+
+        if (registered) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Another copy of these classes in the JVM, from another class loader.
+            log.warning("Not registering " + OBJECT_NAME + ", it already is");
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't register " + OBJECT_NAME, e);
+        }
+
+        registered = true;
+    }
+
+    /**
+     * Every operation called since the last reset, by name.
+     */
+    public static List<OperationStats> getOperations() {
+
+        List<OperationStats> statsList = new ArrayList<OperationStats>();
+
+        for (Operation operation : operationMap.values()) {
+
+            OperationStats stats = operation.stats();
+
+            if (stats.getCount() > 0) {
+                statsList.add(stats);
+            }
+        }
+
+        return statsList;
+    }
+
+    /**
+     * The metrics as a table, one line per operation called since the last reset, for people to read.
+     */
+    public static String dump() {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-28s %9s %7s %12s %10s %12s %10s %11s %9s %9s %9s %9s%n",
+            "operation", "calls", "errors", "in chars", "in lines", "out chars", "out lines",
+            "total ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+
+        for (OperationStats stats : getOperations()) {
+            builder.append(String.format("%-28s %9d %7d %12d %10d %12d %10d %11.1f %9.3f %9.3f %9.3f %9.3f%n",
+                stats.getName(), stats.getCount(), stats.getErrors(), stats.getInputChars(), stats.getInputLines(),
+                stats.getOutputChars(), stats.getOutputLines(), stats.getTotalMillis(),
+                stats.getP50Millis(), stats.getP90Millis(), stats.getP99Millis(), stats.getMaxMillis()));
+        }
+
+        if (!enabled) {
+            builder.append("(Metrics are off; run with -D").append(ENABLED_PROPERTY).append("=true to record them.)\n");
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Zeroes everything. Calls running at the time may still add to the new numbers.
+     */
+    public static void reset() {
+        for (Operation operation : operationMap.values()) {
+            operation.reset();
+        }
+    }
+
+    /**
+     * The operation with this name, made the first time it's asked for. Meant for static fields:
+     * <pre>
+     *     private static final OperationMetrics.Operation SORT_ALPHA = OperationMetrics.operation("sortAlpha");
+     * </pre>
+     */
+    static Operation operation(String name) {
+
+        Operation operation = operationMap.get(name);
+
+        if (operation == null) {
+            Operation newOperation = new Operation(name);
+            operation = operationMap.putIfAbsent(name, newOperation);
+            operation = operation == null ? newOperation : operation;
+        }
+
+        return operation;
+    }
+
+    /**
+     * Lines as '\n' ends them; text after the last '\n' is a line too.
+     */
+    static long countLines(String text) {
+
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        long lines = 0;
+        int from = 0;
+        int at;
+
+        while ((at = text.indexOf('\n', from)) >= 0) {
+            lines++;
+            from = at + 1;
+        }
+
+        return from < text.length() ? lines + 1 : lines;
+    }
+
+    /**
+     * One operation's numbers. Each call goes:
+     * <pre>
+     *     long started = SORT_ALPHA.start();
+     *     try {
+     *         return SORT_ALPHA.done(started, text, sorted(text));
+     *     } catch (RuntimeException e) {
+     *         throw SORT_ALPHA.failed(started, text, e);
+     *     }
+     * </pre>
+     */
+    static final class Operation {
+
+        /**
+         * A start time for calls that aren't to be recorded, whether metrics are on or not.
+         */
+        static final long NOT_RECORDING = OFF;
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inputChars = new LongAdder();
+        private final LongAdder inputLines = new LongAdder();
+        private final LongAdder outputChars = new LongAdder();
+        private final LongAdder outputLines = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return what to hand to done() or failed()
+         */
+        long start() {
+            return enabled ? System.nanoTime() : OFF;
+        }
+
+        /**
+         * @param input the text the operation worked on, or null if there was none
+         * @return output
+         */
+        String done(long started, String input, String output) {
+
+            if (started != OFF) {
+                record(started, input, output == null ? 0 : output.length(), countLines(output));
+            }
+
+            return output;
+        }
+
+        /**
+         * For operations that return lines.
+         * @return lines
+         */
+        String[] done(long started, String input, String[] lines) {
+
+            if (started != OFF) {
+
+                long chars = 0;
+
+                for (String line : lines) {
+                    chars += line.length();
+                }
+
+                record(started, input, chars, lines.length);
+            }
+
+            return lines;
+        }
+
+        /**
+         * For operations that write to a file and return how many lines they wrote. Chars aren't counted.
+         * @return linesWritten
+         */
+        long done(long started, long linesWritten) {
+
+            if (started != OFF) {
+                record(started, null, 0, linesWritten);
+            }
+
+            return linesWritten;
+        }
+
+        /**
+         * For operations that stream, and count what goes through themselves.
+         */
+        void done(long started, long inputCharCount, long inputLineCount, long outputCharCount, long outputLineCount) {
+
+            if (started != OFF) {
+                record(started, inputCharCount, inputLineCount, outputCharCount, outputLineCount);
+            }
+        }
+
+        /**
+         * Whether this call is being recorded, so it's worth counting what it reads and writes.
+         */
+        boolean isRecording(long started) {
+            return started != OFF;
+        }
+
+        /**
+         * @return e, to rethrow
+         */
+        <E extends Throwable> E failed(long started, String input, E e) {
+
+            if (started != OFF) {
+                errors.increment();
+                record(started, input, 0, 0);
+            }
+
+            return e;
+        }
+
+        private void record(long started, String input, long outputCharCount, long outputLineCount) {
+
+            if (input == null) {
+                record(started, 0, 0, outputCharCount, outputLineCount);
+            } else {
+                record(started, input.length(), countLines(input), outputCharCount, outputLineCount);
+            }
+        }
+
+        private void record(long started, long inputCharCount, long inputLineCount, long outputCharCount, long outputLineCount) {
+
+            latency.record(System.nanoTime() - started);
+            count.increment();
+            inputChars.add(inputCharCount);
+            inputLines.add(inputLineCount);
+            outputChars.add(outputCharCount);
+            outputLines.add(outputLineCount);
+        }
+
+        OperationStats stats() {
+            return new OperationStats(name, count.sum(), errors.sum(),
+                inputChars.sum(), inputLines.sum(), outputChars.sum(), outputLines.sum(),
+                latency.total() / NANOS_PER_MILLI,
+                latency.valueAtPercentile(50) / NANOS_PER_MILLI,
+                latency.valueAtPercentile(90) / NANOS_PER_MILLI,
+                latency.valueAtPercentile(99) / NANOS_PER_MILLI,
+                latency.max() / NANOS_PER_MILLI);
+        }
+
+        void reset() {
+            count.reset();
+            errors.reset();
+            inputChars.reset();
+            inputLines.reset();
+            outputChars.reset();
+            outputLines.reset();
+            latency.reset();
+        }
+    }
+
+    /**
+     * The JMX face of the static methods.
+     */
+    private static final class Bean implements OperationMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return OperationMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            OperationMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public List<OperationStats> getOperations() {
+            return OperationMetrics.getOperations();
+        }
+
+        @Override
+        public String dump() {
+            return OperationMetrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            OperationMetrics.reset();
+        }
+    }
+}
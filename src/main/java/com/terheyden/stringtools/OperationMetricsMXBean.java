@@ -0,0 +1,26 @@
+package com.terheyden.stringtools;
+
+import java.util.List;
+
+/**
+ * What {@link OperationMetrics} shows over JMX, as {@value OperationMetrics#OBJECT_NAME} on the platform
+ * MBean server; e.g. in JConsole or VisualVM.
+ */
+public interface OperationMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Every operation called since the last reset, by name.
+     */
+    List<OperationStats> getOperations();
+
+    /**
+     * The same as {@link #getOperations()}, as a table.
+     */
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,105 @@
+package com.terheyden.stringtools;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * One operation's numbers, as of when they were read. Sizes are totals over all its calls; a line is
+ * what ends with '\n', plus whatever follows the last one. Latencies are in milliseconds, to within 1/64.
+ */
+public final class OperationStats {
+
+    private final String name;
+    private final long count;
+    private final long errors;
+    private final long inputChars;
+    private final long inputLines;
+    private final long outputChars;
+    private final long outputLines;
+    private final double totalMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    @ConstructorProperties({ "name", "count", "errors", "inputChars", "inputLines", "outputChars", "outputLines",
+        "totalMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis" })
+    public OperationStats(String name, long count, long errors, long inputChars, long inputLines, long outputChars,
+        long outputLines, double totalMillis, double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+
+        this.name = name;
+        this.count = count;
+        this.errors = errors;
+        this.inputChars = inputChars;
+        this.inputLines = inputLines;
+        this.outputChars = outputChars;
+        this.outputLines = outputLines;
+        this.totalMillis = totalMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * The StringTools method, e.g. "sortAlpha"; overloads share a name, apart from the ones on files,
+     * e.g. "sortAlpha(File)". Command-line commands are "cli " and the command, e.g. "cli sort".
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Calls, including the ones that threw.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Calls that threw.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getInputChars() {
+        return inputChars;
+    }
+
+    public long getInputLines() {
+        return inputLines;
+    }
+
+    public long getOutputChars() {
+        return outputChars;
+    }
+
+    public long getOutputLines() {
+        return outputLines;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + count + " calls, " + errors + " errors, p50 " + p50Millis + " ms, max " + maxMillis + " ms";
+    }
+}
@@ -0,0 +1,156 @@
+package com.terheyden.stringtools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded, thread-safe LRU cache of compiled regexes, keyed by (regex, flags).
+ * All the StringTools operations that take a regex compile it through {@link #getShared()}, so calling
+ * the same operation with the same regex over and over only pays for Pattern.compile() once.
+ */
+public final class PatternCache {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final PatternCache shared = new PatternCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final Map<Key, Pattern> patternMap;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public PatternCache(int capacity) {
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+
+        // Access order = LRU. Evict once we go over capacity.
+        this.patternMap = new LinkedHashMap<Key, Pattern>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+                if (size() > PatternCache.this.capacity) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The cache shared by all StringTools operations.
+     */
+    public static PatternCache getShared() {
+        return shared;
+    }
+
+    public Pattern compile(String regex) {
+        return compile(regex, 0);
+    }
+
+    /**
+     * Same as {@link Pattern#compile(String, int)}, but returns the cached Pattern if we've seen this regex before.
+     * @throws java.util.regex.PatternSyntaxException if the regex is invalid (invalid regexes aren't cached)
+     */
+    public Pattern compile(String regex, int flags) {
+
+        Key key = new Key(regex, flags);
+        Pattern pattern;
+
+        synchronized (patternMap) {
+            pattern = patternMap.get(key);
+        }
+
+        if (pattern != null) {
+            hitCount.incrementAndGet();
+            return pattern;
+        }
+
+        missCount.incrementAndGet();
+
+        // Compile outside the lock; two threads racing on the same regex just compile it twice.
+        pattern = Pattern.compile(regex, flags);
+
+        synchronized (patternMap) {
+            patternMap.put(key, pattern);
+        }
+
+        return pattern;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        synchronized (patternMap) {
+            return patternMap.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Empties the cache and zeroes the counters.
+     */
+    public void clear() {
+
+        synchronized (patternMap) {
+            patternMap.clear();
+        }
+
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PatternCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+            size(), capacity, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private static final class Key {
+
+        private final String regex;
+        private final int flags;
+
+        Key(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regex.hashCode() + flags;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return flags == other.flags && regex.equals(other.regex);
+        }
+    }
+}
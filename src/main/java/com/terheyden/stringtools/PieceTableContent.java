@@ -0,0 +1,919 @@
+package com.terheyden.stringtools;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * Document content kept as a piece table: a list of spans of immutable text, so big text goes in and out
+ * without being copied.
+ * <pre>
+ *     JTextArea textArea = new JTextArea(new PlainDocument(new PieceTableContent()));
+ * </pre>
+ * A big insert (a paste, an operation's result) becomes a piece that points at the inserted String itself.
+ * Typing goes into an append-only buffer, and a run of typing at one spot stays one piece. Reading
+ * the whole text hands back that String again when nothing has changed since, and otherwise copies the pieces
+ * into one new String, which then replaces them; so it's one copy per round of edits, not one per read.
+ * Views read a line at a time through segments; those point straight at a piece's chars, as
+ * {@link javax.swing.text.GapContent}'s point at its buffer, so painting and layout don't copy either.
+ * <p/>
+ * Removed pieces are kept by the undoable edits this returns, which share them rather than copying.
+ * <p/>
+ * Positions work like {@link javax.swing.text.StringContent}'s: they move with inserts before them,
+ * a position at 0 stays at 0, and removing the text around one collapses it to where the removal started.
+ * Undoing the removal puts it back where it was.
+ */
+final class PieceTableContent implements AbstractDocument.Content {
+
+    /**
+     * Past this many pieces, they're merged back into one; edits are linear in the piece count.
+     */
+    static final int MAX_PIECES = 1024;
+
+    /**
+     * Inserts up to this long are copied into the append buffer, so typing doesn't make a piece per key.
+     */
+    static final int SMALL_INSERT = 256;
+
+    private final List<Piece> pieces = new ArrayList<Piece>();
+
+    /**
+     * offsets[i] is where piece i starts.
+     */
+    private int[] offsets = new int[16];
+    private int length;
+
+    private final AppendBuffer appended = new AppendBuffer();
+    private final Marks marks = new Marks();
+
+    /**
+     * Empty, apart from the newline every document content ends with.
+     */
+    PieceTableContent() {
+        pieces.add(new Piece(new StringText("\n"), 0, 1));
+        length = 1;
+    }
+
+    @Override
+    public synchronized Position createPosition(int offset) throws BadLocationException {
+
+        if (offset < 0 || offset > length) {
+            throw new BadLocationException("Invalid position", offset);
+        }
+
+        return marks.create(offset);
+    }
+
+    @Override
+    public synchronized int length() {
+        return length;
+    }
+
+    @Override
+    public synchronized UndoableEdit insertString(int where, String str) throws BadLocationException {
+
+        if (where < 0 || where > length) {
+            throw new BadLocationException("Invalid insert", where);
+        }
+
+        if (str.isEmpty()) {
+            return null;
+        }
+
+        if (str.length() <= SMALL_INSERT) {
+
+            int appendStart = appended.length();
+            appended.append(str);
+
+            if (extendAppendedPiece(where, appendStart, str.length())) {
+                marks.insert(where, str.length());
+                return new InsertUndo(where, str.length());
+            }
+
+            insertPieces(where, singletonPieces(new Piece(appended, appendStart, str.length())));
+
+        } else {
+            insertPieces(where, singletonPieces(new Piece(new StringText(str), 0, str.length())));
+        }
+
+        return new InsertUndo(where, str.length());
+    }
+
+    @Override
+    public synchronized UndoableEdit remove(int where, int nitems) throws BadLocationException {
+
+        if (where < 0 || nitems < 0 || where + nitems >= length) {
+            throw new BadLocationException("Invalid remove", where + nitems);
+        }
+
+        if (nitems == 0) {
+            return null;
+        }
+
+        SavedMarks saved = marks.save(where, nitems);
+        return new RemoveUndo(where, removePieces(where, nitems), saved);
+    }
+
+    @Override
+    public synchronized String getString(int where, int len) throws BadLocationException {
+
+        checkRange(where, len);
+
+        if (len == 0) {
+            return "";
+        }
+
+        int index = pieceIndex(where);
+        Piece piece = pieces.get(index);
+
+        // All of one piece, e.g. the whole text right after it was set: no copy at all.
+        if (offsets[index] == where && piece.length == len && piece.isWholeString()) {
+            return piece.text.toString();
+        }
+
+        if (where - offsets[index] + len <= piece.length) {
+            return piece.text.subSequence(piece.start + where - offsets[index], piece.start + where - offsets[index] + len)
+                .toString();
+        }
+
+        String text = copyString(where, len);
+
+        // Reading everything is what a whole-text operation does; make the next read free.
+        if (where == 0 && len == length - 1) {
+            mergePieces(text);
+        }
+
+        return text;
+    }
+
+    @Override
+    public synchronized void getChars(int where, int len, Segment txt) throws BadLocationException {
+
+        checkRange(where, len);
+
+        int index = pieceIndex(where);
+        Piece piece = pieces.get(index);
+        int pieceOffset = where - offsets[index];
+
+        // Within one piece, which is nearly always, the segment can point straight at its chars; they never change.
+        if (pieceOffset + len <= piece.length) {
+            txt.array = piece.text.array();
+            txt.offset = piece.start + pieceOffset;
+        } else {
+            txt.array = copyChars(where, len);
+            txt.offset = 0;
+        }
+
+        txt.count = len;
+    }
+
+    int pieceCount() {
+        return pieces.size();
+    }
+
+    private void checkRange(int where, int len) throws BadLocationException {
+        if (where < 0 || len < 0 || where + len > length) {
+            throw new BadLocationException("Invalid range", where + len);
+        }
+    }
+
+    private char[] copyChars(int where, int len) {
+
+        char[] chars = new char[len];
+
+        if (len == 0) {
+            return chars;
+        }
+
+        int copied = 0;
+        int index = pieceIndex(where);
+        int pieceOffset = where - offsets[index];
+
+        while (copied < len) {
+
+            Piece piece = pieces.get(index);
+            int count = Math.min(piece.length - pieceOffset, len - copied);
+
+            piece.getChars(pieceOffset, count, chars, copied);
+
+            copied += count;
+            pieceOffset = 0;
+            index++;
+        }
+
+        return chars;
+    }
+
+    /**
+     * Like {@link #copyChars}, but a StringBuilder keeps one-byte strings one byte per char the whole way.
+     */
+    private String copyString(int where, int len) {
+
+        StringBuilder builder = new StringBuilder(len);
+        int index = pieceIndex(where);
+        int pieceOffset = where - offsets[index];
+
+        while (builder.length() < len) {
+
+            Piece piece = pieces.get(index);
+            int count = Math.min(piece.length - pieceOffset, len - builder.length());
+
+            piece.appendTo(builder, pieceOffset, count);
+
+            pieceOffset = 0;
+            index++;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Lots of scattered edits make lots of pieces. Merge all but the final newline, as a full read would.
+     */
+    private void compactIfNeeded() {
+        if (pieces.size() > MAX_PIECES) {
+            mergePieces(copyString(0, length - 1));
+        }
+    }
+
+    /**
+     * Replaces the pieces that make up [0, text.length()) with text, which is what they hold.
+     */
+    private void mergePieces(String text) {
+
+        if (text.isEmpty()) {
+            return;
+        }
+
+        int end = splitAt(text.length());
+        pieces.subList(0, end).clear();
+        pieces.add(0, new Piece(new StringText(text), 0, text.length()));
+        updateOffsets(0);
+    }
+
+    /**
+     * Typing at the end of the last thing typed just makes that piece longer.
+     */
+    private boolean extendAppendedPiece(int where, int appendStart, int count) {
+
+        if (where == 0) {
+            return false;
+        }
+
+        int index = pieceIndex(where - 1);
+        Piece piece = pieces.get(index);
+
+        if (offsets[index] + piece.length != where || piece.text != appended || piece.start + piece.length != appendStart) {
+            return false;
+        }
+
+        pieces.set(index, new Piece(appended, piece.start, piece.length + count));
+        length += count;
+
+        for (int next = index + 1; next < pieces.size(); next++) {
+            offsets[next] += count;
+        }
+
+        return true;
+    }
+
+    private void insertPieces(int where, List<Piece> inserted) {
+
+        int index = splitAt(where);
+        int count = 0;
+
+        for (Piece piece : inserted) {
+            count += piece.length;
+        }
+
+        pieces.addAll(index, inserted);
+        length += count;
+        updateOffsets(index);
+        marks.insert(where, count);
+
+        compactIfNeeded();
+    }
+
+    private List<Piece> removePieces(int where, int count) {
+
+        int first = splitAt(where);
+        int end = splitAt(where + count);
+
+        List<Piece> range = pieces.subList(first, end);
+        List<Piece> removed = new ArrayList<Piece>(range);
+        range.clear();
+
+        length -= count;
+        updateOffsets(first);
+        marks.remove(where, count);
+
+        compactIfNeeded();
+
+        return removed;
+    }
+
+    /**
+     * Splits the piece at offset, if need be, so a piece starts there.
+     * @return the index of the piece starting at offset, or the piece count for the end
+     */
+    private int splitAt(int offset) {
+
+        if (offset == length) {
+            return pieces.size();
+        }
+
+        int index = pieceIndex(offset);
+        int pieceOffset = offset - offsets[index];
+
+        if (pieceOffset == 0) {
+            return index;
+        }
+
+        Piece piece = pieces.get(index);
+        pieces.set(index, new Piece(piece.text, piece.start, pieceOffset));
+        pieces.add(index + 1, new Piece(piece.text, piece.start + pieceOffset, piece.length - pieceOffset));
+        updateOffsets(index + 1);
+
+        return index + 1;
+    }
+
+    /**
+     * The piece holding the char at offset.
+     */
+    private int pieceIndex(int offset) {
+
+        int low = 0;
+        int high = pieces.size() - 1;
+
+        while (low < high) {
+
+            int mid = (low + high + 1) >>> 1;
+
+            if (offsets[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    private void updateOffsets(int from) {
+
+        if (offsets.length < pieces.size()) {
+            offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, pieces.size()));
+        }
+
+        int offset = from == 0 ? 0 : offsets[from - 1] + pieces.get(from - 1).length;
+
+        for (int index = from; index < pieces.size(); index++) {
+            offsets[index] = offset;
+            offset += pieces.get(index).length;
+        }
+    }
+
+    private static List<Piece> singletonPieces(Piece piece) {
+        List<Piece> list = new ArrayList<Piece>(1);
+        list.add(piece);
+        return list;
+    }
+
+    /**
+     * text[start, start + length). The text never changes underneath it.
+     */
+    private static final class Piece {
+
+        private final Text text;
+        private final int start;
+        private final int length;
+
+        Piece(Text text, int start, int length) {
+            this.text = text;
+            this.start = start;
+            this.length = length;
+        }
+
+        boolean isWholeString() {
+            return text instanceof StringText && start == 0 && length == text.length();
+        }
+
+        void appendTo(StringBuilder builder, int from, int count) {
+            text.appendTo(builder, start + from, count);
+        }
+
+        void getChars(int from, int count, char[] dest, int destPos) {
+            text.getChars(start + from, start + from + count, dest, destPos);
+        }
+    }
+
+    /**
+     * What pieces point into.
+     */
+    private interface Text extends CharSequence {
+
+        /**
+         * The chars, for segments to point at; callers mustn't change them.
+         */
+        char[] array();
+
+        void getChars(int start, int end, char[] dest, int destPos);
+
+        void appendTo(StringBuilder builder, int start, int count);
+    }
+
+    /**
+     * An inserted String, kept as-is. The chars a segment needs are made the first time one is asked for,
+     * and shared by every piece of it from then on.
+     */
+    private static final class StringText implements Text {
+
+        private final String string;
+        private char[] chars;
+
+        StringText(String string) {
+            this.string = string;
+        }
+
+        @Override
+        public char[] array() {
+
+            if (chars == null) {
+                chars = string.toCharArray();
+            }
+
+            return chars;
+        }
+
+        @Override
+        public void getChars(int start, int end, char[] dest, int destPos) {
+            string.getChars(start, end, dest, destPos);
+        }
+
+        @Override
+        public void appendTo(StringBuilder builder, int start, int count) {
+            builder.append(string, start, start + count);
+        }
+
+        @Override
+        public int length() {
+            return string.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return string.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return string.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return string;
+        }
+    }
+
+    /**
+     * Typed text. Chars are only ever added, so pieces pointing into it stay valid.
+     */
+    private static final class AppendBuffer implements Text {
+
+        private char[] chars = new char[1024];
+        private int length;
+
+        void append(String str) {
+
+            if (length + str.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + str.length()));
+            }
+
+            str.getChars(0, str.length(), chars, length);
+            length += str.length();
+        }
+
+        /**
+         * Growing replaces the array rather than changing it, so segments pointing at an old one stay right.
+         */
+        @Override
+        public char[] array() {
+            return chars;
+        }
+
+        @Override
+        public void getChars(int start, int end, char[] dest, int destPos) {
+            System.arraycopy(chars, start, dest, destPos, end - start);
+        }
+
+        @Override
+        public void appendTo(StringBuilder builder, int start, int count) {
+            builder.append(chars, start, count);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+
+    /**
+     * The positions handed out, sorted by offset.
+     * <p/>
+     * Like {@link javax.swing.text.GapContent}, offsets past a gap are stored shifted, so an insert or removal
+     * at the gap only changes the shift, not every position after it. Moving the gap re-stores just the positions
+     * it moves over, so typing along in one spot costs nothing however many lines follow.
+     * <p/>
+     * New positions are collected unsorted and merged in at the next edit; loading a document makes a couple
+     * of positions per line, and sorting them in one at a time would be quadratic. Positions nobody holds
+     * anymore are dropped at the same time.
+     */
+    private static final class Marks {
+
+        /**
+         * Stored values from here up are past the gap. Offsets are ints, so nothing before the gap gets near it.
+         */
+        private static final long AFTER_GAP = 1L << 40;
+
+        /**
+         * A new position goes straight into place if no more than this many have to move up for it.
+         */
+        private static final int IN_PLACE_MAX = 64;
+
+        private final ReferenceQueue<Position> queue = new ReferenceQueue<Position>();
+
+        private Mark[] sorted = new Mark[64];
+        private int sortedCount;
+        private final List<Mark> added = new ArrayList<Mark>();
+        private int cleared;
+
+        /**
+         * Offsets from gapStart on are stored as offset + shift. Inserts at the gap take from the shift,
+         * removals add to it; it starts high enough that it never gets down to AFTER_GAP.
+         */
+        private int gapStart;
+        private long shift = AFTER_GAP * 2;
+
+        int offset(long value) {
+            return (int) (value < AFTER_GAP ? value : value - shift);
+        }
+
+        private long value(int offset) {
+            return offset < gapStart ? offset : offset + shift;
+        }
+
+        Position create(int offset) {
+
+            StickyPosition position = new StickyPosition(this);
+            Mark mark = new Mark(position, queue, value(offset));
+            position.mark = mark;
+
+            // Most positions are made in order, near the end (just before the end-of-text one, when loading lines),
+            // so they can go straight in.
+            int index = added.isEmpty() ? firstAtOrAfter(mark.value + 1) : -1;
+
+            if (index >= 0 && sortedCount - index <= IN_PLACE_MAX) {
+
+                if (sortedCount == sorted.length) {
+                    sorted = Arrays.copyOf(sorted, sorted.length * 2);
+                }
+
+                System.arraycopy(sorted, index, sorted, index + 1, sortedCount - index);
+                sorted[index] = mark;
+                sortedCount++;
+
+            } else {
+                added.add(mark);
+            }
+
+            return position;
+        }
+
+        void insert(int where, int count) {
+
+            tidy();
+
+            // A position at 0 stays put; everything else at or after the insert moves along.
+            moveGap(Math.max(where, 1));
+            shift -= count;
+
+            // Nothing is stored for the inserted chars yet, so the gap can move past them for free.
+            gapStart += count;
+        }
+
+        void remove(int where, int count) {
+
+            tidy();
+            moveGap(where);
+
+            int first = firstAtOrAfter(where + shift);
+            int end = firstAtOrAfter(where + count + shift);
+
+            shift += count;
+
+            // Positions inside the removed text collapse to where it was.
+            for (int index = first; index < end; index++) {
+                sorted[index].value = where + shift;
+            }
+        }
+
+        /**
+         * The positions in [where, where + count] and their offsets, before that text is removed,
+         * so undoing the removal can put them back.
+         */
+        SavedMarks save(int where, int count) {
+
+            tidy();
+
+            int first = firstAtOrAfter(value(where));
+            int end = firstAtOrAfter(value(where + count) + 1);
+
+            Mark[] savedMarks = Arrays.copyOfRange(sorted, first, end);
+            int[] savedOffsets = new int[savedMarks.length];
+
+            for (int index = 0; index < savedMarks.length; index++) {
+                savedOffsets[index] = offset(savedMarks[index].value);
+            }
+
+            return new SavedMarks(where, count, savedMarks, savedOffsets);
+        }
+
+        /**
+         * Puts saved positions back, once their text is back. Ones that have since moved out of the text
+         * they were saved from are left alone.
+         */
+        void restore(SavedMarks saved) {
+
+            tidy();
+
+            int rangeEnd = saved.where + saved.count;
+            int first = firstAtOrAfter(value(saved.where));
+            int end = firstAtOrAfter(value(rangeEnd) + 1);
+
+            for (int index = 0; index < saved.marks.length; index++) {
+
+                Mark mark = saved.marks[index];
+                int offset = offset(mark.value);
+
+                if (offset >= saved.where && offset <= rangeEnd) {
+                    mark.value = value(saved.offsets[index]);
+                }
+            }
+
+            // Everything moved stayed within [first, end), but maybe not in order.
+            Arrays.sort(sorted, first, end, MARK_ORDER);
+        }
+
+        /**
+         * Re-stores the positions between the old and new gap starts.
+         */
+        private void moveGap(int newStart) {
+
+            if (newStart < gapStart) {
+
+                int end = firstAtOrAfter(gapStart);
+                for (int index = firstAtOrAfter(newStart); index < end; index++) {
+                    sorted[index].value += shift;
+                }
+
+            } else if (newStart > gapStart) {
+
+                int end = firstAtOrAfter(newStart + shift);
+                for (int index = firstAtOrAfter(gapStart + shift); index < end; index++) {
+                    sorted[index].value -= shift;
+                }
+            }
+
+            gapStart = newStart;
+        }
+
+        private int firstAtOrAfter(long value) {
+
+            int low = 0;
+            int high = sortedCount;
+
+            while (low < high) {
+
+                int mid = (low + high) >>> 1;
+
+                if (sorted[mid].value < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+
+        /**
+         * Merges in new positions, and drops ones that were garbage collected if there are enough of them.
+         */
+        private void tidy() {
+
+            while (queue.poll() != null) {
+                cleared++;
+            }
+
+            if (added.isEmpty() && cleared < sortedCount / 2 + 64) {
+                return;
+            }
+
+            Mark[] newMarks = added.toArray(new Mark[added.size()]);
+            Arrays.sort(newMarks, MARK_ORDER);
+
+            Mark[] merged = new Mark[Math.max(64, sortedCount + newMarks.length)];
+            int count = 0;
+            int oldIndex = 0;
+            int newIndex = 0;
+
+            while (oldIndex < sortedCount || newIndex < newMarks.length) {
+
+                Mark mark = newIndex == newMarks.length
+                    || (oldIndex < sortedCount && sorted[oldIndex].value <= newMarks[newIndex].value)
+                    ? sorted[oldIndex++] : newMarks[newIndex++];
+
+                if (mark.get() != null) {
+                    merged[count++] = mark;
+                }
+            }
+
+            sorted = merged;
+            sortedCount = count;
+            added.clear();
+            cleared = 0;
+        }
+
+        private static final Comparator<Mark> MARK_ORDER = new Comparator<Mark>() {
+            @Override
+            public int compare(Mark o1, Mark o2) {
+                return o1.value < o2.value ? -1 : o1.value == o2.value ? 0 : 1;
+            }
+        };
+    }
+
+    /**
+     * Positions from the text an edit removed, as {@link Marks#save} found them.
+     */
+    private static final class SavedMarks {
+
+        private final int where;
+        private final int count;
+        private final Mark[] marks;
+        private final int[] offsets;
+
+        SavedMarks(int where, int count, Mark[] marks, int[] offsets) {
+            this.where = where;
+            this.count = count;
+            this.marks = marks;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * Where a position is, as stored by {@link Marks}. It's referenced weakly, so positions nobody holds go away.
+     */
+    private static final class Mark extends WeakReference<Position> {
+
+        private long value;
+
+        Mark(StickyPosition position, ReferenceQueue<Position> queue, long value) {
+            super(position, queue);
+            this.value = value;
+        }
+    }
+
+    private static final class StickyPosition implements Position {
+
+        private final Marks marks;
+        private Mark mark;
+
+        StickyPosition(Marks marks) {
+            this.marks = marks;
+        }
+
+        @Override
+        public int getOffset() {
+            return marks.offset(mark.value);
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toString(getOffset());
+        }
+    }
+
+    private final class InsertUndo extends AbstractUndoableEdit {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int offset;
+        private final int length;
+        private List<Piece> removed;
+        private SavedMarks saved;
+
+        InsertUndo(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+
+            super.undo();
+
+            synchronized (PieceTableContent.this) {
+                saved = marks.save(offset, length);
+                removed = removePieces(offset, length);
+            }
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+
+            super.redo();
+
+            synchronized (PieceTableContent.this) {
+                insertPieces(offset, removed);
+                marks.restore(saved);
+                removed = null;
+                saved = null;
+            }
+        }
+    }
+
+    private final class RemoveUndo extends AbstractUndoableEdit {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int offset;
+        private final int length;
+        private List<Piece> removed;
+        private SavedMarks saved;
+
+        RemoveUndo(int offset, List<Piece> removed, SavedMarks saved) {
+
+            this.offset = offset;
+            this.removed = removed;
+            this.saved = saved;
+
+            int count = 0;
+            for (Piece piece : removed) {
+                count += piece.length;
+            }
+
+            this.length = count;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+
+            super.undo();
+
+            synchronized (PieceTableContent.this) {
+                insertPieces(offset, removed);
+                marks.restore(saved);
+                removed = null;
+                saved = null;
+            }
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+
+            super.redo();
+
+            synchronized (PieceTableContent.this) {
+                saved = marks.save(offset, length);
+                removed = removePieces(offset, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.terheyden.stringtools;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A limit on how long a regex operation may run, so a pathological regex (e.g. "(a|a)*?b" against a long run of 'a's)
+ * fails fast instead of backtracking forever.
+ * <p/>
+ * java.util.regex can't be interrupted, but it reads its input one charAt() at a time, so the input is wrapped
+ * in a CharSequence that counts reads. Every read counts as a step; every {@link #CLOCK_CHECK_INTERVAL} steps
+ * it also checks the clock. When either limit is passed, matching stops with a {@link RegexBudgetExceededException}.
+ * Only matching is charged: {@link Guard#replaceAll} copies the text between matches, and the groups the replacement
+ * refers to, from the text itself, so building the result is free.
+ * <p/>
+ * A budget is just the limits. Each operation calls {@link #start()} to get its own {@link Guard}, so one budget
+ * can be shared by any number of operations and threads.
+ * <pre>
+ *     RegexBudget budget = RegexBudget.ofMillis(250);
+ *     String result = StringTools.regexReplaceText(text, userRegex, "", budget);
+ * </pre>
+ */
+public final class RegexBudget {
+
+    /**
+     * No limits; the input isn't even wrapped.
+     */
+    public static final RegexBudget UNLIMITED = new RegexBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    /**
+     * Reading the clock costs far more than a charAt(), so only do it every this many steps.
+     */
+    static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    private final long maxMillis;
+    private final long maxSteps;
+
+    private RegexBudget(long maxMillis, long maxSteps) {
+
+        if (maxMillis <= 0 || maxSteps <= 0) {
+            throw new IllegalArgumentException("Regex budget must be positive: " + maxMillis + " ms, " + maxSteps + " steps");
+        }
+
+        this.maxMillis = maxMillis;
+        this.maxSteps = maxSteps;
+    }
+
+    public static RegexBudget ofMillis(long maxMillis) {
+        return new RegexBudget(maxMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * A budget that doesn't depend on the clock, so the same input always passes or always fails.
+     * @param maxSteps how many chars the regex engine may read, counting re-reads while backtracking
+     */
+    public static RegexBudget ofSteps(long maxSteps) {
+        return new RegexBudget(Long.MAX_VALUE, maxSteps);
+    }
+
+    /**
+     * Whichever limit is hit first.
+     */
+    public static RegexBudget of(long maxMillis, long maxSteps) {
+        return new RegexBudget(maxMillis, maxSteps);
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    public boolean isUnlimited() {
+        return maxMillis == Long.MAX_VALUE && maxSteps == Long.MAX_VALUE;
+    }
+
+    /**
+     * Starts the clock for one operation.
+     */
+    public Guard start() {
+        return new Guard(this);
+    }
+
+    @Override
+    public String toString() {
+
+        if (isUnlimited()) {
+            return "RegexBudget[unlimited]";
+        }
+
+        return "RegexBudget[" + (maxMillis == Long.MAX_VALUE ? "" : maxMillis + " ms")
+            + (maxMillis != Long.MAX_VALUE && maxSteps != Long.MAX_VALUE ? ", " : "")
+            + (maxSteps == Long.MAX_VALUE ? "" : maxSteps + " steps") + "]";
+    }
+
+    /**
+     * The running meter for one operation. Everything it wraps draws from the same budget.
+     * Not thread-safe; use one guard per thread.
+     */
+    public static final class Guard {
+
+        private final RegexBudget budget;
+        private final long startNanos;
+        private final long deadlineNanos;
+
+        private long steps;
+        private long nextClockCheck = CLOCK_CHECK_INTERVAL;
+
+        private Guard(RegexBudget budget) {
+
+            this.budget = budget;
+            this.startNanos = System.nanoTime();
+
+            // Don't overflow nanoTime arithmetic for huge millis.
+            long maxNanos = budget.maxMillis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE / 2 : budget.maxMillis * 1000000;
+            this.deadlineNanos = startNanos + maxNanos;
+        }
+
+        public RegexBudget getBudget() {
+            return budget;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        public long getElapsedMillis() {
+            return (System.nanoTime() - startNanos) / 1000000;
+        }
+
+        /**
+         * Wraps text so the regex engine's reads count against this guard.
+         * An unlimited budget returns the text as-is.
+         */
+        public CharSequence wrap(CharSequence text) {
+            return budget.isUnlimited() ? text : new GuardedText(text, 0, text.length(), this);
+        }
+
+        /**
+         * Like pattern.matcher(text).replaceAll(replacement), with the same "$1", "${name}" and "\\" rules
+         * for the replacement, but only the matching is charged to this guard; Matcher.replaceAll() would
+         * read every char it copies to the result through the wrapper too.
+         */
+        public String replaceAll(Pattern pattern, String text, String replacement) {
+
+            if (budget.isUnlimited()) {
+                return pattern.matcher(text).replaceAll(replacement);
+            }
+
+            Matcher mat = pattern.matcher(wrap(text));
+
+            if (!mat.find()) {
+                return text;
+            }
+
+            StringBuilder builder = new StringBuilder(text.length() + 16);
+            int copied = 0;
+
+            do {
+                builder.append(text, copied, mat.start());
+                appendReplacement(builder, mat, text, replacement);
+                copied = mat.end();
+            } while (mat.find());
+
+            return builder.append(text, copied, text.length()).toString();
+        }
+
+        /**
+         * Counts one step.
+         * @throws RegexBudgetExceededException if the budget has run out
+         */
+        void step() {
+
+            steps++;
+
+            if (steps > budget.maxSteps) {
+                throw new RegexBudgetExceededException(budget, steps, getElapsedMillis());
+            }
+
+            if (steps >= nextClockCheck) {
+
+                nextClockCheck = steps + CLOCK_CHECK_INTERVAL;
+
+                if (System.nanoTime() - deadlineNanos > 0) {
+                    throw new RegexBudgetExceededException(budget, steps, getElapsedMillis());
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the replacement for the matcher's current match, the way Matcher.appendReplacement() does,
+     * but with groups copied from text, which the matcher is matching a wrapped copy of.
+     */
+    private static void appendReplacement(StringBuilder builder, Matcher mat, String text, String replacement) {
+
+        int pos = 0;
+
+        while (pos < replacement.length()) {
+
+            char c = replacement.charAt(pos++);
+
+            if (c == '\\') {
+
+                if (pos == replacement.length()) {
+                    throw new IllegalArgumentException("character to be escaped is missing");
+                }
+
+                builder.append(replacement.charAt(pos++));
+
+            } else if (c == '$') {
+
+                if (pos == replacement.length()) {
+                    throw new IllegalArgumentException("Illegal group reference: group index is missing");
+                }
+
+                int groupStart;
+                int groupEnd;
+
+                if (replacement.charAt(pos) == '{') {
+
+                    int close = replacement.indexOf('}', pos);
+
+                    if (close < 0) {
+                        throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+                    }
+
+                    String name = replacement.substring(pos + 1, close);
+                    groupStart = mat.start(name);
+                    groupEnd = mat.end(name);
+                    pos = close + 1;
+
+                } else {
+
+                    int group = replacement.charAt(pos) - '0';
+
+                    if (group < 0 || group > 9) {
+                        throw new IllegalArgumentException("Illegal group reference");
+                    }
+
+                    pos++;
+
+                    // Take more digits for as long as they still make a group that exists.
+                    while (pos < replacement.length()) {
+
+                        int digit = replacement.charAt(pos) - '0';
+
+                        if (digit < 0 || digit > 9 || group * 10 + digit > mat.groupCount()) {
+                            break;
+                        }
+
+                        group = group * 10 + digit;
+                        pos++;
+                    }
+
+                    groupStart = mat.start(group);
+                    groupEnd = mat.end(group);
+                }
+
+                // A group that didn't take part in the match adds nothing.
+                if (groupStart >= 0) {
+                    builder.append(text, groupStart, groupEnd);
+                }
+
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * A view of text[start, end) that charges the guard for every char read.
+     */
+    private static final class GuardedText implements CharSequence {
+
+        private final CharSequence text;
+        private final int start;
+        private final int end;
+        private final Guard guard;
+
+        GuardedText(CharSequence text, int start, int end, Guard guard) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.guard = guard;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            guard.step();
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int subStart, int subEnd) {
+
+            if (subStart < 0 || subEnd > end - start || subStart > subEnd) {
+                throw new IndexOutOfBoundsException("start " + subStart + ", end " + subEnd + ", length " + (end - start));
+            }
+
+            return new GuardedText(text, start + subStart, start + subEnd, guard);
+        }
+
+        @Override
+        public String toString() {
+            // Copying the text out isn't matching, so it's free.
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.terheyden.stringtools;
+
+/**
+ * Thrown when a regex operation runs past its {@link RegexBudget}. The operation's result is discarded;
+ * nothing is partially applied.
+ */
+public class RegexBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RegexBudget budget;
+    private final long steps;
+    private final long elapsedMillis;
+
+    public RegexBudgetExceededException(RegexBudget budget, long steps, long elapsedMillis) {
+
+        super(String.format("Regex ran past its budget of %s (%d steps, %d ms)",
+            budget.toString().replace("RegexBudget", ""), steps, elapsedMillis));
+
+        this.budget = budget;
+        this.steps = steps;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public RegexBudget getBudget() {
+        return budget;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
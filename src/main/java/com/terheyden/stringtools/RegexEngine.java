@@ -0,0 +1,25 @@
+package com.terheyden.stringtools;
+
+/**
+ * Which regex engine a line filter runs on.
+ */
+public enum RegexEngine {
+
+    /**
+     * LINEAR if the regex qualifies (see {@link LinearRegex#isSupported(String)}), otherwise BACKTRACKING.
+     * Both give the same answers, so this is always safe. Regexes that are just literals skip the regex
+     * engine entirely, and lines missing a literal that every match needs are skipped without running it.
+     */
+    AUTO,
+
+    /**
+     * java.util.regex. Supports everything, but some regexes take exponential time.
+     */
+    BACKTRACKING,
+
+    /**
+     * {@link LinearRegex}: time linear in the length of the text. Regexes it can't run are rejected with
+     * an IllegalArgumentException.
+     */
+    LINEAR
+}
@@ -0,0 +1,329 @@
+package com.terheyden.stringtools;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * What a regex says about literal strings, so lines can be filtered without running the regex:
+ * <ul>
+ *     <li>{@link #getExact()}: every string the regex matches, when there are few enough to list.
+ *     "ERROR|WARN" is exactly {"ERROR", "WARN"}, so "contains a match" is "contains one of them".</li>
+ *     <li>{@link #getRequired()}: strings one of which must be in any text that contains a match.
+ *     Every match of "(ERROR|WARN) .* timed out" contains " timed out", so a line without it can be skipped.</li>
+ * </ul>
+ * Only BMP, non-surrogate chars make it into literals, so a char-by-char search finds exactly what
+ * java.util.regex would. A regex we can't make sense of (inline flags, say) just has no literals.
+ */
+final class RegexLiterals {
+
+    /**
+     * Most strings we'll list in a set before giving up on it.
+     */
+    private static final int MAX_STRINGS = 64;
+
+    /**
+     * Largest [class] we'll expand into one string per char.
+     */
+    private static final int MAX_CLASS_CHARS = 10;
+
+    /**
+     * Most copies of an optional or counted repeat we'll expand, as in "colou?r".
+     */
+    private static final int MAX_REPEAT_COPIES = 4;
+
+    private static final RegexLiterals NONE = new RegexLiterals(null, null);
+
+    private final Set<String> exact;
+    private final Set<String> required;
+
+    private RegexLiterals(Set<String> exact, Set<String> required) {
+        this.exact = exact;
+        this.required = required;
+    }
+
+    static RegexLiterals analyze(String regex) {
+
+        RegexNode root;
+
+        try {
+            root = RegexParser.parseForAnalysis(regex);
+        } catch (RegexParser.UnsupportedException e) {
+            return NONE;
+        }
+
+        Info info = analyze(root);
+        return new RegexLiterals(info.exact, info.best());
+    }
+
+    /**
+     * @return every string the regex can match, or null if it's not a short list of literals.
+     *     May contain "", for a regex like "a?" that can match nothing.
+     */
+    Set<String> getExact() {
+        return exact == null ? null : Collections.unmodifiableSet(exact);
+    }
+
+    /**
+     * @return strings one of which any match must contain, or null if there aren't any useful ones
+     */
+    Set<String> getRequired() {
+        return required == null ? null : Collections.unmodifiableSet(required);
+    }
+
+    /**
+     * Length of the shortest required string; 0 if there are none.
+     */
+    int getRequiredLength() {
+        return minLength(required);
+    }
+
+    @Override
+    public String toString() {
+        return "RegexLiterals[exact " + exact + ", required " + required + "]";
+    }
+
+    /**
+     * What's known about one node.
+     */
+    private static final class Info {
+
+        // Every string the node matches, or null if unknown or too many.
+        final Set<String> exact;
+
+        // One of these is in every match, or null.
+        final Set<String> required;
+
+        // Matches no text at all, just a position (^, $, \b, lookaround).
+        final boolean zeroWidth;
+
+        Info(Set<String> exact, Set<String> required, boolean zeroWidth) {
+            this.exact = exact;
+            this.required = required;
+            this.zeroWidth = zeroWidth;
+        }
+
+        /**
+         * The most useful strings we know one of which is in every match.
+         */
+        Set<String> best() {
+            return better(exact, required);
+        }
+    }
+
+    private static final Info UNKNOWN = new Info(null, null, false);
+    private static final Info ZERO_WIDTH = new Info(null, null, true);
+
+    private static Info analyze(RegexNode node) {
+
+        if (node instanceof RegexNode.Chars) {
+            Set<String> exact = expand(((RegexNode.Chars) node).ranges);
+            return new Info(exact, null, false);
+        }
+
+        if (node instanceof RegexNode.Concat) {
+            return analyzeConcat((RegexNode.Concat) node);
+        }
+
+        if (node instanceof RegexNode.Alt) {
+            return analyzeAlt((RegexNode.Alt) node);
+        }
+
+        if (node instanceof RegexNode.Repeat) {
+            return analyzeRepeat((RegexNode.Repeat) node);
+        }
+
+        if (node instanceof RegexNode.Anchor) {
+            return ZERO_WIDTH;
+        }
+
+        return ((RegexNode.Opaque) node).zeroWidth ? ZERO_WIDTH : UNKNOWN;
+    }
+
+    /**
+     * Runs of children with exact strings multiply out into longer literals: "ab[cd]" is {"abc", "abd"}.
+     * Zero-width children don't break a run, since they don't consume anything.
+     */
+    private static Info analyzeConcat(RegexNode.Concat concat) {
+
+        Set<String> all = Collections.singleton("");
+        Set<String> run = Collections.singleton("");
+        Set<String> best = null;
+
+        for (RegexNode child : concat.nodeList) {
+
+            Info info = analyze(child);
+
+            if (info.zeroWidth) {
+                // "^abc" matches "abc", but only at the start; it's not just a literal anymore.
+                all = null;
+                continue;
+            }
+
+            best = better(best, info.required);
+
+            if (info.exact == null) {
+                all = null;
+                best = better(best, run);
+                run = Collections.singleton("");
+                continue;
+            }
+
+            all = all == null ? null : cross(all, info.exact);
+
+            Set<String> longerRun = cross(run, info.exact);
+            if (longerRun == null) {
+                best = better(best, run);
+                longerRun = info.exact;
+            }
+            run = longerRun;
+        }
+
+        return new Info(all, better(best, run), false);
+    }
+
+    private static Info analyzeAlt(RegexNode.Alt alt) {
+
+        Set<String> exact = new LinkedHashSet<String>();
+        Set<String> required = new LinkedHashSet<String>();
+
+        for (RegexNode child : alt.nodeList) {
+
+            Info info = analyze(child);
+            Set<String> childBest = info.best();
+
+            exact = exact == null || info.exact == null ? null : union(exact, info.exact);
+            required = required == null || childBest == null ? null : union(required, childBest);
+        }
+
+        return new Info(exact, required, false);
+    }
+
+    private static Info analyzeRepeat(RegexNode.Repeat repeat) {
+
+        Info info = analyze(repeat.node);
+
+        if (info.zeroWidth) {
+            return info;
+        }
+
+        // Zero copies would match "", so nothing's required.
+        Set<String> required = repeat.min > 0 ? info.best() : null;
+
+        // A possessive repeat won't give copies back for what follows it, so the regex matches less than
+        // the expansion would say. What's required still is, since possessive matches are greedy ones too.
+        if (info.exact == null || repeat.possessive
+            || repeat.max == RegexNode.INFINITE || repeat.max > MAX_REPEAT_COPIES) {
+            return new Info(null, required, false);
+        }
+
+        // Expand: the union of min..max copies.
+        Set<String> exact = new LinkedHashSet<String>();
+        Set<String> copies = Collections.singleton("");
+
+        for (int count = 0; count <= repeat.max && copies != null && exact != null; count++) {
+            if (count >= repeat.min) {
+                exact = union(exact, copies);
+            }
+            copies = count < repeat.max ? cross(copies, info.exact) : copies;
+        }
+
+        return new Info(copies == null ? null : exact, required, false);
+    }
+
+    /**
+     * A small class as one string per char, or null.
+     */
+    private static Set<String> expand(int[] ranges) {
+
+        int count = 0;
+        for (int index = 0; index < ranges.length; index += 2) {
+            count += ranges[index + 1] - ranges[index] + 1;
+        }
+
+        if (count > MAX_CLASS_CHARS) {
+            return null;
+        }
+
+        Set<String> strings = new LinkedHashSet<String>();
+
+        for (int index = 0; index < ranges.length; index += 2) {
+            for (int codePoint = ranges[index]; codePoint <= ranges[index + 1]; codePoint++) {
+
+                // A surrogate pair is two chars to us, but one to the regex; leave them to the regex.
+                if (codePoint > Character.MAX_VALUE || Character.isSurrogate((char) codePoint)) {
+                    return null;
+                }
+
+                strings.add(String.valueOf((char) codePoint));
+            }
+        }
+
+        return strings;
+    }
+
+    /**
+     * Every a + b, or null if that's too many.
+     */
+    private static Set<String> cross(Set<String> first, Set<String> second) {
+
+        if ((long) first.size() * second.size() > MAX_STRINGS) {
+            return null;
+        }
+
+        Set<String> strings = new LinkedHashSet<String>();
+        for (String a : first) {
+            for (String b : second) {
+                strings.add(a + b);
+            }
+        }
+
+        return strings;
+    }
+
+    /**
+     * Adds second to first, or null if that's too many.
+     */
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        first.addAll(second);
+        return first.size() > MAX_STRINGS ? null : first;
+    }
+
+    /**
+     * The more selective set: the one whose shortest string is longer, then the one with fewer strings.
+     * Sets that allow "" are useless, so they lose to anything, even null.
+     */
+    private static Set<String> better(Set<String> first, Set<String> second) {
+
+        int firstLength = minLength(first);
+        int secondLength = minLength(second);
+
+        if (firstLength == 0) {
+            return secondLength == 0 ? null : second;
+        }
+
+        if (secondLength == 0 || firstLength > secondLength) {
+            return first;
+        }
+
+        if (secondLength > firstLength) {
+            return second;
+        }
+
+        return first.size() <= second.size() ? first : second;
+    }
+
+    private static int minLength(Set<String> strings) {
+
+        if (strings == null || strings.isEmpty()) {
+            return 0;
+        }
+
+        int min = Integer.MAX_VALUE;
+        for (String string : strings) {
+            min = Math.min(min, string.length());
+        }
+
+        return min;
+    }
+}
@@ -0,0 +1,92 @@
+package com.terheyden.stringtools;
+
+import java.util.List;
+
+/**
+ * A parsed regex, as produced by {@link RegexParser}. {@link LinearRegex} compiles it into an NFA;
+ * {@link RegexLiterals} looks through it for literal strings.
+ */
+abstract class RegexNode {
+
+    /**
+     * The max of a repeat with no upper bound.
+     */
+    static final int INFINITE = -1;
+
+    /**
+     * One code point out of a set, as sorted [lo, hi] ranges.
+     */
+    static final class Chars extends RegexNode {
+
+        final int[] ranges;
+
+        Chars(int[] ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    static final class Concat extends RegexNode {
+
+        final List<RegexNode> nodeList;
+
+        // From \Q...\E, where a quantifier after it would only apply to the last char.
+        final boolean quoted;
+
+        Concat(List<RegexNode> nodeList, boolean quoted) {
+            this.nodeList = nodeList;
+            this.quoted = quoted;
+        }
+    }
+
+    static final class Alt extends RegexNode {
+
+        final List<RegexNode> nodeList;
+
+        Alt(List<RegexNode> nodeList) {
+            this.nodeList = nodeList;
+        }
+    }
+
+    static final class Repeat extends RegexNode {
+
+        final RegexNode node;
+        final int min;
+        final int max;
+
+        // "a*+" and the like; only parsed for analysis.
+        final boolean possessive;
+
+        Repeat(RegexNode node, int min, int max, boolean possessive) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+            this.possessive = possessive;
+        }
+    }
+
+    /**
+     * ^ or $.
+     */
+    static final class Anchor extends RegexNode {
+
+        final boolean begin;
+
+        Anchor(boolean begin) {
+            this.begin = begin;
+        }
+    }
+
+    /**
+     * Something only parsed for analysis (a backreference, lookaround, \b, \p{...}...) that can't be compiled,
+     * and that matches who knows what.
+     */
+    static final class Opaque extends RegexNode {
+
+        // Lookaround and boundaries don't consume any text.
+        final boolean zeroWidth;
+
+        Opaque(boolean zeroWidth) {
+            this.zeroWidth = zeroWidth;
+        }
+    }
+}
@@ -0,0 +1,706 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Parses java.util.regex syntax into {@link RegexNode}s. The regex has already been validated by
+ * Pattern.compile(), so anything odd is reported as unsupported rather than as a syntax error.
+ * <p/>
+ * There are two modes. For compiling, only the regular subset that {@link LinearRegex} can run is accepted.
+ * For analysis, backreferences, lookaround, \b, \p{...} and the like are also accepted, as
+ * {@link RegexNode.Opaque} nodes, so {@link RegexLiterals} can still find the literals around them.
+ */
+final class RegexParser {
+
+    /**
+     * Largest n we'll accept in {n} / {n,m} when compiling, since counted repetitions get expanded.
+     */
+    static final int MAX_REPEAT = 1000;
+
+    static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+    // Java's predefined classes (without UNICODE_CHARACTER_CLASS), as sorted [lo, hi] ranges.
+    private static final int[] DIGIT = { '0', '9' };
+    private static final int[] WORD = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+    private static final int[] SPACE = { '\t', '\r', ' ', ' ' };
+    private static final int[] NOT_LINE_TERMINATOR = complement(new int[] { '\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029 });
+
+    // What a group does, from what follows its "(".
+    private static final int GROUP = 0;
+    private static final int LOOKAROUND = 1;
+    private static final int ATOMIC = 2;
+
+    private final String regex;
+    private final boolean analysis;
+    private int pos;
+
+    private RegexParser(String regex, boolean analysis) {
+        this.regex = regex;
+        this.analysis = analysis;
+    }
+
+    /**
+     * Only what {@link LinearRegex} can compile.
+     */
+    static RegexNode parse(String regex) throws UnsupportedException {
+        return new RegexParser(regex, false).parseAll();
+    }
+
+    /**
+     * Also backreferences, lookaround and the like, as {@link RegexNode.Opaque} nodes.
+     * Inline flags and class unions/intersections are still unsupported.
+     */
+    static RegexNode parseForAnalysis(String regex) throws UnsupportedException {
+        return new RegexParser(regex, true).parseAll();
+    }
+
+    /**
+     * Thrown while parsing a valid regex that uses something we don't support.
+     */
+    static final class UnsupportedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    private RegexNode parseAll() throws UnsupportedException {
+
+        RegexNode root = parseAlt();
+
+        if (pos < regex.length()) {
+            throw new UnsupportedException("unexpected '" + regex.charAt(pos) + "'");
+        }
+
+        return root;
+    }
+
+    private RegexNode parseAlt() throws UnsupportedException {
+
+        List<RegexNode> altList = new ArrayList<RegexNode>();
+        altList.add(parseConcat());
+
+        while (pos < regex.length() && regex.charAt(pos) == '|') {
+            pos++;
+            altList.add(parseConcat());
+        }
+
+        return altList.size() == 1 ? altList.get(0) : new RegexNode.Alt(altList);
+    }
+
+    private RegexNode parseConcat() throws UnsupportedException {
+
+        List<RegexNode> nodeList = new ArrayList<RegexNode>();
+
+        while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+            nodeList.add(parseRepeat());
+        }
+
+        return nodeList.size() == 1 ? nodeList.get(0) : new RegexNode.Concat(nodeList, false);
+    }
+
+    private RegexNode parseRepeat() throws UnsupportedException {
+
+        RegexNode atom = parseAtom();
+
+        if (pos >= regex.length() || !isQuantifier(regex.charAt(pos))) {
+            return atom;
+        }
+
+        if (atom instanceof RegexNode.Anchor) {
+            throw new UnsupportedException("quantified anchor");
+        }
+
+        if (atom instanceof RegexNode.Concat && ((RegexNode.Concat) atom).quoted) {
+            throw new UnsupportedException("quantified \\Q...\\E");
+        }
+
+        int min;
+        int max;
+        char c = regex.charAt(pos++);
+
+        if (c == '*') {
+            min = 0;
+            max = RegexNode.INFINITE;
+        } else if (c == '+') {
+            min = 1;
+            max = RegexNode.INFINITE;
+        } else if (c == '?') {
+            min = 0;
+            max = 1;
+        } else {
+            min = parseNumber();
+            max = min;
+            if (pos < regex.length() && regex.charAt(pos) == ',') {
+                pos++;
+                max = pos < regex.length() && regex.charAt(pos) == '}' ? RegexNode.INFINITE : parseNumber();
+            }
+            expect('}');
+        }
+
+        // Lazy or greedy, there's a match either way. Possessive changes what matches: "a?+a" matches no "a",
+        // since the repeat won't give its "a" back. Any possessive match is also a greedy one, though,
+        // so analysis can still say what a match has to contain, just not list what matches.
+        boolean possessive = false;
+
+        if (pos < regex.length() && regex.charAt(pos) == '?') {
+            pos++;
+        } else if (pos < regex.length() && regex.charAt(pos) == '+') {
+            if (!analysis) {
+                throw new UnsupportedException("possessive quantifier");
+            }
+            possessive = true;
+            pos++;
+        }
+
+        if (pos < regex.length() && isQuantifier(regex.charAt(pos))) {
+            throw new UnsupportedException("stacked quantifiers");
+        }
+
+        return new RegexNode.Repeat(atom, min, max, possessive);
+    }
+
+    private static boolean isQuantifier(char c) {
+        return c == '*' || c == '+' || c == '?' || c == '{';
+    }
+
+    private int parseNumber() throws UnsupportedException {
+
+        int numStart = pos;
+        while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '9') {
+            pos++;
+        }
+
+        // Analysis doesn't expand anything, so it only has to fit in an int.
+        if (pos == numStart || pos - numStart > (analysis ? 9 : 4)) {
+            throw new UnsupportedException("repetition count");
+        }
+
+        int number = Integer.parseInt(regex.substring(numStart, pos));
+
+        if (!analysis && number > MAX_REPEAT) {
+            throw new UnsupportedException("repetition count over " + MAX_REPEAT);
+        }
+
+        return number;
+    }
+
+    private void expect(char c) throws UnsupportedException {
+
+        if (pos >= regex.length() || regex.charAt(pos) != c) {
+            throw new UnsupportedException("expected '" + c + "'");
+        }
+
+        pos++;
+    }
+
+    private RegexNode parseAtom() throws UnsupportedException {
+
+        char c = regex.charAt(pos);
+
+        switch (c) {
+
+            case '(':
+                pos++;
+                int groupType = parseGroupPrefix();
+                RegexNode group = parseAlt();
+                expect(')');
+                if (groupType == LOOKAROUND) {
+                    return new RegexNode.Opaque(true);
+                }
+                return groupType == ATOMIC ? new RegexNode.Opaque(false) : group;
+
+            case '[':
+                return parseClassNode();
+
+            case '.':
+                pos++;
+                return new RegexNode.Chars(NOT_LINE_TERMINATOR);
+
+            case '^':
+                pos++;
+                return new RegexNode.Anchor(true);
+
+            case '$':
+                pos++;
+                return new RegexNode.Anchor(false);
+
+            case '\\':
+                if (regex.startsWith("\\Q", pos)) {
+                    return parseQuote();
+                }
+                if (analysis) {
+                    RegexNode opaque = parseOpaqueEscape();
+                    if (opaque != null) {
+                        return opaque;
+                    }
+                }
+                return new RegexNode.Chars(parseEscape());
+
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+            case ')':
+            case '|':
+                throw new UnsupportedException("unexpected '" + c + "'");
+
+            default:
+                return new RegexNode.Chars(single(nextCodePoint()));
+        }
+    }
+
+    /**
+     * Skips "?:" or "?&lt;name&gt;", or when analyzing, the lookaround and atomic group prefixes.
+     * Anything else after "(?" (mostly inline flags) isn't supported.
+     */
+    private int parseGroupPrefix() throws UnsupportedException {
+
+        if (pos >= regex.length() || regex.charAt(pos) != '?') {
+            return GROUP;
+        }
+
+        if (regex.startsWith("?:", pos)) {
+            pos += 2;
+            return GROUP;
+        }
+
+        if (regex.startsWith("?<", pos) && pos + 2 < regex.length() && Character.isLetter(regex.charAt(pos + 2))) {
+
+            int nameEnd = regex.indexOf('>', pos);
+
+            if (nameEnd < 0) {
+                throw new UnsupportedException("group name");
+            }
+
+            pos = nameEnd + 1;
+            return GROUP;
+        }
+
+        if (analysis) {
+
+            for (String prefix : new String[] { "?=", "?!", "?<=", "?<!" }) {
+                if (regex.startsWith(prefix, pos)) {
+                    pos += prefix.length();
+                    return LOOKAROUND;
+                }
+            }
+
+            if (regex.startsWith("?>", pos)) {
+                pos += 2;
+                return ATOMIC;
+            }
+        }
+
+        throw new UnsupportedException("special group");
+    }
+
+    private RegexNode parseQuote() throws UnsupportedException {
+
+        pos += 2;
+
+        int quoteEnd = regex.indexOf("\\E", pos);
+        if (quoteEnd < 0) {
+            quoteEnd = regex.length();
+        }
+
+        List<RegexNode> nodeList = new ArrayList<RegexNode>();
+        while (pos < quoteEnd) {
+            nodeList.add(new RegexNode.Chars(single(nextCodePoint())));
+        }
+
+        pos = Math.min(quoteEnd + 2, regex.length());
+        return new RegexNode.Concat(nodeList, true);
+    }
+
+    /**
+     * A [class]. When analyzing, one we can't parse (\p{...} inside it, say) still matches a single char
+     * of some sort, so it's skipped over as opaque.
+     */
+    private RegexNode parseClassNode() throws UnsupportedException {
+
+        int classStart = pos;
+
+        try {
+            return new RegexNode.Chars(parseClass());
+        } catch (UnsupportedException e) {
+
+            if (!analysis) {
+                throw e;
+            }
+
+            pos = classStart;
+            skipClass();
+            return new RegexNode.Opaque(false);
+        }
+    }
+
+    /**
+     * Parses [...] into sorted ranges.
+     */
+    private int[] parseClass() throws UnsupportedException {
+
+        pos++;
+
+        boolean negate = false;
+        if (pos < regex.length() && regex.charAt(pos) == '^') {
+            negate = true;
+            pos++;
+        }
+
+        List<int[]> rangeList = new ArrayList<int[]>();
+        boolean first = true;
+
+        while (true) {
+
+            if (pos >= regex.length()) {
+                throw new UnsupportedException("unclosed class");
+            }
+
+            char c = regex.charAt(pos);
+
+            if (c == ']') {
+                if (first) {
+                    throw new UnsupportedException("']' first in class");
+                }
+                pos++;
+                break;
+            }
+
+            if (c == '[' || regex.startsWith("&&", pos)) {
+                throw new UnsupportedException("class union or intersection");
+            }
+
+            int[] item;
+
+            if (c == '\\') {
+                if (regex.startsWith("\\Q", pos)) {
+                    throw new UnsupportedException("\\Q in class");
+                }
+                item = parseEscape();
+            } else {
+                if (c == '-' && !first && !(pos + 1 < regex.length() && regex.charAt(pos + 1) == ']')) {
+                    throw new UnsupportedException("'-' in class");
+                }
+                item = single(nextCodePoint());
+            }
+
+            // A range?
+            if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+
+                pos++;
+
+                if (item.length != 2 || item[0] != item[1] || regex.charAt(pos) == '[') {
+                    throw new UnsupportedException("class range");
+                }
+
+                int[] rangeEnd = regex.charAt(pos) == '\\' ? parseEscape() : single(nextCodePoint());
+
+                if (rangeEnd.length != 2 || rangeEnd[0] != rangeEnd[1] || rangeEnd[0] < item[0]) {
+                    throw new UnsupportedException("class range");
+                }
+
+                item = new int[] { item[0], rangeEnd[0] };
+            }
+
+            rangeList.add(item);
+            first = false;
+        }
+
+        int[] union = union(rangeList);
+        return negate ? complement(union) : union;
+    }
+
+    /**
+     * Moves past a [class], nested classes and all, without making sense of it.
+     */
+    private void skipClass() throws UnsupportedException {
+
+        int depth = 0;
+
+        while (pos < regex.length()) {
+
+            char c = regex.charAt(pos);
+
+            if (c == '\\') {
+                if (regex.startsWith("\\Q", pos)) {
+                    throw new UnsupportedException("\\Q in class");
+                }
+                pos += 2;
+                continue;
+            }
+
+            if (c == '[') {
+                depth++;
+                pos++;
+                // A ']' right after the '[' (or "[^") is a literal.
+                if (pos < regex.length() && regex.charAt(pos) == '^') {
+                    pos++;
+                }
+                if (pos < regex.length() && regex.charAt(pos) == ']') {
+                    pos++;
+                }
+                continue;
+            }
+
+            pos++;
+
+            if (c == ']' && --depth == 0) {
+                return;
+            }
+        }
+
+        throw new UnsupportedException("unclosed class");
+    }
+
+    /**
+     * When analyzing, the escapes that aren't a single code point or predefined class: boundaries,
+     * backreferences, \p{...} and friends. Null if it's an ordinary escape.
+     */
+    private RegexNode parseOpaqueEscape() throws UnsupportedException {
+
+        if (pos + 1 >= regex.length()) {
+            return null;
+        }
+
+        char c = regex.charAt(pos + 1);
+
+        switch (c) {
+
+            case 'b':
+            case 'B':
+            case 'A':
+            case 'G':
+            case 'z':
+            case 'Z':
+                pos += 2;
+                // \b{g}
+                skipBraces();
+                return new RegexNode.Opaque(true);
+
+            case 'k':
+                pos += 2;
+                int nameEnd = regex.indexOf('>', pos);
+                if (nameEnd < 0) {
+                    throw new UnsupportedException("backreference");
+                }
+                pos = nameEnd + 1;
+                return new RegexNode.Opaque(false);
+
+            case 'p':
+            case 'P':
+                pos += 2;
+                if (!skipBraces()) {
+                    pos++;
+                }
+                return new RegexNode.Opaque(false);
+
+            case 'x':
+            case 'N':
+                if (pos + 2 < regex.length() && regex.charAt(pos + 2) == '{') {
+                    pos += 2;
+                    skipBraces();
+                    return new RegexNode.Opaque(false);
+                }
+                return null;
+
+            case 'c':
+                pos += 3;
+                return new RegexNode.Opaque(false);
+
+            case 'h':
+            case 'H':
+            case 'v':
+            case 'V':
+            case 'R':
+            case 'X':
+                pos += 2;
+                return new RegexNode.Opaque(false);
+
+            default:
+                break;
+        }
+
+        if (c >= '0' && c <= '9') {
+
+            // \0 octal, or a backreference. Take every digit: Java may take fewer (it stops once there's no such
+            // group), which would only make us miss a literal digit, never invent one.
+            pos++;
+            while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '9') {
+                pos++;
+            }
+
+            return new RegexNode.Opaque(false);
+        }
+
+        return null;
+    }
+
+    /**
+     * Skips a "{...}" argument if there is one.
+     */
+    private boolean skipBraces() throws UnsupportedException {
+
+        if (pos >= regex.length() || regex.charAt(pos) != '{') {
+            return false;
+        }
+
+        int braceEnd = regex.indexOf('}', pos);
+        if (braceEnd < 0) {
+            throw new UnsupportedException("unclosed '{'");
+        }
+
+        pos = braceEnd + 1;
+        return true;
+    }
+
+    /**
+     * Parses a backslash escape into ranges: one code point, or a predefined class.
+     */
+    private int[] parseEscape() throws UnsupportedException {
+
+        pos++;
+
+        if (pos >= regex.length()) {
+            throw new UnsupportedException("trailing '\\'");
+        }
+
+        char c = regex.charAt(pos++);
+
+        switch (c) {
+            case 'd': return DIGIT;
+            case 'D': return complement(DIGIT);
+            case 'w': return WORD;
+            case 'W': return complement(WORD);
+            case 's': return SPACE;
+            case 'S': return complement(SPACE);
+            case 't': return single('\t');
+            case 'n': return single('\n');
+            case 'r': return single('\r');
+            case 'f': return single('\f');
+            case 'a': return single('\u0007');
+            case 'e': return single('\u001B');
+            case 'x': return single(parseHex(2));
+            case 'u': return single(parseHex(4));
+            default:
+                break;
+        }
+
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+            throw new UnsupportedException("\\" + c);
+        }
+
+        if (Character.isSurrogate(c)) {
+            throw new UnsupportedException("escaped surrogate");
+        }
+
+        // Escaped punctuation is itself.
+        return single(c);
+    }
+
+    private int parseHex(int digits) throws UnsupportedException {
+
+        if (pos + digits > regex.length()) {
+            throw new UnsupportedException("hex escape");
+        }
+
+        int value = 0;
+
+        for (int index = 0; index < digits; index++) {
+
+            int digit = Character.digit(regex.charAt(pos++), 16);
+
+            if (digit < 0) {
+                throw new UnsupportedException("hex escape");
+            }
+
+            value = value * 16 + digit;
+        }
+
+        if (Character.isSurrogate((char) value)) {
+            throw new UnsupportedException("surrogate escape");
+        }
+
+        return value;
+    }
+
+    private int nextCodePoint() throws UnsupportedException {
+
+        int codePoint = regex.codePointAt(pos);
+
+        if (Character.isSurrogate((char) codePoint)) {
+            throw new UnsupportedException("unpaired surrogate");
+        }
+
+        pos += Character.charCount(codePoint);
+        return codePoint;
+    }
+
+    private static int[] single(int codePoint) {
+        return new int[] { codePoint, codePoint };
+    }
+
+    /**
+     * Merges [lo, hi] range arrays into one sorted, non-overlapping array.
+     */
+    private static int[] union(List<int[]> rangeList) {
+
+        List<int[]> pairList = new ArrayList<int[]>();
+        for (int[] item : rangeList) {
+            for (int index = 0; index < item.length; index += 2) {
+                pairList.add(new int[] { item[index], item[index + 1] });
+            }
+        }
+
+        int[][] pairs = pairList.toArray(new int[pairList.size()][]);
+        Arrays.sort(pairs, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return Integer.compare(o1[0], o2[0]);
+            }
+        });
+
+        int[] merged = new int[pairs.length * 2];
+        int count = 0;
+
+        for (int[] pair : pairs) {
+            if (count > 0 && pair[0] <= merged[count - 1] + 1) {
+                merged[count - 1] = Math.max(merged[count - 1], pair[1]);
+            } else {
+                merged[count++] = pair[0];
+                merged[count++] = pair[1];
+            }
+        }
+
+        return Arrays.copyOf(merged, count);
+    }
+
+    /**
+     * Every code point not in the (sorted) ranges.
+     */
+    private static int[] complement(int[] sortedRanges) {
+
+        int[] result = new int[sortedRanges.length + 2];
+        int count = 0;
+        int next = 0;
+
+        for (int index = 0; index < sortedRanges.length; index += 2) {
+            if (sortedRanges[index] > next) {
+                result[count++] = next;
+                result[count++] = sortedRanges[index] - 1;
+            }
+            next = sortedRanges[index + 1] + 1;
+        }
+
+        if (next <= MAX_CODE_POINT) {
+            result[count++] = next;
+            result[count++] = MAX_CODE_POINT;
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+}
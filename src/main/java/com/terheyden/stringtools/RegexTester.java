@@ -0,0 +1,315 @@
+package com.terheyden.stringtools;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a regex against text in the background for the regex tab, as the user types.
+ * <pre>
+ *     RegexTester tester = new RegexTester(listener, swingExecutor, 150, 1000);
+ *     tester.test(text, regex, Pattern.MULTILINE);
+ * </pre>
+ * A test only starts once the caller has gone quiet for the debounce delay, and any newer test supersedes it:
+ * a superseded run stops, even in the middle of backtracking, and nothing more from it reaches the listener.
+ * Matches are formatted like {@link StringTools#getRegexInfo(String, String, int)}, sent in batches as they're found,
+ * and only the first few are formatted at all; the rest are just counted.
+ * <p/>
+ * Call {@link #test} from one thread (the event thread). The listener is called through the callback executor,
+ * and only for the latest test.
+ */
+final class RegexTester {
+
+    /**
+     * What a test reports, in order: started, then any number of matched, then finished or failed.
+     */
+    interface Listener {
+
+        void started();
+
+        /**
+         * @param matches the next formatted matches
+         */
+        void matched(String matches);
+
+        /**
+         * @param matchCount every match in the text
+         * @param shownCount how many of them were sent to {@link #matched}
+         */
+        void finished(int matchCount, int shownCount);
+
+        void failed(String message);
+    }
+
+    /**
+     * Send a batch after this many matches, or after this long, whichever comes first.
+     */
+    static final int FLUSH_MATCHES = 64;
+    static final long FLUSH_MILLIS = 100;
+
+    /**
+     * Check for a newer test every this many chars read.
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private final Listener listener;
+    private final Executor callbackExecutor;
+    private final long debounceMillis;
+    private final int maxShownMatches;
+
+    private final AtomicInteger generation = new AtomicInteger();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private Future<?> pending;
+
+    /**
+     * @param callbackExecutor where the listener gets called, e.g. the event thread
+     * @param debounceMillis how long to wait for another test before starting this one
+     * @param maxShownMatches how many matches to format and send; the rest are only counted
+     */
+    RegexTester(Listener listener, Executor callbackExecutor, long debounceMillis, int maxShownMatches) {
+
+        this.listener = listener;
+        this.callbackExecutor = callbackExecutor;
+        this.debounceMillis = debounceMillis;
+        this.maxShownMatches = maxShownMatches;
+
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "stringtools-regex-tester");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedules a test, superseding any earlier one that's waiting or running.
+     * @param flags Pattern.DOTALL, MULTILINE, CASE_INSENSITIVE, etc.
+     */
+    void test(final String text, final String regex, final int flags) {
+
+        final int run = generation.incrementAndGet();
+
+        if (pending != null) {
+            pending.cancel(false);
+        }
+
+        pending = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                match(run, text, regex, flags);
+            }
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Supersedes whatever is waiting or running, without starting anything new.
+     */
+    void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Stops the background thread; the tester can't be used afterwards.
+     */
+    void close() {
+        cancel();
+        scheduler.shutdownNow();
+    }
+
+    private void match(int run, String text, String regex, int flags) {
+
+        if (run != generation.get()) {
+            return;
+        }
+
+        deliverStarted(run);
+
+        if (text.isEmpty() || regex.isEmpty()) {
+            deliverFinished(run, 0, 0);
+            return;
+        }
+
+        try {
+
+            Pattern pat = PatternCache.getShared().compile(regex, flags);
+            Matcher mat = pat.matcher(new CancellableText(text, 0, text.length(), run));
+
+            int matchCount = 0;
+            int batchCount = 0;
+            long lastFlush = System.nanoTime();
+            StringBuilder batch = new StringBuilder();
+
+            while (mat.find()) {
+
+                matchCount++;
+
+                if (matchCount > maxShownMatches) {
+                    continue;
+                }
+
+                appendMatch(batch, mat);
+                batchCount++;
+
+                if (batchCount >= FLUSH_MATCHES || System.nanoTime() - lastFlush >= FLUSH_MILLIS * 1000000) {
+                    deliverMatched(run, batch.toString());
+                    batch.setLength(0);
+                    batchCount = 0;
+                    lastFlush = System.nanoTime();
+                }
+            }
+
+            if (batch.length() > 0) {
+                deliverMatched(run, batch.toString());
+            }
+
+            deliverFinished(run, matchCount, Math.min(matchCount, maxShownMatches));
+
+        } catch (SupersededException e) {
+            // A newer test is on its way; it reports instead.
+        } catch (Exception e) {
+            deliverFailed(run, e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    }
+
+    /**
+     * Formats one match and its groups, the way the regex tab always has.
+     */
+    static void appendMatch(StringBuilder builder, Matcher mat) {
+
+        builder.append("  Match: \"").append(mat.group(0)).append("\"\n");
+
+        // Weirdness alert: groupCount() doesn't include group(0), which is the full match.
+        // Thus if groupCount() == 1, we want to display group(1), not group(0).
+
+        for (int gCount = 1; gCount <= mat.groupCount(); gCount++) {
+            builder.append("  Group ").append(gCount).append(": \"").append(mat.group(gCount)).append("\"\n");
+        }
+
+        builder.append("\n");
+    }
+
+    private void deliverStarted(final int run) {
+        deliver(run, new Runnable() {
+            @Override
+            public void run() {
+                listener.started();
+            }
+        });
+    }
+
+    private void deliverMatched(final int run, final String matches) {
+        deliver(run, new Runnable() {
+            @Override
+            public void run() {
+                listener.matched(matches);
+            }
+        });
+    }
+
+    private void deliverFinished(final int run, final int matchCount, final int shownCount) {
+        deliver(run, new Runnable() {
+            @Override
+            public void run() {
+                listener.finished(matchCount, shownCount);
+            }
+        });
+    }
+
+    private void deliverFailed(final int run, final String message) {
+        deliver(run, new Runnable() {
+            @Override
+            public void run() {
+                listener.failed(message);
+            }
+        });
+    }
+
+    /**
+     * Checks again on the callback thread, since a newer test may have come in while this was queued.
+     */
+    private void deliver(final int run, final Runnable callback) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (run == generation.get()) {
+                    callback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Thrown from inside the regex engine to abandon a superseded run.
+     */
+    private static final class SupersededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SupersededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A view of text[start, end) that stops the regex engine once a newer test comes in.
+     * Like {@link RegexBudget}'s guarded text, it counts reads and only looks up now and then.
+     */
+    private final class CancellableText implements CharSequence {
+
+        private final String text;
+        private final int start;
+        private final int end;
+        private final int run;
+        private int reads;
+
+        CancellableText(String text, int start, int end, int run) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.run = run;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+
+            if (++reads >= CANCEL_CHECK_INTERVAL) {
+
+                reads = 0;
+
+                if (run != generation.get()) {
+                    throw new SupersededException();
+                }
+            }
+
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int subStart, int subEnd) {
+
+            if (subStart < 0 || subEnd > end - start || subStart > subEnd) {
+                throw new IndexOutOfBoundsException("start " + subStart + ", end " + subEnd + ", length " + (end - start));
+            }
+
+            return new CancellableText(text, start + subStart, start + subEnd, run);
+        }
+
+        @Override
+        public String toString() {
+            return text.substring(start, end);
+        }
+    }
+}
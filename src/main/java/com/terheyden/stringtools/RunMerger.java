@@ -0,0 +1,118 @@
+package com.terheyden.stringtools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merges sorted spill files, using a heap of readers.
+ * If there are more runs than we want open at once, they're merged in several passes.
+ */
+final class RunMerger {
+
+    /**
+     * Max spill files open at the same time.
+     */
+    static final int MAX_FAN_IN = 128;
+
+    /**
+     * Orders records by sequence number, i.e. original input order.
+     */
+    static final Comparator<SpillFile.Input> SEQ_ORDER = new Comparator<SpillFile.Input>() {
+        @Override
+        public int compare(SpillFile.Input o1, SpillFile.Input o2) {
+            return Long.compare(o1.seq(), o2.seq());
+        }
+    };
+
+    /**
+     * Where merged records go.
+     */
+    interface RecordSink {
+        void write(long seq, String line) throws IOException;
+    }
+
+    private RunMerger() {
+    }
+
+    /**
+     * Merges the runs into the sink and deletes them.
+     * Each run must already be sorted by [order]. Ties should be broken by sequence number so
+     * the result doesn't depend on how the runs were grouped.
+     */
+    static void merge(List<File> runs, Comparator<SpillFile.Input> order, File tempDir, RecordSink sink)
+        throws IOException {
+
+        List<File> pending = new ArrayList<File>(runs);
+
+        while (pending.size() > MAX_FAN_IN) {
+
+            List<File> nextPass = new ArrayList<File>();
+
+            for (int start = 0; start < pending.size(); start += MAX_FAN_IN) {
+
+                List<File> group = pending.subList(start, Math.min(start + MAX_FAN_IN, pending.size()));
+                final SpillFile.Output out = new SpillFile.Output(SpillFile.create(tempDir, "merge"));
+
+                try {
+                    mergeOnce(group, order, new RecordSink() {
+                        @Override
+                        public void write(long seq, String line) throws IOException {
+                            out.write(seq, line);
+                        }
+                    });
+                } finally {
+                    out.close();
+                }
+
+                nextPass.add(out.getFile());
+            }
+
+            pending = nextPass;
+        }
+
+        mergeOnce(pending, order, sink);
+    }
+
+    private static void mergeOnce(List<File> runs, Comparator<SpillFile.Input> order, RecordSink sink)
+        throws IOException {
+
+        PriorityQueue<SpillFile.Input> heap = new PriorityQueue<SpillFile.Input>(Math.max(1, runs.size()), order);
+        List<SpillFile.Input> inputs = new ArrayList<SpillFile.Input>(runs.size());
+
+        try {
+
+            for (File run : runs) {
+                SpillFile.Input input = new SpillFile.Input(run);
+                inputs.add(input);
+
+                if (input.next()) {
+                    heap.add(input);
+                }
+            }
+
+            while (!heap.isEmpty()) {
+
+                SpillFile.Input input = heap.poll();
+                sink.write(input.seq(), input.line());
+
+                if (input.next()) {
+                    heap.add(input);
+                }
+            }
+
+        } finally {
+
+            for (SpillFile.Input input : inputs) {
+                input.close();
+            }
+
+            for (File run : runs) {
+                SpillFile.delete(run);
+            }
+        }
+    }
+}
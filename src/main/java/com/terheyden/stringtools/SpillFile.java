@@ -0,0 +1,163 @@
+package com.terheyden.stringtools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Temp files of (sequence number, line) records, used by the external (on-disk) dedupe and sort.
+ * <p/>
+ * Lines are written as a char count followed by a UTF-8 style encoding of each char. Unlike String.getBytes()
+ * this round-trips any char sequence, including broken surrogate pairs, and unlike writeUTF() it has no 64K limit.
+ */
+final class SpillFile {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SpillFile() {
+    }
+
+    /**
+     * Rough heap cost of holding a line in a collection: the chars, the String and array headers, and a map entry.
+     */
+    static long estimateBytes(String line) {
+        return 2L * line.length() + 80;
+    }
+
+    static File create(File tempDir, String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".spill", tempDir);
+        file.deleteOnExit();
+        return file;
+    }
+
+    static void delete(File file) {
+        if (file != null && !file.delete() && file.exists()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Appends records to a spill file.
+     */
+    static final class Output implements Closeable {
+
+        private final File file;
+        private final DataOutputStream out;
+        private long recordCount;
+
+        Output(File file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getRecordCount() {
+            return recordCount;
+        }
+
+        void write(long seq, String line) throws IOException {
+
+            out.writeLong(seq);
+            out.writeInt(line.length());
+
+            for (int count = 0; count < line.length(); count++) {
+
+                char c = line.charAt(count);
+
+                if (c < 0x80) {
+                    out.write(c);
+                } else if (c < 0x800) {
+                    out.write(0xC0 | (c >> 6));
+                    out.write(0x80 | (c & 0x3F));
+                } else {
+                    out.write(0xE0 | (c >> 12));
+                    out.write(0x80 | ((c >> 6) & 0x3F));
+                    out.write(0x80 | (c & 0x3F));
+                }
+            }
+
+            recordCount++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads records back in the order they were written.
+     */
+    static final class Input implements Closeable {
+
+        private final DataInputStream in;
+        private long seq;
+        private String line;
+        private char[] charBuf = new char[256];
+
+        Input(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        }
+
+        /**
+         * Moves to the next record.
+         * @return false at end of file
+         */
+        boolean next() throws IOException {
+
+            try {
+                seq = in.readLong();
+            } catch (EOFException e) {
+                line = null;
+                return false;
+            }
+
+            int len = in.readInt();
+
+            if (charBuf.length < len) {
+                charBuf = new char[Math.max(len, charBuf.length * 2)];
+            }
+
+            for (int count = 0; count < len; count++) {
+
+                int b = in.readUnsignedByte();
+
+                if (b < 0x80) {
+                    charBuf[count] = (char) b;
+                } else if (b < 0xE0) {
+                    charBuf[count] = (char) (((b & 0x1F) << 6) | (in.readUnsignedByte() & 0x3F));
+                } else {
+                    int b2 = in.readUnsignedByte();
+                    int b3 = in.readUnsignedByte();
+                    charBuf[count] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+                }
+            }
+
+            line = new String(charBuf, 0, len);
+            return true;
+        }
+
+        long seq() {
+            return seq;
+        }
+
+        String line() {
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
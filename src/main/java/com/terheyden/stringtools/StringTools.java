@@ -1,49 +1,74 @@
 package com.terheyden.stringtools;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 
 /**
+ * Every public operation here records its calls in {@link OperationMetrics}, when that's on.
  */
 public class StringTools {
 
-    public static String addIndent(String text, int indentAmt) {
-
-        StringBuilder builder = new StringBuilder(Math.abs(indentAmt));
-        for (int i = 0; i < Math.abs(indentAmt); i++) {
-            builder.append(" ");
-        }
+    private static final OperationMetrics.Operation ADD_INDENT = OperationMetrics.operation("addIndent");
+    private static final OperationMetrics.Operation CONVERT_BULLET_MARKUP = OperationMetrics.operation("convertBulletMarkup");
+    private static final OperationMetrics.Operation SPLIT = OperationMetrics.operation("split");
+    private static final OperationMetrics.Operation INSERT_TEXT = OperationMetrics.operation("insertText");
+    private static final OperationMetrics.Operation REGEX_REPLACE_TEXT = OperationMetrics.operation("regexReplaceText");
+    private static final OperationMetrics.Operation SMART_REPLACE_TEXT = OperationMetrics.operation("smartReplaceText");
+    private static final OperationMetrics.Operation CONVERT_JAVADOC_TO_MEDIA_WIKI = OperationMetrics.operation("convertJavadocToMediaWiki");
+    private static final OperationMetrics.Operation CAPITALIZE = OperationMetrics.operation("capitalize");
+    private static final OperationMetrics.Operation TRIM_CHARS = OperationMetrics.operation("trimChars");
+    private static final OperationMetrics.Operation GENERATE_UUIDS = OperationMetrics.operation("generateUUIDs");
+    private static final OperationMetrics.Operation INSERT_TEMPLATE_TEXT = OperationMetrics.operation("insertTemplateText");
+    private static final OperationMetrics.Operation SORT_ALPHA_REVERSE = OperationMetrics.operation("sortAlphaReverse");
+    private static final OperationMetrics.Operation SORT_ALPHA = OperationMetrics.operation("sortAlpha");
+    private static final OperationMetrics.Operation SORT_NATURAL = OperationMetrics.operation("sortNatural");
+    private static final OperationMetrics.Operation SORT_COLLATED = OperationMetrics.operation("sortCollated");
+    private static final OperationMetrics.Operation SORT_ALPHA_FILE = OperationMetrics.operation("sortAlpha(File)");
+    private static final OperationMetrics.Operation SORT_ALPHA_REVERSE_FILE = OperationMetrics.operation("sortAlphaReverse(File)");
+    private static final OperationMetrics.Operation REMOVE_LINES_CONTAINING = OperationMetrics.operation("removeLinesContaining");
+    private static final OperationMetrics.Operation REMOVE_DUPLICATE_LINES = OperationMetrics.operation("removeDuplicateLines");
+    private static final OperationMetrics.Operation REMOVE_DUPLICATE_LINES_FILE = OperationMetrics.operation("removeDuplicateLines(File)");
+    private static final OperationMetrics.Operation GET_REGEX_INFO = OperationMetrics.operation("getRegexInfo");
+    private static final OperationMetrics.Operation JAVA_COPY_VAR_DOCS = OperationMetrics.operation("javaCopyVarDocs");
+    private static final OperationMetrics.Operation FLEX_COPY_VAR_DOCS = OperationMetrics.operation("flexCopyVarDocs");
 
-        String indentStr = builder.toString();
-
-        // Break into separate lines.
-        String[] lineList = split(text);
+    /**
+     * Indents each line by [indentAmt] spaces. If it's negative, removes that many spaces instead
+     * (lines that aren't indented that far are trimmed).
+     */
+    public static String addIndent(String text, int indentAmt) {
 
-        Collection<String> finishedList = new ArrayList<String>();
+        long started = ADD_INDENT.start();
 
-        for (String line : lineList) {
-            if (indentAmt > 0) {
-                finishedList.add(indentStr + line);
-            } else if (indentAmt < 0) {
-                if (line.indexOf(indentStr) == 0) {
-                    finishedList.add(line.substring(Math.abs(indentAmt)));
-                } else {
-                    finishedList.add(line.trim());
-                }
-            }
+        try {
+            return ADD_INDENT.done(started, text, new LinePipeline().indent(indentAmt).parallel().apply(text));
+        } catch (RuntimeException e) {
+            throw ADD_INDENT.failed(started, text, e);
         }
-
-        return StringUtils.join(finishedList.toArray(), '\n');
     }
 
 
@@ -57,50 +82,45 @@ public class StringTools {
      */
     public static String convertBulletMarkup(String text, String srcMarkup, String destMarkup, int indentAmt) {
 
-        // Break into separate lines.
-        String[] lineList = split(text);
-        // Split bullet styles:
-        String[] origBullets = srcMarkup.split("\\|");
-        String[] newBullets = destMarkup.split("\\|");
+        long started = CONVERT_BULLET_MARKUP.start();
 
-        if (origBullets.length != newBullets.length) {
-            throw new IllegalArgumentException("Bullet syntax length is not equal!");
+        try {
+            return CONVERT_BULLET_MARKUP.done(started, text,
+                new LinePipeline().convertBullets(srcMarkup, destMarkup, indentAmt).parallel().apply(text));
+        } catch (RuntimeException e) {
+            throw CONVERT_BULLET_MARKUP.failed(started, text, e);
         }
+    }
 
-        List<String> finishedList = new ArrayList<String>();
-
-        for (String line : lineList) {
-
-            for (int count = origBullets.length - 1; count >= 0; count--) {
+    public static String convertBulletMarkup(String text, String srcMarkup, String destMarkup) {
+        return convertBulletMarkup(text, srcMarkup, destMarkup, 0);
+    }
 
-                if (line.startsWith(origBullets[count])) {
+    /**
+     * Breaks text into lines. "\n", "\r\n" and "\r" are all line breaks. Trailing empty lines are dropped.
+     * @see LineCursor
+     */
+    public static String[] split(String text) {
 
-                    // They can indent / outdent during conversion.
-                    int offset = count + indentAmt;
+        long started = SPLIT.start();
 
-                    if (offset >= origBullets.length) {
-                        offset = origBullets.length - 1;
-                    }
+        try {
+            return SPLIT.done(started, text, splitLines(text));
+        } catch (RuntimeException e) {
+            throw SPLIT.failed(started, text, e);
+        }
+    }
 
-                    String newBullet = offset < 0 ? "" : newBullets[offset];
+    private static String[] splitLines(String text) {
 
-                    line = newBullet + line.substring(origBullets[count].length());
-                    break;
-                }
-            }
+        List<String> lineList = new ArrayList<String>();
+        LineCursor cursor = LineCursor.withoutTrailingEmptyLines(text);
 
-            finishedList.add(line);
+        while (cursor.next()) {
+            lineList.add(cursor.lineString());
         }
 
-        return StringUtils.join(finishedList.toArray(), '\n');
-    }
-
-    public static String convertBulletMarkup(String text, String srcMarkup, String destMarkup) {
-        return convertBulletMarkup(text, srcMarkup, destMarkup, 0);
-    }
-
-    public static String[] split(String text) {
-        return text.split("[\r\n]");
+        return lineList.toArray(new String[lineList.size()]);
     }
 
     /**
@@ -112,22 +132,15 @@ public class StringTools {
      */
     public static String insertText(String text, String insertText, String whereStr) {
 
-        // Insert either at beginning or end for now.
-        boolean eol = whereStr.toLowerCase().equals("end");
+        long started = INSERT_TEXT.start();
 
-        // Break into separate lines.
-        String[] lineList = split(text);
-
-        Collection<String> finishedList = new ArrayList<String>();
-
-        for (String line : lineList) {
-
-            if (eol) line += insertText;
-            else line = insertText + line;
-            finishedList.add(line);
+        try {
+            // Insert either at beginning or end for now.
+            return INSERT_TEXT.done(started, text,
+                new LinePipeline().insert(insertText, whereStr).parallel().apply(text));
+        } catch (RuntimeException e) {
+            throw INSERT_TEXT.failed(started, text, e);
         }
-
-        return StringUtils.join(finishedList.toArray(), '\n');
     }
 
     /**
@@ -138,6 +151,25 @@ public class StringTools {
      * @return
      */
     public static String regexReplaceText(String text, String findRegex, String replaceText) {
+        return regexReplaceText(text, findRegex, replaceText, RegexBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget how long the replace may run
+     * @throws RegexBudgetExceededException if it runs longer; other errors (e.g. a bad regex) leave the text as-is
+     */
+    public static String regexReplaceText(String text, String findRegex, String replaceText, RegexBudget budget) {
+
+        long started = REGEX_REPLACE_TEXT.start();
+
+        try {
+            return REGEX_REPLACE_TEXT.done(started, text, doRegexReplaceText(text, findRegex, replaceText, budget));
+        } catch (RuntimeException e) {
+            throw REGEX_REPLACE_TEXT.failed(started, text, e);
+        }
+    }
+
+    private static String doRegexReplaceText(String text, String findRegex, String replaceText, RegexBudget budget) {
 
         try {
 
@@ -146,8 +178,11 @@ public class StringTools {
             findRegex = convertUserSpecialInput(findRegex);
             replaceText = convertUserSpecialInput(replaceText);
 
-            text = text.replaceAll(findRegex, replaceText);
+            Pattern findPat = PatternCache.getShared().compile(findRegex);
+            text = budget.start().replaceAll(findPat, text, replaceText);
 
+        } catch (RegexBudgetExceededException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -157,9 +192,23 @@ public class StringTools {
 
     /**
      * Works best if find / replace is specified in camelCase.
+     * Replaces the camelCase, TitleCase, UPPERCASE, lowercase, snake_case, SNAKE_CASE and "space separated"
+     * variants of the find text with the same variant of the replace text, in a single pass.
+     * Find and replace are plain text, not regex.
      */
     public static String smartReplaceText(String text, String findText, String replaceText) {
 
+        long started = SMART_REPLACE_TEXT.start();
+
+        try {
+            return SMART_REPLACE_TEXT.done(started, text, doSmartReplaceText(text, findText, replaceText));
+        } catch (RuntimeException e) {
+            throw SMART_REPLACE_TEXT.failed(started, text, e);
+        }
+    }
+
+    private static String doSmartReplaceText(String text, String findText, String replaceText) {
+
         try {
 
             // Support user entering "\n" etc.
@@ -169,24 +218,24 @@ public class StringTools {
 
             String camelFind = findText;
             String camelReplace = replaceText;
-            String capFind = capitalize(findText);
-            String capReplace = capitalize(replaceText);
+            String capFind = capitalizeLines(findText);
+            String capReplace = capitalizeLines(replaceText);
             String upperFind = findText.toUpperCase();
             String upperReplace = replaceText.toUpperCase();
             String lowerFind = findText.toLowerCase();
             String lowerReplace = replaceText.toLowerCase();
-            String lowerCapFind = capitalize(findText.toLowerCase());
-            String lowerCapReplace = capitalize(replaceText.toLowerCase());
+            String lowerCapFind = capitalizeLines(findText.toLowerCase());
+            String lowerCapReplace = capitalizeLines(replaceText.toLowerCase());
             String underscoreFind = smartInsertChar(findText, "_").toLowerCase();
             String underscoreReplace = smartInsertChar(replaceText, "_").toLowerCase();
             String underscoreUCFind = smartInsertChar(findText, "_").toUpperCase();
             String underscoreUCReplace = smartInsertChar(replaceText, "_").toUpperCase();
             String spaceFind = smartInsertChar(findText, " ").toLowerCase();
             String spaceReplace = smartInsertChar(replaceText, " ").toLowerCase();
-            String spaceCapFind = smartInsertChar(capitalize(findText), " ");
-            String spaceCapReplace = smartInsertChar(capitalize(replaceText), " ");
-            String spaceLCapFind = capitalize(smartInsertChar(findText, " ").toLowerCase());
-            String spaceLCapReplace = capitalize(smartInsertChar(replaceText, " ").toLowerCase());
+            String spaceCapFind = smartInsertChar(capitalizeLines(findText), " ");
+            String spaceCapReplace = smartInsertChar(capitalizeLines(replaceText), " ");
+            String spaceLCapFind = capitalizeLines(smartInsertChar(findText, " ").toLowerCase());
+            String spaceLCapReplace = capitalizeLines(smartInsertChar(replaceText, " ").toLowerCase());
 
             String[] findReplacePairs = {
                 camelFind, camelReplace,
@@ -201,20 +250,117 @@ public class StringTools {
                 spaceLCapFind, spaceLCapReplace
             };
 
-            for (int count = 0; count < findReplacePairs.length; count += 2) {
-                String find = findReplacePairs[count];
-                String replace = findReplacePairs[count + 1];
+            return replaceLiterals(text, findReplacePairs);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return text;
+    }
+
+    /**
+     * Replaces several literal strings in one scan of the text.
+     * <p/>
+     * This behaves like running a replace-all for each find / replace pair in turn, earliest pair first:
+     * an earlier pair's matches win over any later pair's matches they overlap, and each pair's own matches
+     * are taken leftmost first without overlapping. Unlike running them in turn, a replacement is never
+     * searched again by a later pair, and nothing is treated as regex syntax.
+     * Empty finds, and pairs that would replace something with itself, are skipped.
+     * @param findReplacePairs find1, replace1, find2, replace2, ...
+     */
+    private static String replaceLiterals(String text, String[] findReplacePairs) {
+
+        // Keep the first pair for each distinct find string.
+        List<String> findList = new ArrayList<String>();
+        List<String> replaceList = new ArrayList<String>();
+
+        for (int count = 0; count < findReplacePairs.length; count += 2) {
+            String find = findReplacePairs[count];
+            String replace = findReplacePairs[count + 1];
 
-                text = text.replaceAll(find, replace);
+            if (!find.isEmpty() && !find.equals(replace) && !findList.contains(find)) {
+                findList.add(find);
+                replaceList.add(replace);
             }
+        }
 
+        if (findList.isEmpty()) {
             return text;
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        final int patternCount = findList.size();
+        AhoCorasick automaton = new AhoCorasick(findList.toArray(new String[patternCount]));
+
+        // Collect every match start, per pattern. The automaton reports them in order for each pattern.
+        final int[][] startArr = new int[patternCount][8];
+        final int[] startCount = new int[patternCount];
+
+        automaton.findAll(text, 0, text.length(), new AhoCorasick.MatchListener() {
+            @Override
+            public boolean onMatch(int patternIndex, int start, int end) {
+                if (startCount[patternIndex] == startArr[patternIndex].length) {
+                    startArr[patternIndex] = Arrays.copyOf(startArr[patternIndex], startCount[patternIndex] * 2);
+                }
+                startArr[patternIndex][startCount[patternIndex]++] = start;
+                return true;
+            }
+        });
+
+        // Claim text for each pattern in priority order. Encode each chosen match as (start << 8 | pattern).
+        BitSet claimed = new BitSet(text.length());
+        long[] chosenArr = new long[16];
+        int chosenCount = 0;
+
+        for (int patternIndex = 0; patternIndex < patternCount; patternIndex++) {
+
+            int len = findList.get(patternIndex).length();
+            int lastEnd = -1;
+
+            for (int count = 0; count < startCount[patternIndex]; count++) {
+
+                int start = startArr[patternIndex][count];
+                int end = start + len;
+
+                if (start < lastEnd) {
+                    continue;
+                }
+
+                int firstClaimed = claimed.nextSetBit(start);
+                if (firstClaimed >= 0 && firstClaimed < end) {
+                    continue;
+                }
+
+                claimed.set(start, end);
+                lastEnd = end;
+
+                if (chosenCount == chosenArr.length) {
+                    chosenArr = Arrays.copyOf(chosenArr, chosenCount * 2);
+                }
+                chosenArr[chosenCount++] = ((long) start << 8) | patternIndex;
+            }
         }
 
-        return text;
+        if (chosenCount == 0) {
+            return text;
+        }
+
+        Arrays.sort(chosenArr, 0, chosenCount);
+
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        int pos = 0;
+
+        for (int count = 0; count < chosenCount; count++) {
+
+            int start = (int) (chosenArr[count] >>> 8);
+            int patternIndex = (int) (chosenArr[count] & 0xFF);
+
+            builder.append(text, pos, start).append(replaceList.get(patternIndex));
+            pos = start + findList.get(patternIndex).length();
+        }
+
+        builder.append(text, pos, text.length());
+        return builder.toString();
     }
 
     /**
@@ -245,24 +391,45 @@ public class StringTools {
      * @return text with special chars converted
      */
     private static String convertUserSpecialInput(String text) {
-        text = text.replaceAll("\\\\n", "\n");
-        text = text.replaceAll("\\\\r", "\r");
-        text = text.replaceAll("\\\\t", "\t");
+        text = userNewlinePat.matcher(text).replaceAll("\n");
+        text = userReturnPat.matcher(text).replaceAll("\r");
+        text = userTabPat.matcher(text).replaceAll("\t");
 
         return text;
     }
 
+    private static Pattern userNewlinePat = Pattern.compile("\\\\n");
+    private static Pattern userReturnPat = Pattern.compile("\\\\r");
+    private static Pattern userTabPat = Pattern.compile("\\\\t");
+
+    // Matches:
+    //   / * *
+    //     * Blah blah blah info
+    //     * /
+    //   public void myMethod(arg1) {
+    //
+    // 1 = the multi-line javadoc comment
+    // 2 = the method declaration
+    private static Pattern javadocPat = Pattern.compile("(/\\*\\*.*?\\*/)\\s*(public\\s+[^{]+)", Pattern.DOTALL | Pattern.MULTILINE);
+    private static Pattern javadocEndPat = Pattern.compile("^\\s*\\*/", Pattern.MULTILINE);
+    private static Pattern javadocLinePat = Pattern.compile("^\\s*\\*\\s*", Pattern.MULTILINE);
+    private static Pattern javadocKeywordPat = Pattern.compile("\\{@\\w+\\s+([^}]+)\\}");
+    private static Pattern javadocParamPat = Pattern.compile("@param\\s+([A-Za-z0-9_]+)");
+    private static Pattern javadocBracketVarPat = Pattern.compile("\\[([A-Za-z0-9_]+)\\]");
+
     public static String convertJavadocToMediaWiki(String text) {
 
-        // Matches:
-        //   / * *
-        //     * Blah blah blah info
-        //     * /
-        //   public void myMethod(arg1) {
-        //
-        // 1 = the multi-line javadoc comment
-        // 2 = the method declaration
-        Pattern javadocPat = Pattern.compile("(/\\*\\*.*?\\*/)\\s*(public\\s+[^{]+)", Pattern.DOTALL | Pattern.MULTILINE);
+        long started = CONVERT_JAVADOC_TO_MEDIA_WIKI.start();
+
+        try {
+            return CONVERT_JAVADOC_TO_MEDIA_WIKI.done(started, text, doConvertJavadocToMediaWiki(text));
+        } catch (RuntimeException e) {
+            throw CONVERT_JAVADOC_TO_MEDIA_WIKI.failed(started, text, e);
+        }
+    }
+
+    private static String doConvertJavadocToMediaWiki(String text) {
+
         Matcher javadocMatcher = javadocPat.matcher(text);
         StringBuilder builder = new StringBuilder();
 
@@ -275,22 +442,22 @@ public class StringTools {
             // Replace javadoc start: / * *
             javadocStr = javadocStr.replace("/**", "");
             // Replace javadoc end: * /
-            javadocStr = Pattern.compile("^\\s*\\*/", Pattern.MULTILINE).matcher(javadocStr).replaceAll("");
+            javadocStr = javadocEndPat.matcher(javadocStr).replaceAll("");
             // Replace in-between lines, replace * with : (indentend line in MediaWiki)
-            javadocStr = Pattern.compile("^\\s*\\*\\s*", Pattern.MULTILINE).matcher(javadocStr).replaceAll(":");
+            javadocStr = javadocLinePat.matcher(javadocStr).replaceAll(":");
             // Remove <p/> instances:
-            javadocStr = javadocStr.replaceAll("<p/>", "");
+            javadocStr = javadocStr.replace("<p/>", "");
             // Replace javadoc {@link ClassName#methodName()} to {@link ClassName.methodName()}
-            javadocStr = javadocStr.replaceAll("#", ".");
+            javadocStr = javadocStr.replace('#', '.');
             // Replace javadoc {@keyword <contents>} with just <contents>:
-            javadocStr = javadocStr.replaceAll("\\{@\\w+\\s+([^}]+)\\}", "<code>$1</code>");
+            javadocStr = javadocKeywordPat.matcher(javadocStr).replaceAll("<code>$1</code>");
             // Replace @param param my param description:
-            javadocStr = javadocStr.replaceAll("@param\\s+([A-Za-z0-9_]+)", "<code>$1</code> =");
-            javadocStr = javadocStr.replaceAll("@return", "returns");
-            javadocStr = javadocStr.replaceAll("@exception", "throws exception:");
-            javadocStr = javadocStr.replaceAll("@throws", "throws exception:");
+            javadocStr = javadocParamPat.matcher(javadocStr).replaceAll("<code>$1</code> =");
+            javadocStr = javadocStr.replace("@return", "returns");
+            javadocStr = javadocStr.replace("@exception", "throws exception:");
+            javadocStr = javadocStr.replace("@throws", "throws exception:");
             // I sometimes mark vars by putting them in braces: [myVar] so replace those:
-            javadocStr = javadocStr.replaceAll("\\[([A-Za-z0-9_]+)\\]", "<code>$1</code>");
+            javadocStr = javadocBracketVarPat.matcher(javadocStr).replaceAll("<code>$1</code>");
 
             builder.append(String.format("<code>%s</code>\n%s", methodName, javadocStr));
         }
@@ -300,20 +467,37 @@ public class StringTools {
 
     public static String capitalize(String text) {
 
-        // Break into separate lines.
-        String[] lineList = split(text);
-
-        Collection<String> finishedList = new ArrayList<String>();
+        long started = CAPITALIZE.start();
 
-        for (String line : lineList) {
-            finishedList.add(StringUtils.capitalize(line));
+        try {
+            return CAPITALIZE.done(started, text, capitalizeLines(text));
+        } catch (RuntimeException e) {
+            throw CAPITALIZE.failed(started, text, e);
         }
+    }
 
-        return StringUtils.join(finishedList.toArray(), '\n');
+    private static String capitalizeLines(String text) {
+        return new LinePipeline().capitalize().parallel().apply(text);
     }
 
+    /**
+     * Trims any of the chars in [charsToTrim] off the beginning and/or end of each line.
+     * @param fromBeginningOrEndStr "beginning", "end" or "begin + end"
+     * @see TrimSet
+     */
     public static String trimChars(String text, String charsToTrim, String fromBeginningOrEndStr) {
 
+        long started = TRIM_CHARS.start();
+
+        try {
+            return TRIM_CHARS.done(started, text, doTrimChars(text, charsToTrim, fromBeginningOrEndStr));
+        } catch (RuntimeException e) {
+            throw TRIM_CHARS.failed(started, text, e);
+        }
+    }
+
+    private static String doTrimChars(String text, String charsToTrim, String fromBeginningOrEndStr) {
+
         if (text == null || charsToTrim == null || fromBeginningOrEndStr == null) {
             return text;
         }
@@ -322,70 +506,88 @@ public class StringTools {
             return text;
         }
 
+        // Big text is worth spreading across cores; otherwise the copy-once loop below wins.
+        LinePipeline pipeline = new LinePipeline().trimChars(charsToTrim, fromBeginningOrEndStr).parallel();
+        if (pipeline.runsInParallel(text.length())) {
+            return pipeline.apply(text);
+        }
+
         boolean fromBOL = fromBeginningOrEndStr.equals("beginning") || fromBeginningOrEndStr.equals("begin + end");
         boolean fromEOL = fromBeginningOrEndStr.equals("end") || fromBeginningOrEndStr.equals("begin + end");
 
-        // Break into separate lines.
-        String[] lineList = split(text);
+        TrimSet trimSet = TrimSet.of(charsToTrim);
+        StringBuilder builder = new StringBuilder(text.length());
+        LineCursor cursor = LineCursor.withoutTrailingEmptyLines(text);
+        boolean firstLine = true;
 
-        Collection<String> finishedList = new ArrayList<String>();
+        while (cursor.next()) {
 
-        for (String line : lineList) {
-            if (fromBOL) line = trim(line, charsToTrim, false);
-            if (fromEOL) line = trim(line, charsToTrim, true);
-            finishedList.add(line);
-        }
-
-        return StringUtils.join(finishedList.toArray(), '\n');
-    }
-
-    private static String trim(String line, String charsToTrim, boolean trimFromEndOfLine) {
+            // Find both ends by index, then copy what's left in one go.
+            int start = fromBOL ? trimSet.trimStart(text, cursor.start(), cursor.end()) : cursor.start();
+            int end = fromEOL ? trimSet.trimEnd(text, start, cursor.end()) : cursor.end();
 
-        if (!trimFromEndOfLine) {
-            while (line.length() > 0 && charsToTrim.contains(String.valueOf(line.charAt(0)))) {
-                line = line.substring(1);
+            if (!firstLine) {
+                builder.append('\n');
             }
-        } else {
-
-            int len = line.length();
 
-            while (len > 0 && charsToTrim.contains(String.valueOf(line.charAt(len - 1)))) {
-                line = line.substring(0, len - 1);
-                len--;
-            }
+            builder.append(text, start, end);
+            firstLine = false;
         }
 
-        return line;
+        return builder.toString();
     }
 
     public static String generateUUIDs(int howMany) {
 
-        StringBuilder builder = new StringBuilder();
+        long started = GENERATE_UUIDS.start();
 
-        // Append normal UUIDs:
-        for (int count = 0; count < howMany; count++) {
-            builder.append(UUID.randomUUID().toString()).append("\n");
+        try {
+            return GENERATE_UUIDS.done(started, null, doGenerateUUIDs(howMany));
+        } catch (RuntimeException e) {
+            throw GENERATE_UUIDS.failed(started, null, e);
         }
+    }
 
-        builder.append("\n");
+    private static String doGenerateUUIDs(int howMany) {
 
-        // Append uppercase UUIDs:
-        for (int count = 0; count < howMany; count++) {
-            builder.append(UUID.randomUUID().toString().toUpperCase()).append("\n");
-        }
+        StringWriter writer = new StringWriter((howMany * 3 + 2) * 37);
+        UuidGenerator generator = new UuidGenerator();
 
-        builder.append("\n");
+        try {
+
+            // Normal UUIDs, then uppercase, then uppercase w/ dashes removed:
+            generator.write(writer, howMany, UuidGenerator.Format.LOWER);
+            writer.write('\n');
+            generator.write(writer, howMany, UuidGenerator.Format.UPPER);
+            writer.write('\n');
+            generator.write(writer, howMany, UuidGenerator.Format.UPPER_DASHLESS);
 
-        // Append uppercase w/ dashes removed:
-        for (int count = 0; count < howMany; count++) {
-            builder.append(UUID.randomUUID().toString().toUpperCase().replace("-", "")).append("\n");
+        } catch (IOException e) {
+            // StringWriter doesn't throw.
+            throw new IllegalStateException(e);
         }
 
-        return builder.toString();
+        return writer.toString();
     }
 
+    /**
+     * Fills in a template once per line of text. Each line is a row of ';' separated params:
+     * %1 is replaced by the first param, %2 by the second, etc. Blank lines are skipped.
+     * @see Template
+     */
     public static String insertTemplateText(String templateStr, String text) {
 
+        long started = INSERT_TEMPLATE_TEXT.start();
+
+        try {
+            return INSERT_TEMPLATE_TEXT.done(started, text, doInsertTemplateText(templateStr, text));
+        } catch (RuntimeException e) {
+            throw INSERT_TEMPLATE_TEXT.failed(started, text, e);
+        }
+    }
+
+    private static String doInsertTemplateText(String templateStr, String text) {
+
         if (templateStr == null || templateStr.length() == 0) {
             return text;
         }
@@ -394,137 +596,255 @@ public class StringTools {
             return text;
         }
 
-        // Break into separate lines.
-        String[] lineList = split(text);
+        Template template = Template.compile(templateStr);
 
-        Collection<String> finishedList = new ArrayList<String>();
+        StringBuilder builder = new StringBuilder(text.length() + templateStr.length() * 16);
+        LineCursor cursor = LineCursor.withoutTrailingEmptyLines(text);
+        CharSlice[] params = new CharSlice[8];
+        boolean firstRow = true;
 
-        for (String line : lineList) {
+        while (cursor.next()) {
+
+            int lineStart = cursor.start();
+            int lineEnd = cursor.end();
 
-            if (line.trim().length() == 0) {
+            if (trimStart(text, lineStart, lineEnd) == lineEnd) {
                 continue;
             }
 
-            // Allow empty vars by making sure there's a space on either side of the ;
-            if (line.startsWith(";")) {
-                line = " " + line;
+            // Break each line into params. Empty params are allowed, e.g. ";b" and "a;".
+            int paramCount = 0;
+            int paramStart = lineStart;
+
+            while (true) {
+
+                int paramEnd = text.indexOf(';', paramStart);
+                if (paramEnd < 0 || paramEnd > lineEnd) {
+                    paramEnd = lineEnd;
+                }
+
+                if (paramCount == params.length) {
+                    params = Arrays.copyOf(params, paramCount * 2);
+                }
+
+                if (params[paramCount] == null) {
+                    params[paramCount] = new CharSlice();
+                }
+
+                // Trimmed, without copying:
+                int trimmedStart = trimStart(text, paramStart, paramEnd);
+                params[paramCount++].set(text, trimmedStart, trimEnd(text, trimmedStart, paramEnd));
+
+                if (paramEnd == lineEnd) {
+                    break;
+                }
+
+                paramStart = paramEnd + 1;
             }
 
-            if (line.endsWith(";")) {
-                line = line + " ";
+            if (!firstRow) {
+                builder.append('\n');
             }
 
-            // Break each line into params.
-            String[] params = line.split(";");
+            firstRow = false;
 
             // Each line actually is the template with the params plugged in:
-            line = templateStr;
+            template.render(builder, params, paramCount);
+        }
 
-            // Try to replace %1 with params[0], %2 with params[1], etc.
-            for (int count = 0; count < params.length; count++) {
-                String param = params[count].trim();
-                String varText = "%" + (count + 1);
-                line = line.replaceAll(varText, param);
-            }
+        return builder.toString();
+    }
 
-            finishedList.add(line);
+    /**
+     * Where text[start, end) would start after String.trim().
+     */
+    private static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
         }
+        return start;
+    }
 
-        return StringUtils.join(finishedList.toArray(), '\n');
-
+    /**
+     * Where text[start, end) would end after String.trim().
+     */
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
     }
 
     public static String sortAlphaReverse(String text) {
         return sortAlphaReverse(text, false);
     }
 
-    public static String sortAlphaReverse(String text, final boolean ignoreCase) {
+    public static String sortAlphaReverse(String text, boolean ignoreCase) {
 
-        // Break into separate lines.
-        String[] lineList = split(text);
+        long started = SORT_ALPHA_REVERSE.start();
 
-        Arrays.sort(lineList, new Comparator<String>() {
-            @Override
-            public int compare(String o1, String o2) {
+        try {
 
-                if (o1 == null) {
-                    return 1;
-                }
+            // Break into separate lines.
+            String[] lineList = splitLines(text);
 
-                if (o2 == null) {
-                    return -1;
-                }
+            LineSorter.sort(lineList, ignoreCase, true);
 
-                if (ignoreCase) {
-                    return o2.compareToIgnoreCase(o1);
-                } else {
-                    return o2.compareTo(o1);
-                }
-            }
-        });
+            return SORT_ALPHA_REVERSE.done(started, text, StringUtils.join(lineList, '\n').trim());
 
-        return StringUtils.join(lineList, '\n').trim();
+        } catch (RuntimeException e) {
+            throw SORT_ALPHA_REVERSE.failed(started, text, e);
+        }
     }
 
     public static String sortAlpha(String text) {
         return sortAlpha(text, false);
     }
 
-    public static String sortAlpha(String text, final boolean ignoreCase) {
+    public static String sortAlpha(String text, boolean ignoreCase) {
 
-        // Break into separate lines.
-        String[] lineList = split(text);
+        long started = SORT_ALPHA.start();
 
-        Arrays.sort(lineList, new Comparator<String>() {
-            @Override
-            public int compare(String o1, String o2) {
+        try {
 
-                if (o1 == null) {
-                    return -1;
-                }
+            // Break into separate lines.
+            String[] lineList = splitLines(text);
 
-                if (o2 == null) {
-                    return 1;
-                }
+            LineSorter.sort(lineList, ignoreCase, false);
 
-                if (ignoreCase) {
-                    return o1.compareToIgnoreCase(o2);
-                } else {
-                    return o1.compareTo(o2);
-                }
-            }
-        });
+            return SORT_ALPHA.done(started, text, StringUtils.join(lineList, '\n').trim());
+
+        } catch (RuntimeException e) {
+            throw SORT_ALPHA.failed(started, text, e);
+        }
+    }
+
+    /**
+     * Sorts with numbers in order: "file2" before "file10".
+     * @see LineComparators#natural(boolean, boolean)
+     */
+    public static String sortNatural(String text, boolean ignoreCase, boolean reverse) {
+
+        long started = SORT_NATURAL.start();
+
+        try {
+            return SORT_NATURAL.done(started, text, sortLines(text, LineComparators.natural(ignoreCase, reverse)));
+        } catch (RuntimeException e) {
+            throw SORT_NATURAL.failed(started, text, e);
+        }
+    }
+
+    /**
+     * Sorts the way the locale's speakers expect, e.g. "Äpfel" next to "Apfel" in German.
+     * @see LineComparators#collated(Locale, boolean, boolean)
+     */
+    public static String sortCollated(String text, Locale locale, boolean ignoreCase, boolean reverse) {
+
+        long started = SORT_COLLATED.start();
+
+        try {
+            return SORT_COLLATED.done(started, text, sortLines(text, LineComparators.collated(locale, ignoreCase, reverse)));
+        } catch (RuntimeException e) {
+            throw SORT_COLLATED.failed(started, text, e);
+        }
+    }
+
+    private static String sortLines(String text, Comparator<String> order) {
+
+        String[] lineList = splitLines(text);
+        LineSorter.sort(lineList, order);
 
         return StringUtils.join(lineList, '\n').trim();
     }
 
+    /**
+     * Sorts a UTF-8 file that may be too big to fit in memory.
+     * @param memoryBudgetBytes roughly how much heap to use; past that, sorted runs are spilled to temp files
+     * @return how many lines were written
+     * @see ExternalSorter
+     */
+    public static long sortAlpha(File inFile, File outFile, boolean ignoreCase, long memoryBudgetBytes)
+        throws IOException {
+
+        long started = SORT_ALPHA_FILE.start();
+
+        try {
+            return SORT_ALPHA_FILE.done(started, sortFile(inFile, outFile, LineComparators.alpha(ignoreCase, false), memoryBudgetBytes));
+        } catch (IOException e) {
+            throw SORT_ALPHA_FILE.failed(started, null, e);
+        } catch (RuntimeException e) {
+            throw SORT_ALPHA_FILE.failed(started, null, e);
+        }
+    }
+
+    /**
+     * Reverse sorts a UTF-8 file that may be too big to fit in memory.
+     * @see #sortAlpha(File, File, boolean, long)
+     */
+    public static long sortAlphaReverse(File inFile, File outFile, boolean ignoreCase, long memoryBudgetBytes)
+        throws IOException {
+
+        long started = SORT_ALPHA_REVERSE_FILE.start();
+
+        try {
+            return SORT_ALPHA_REVERSE_FILE.done(started, sortFile(inFile, outFile, LineComparators.alpha(ignoreCase, true), memoryBudgetBytes));
+        } catch (IOException e) {
+            throw SORT_ALPHA_REVERSE_FILE.failed(started, null, e);
+        } catch (RuntimeException e) {
+            throw SORT_ALPHA_REVERSE_FILE.failed(started, null, e);
+        }
+    }
+
+    private static long sortFile(File inFile, File outFile, Comparator<String> order, long memoryBudgetBytes)
+        throws IOException {
+
+        try (Reader in = new InputStreamReader(new FileInputStream(inFile), StandardCharsets.UTF_8);
+             Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+
+            return new ExternalSorter(memoryBudgetBytes, outFile.getAbsoluteFile().getParentFile()).sort(in, out, order);
+        }
+    }
+
     /**
      * Remove lines that contain / don't contain the specified regex.
      * @param removeLinesNotContaining should we remove lines that do or do not contain?
      */
     public static String removeLinesContaining(boolean removeLinesNotContaining, String text, String containRegex) {
+        return removeLinesContaining(removeLinesNotContaining, text, containRegex, RegexBudget.UNLIMITED);
+    }
 
-        // For my own sanity:
-        boolean removeLinesContaining = !removeLinesNotContaining;
+    /**
+     * @param budget how long matching may run, over all lines
+     * @throws RegexBudgetExceededException if it runs longer
+     */
+    public static String removeLinesContaining(
+        boolean removeLinesNotContaining, String text, String containRegex, RegexBudget budget) {
 
-        // Break into separate lines.
-        String[] lineList = split(text);
+        return removeLinesContaining(removeLinesNotContaining, text, containRegex, budget, RegexEngine.AUTO);
+    }
 
-        Pattern containPat = Pattern.compile(containRegex);
+    /**
+     * @param engine which regex engine to match with. The default, AUTO, uses the linear-time {@link LinearRegex}
+     *               whenever the regex qualifies, so no line can take exponential time.
+     * @throws RegexBudgetExceededException if matching runs past the budget
+     * @throws IllegalArgumentException if the engine is LINEAR and the regex can't run on it
+     */
+    public static String removeLinesContaining(
+        boolean removeLinesNotContaining, String text, String containRegex, RegexBudget budget, RegexEngine engine) {
 
-        Collection<String> finishedList = new ArrayList<String>();
+        long started = REMOVE_LINES_CONTAINING.start();
 
-        for (String line : lineList) {
+        try {
 
-            boolean matchFound = containPat.matcher(line).find();
-            boolean removeThisLine = (matchFound && removeLinesContaining) || (!matchFound && removeLinesNotContaining);
+            return REMOVE_LINES_CONTAINING.done(started, text, new LinePipeline()
+                .removeLinesContaining(removeLinesNotContaining, containRegex, budget, engine)
+                .parallel()
+                .apply(text)
+                .trim());
 
-            if (!removeThisLine) {
-                finishedList.add(line);
-            }
+        } catch (RuntimeException e) {
+            throw REMOVE_LINES_CONTAINING.failed(started, text, e);
         }
-
-        return StringUtils.join(finishedList.toArray(), '\n').trim();
     }
 
     public static String removeDuplicateLines(String text) {
@@ -533,30 +853,60 @@ public class StringTools {
 
     public static String removeDuplicateLines(String text, boolean ignoreCase) {
 
-        // Break into separate lines.
-        String[] lineList = split(text);
+        long started = REMOVE_DUPLICATE_LINES.start();
 
-        List<String> finishedList = new ArrayList<String>();
-        List<String> dupeList = new ArrayList<String>();
+        try {
+            return REMOVE_DUPLICATE_LINES.done(started, text, doRemoveDuplicateLines(text, ignoreCase));
+        } catch (RuntimeException e) {
+            throw REMOVE_DUPLICATE_LINES.failed(started, text, e);
+        }
+    }
 
-        for (String line : lineList) {
+    private static String doRemoveDuplicateLines(String text, boolean ignoreCase) {
 
-            if (ignoreCase) {
+        StringBuilder builder = new StringBuilder(text.length());
+        LineCursor cursor = LineCursor.withoutTrailingEmptyLines(text);
+        DuplicateLineFilter dupeFilter = new DuplicateLineFilter(ignoreCase);
 
-                String lcLine = line.toLowerCase();
-                if (!dupeList.contains(lcLine)) {
-                    dupeList.add(lcLine);
-                    finishedList.add(line);
-                }
-            } else {
+        while (cursor.next()) {
 
-                if (!finishedList.contains(line)) {
-                    finishedList.add(line);
-                }
+            // The filter has to keep each distinct line anyway, so that's the only copy we make.
+            if (dupeFilter.add(cursor.lineString())) {
+                builder.append(text, cursor.start(), cursor.end()).append('\n');
             }
         }
 
-        return StringUtils.join(finishedList.toArray(), '\n').trim();
+        return builder.toString().trim();
+    }
+
+    /**
+     * Removes duplicate lines from a UTF-8 file that may be too big to fit in memory.
+     * @param memoryBudgetBytes roughly how much heap to use; past that, lines are spilled to temp files
+     * @return how many lines were written
+     * @see ExternalDedupe
+     */
+    public static long removeDuplicateLines(File inFile, File outFile, boolean ignoreCase, long memoryBudgetBytes)
+        throws IOException {
+
+        long started = REMOVE_DUPLICATE_LINES_FILE.start();
+
+        try {
+            return REMOVE_DUPLICATE_LINES_FILE.done(started, dedupeFile(inFile, outFile, ignoreCase, memoryBudgetBytes));
+        } catch (IOException e) {
+            throw REMOVE_DUPLICATE_LINES_FILE.failed(started, null, e);
+        } catch (RuntimeException e) {
+            throw REMOVE_DUPLICATE_LINES_FILE.failed(started, null, e);
+        }
+    }
+
+    private static long dedupeFile(File inFile, File outFile, boolean ignoreCase, long memoryBudgetBytes)
+        throws IOException {
+
+        try (Reader in = new InputStreamReader(new FileInputStream(inFile), StandardCharsets.UTF_8);
+             Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+
+            return new ExternalDedupe(memoryBudgetBytes, outFile.getAbsoluteFile().getParentFile()).dedupe(in, out, ignoreCase);
+        }
     }
 
     /**
@@ -568,6 +918,25 @@ public class StringTools {
      * @return text about matches
      */
     public static String getRegexInfo(String text, String regex, int flags) {
+        return getRegexInfo(text, regex, flags, RegexBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget how long matching may run
+     * @throws RegexBudgetExceededException if it runs longer
+     */
+    public static String getRegexInfo(String text, String regex, int flags, RegexBudget budget) {
+
+        long started = GET_REGEX_INFO.start();
+
+        try {
+            return GET_REGEX_INFO.done(started, text, doGetRegexInfo(text, regex, flags, budget));
+        } catch (RuntimeException e) {
+            throw GET_REGEX_INFO.failed(started, text, e);
+        }
+    }
+
+    private static String doGetRegexInfo(String text, String regex, int flags, RegexBudget budget) {
 
         try {
 
@@ -575,8 +944,8 @@ public class StringTools {
                 return "";
             }
 
-            Pattern pat = Pattern.compile(regex, flags);
-            Matcher mat = pat.matcher(text);
+            Pattern pat = PatternCache.getShared().compile(regex, flags);
+            Matcher mat = pat.matcher(budget.start().wrap(text));
 
             int matchCount = 0;
             StringBuilder builder = new StringBuilder();
@@ -584,20 +953,12 @@ public class StringTools {
             while (mat.find()) {
 
                 matchCount++;
-
-                builder.append(String.format("  Match: \"%s\"\n", mat.group(0)));
-
-                // Weirdness alert: groupCount() doesn't include group(0), which is the full match.
-                // Thus if groupCount() == 1, we want to display group(1), not group(0).
-
-                for (int gCount = 1; gCount <= mat.groupCount(); gCount++) {
-                    builder.append(String.format("  Group %d: \"%s\"\n", gCount, mat.group(gCount)));
-                }
-
-                builder.append("\n");
+                RegexTester.appendMatch(builder, mat);
             }
 
-            return String.format("Matches: %d\n%s", matchCount, builder.toString());
+            return "Matches: " + matchCount + "\n" + builder;
+        } catch (RegexBudgetExceededException e) {
+            throw e;
         } catch (Exception e) {
             return "";
         }
@@ -617,6 +978,18 @@ public class StringTools {
      */
     private static String javaPublicPropertyPatStr = "^\\s*public\\s+[A-Za-z0-9<>\\[\\]_\\-]+\\s+(get|is)";
 
+    /**
+     * Appended to a public property pattern str to capture the name that follows.
+     * Same chars as the private var names.
+     */
+    private static String publicPropertyNameGroupStr = "([A-Za-z0-9<>\\[\\]_\\-]+)";
+
+    /**
+     * "public varType getMyVar" / "public boolean isMyBool"
+     * last group = "MyVar" / "MyBool" (and whatever else follows it in the name)
+     */
+    private static Pattern javaPublicPropertyPat = Pattern.compile(javaPublicPropertyPatStr + publicPropertyNameGroupStr);
+
     private static Pattern jdComment1 = Pattern.compile("^\\s*/\\*+");
     private static Pattern jdComment2 = Pattern.compile("^\\s*\\*");
     private static Pattern jdComment3 = Pattern.compile("^\\s*\\*/");
@@ -634,6 +1007,12 @@ public class StringTools {
      */
     private static String flexPublicPropertyPatStr = "^\\s*public\\s+function\\s+get\\s+";
 
+    /**
+     * "public function get myVar"
+     * last group = "myVar" (and whatever else follows it in the name)
+     */
+    private static Pattern flexPublicPropertyPat = Pattern.compile(flexPublicPropertyPatStr + publicPropertyNameGroupStr);
+
     private static Pattern fComment1 = Pattern.compile("^\\s*/\\*+");
     private static Pattern fComment2 = Pattern.compile("^\\s*\\*");
     private static Pattern fComment3 = Pattern.compile("^\\s*\\*/");
@@ -642,87 +1021,128 @@ public class StringTools {
      * Copies javadocs from the private var to the public get function.
      */
     public static String javaCopyVarDocs(String javaSrc) {
-        return copyVarDocs(javaSrc, javaPrivateVarPat, javaPublicPropertyPatStr, jdComment1, jdComment2, jdComment3,
-            new PreparePublicPropertyName() {
-                @Override
-                public String getPublicPropertyName(String privateVarName) {
-                    return capitalize(privateVarName);
-                }
-            });
+
+        long started = JAVA_COPY_VAR_DOCS.start();
+
+        try {
+
+            return JAVA_COPY_VAR_DOCS.done(started, javaSrc,
+                copyVarDocs(javaSrc, javaPrivateVarPat, javaPublicPropertyPat, jdComment1, jdComment2, jdComment3,
+                    new PreparePublicPropertyName() {
+                        @Override
+                        public String getPublicPropertyName(String privateVarName) {
+                            return capitalizeLines(privateVarName);
+                        }
+                    }));
+
+        } catch (RuntimeException e) {
+            throw JAVA_COPY_VAR_DOCS.failed(started, javaSrc, e);
+        }
     }
 
     public static String flexCopyVarDocs(String flexSrc) {
-        return copyVarDocs(flexSrc, flexPrivateVarPat, flexPublicPropertyPatStr, fComment1, fComment2, fComment3,
-            new PreparePublicPropertyName() {
-                @Override
-                public String getPublicPropertyName(String privateVarName) {
-                    if (privateVarName.startsWith("_")) {
-                        return privateVarName.substring(1);
-                    } else {
-                        return privateVarName;
-                    }
-                }
-            });
+
+        long started = FLEX_COPY_VAR_DOCS.start();
+
+        try {
+
+            return FLEX_COPY_VAR_DOCS.done(started, flexSrc,
+                copyVarDocs(flexSrc, flexPrivateVarPat, flexPublicPropertyPat, fComment1, fComment2, fComment3,
+                    new PreparePublicPropertyName() {
+                        @Override
+                        public String getPublicPropertyName(String privateVarName) {
+                            if (privateVarName.startsWith("_")) {
+                                return privateVarName.substring(1);
+                            } else {
+                                return privateVarName;
+                            }
+                        }
+                    }));
+
+        } catch (RuntimeException e) {
+            throw FLEX_COPY_VAR_DOCS.failed(started, flexSrc, e);
+        }
     }
 
+    /**
+     * @param publicPropertyPat matches a public property def; the last group is the property name
+     */
     private static String copyVarDocs(
         String src,
-        Pattern privateVarPat, String publicPropertyPatStr,
+        Pattern privateVarPat, Pattern publicPropertyPat,
         Pattern comment1, Pattern comment2, Pattern comment3,
         PreparePublicPropertyName publicPropertyNamePrep) {
 
-        // Map of: [ "myVarName" : "/** myVarName comment ... */" ]
-        Map<String, List<String>> varCommentMap = new HashMap<String, List<String>>();
-        Collection<String> finishedList = new ArrayList<String>();
+        // Map of public property name to the private var's comment: [ "MyVarName" : "/** myVarName comment ... */" ]
+        Map<String, List<String>> propertyCommentMap = new HashMap<String, List<String>>();
+        // Lengths of the names in the map, longest first.
+        SortedSet<Integer> nameLengthSet = new TreeSet<Integer>(Collections.<Integer>reverseOrder());
         List<String> commentList = new ArrayList<String>();
+        StringBuilder builder = new StringBuilder(src.length() + src.length() / 4);
 
-        // Break into separate lines.
-        String[] lineList = split(src);
+        // One matcher per pattern, reset onto each line's view of [src] rather than on a copy of it.
+        Matcher commentMat1 = comment1.matcher("");
+        Matcher commentMat2 = comment2.matcher("");
+        Matcher commentMat3 = comment3.matcher("");
+        Matcher privateVarMat = privateVarPat.matcher("");
+        Matcher publicPropMat = publicPropertyPat.matcher("");
 
-        for (String line : lineList) {
+        LineCursor cursor = LineCursor.withoutTrailingEmptyLines(src);
+
+        while (cursor.next()) {
+
+            CharSequence line = cursor.line();
 
             // Skip blank lines between comments and vars.
-            if (line.trim().isEmpty() && !commentList.isEmpty()) {
-                finishedList.add(line);
+            if (trimStart(line, 0, line.length()) == line.length() && !commentList.isEmpty()) {
+                appendLine(builder, line);
                 continue;
             }
 
             // Save any comments we come across.
-            Matcher commentMat1 = comment1.matcher(line);
-            Matcher commentMat2 = comment2.matcher(line);
-            Matcher commentMat3 = comment3.matcher(line);
-            boolean isComment = commentMat1.find() || commentMat2.find() || commentMat3.find();
+            boolean isComment =
+                commentMat1.reset(line).find() || commentMat2.reset(line).find() || commentMat3.reset(line).find();
 
             if (isComment) {
-                commentList.add(line);
+                commentList.add(cursor.lineString());
             }
 
             // Check for a private var definition:
 
-            Matcher privateVarMat = privateVarPat.matcher(line);
-            boolean isPrivateVarDef = privateVarMat.find();
+            boolean isPrivateVarDef = privateVarMat.reset(line).find();
 
             if (isPrivateVarDef && !commentList.isEmpty()) {
 
                 String varName = privateVarMat.group(2);
-                varCommentMap.put(varName, new ArrayList<String>(commentList));
+                String propertyName = publicPropertyNamePrep.getPublicPropertyName(varName);
+                propertyCommentMap.put(propertyName, new ArrayList<String>(commentList));
+                nameLengthSet.add(propertyName.length());
             }
 
             // Check for a public property definition with no preceding comment:
 
-            if (!isComment && !isPrivateVarDef && commentList.isEmpty()) {
+            if (!isComment && !isPrivateVarDef && commentList.isEmpty() && !propertyCommentMap.isEmpty()) {
 
-                for (String varName : varCommentMap.keySet()) {
+                if (publicPropMat.reset(line).find()) {
 
-                    // Build the custom public property pattern:
-                    String fullPublicPropPatStr = publicPropertyPatStr + publicPropertyNamePrep.getPublicPropertyName(varName);
-                    Pattern publicPropPat = Pattern.compile(fullPublicPropPatStr);
+                    // The var name only has to match the start of the property name ("getUserName" matches
+                    // "userName" and "user"), so look up each prefix we have a var for, longest first.
+                    String propertyName = publicPropMat.group(publicPropMat.groupCount());
 
-                    // Does this line match the public property def?
-                    Matcher publicPropMat = publicPropPat.matcher(line);
-                    if (publicPropMat.find()) {
-                        finishedList.addAll(varCommentMap.get(varName));
-                        break;
+                    for (int nameLength : nameLengthSet) {
+
+                        if (nameLength > propertyName.length()) {
+                            continue;
+                        }
+
+                        List<String> varComment = propertyCommentMap.get(propertyName.substring(0, nameLength));
+
+                        if (varComment != null) {
+                            for (String commentLine : varComment) {
+                                appendLine(builder, commentLine);
+                            }
+                            break;
+                        }
                     }
                 }
             }
@@ -732,10 +1152,30 @@ public class StringTools {
                 commentList.clear();
             }
 
-            finishedList.add(line);
+            appendLine(builder, line);
         }
 
-        return StringUtils.join(finishedList.toArray(), '\n');
+        // Lines are joined with '\n', not terminated by it.
+        if (builder.length() > 0) {
+            builder.setLength(builder.length() - 1);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Appends a line and its '\n'.
+     */
+    private static void appendLine(StringBuilder builder, CharSequence line) {
+
+        if (line instanceof CharSlice) {
+            CharSlice slice = (CharSlice) line;
+            builder.append(slice.text(), slice.start(), slice.end());
+        } else {
+            builder.append(line);
+        }
+
+        builder.append('\n');
     }
 
     private static interface PreparePublicPropertyName {
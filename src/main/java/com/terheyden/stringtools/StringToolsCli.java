@@ -0,0 +1,808 @@
+package com.terheyden.stringtools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Runs StringTools operations from the command line, without Swing, for use in shell pipelines:
+ * <pre>
+ *     java -jar stringtools.jar keep 'ERROR|FATAL' app.log | java -jar stringtools.jar sort --ignore-case
+ * </pre>
+ * Each operation is a subcommand; "help" lists them. Input is UTF-8 from a file, or stdin if there's no file
+ * (or it's "-"). Files are memory-mapped. Output is UTF-8 to stdout, one '\n' after every line.
+ * <p/>
+ * Line commands (indent, trim, keep, remove, sort, dedupe...) stream, so input of any size works.
+ * Whole-document commands (replace, template, regex-info...) have to read all of their input first.
+ * <p/>
+ * Errors go to stderr as one line, and the exit code says what kind they were; see the EXIT_ constants.
+ * <p/>
+ * With -Dstringtools.metrics=true, each command is recorded in {@link OperationMetrics} as "cli COMMAND",
+ * along with the StringTools operations it runs, and the numbers go to stderr at the end. Under the daemon,
+ * the "metrics" command shows the daemon's numbers.
+ */
+public final class StringToolsCli {
+
+    public static final int EXIT_OK = 0;
+
+    /**
+     * Something unexpected went wrong.
+     */
+    public static final int EXIT_FAILURE = 1;
+
+    /**
+     * Bad command line: unknown command or option, missing argument, invalid regex.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Couldn't read the input or write the output.
+     */
+    public static final int EXIT_IO = 3;
+
+    /**
+     * A regex ran past its --budget-ms.
+     */
+    public static final int EXIT_REGEX_BUDGET = 4;
+
+    private static final String NAME = "stringtools";
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private static final Map<String, Command> COMMANDS = new LinkedHashMap<String, Command>();
+
+    private StringToolsCli() {
+        // Static only.
+    }
+
+    public static void main(String[] args) {
+
+        // Not System.out: it's a PrintStream, which swallows write errors like a closed pipe.
+        int exitCode = run(args, System.in, new FileOutputStream(FileDescriptor.out), System.err);
+
+        if (OperationMetrics.isEnabled()) {
+            System.err.print(OperationMetrics.dump());
+        }
+
+        System.exit(exitCode);
+    }
+
+    /**
+     * Runs one command. Flushes [out], but doesn't close any of the streams.
+     * @return the exit code
+     */
+    public static int run(String[] args, InputStream in, OutputStream out, PrintStream err) {
+        return run(args, null, in, out, err);
+    }
+
+    /**
+     * @param workingDir what relative file names are relative to, or null for the current directory
+     */
+    public static int run(String[] args, File workingDir, InputStream in, OutputStream out, PrintStream err) {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
+
+        try {
+
+            if (args.length == 0) {
+                throw new UsageException("no command given");
+            }
+
+            Command command = COMMANDS.get(args[0]);
+
+            if (command == null) {
+                throw new UsageException("unknown command '" + args[0] + "'");
+            }
+
+            Args commandArgs = command.parse(args, workingDir);
+            Reader reader = command.readsInput ? commandArgs.openInput(in) : null;
+
+            try {
+                runCommand(command, commandArgs, reader, writer);
+            } finally {
+                if (reader != null && commandArgs.inputFile != null) {
+                    reader.close();
+                }
+            }
+
+            writer.flush();
+            return EXIT_OK;
+
+        } catch (UsageException e) {
+            err.println(NAME + ": " + e.getMessage());
+            err.println("Try '" + NAME + " help' for usage.");
+            return EXIT_USAGE;
+
+        } catch (PatternSyntaxException e) {
+            err.println(NAME + ": invalid regex: " + e.getDescription() + " near index " + e.getIndex() + ": " + e.getPattern());
+            return EXIT_USAGE;
+
+        } catch (RegexBudgetExceededException e) {
+            flushQuietly(writer);
+            err.println(NAME + ": " + e.getMessage());
+            return EXIT_REGEX_BUDGET;
+
+        } catch (FileNotFoundException e) {
+            err.println(NAME + ": " + e.getMessage());
+            return EXIT_IO;
+
+        } catch (IOException e) {
+            err.println(NAME + ": I/O error: " + e.getMessage());
+            return EXIT_IO;
+
+        } catch (IllegalArgumentException e) {
+            // Regex the LINEAR engine can't run, mismatched bullet markup and the like.
+            err.println(NAME + ": " + e.getMessage());
+            return EXIT_USAGE;
+
+        } catch (RuntimeException e) {
+            err.println(NAME + ": " + e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Runs the command, and records it if metrics are on.
+     */
+    private static void runCommand(Command command, Args args, Reader in, Writer out) throws IOException, UsageException {
+
+        OperationMetrics.Operation operation = OperationMetrics.operation("cli " + command.name);
+        long started = command.isMetered() ? operation.start() : OperationMetrics.Operation.NOT_RECORDING;
+
+        if (!operation.isRecording(started)) {
+            command.run(args, in, out);
+            return;
+        }
+
+        // Counting looks at every char, so only while recording.
+        CountingReader countingIn = in == null ? null : new CountingReader(in);
+        CountingWriter countingOut = new CountingWriter(out);
+
+        try {
+            command.run(args, countingIn, countingOut);
+            out.flush();
+        } catch (Exception e) {
+            operation.failed(started, null, e);
+            throw e;
+        }
+
+        operation.done(started, countingIn == null ? 0 : countingIn.chars, countingIn == null ? 0 : countingIn.lines(),
+            countingOut.chars, countingOut.lines());
+    }
+
+    private static void flushQuietly(Writer writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            // Already failing.
+        }
+    }
+
+    static String usage() {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("Usage: ").append(NAME).append(" <command> [options] [args] [file]\n\n");
+        builder.append("Reads UTF-8 text from the file, or stdin if there's none (or it's '-'), and writes to stdout.\n\n");
+        builder.append("Commands:\n");
+
+        for (Command command : COMMANDS.values()) {
+            String synopsis = command.name + (command.synopsis.isEmpty() ? "" : " " + command.synopsis);
+            builder.append(String.format("  %-44s %s%n", synopsis, command.summary));
+        }
+
+        builder.append("\nExit codes: 0 ok, 1 unexpected error, 2 bad usage or regex, 3 I/O error, 4 regex budget exceeded.\n");
+        return builder.toString();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////
+    ///////////// COMMANDS
+
+    static {
+
+        add(new Command("help", "", "Show this help.", 0, "", false) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                out.write(usage());
+            }
+        });
+
+        add(new Command("indent", "N", "Indent every line N spaces; negative N to unindent.", 1, "", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+                new LinePipeline().indent(args.intParam(0)).apply(in, out);
+            }
+        });
+
+        add(new Command("insert", "TEXT [--end]", "Insert TEXT at the start (or end) of every line.", 1,
+            "--end", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                new LinePipeline().insert(args.param(0), args.flag("--end") ? "end" : "beginning").apply(in, out);
+            }
+        });
+
+        add(new Command("trim", "CHARS [--from begin|end|both]", "Trim any of CHARS off every line (default both ends).", 1,
+            "--from=", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+
+                String from = args.option("--from", "both");
+                String where = from.equals("begin") ? "beginning" : from.equals("end") ? "end" : from.equals("both") ? "begin + end" : null;
+
+                if (where == null) {
+                    throw new UsageException("trim: --from must be begin, end or both, not '" + from + "'");
+                }
+
+                new LinePipeline().trimChars(args.param(0), where).apply(in, out);
+            }
+        });
+
+        add(new Command("capitalize", "", "Capitalize the first letter of every line.", 0, "", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                new LinePipeline().capitalize().apply(in, out);
+            }
+        });
+
+        add(new Command("bullets", "SRC DEST [--indent N]", "Convert bullet markup, e.g. bullets '*|**' '-|  -'.", 2,
+            "--indent=", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+                new LinePipeline().convertBullets(args.param(0), args.param(1), args.intOption("--indent", 0)).apply(in, out);
+            }
+        });
+
+        add(new FilterCommand("keep", "Keep only lines containing a match for REGEX.", true));
+        add(new FilterCommand("remove", "Remove lines containing a match for REGEX.", false));
+
+        add(new Command("sort", "[--ignore-case] [--reverse] [--natural | --locale TAG] [--memory-mb N]",
+            "Sort lines, numbers in order or by a language (e.g. de-DE); spills to temp files past N MB.", 0,
+            "--ignore-case --reverse --natural --locale= --memory-mb=", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+
+                boolean ignoreCase = args.flag("--ignore-case");
+                boolean reverse = args.flag("--reverse");
+                String localeTag = args.option("--locale", null);
+                Comparator<String> order;
+
+                if (localeTag != null && args.flag("--natural")) {
+                    throw new UsageException("sort: use --natural or --locale, not both");
+                } else if (localeTag != null) {
+                    order = LineComparators.collated(Locale.forLanguageTag(localeTag), ignoreCase, reverse);
+                } else if (args.flag("--natural")) {
+                    order = LineComparators.natural(ignoreCase, reverse);
+                } else {
+                    order = LineComparators.alpha(ignoreCase, reverse);
+                }
+
+                new ExternalSorter(args.memoryBudget(ExternalSorter.DEFAULT_MEMORY_BUDGET)).sort(in, out, order);
+            }
+        });
+
+        add(new Command("dedupe", "[--ignore-case] [--memory-mb N]", "Remove duplicate lines, keeping the first of each.", 0,
+            "--ignore-case --memory-mb=", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+                new ExternalDedupe(args.memoryBudget(ExternalDedupe.DEFAULT_MEMORY_BUDGET)).dedupe(in, out, args.flag("--ignore-case"));
+            }
+        });
+
+        add(new Command("uuid", "COUNT [--format F] [--fast] [--time-ordered]",
+            "Generate UUIDs; F is lower, upper, lower-dashless or upper-dashless.", 1,
+            "--format= --fast --time-ordered", false) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+
+                long count = args.longParam(0);
+                UuidGenerator.Format format = args.enumOption("--format", UuidGenerator.Format.class, UuidGenerator.Format.LOWER);
+                UuidGenerator generator = new UuidGenerator(
+                    args.flag("--fast") ? UuidGenerator.Source.FAST : UuidGenerator.Source.SECURE,
+                    args.flag("--time-ordered") ? UuidGenerator.Version.TIME_ORDERED : UuidGenerator.Version.RANDOM);
+
+                generator.write(out, count, format);
+            }
+        });
+
+        add(new Command("replace", "REGEX REPLACEMENT [--budget-ms N]", "Regex replace over the whole document.", 2,
+            "--budget-ms=", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+                writeText(out, StringTools.regexReplaceText(readAll(in), args.param(0), args.param(1), args.budget()));
+            }
+        });
+
+        add(new Command("smart-replace", "FIND REPLACE", "Replace FIND in each of its cases (camelCase, UPPER, snake_case...).", 2,
+            "", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                writeText(out, StringTools.smartReplaceText(readAll(in), args.param(0), args.param(1)));
+            }
+        });
+
+        add(new Command("template", "TEMPLATE", "Fill TEMPLATE's %1, %2... from each line's ';'-separated values.", 1,
+            "", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                writeText(out, StringTools.insertTemplateText(args.param(0), readAll(in)));
+            }
+        });
+
+        add(new Command("regex-info", "REGEX [--budget-ms N]", "Show what REGEX matches in the document.", 1,
+            "--budget-ms=", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+                writeText(out, StringTools.getRegexInfo(readAll(in), args.param(0), 0, args.budget()));
+            }
+        });
+
+        add(new Command("javadoc-to-wiki", "", "Convert Javadoc to MediaWiki markup.", 0, "", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                writeText(out, StringTools.convertJavadocToMediaWiki(readAll(in)));
+            }
+        });
+
+        add(new Command("java-var-docs", "", "Copy javadocs from private fields to their public getters.", 0, "", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                writeText(out, StringTools.javaCopyVarDocs(readAll(in)));
+            }
+        });
+
+        add(new Command("daemon", "[--port N] [--threads N] [--metrics]",
+            "Run commands for StringToolsClient from one warm JVM, until stopped.", 0, "--port= --threads= --metrics", false) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+
+                if (args.flag("--metrics")) {
+                    OperationMetrics.setEnabled(true);
+                }
+
+                StringToolsDaemon daemon = new StringToolsDaemon(args.intOption("--port", 0),
+                    args.intOption("--threads", Runtime.getRuntime().availableProcessors()), DaemonProtocol.defaultInfoFile());
+
+                daemon.start();
+                out.write("Listening on port " + daemon.getPort() + "\n");
+                out.flush();
+
+                try {
+                    daemon.awaitClose();
+                } catch (InterruptedException e) {
+                    daemon.close();
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            boolean isMetered() {
+                return false;
+            }
+        });
+
+        add(new Command("metrics", "[--reset]",
+            "Show how often and how fast each operation has run in this JVM; the daemon's, through the client.", 0,
+            "--reset", false) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+
+                out.write(OperationMetrics.dump());
+
+                if (args.flag("--reset")) {
+                    OperationMetrics.reset();
+                }
+            }
+
+            @Override
+            boolean isMetered() {
+                return false;
+            }
+        });
+
+        add(new Command("flex-var-docs", "", "Copy docs from private Flex vars to their public getters.", 0, "", true) {
+            @Override
+            void run(Args args, Reader in, Writer out) throws IOException {
+                writeText(out, StringTools.flexCopyVarDocs(readAll(in)));
+            }
+        });
+    }
+
+    private static void add(Command command) {
+        COMMANDS.put(command.name, command);
+    }
+
+    private static String readAll(Reader in) throws IOException {
+
+        StringBuilder builder = new StringBuilder();
+        char[] buf = new char[64 * 1024];
+        int read;
+
+        while ((read = in.read(buf)) >= 0) {
+            builder.append(buf, 0, read);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Whole-document results, ending with a line break like everything else we write.
+     */
+    private static void writeText(Writer out, String text) throws IOException {
+
+        out.write(text);
+
+        if (!text.isEmpty() && !text.endsWith("\n")) {
+            out.write('\n');
+        }
+    }
+
+    private abstract static class Command {
+
+        final String name;
+        final String synopsis;
+        final String summary;
+        final int paramCount;
+        final boolean readsInput;
+
+        // Options taking a value are listed with a trailing '='.
+        final Set<String> valueOptions = new HashSet<String>();
+        final Set<String> flagOptions = new HashSet<String>();
+
+        /**
+         * @param options space-separated, e.g. "--ignore-case --memory-mb="
+         */
+        Command(String name, String synopsis, String summary, int paramCount, String options, boolean readsInput) {
+
+            this.name = name;
+            this.synopsis = synopsis + (readsInput ? " [file]" : "");
+            this.summary = summary;
+            this.paramCount = paramCount;
+            this.readsInput = readsInput;
+
+            for (String option : options.split(" ")) {
+                if (option.endsWith("=")) {
+                    valueOptions.add(option.substring(0, option.length() - 1));
+                } else if (!option.isEmpty()) {
+                    flagOptions.add(option);
+                }
+            }
+        }
+
+        abstract void run(Args args, Reader in, Writer out) throws IOException, UsageException;
+
+        /**
+         * Whether runs are recorded in {@link OperationMetrics}; not for commands about StringTools itself.
+         */
+        boolean isMetered() {
+            return true;
+        }
+
+        /**
+         * Options can go anywhere after the command; "--" ends them.
+         */
+        Args parse(String[] argv, File workingDir) throws UsageException {
+
+            Args args = new Args(name);
+            boolean optionsDone = false;
+
+            for (int index = 1; index < argv.length; index++) {
+
+                String arg = argv[index];
+
+                if (optionsDone || !arg.startsWith("--")) {
+                    args.paramList.add(arg);
+                } else if (arg.equals("--")) {
+                    optionsDone = true;
+                } else if (flagOptions.contains(arg)) {
+                    args.flagSet.add(arg);
+                } else if (valueOptions.contains(arg)) {
+                    if (index + 1 >= argv.length) {
+                        throw new UsageException(name + ": " + arg + " needs a value");
+                    }
+                    args.valueMap.put(arg, argv[++index]);
+                } else {
+                    throw new UsageException(name + ": unknown option '" + arg + "'");
+                }
+            }
+
+            int maxParams = paramCount + (readsInput ? 1 : 0);
+
+            if (args.paramList.size() < paramCount) {
+                throw new UsageException(name + ": expected " + synopsis.trim());
+            }
+
+            if (args.paramList.size() > maxParams) {
+                throw new UsageException(name + ": too many arguments");
+            }
+
+            if (args.paramList.size() > paramCount && !args.paramList.get(paramCount).equals("-")) {
+                File file = new File(args.paramList.get(paramCount));
+                args.inputFile = file.isAbsolute() || workingDir == null ? file : new File(workingDir, file.getPath());
+            }
+
+            return args;
+        }
+    }
+
+    /**
+     * keep / remove.
+     */
+    private static final class FilterCommand extends Command {
+
+        private final boolean keep;
+
+        FilterCommand(String name, String summary, boolean keep) {
+            super(name, "REGEX [--engine auto|backtracking|linear] [--budget-ms N]", summary, 1, "--engine= --budget-ms=", true);
+            this.keep = keep;
+        }
+
+        @Override
+        void run(Args args, Reader in, Writer out) throws IOException, UsageException {
+
+            RegexEngine engine = args.enumOption("--engine", RegexEngine.class, RegexEngine.AUTO);
+
+            new LinePipeline()
+                .removeLinesContaining(keep, args.param(0), args.budget(), engine)
+                .apply(in, out);
+        }
+    }
+
+    /**
+     * One command's parsed arguments.
+     */
+    private static final class Args {
+
+        private final String command;
+        final List<String> paramList = new ArrayList<String>();
+        final Map<String, String> valueMap = new HashMap<String, String>();
+        final Set<String> flagSet = new HashSet<String>();
+        File inputFile;
+
+        Args(String command) {
+            this.command = command;
+        }
+
+        String param(int index) {
+            return paramList.get(index);
+        }
+
+        int intParam(int index) throws UsageException {
+
+            long number = longParam(index);
+
+            if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE) {
+                throw new UsageException(command + ": " + param(index) + " is too big");
+            }
+
+            return (int) number;
+        }
+
+        long longParam(int index) throws UsageException {
+            return parseLong("argument", param(index));
+        }
+
+        boolean flag(String name) {
+            return flagSet.contains(name);
+        }
+
+        String option(String name, String defaultValue) {
+            String value = valueMap.get(name);
+            return value == null ? defaultValue : value;
+        }
+
+        int intOption(String name, int defaultValue) throws UsageException {
+
+            String value = valueMap.get(name);
+
+            try {
+                return value == null ? defaultValue : Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new UsageException(command + ": " + name + " must be a number, not '" + value + "'");
+            }
+        }
+
+        /**
+         * An enum constant by name, ignoring case, with '-' for '_'.
+         */
+        <E extends Enum<E>> E enumOption(String name, Class<E> enumClass, E defaultValue) throws UsageException {
+
+            String value = valueMap.get(name);
+
+            if (value == null) {
+                return defaultValue;
+            }
+
+            try {
+                return Enum.valueOf(enumClass, value.toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new UsageException(command + ": unknown " + name + " '" + value + "'");
+            }
+        }
+
+        RegexBudget budget() throws UsageException {
+            String value = valueMap.get("--budget-ms");
+            return value == null ? RegexBudget.UNLIMITED : RegexBudget.ofMillis(parsePositive("--budget-ms", value));
+        }
+
+        long memoryBudget(long defaultBytes) throws UsageException {
+            String value = valueMap.get("--memory-mb");
+            return value == null ? defaultBytes : parsePositive("--memory-mb", value) * 1024 * 1024;
+        }
+
+        private long parsePositive(String name, String value) throws UsageException {
+
+            long number = parseLong(name, value);
+
+            if (number <= 0) {
+                throw new UsageException(command + ": " + name + " must be positive, not " + value);
+            }
+
+            return number;
+        }
+
+        private long parseLong(String name, String value) throws UsageException {
+
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new UsageException(command + ": " + name + " must be a number, not '" + value + "'");
+            }
+        }
+
+        /**
+         * The input file, memory-mapped, or stdin.
+         */
+        Reader openInput(InputStream stdin) throws IOException {
+
+            if (inputFile == null) {
+                return new InputStreamReader(stdin, StandardCharsets.UTF_8);
+            }
+
+            if (!inputFile.isFile()) {
+                throw new FileNotFoundException(inputFile + ": " + (inputFile.exists() ? "not a file" : "no such file"));
+            }
+
+            return new MappedFileReader(inputFile, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Counts the chars read, and the lines.
+     */
+    private static final class CountingReader extends FilterReader {
+
+        long chars;
+        private long lines;
+        private char last;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            int c = super.read();
+
+            if (c >= 0) {
+                count((char) c);
+            }
+
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+
+            int read = super.read(cbuf, off, len);
+
+            for (int index = off; index < off + read; index++) {
+                count(cbuf[index]);
+            }
+
+            return read;
+        }
+
+        private void count(char c) {
+
+            chars++;
+            last = c;
+
+            if (c == '\n') {
+                lines++;
+            }
+        }
+
+        long lines() {
+            return chars > 0 && last != '\n' ? lines + 1 : lines;
+        }
+    }
+
+    /**
+     * Counts the chars written, and the lines.
+     */
+    private static final class CountingWriter extends FilterWriter {
+
+        long chars;
+        private long lines;
+        private char last;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            super.write(c);
+            count((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+
+            super.write(cbuf, off, len);
+
+            for (int index = off; index < off + len; index++) {
+                count(cbuf[index]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+
+            super.write(str, off, len);
+
+            for (int index = off; index < off + len; index++) {
+                count(str.charAt(index));
+            }
+        }
+
+        private void count(char c) {
+
+            chars++;
+            last = c;
+
+            if (c == '\n') {
+                lines++;
+            }
+        }
+
+        long lines() {
+            return chars > 0 && last != '\n' ? lines + 1 : lines;
+        }
+    }
+
+    /**
+     * A mistake on the command line.
+     */
+    private static final class UsageException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UsageException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.terheyden.stringtools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Runs a {@link StringToolsCli} command on a running {@link StringToolsDaemon}: same arguments, same output,
+ * same exit code, without starting StringTools up cold. It does nothing but forward stdin, stdout and stderr.
+ * <pre>
+ *     java -cp stringtools.jar com.terheyden.stringtools.StringToolsClient keep ERROR app.log
+ *     java -cp stringtools.jar com.terheyden.stringtools.StringToolsClient --stop
+ * </pre>
+ * File names are resolved against the client's working directory, not the daemon's.
+ */
+public final class StringToolsClient {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private StringToolsClient() {
+        // Static only.
+    }
+
+    public static void main(String[] args) {
+
+        int exitCode = run(args, new File("").getAbsoluteFile(), System.in,
+            new FileOutputStream(FileDescriptor.out), new FileOutputStream(FileDescriptor.err), DaemonProtocol.defaultInfoFile());
+
+        System.exit(exitCode);
+    }
+
+    /**
+     * Sends the command to the daemon, and copies its output back.
+     * "--stop" as the only argument stops the daemon instead.
+     * @param infoFile the daemon's port and token
+     * @return the command's exit code
+     */
+    public static int run(String[] args, File workingDir, final InputStream in, OutputStream out, OutputStream err, File infoFile) {
+
+        PrintStream errPrint = new PrintStream(err, true);
+        Properties info = new Properties();
+
+        try (InputStream infoIn = new FileInputStream(infoFile)) {
+            info.load(infoIn);
+        } catch (IOException e) {
+            errPrint.println("stringtools: no daemon running (no " + infoFile + "); start one with 'stringtools daemon'");
+            return StringToolsCli.EXIT_IO;
+        }
+
+        boolean stop = args.length == 1 && args[0].equals("--stop");
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(info.getProperty("port", "0")))) {
+
+            final DataOutputStream socketOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream socketIn = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+
+            socketOut.writeInt(DaemonProtocol.VERSION);
+            socketOut.writeUTF(info.getProperty("token", ""));
+
+            if (stop) {
+                socketOut.writeByte(DaemonProtocol.STOP);
+                socketOut.flush();
+                return readResponse(socketIn, out, err);
+            }
+
+            socketOut.writeByte(DaemonProtocol.RUN);
+            socketOut.writeUTF(workingDir.getPath());
+            socketOut.writeInt(args.length);
+            for (String arg : args) {
+                socketOut.writeUTF(arg);
+            }
+            socketOut.flush();
+
+            // Stdin goes up while output comes down; a command may write long before its input ends.
+            Thread stdinThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    pumpStdin(in, socketOut);
+                }
+            }, "stringtools-client-stdin");
+
+            stdinThread.setDaemon(true);
+            stdinThread.start();
+
+            return readResponse(socketIn, out, err);
+
+        } catch (ConnectException e) {
+            errPrint.println("stringtools: no daemon listening on port " + info.getProperty("port")
+                + "; start one with 'stringtools daemon'");
+            return StringToolsCli.EXIT_IO;
+        } catch (EOFException e) {
+            errPrint.println("stringtools: the daemon hung up");
+            return StringToolsCli.EXIT_IO;
+        } catch (IOException | NumberFormatException e) {
+            errPrint.println("stringtools: talking to the daemon: " + e.getMessage());
+            return StringToolsCli.EXIT_IO;
+        }
+    }
+
+    private static void pumpStdin(InputStream in, DataOutputStream socketOut) {
+
+        DaemonProtocol.FrameOutputStream frames = new DaemonProtocol.FrameOutputStream(socketOut, DaemonProtocol.STDIN);
+        byte[] buf = new byte[BUFFER_SIZE];
+        int read;
+
+        try {
+
+            while ((read = in.read(buf)) >= 0) {
+                frames.write(buf, 0, read);
+                frames.flush();
+            }
+
+            frames.end();
+
+        } catch (IOException e) {
+            // The command finished without reading everything, and the daemon hung up. That's fine.
+        }
+    }
+
+    /**
+     * Copies STDOUT and STDERR frames until the EXIT frame.
+     */
+    private static int readResponse(DataInputStream socketIn, OutputStream out, OutputStream err) throws IOException {
+
+        byte[] buf = new byte[DaemonProtocol.MAX_FRAME_BYTES];
+
+        while (true) {
+
+            byte frameType = socketIn.readByte();
+
+            if (frameType == DaemonProtocol.EXIT) {
+                int exitCode = socketIn.readInt();
+                out.flush();
+                err.flush();
+                return exitCode;
+            }
+
+            int length = DaemonProtocol.readLength(socketIn);
+            socketIn.readFully(buf, 0, length);
+
+            if (frameType == DaemonProtocol.STDOUT) {
+                out.write(buf, 0, length);
+            } else if (frameType == DaemonProtocol.STDERR) {
+                err.write(buf, 0, length);
+            } else {
+                throw new IOException("Unexpected frame type " + (char) frameType);
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.terheyden.stringtools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps one warm JVM around to run {@link StringToolsCli} commands for {@link StringToolsClient},
+ * so scripts that call StringTools thousands of times pay for JVM startup and JIT warmup once, and share
+ * the compiled pattern cache.
+ * <pre>
+ *     java -jar stringtools.jar daemon &amp;
+ *     echo "b\na" | java -cp stringtools.jar com.terheyden.stringtools.StringToolsClient sort
+ * </pre>
+ * It listens on a loopback TCP port (Unix domain sockets need Java 16) and runs each request on a bounded
+ * thread pool; requests past the pool and its queue are turned away rather than piling up.
+ * The port and a random token go in an info file only the current user can read, and every request
+ * has to present the token, so other users on the machine can't run commands as this one.
+ * See {@link DaemonProtocol} for the wire format.
+ */
+public final class StringToolsDaemon {
+
+    private static final Logger log = Logger.getLogger(StringToolsDaemon.class.getName());
+
+    /**
+     * Requests waiting for a thread, past which new ones are turned away.
+     */
+    private static final int QUEUE_SIZE = 64;
+
+    /**
+     * How long a client gets to send its request before we hang up on it.
+     */
+    private static final int REQUEST_TIMEOUT_MS = 10000;
+
+    private final int requestedPort;
+    private final File infoFile;
+    private final String token;
+    private final ThreadPoolExecutor executor;
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    private ServerSocket serverSocket;
+
+    /**
+     * @param port the port to listen on, or 0 for any free one
+     * @param threads how many commands may run at once
+     * @param infoFile where to write the port and token for clients
+     */
+    public StringToolsDaemon(int port, int threads, File infoFile) {
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Need at least one thread: " + threads);
+        }
+
+        this.requestedPort = port;
+        this.infoFile = infoFile;
+        this.token = new UuidGenerator().nextString(UuidGenerator.Format.LOWER_DASHLESS);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new DaemonThreadFactory());
+    }
+
+    public StringToolsDaemon() {
+        this(0, Runtime.getRuntime().availableProcessors(), DaemonProtocol.defaultInfoFile());
+    }
+
+    public static void main(String[] args) {
+        StringToolsCli.main(concat("daemon", args));
+    }
+
+    /**
+     * Starts listening, and writes the info file.
+     */
+    public synchronized void start() throws IOException {
+
+        if (serverSocket != null) {
+            throw new IllegalStateException("Already started");
+        }
+
+        serverSocket = new ServerSocket(requestedPort, QUEUE_SIZE, InetAddress.getLoopbackAddress());
+
+        // So metrics can be watched, and turned on, in JConsole; see the daemon's --metrics.
+        OperationMetrics.registerMBean();
+
+        try {
+            writeInfoFile();
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "stringtools-daemon-accept");
+
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Blocks until the daemon is closed, by {@link #close()} or a client's stop request.
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stops taking requests, lets running ones finish, and removes the info file.
+     */
+    public synchronized void close() {
+
+        if (closed.getCount() == 0) {
+            return;
+        }
+
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log.log(Level.FINE, "Closing server socket", e);
+        }
+
+        executor.shutdown();
+        deleteInfoFile();
+        closed.countDown();
+    }
+
+    private void acceptLoop() {
+
+        while (!serverSocket.isClosed()) {
+
+            final Socket socket;
+
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.log(Level.WARNING, "Accept failed", e);
+                }
+                continue;
+            }
+
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                turnAway(socket);
+            }
+        }
+    }
+
+    /**
+     * Too busy (or shutting down): tell the client, without reading its request.
+     */
+    private static void turnAway(Socket socket) {
+
+        try {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            PrintStream err = new PrintStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDERR), true, "UTF-8");
+            err.println("stringtools: daemon is busy; try again");
+            DaemonProtocol.writeExit(out, StringToolsCli.EXIT_FAILURE);
+        } catch (IOException e) {
+            log.log(Level.FINE, "Turning away a client", e);
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private void handle(Socket socket) {
+
+        try {
+
+            socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            PrintStream err = new PrintStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDERR), true, "UTF-8");
+
+            int version = in.readInt();
+            String clientToken = in.readUTF();
+
+            if (version != DaemonProtocol.VERSION) {
+                err.println("stringtools: client speaks protocol " + version + ", daemon speaks " + DaemonProtocol.VERSION);
+                DaemonProtocol.writeExit(out, StringToolsCli.EXIT_USAGE);
+                return;
+            }
+
+            if (!MessageDigest.isEqual(clientToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+                err.println("stringtools: wrong daemon token");
+                DaemonProtocol.writeExit(out, StringToolsCli.EXIT_USAGE);
+                return;
+            }
+
+            byte requestType = in.readByte();
+
+            if (requestType == DaemonProtocol.STOP) {
+                DaemonProtocol.writeExit(out, StringToolsCli.EXIT_OK);
+                close();
+                return;
+            }
+
+            if (requestType != DaemonProtocol.RUN) {
+                throw new IOException("Unknown request type " + requestType);
+            }
+
+            File workingDir = new File(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int index = 0; index < args.length; index++) {
+                args[index] = in.readUTF();
+            }
+
+            // The command can take as long as its input does.
+            socket.setSoTimeout(0);
+
+            int exitCode;
+
+            if (args.length > 0 && args[0].equals("daemon")) {
+                err.println("stringtools: the daemon is already running");
+                exitCode = StringToolsCli.EXIT_USAGE;
+            } else {
+                OutputStream stdout = new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDOUT);
+                InputStream stdin = new DaemonProtocol.FrameInputStream(in);
+                exitCode = StringToolsCli.run(args, workingDir, stdin, stdout, err);
+            }
+
+            err.flush();
+            DaemonProtocol.writeExit(out, exitCode);
+
+            // Closing with unread stdin in the buffer would reset the connection, maybe before the client
+            // has read the exit code. So wait for the client to hang up first.
+            socket.shutdownOutput();
+            socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+            while (in.read(new byte[8192]) >= 0) {
+                // Discard.
+            }
+
+        } catch (SocketException e) {
+            // The client went away; nobody's left to tell.
+            log.log(Level.FINE, "Client hung up", e);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Bad request", e);
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Port and token, readable by this user only.
+     */
+    private void writeInfoFile() throws IOException {
+
+        File dir = infoFile.getAbsoluteFile().getParentFile();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+
+        Properties info = new Properties();
+        info.setProperty("port", String.valueOf(getPort()));
+        info.setProperty("token", token);
+
+        // Create it empty and lock it down before the token goes in.
+        File tempFile = new File(dir, infoFile.getName() + ".tmp");
+        new FileOutputStream(tempFile).close();
+        ownerOnly(tempFile);
+
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            info.store(out, "StringTools daemon");
+        }
+
+        if (!tempFile.renameTo(infoFile)) {
+            // Windows won't rename over an existing file.
+            infoFile.delete();
+            if (!tempFile.renameTo(infoFile)) {
+                throw new IOException("Can't write " + infoFile);
+            }
+        }
+    }
+
+    private static void ownerOnly(File file) {
+        file.setReadable(false, false);
+        file.setReadable(true, true);
+        file.setWritable(false, false);
+        file.setWritable(true, true);
+    }
+
+    /**
+     * Only if it's still ours; another daemon may have started since.
+     */
+    private void deleteInfoFile() {
+
+        Properties info = new Properties();
+
+        try (InputStream in = new FileInputStream(infoFile)) {
+            info.load(in);
+        } catch (IOException e) {
+            return;
+        }
+
+        if (token.equals(info.getProperty("token"))) {
+            infoFile.delete();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing to do.
+        }
+    }
+
+    private static String[] concat(String first, String[] rest) {
+        String[] all = new String[rest.length + 1];
+        all[0] = first;
+        System.arraycopy(rest, 0, all, 1, rest.length);
+        return all;
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "stringtools-daemon-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A text template with %1, %2, ... placeholders, parsed once so it can be rendered for any number of rows.
+ * <p/>
+ * A placeholder is a '%' followed by as many digits as there are, so "%10" is always param 10, never param 1
+ * followed by a "0". Params are copied in as-is; '$', '\' and '%' in a param mean nothing special.
+ * A placeholder with no matching param (or "%0") is left in the output unchanged.
+ */
+public final class Template {
+
+    /**
+     * Longest param number we'll parse, so "%99999999999" doesn't overflow.
+     */
+    private static final int MAX_DIGITS = 9;
+
+    private final String templateStr;
+
+    // The template alternates literal text and placeholders: literal[0] param[0] literal[1] ... literal[n].
+    private final String[] literals;
+    private final int[] paramNums;
+    private final String[] placeholders;
+
+    private Template(String templateStr, String[] literals, int[] paramNums, String[] placeholders) {
+        this.templateStr = templateStr;
+        this.literals = literals;
+        this.paramNums = paramNums;
+        this.placeholders = placeholders;
+    }
+
+    public static Template compile(String templateStr) {
+
+        List<String> literalList = new ArrayList<String>();
+        List<Integer> paramNumList = new ArrayList<Integer>();
+        List<String> placeholderList = new ArrayList<String>();
+
+        int literalStart = 0;
+        int pos = 0;
+
+        while (pos < templateStr.length()) {
+
+            if (templateStr.charAt(pos) != '%') {
+                pos++;
+                continue;
+            }
+
+            int digitEnd = pos + 1;
+            while (digitEnd < templateStr.length() && isDigit(templateStr.charAt(digitEnd))) {
+                digitEnd++;
+            }
+
+            int digitCount = digitEnd - pos - 1;
+            int paramNum = digitCount == 0 || digitCount > MAX_DIGITS ? 0 : Integer.parseInt(templateStr.substring(pos + 1, digitEnd));
+
+            if (paramNum == 0) {
+                // Just a '%', or "%0": plain text.
+                pos = Math.max(pos + 1, digitEnd);
+                continue;
+            }
+
+            literalList.add(templateStr.substring(literalStart, pos));
+            paramNumList.add(paramNum);
+            placeholderList.add(templateStr.substring(pos, digitEnd));
+
+            pos = digitEnd;
+            literalStart = digitEnd;
+        }
+
+        literalList.add(templateStr.substring(literalStart));
+
+        int[] paramNums = new int[paramNumList.size()];
+        for (int count = 0; count < paramNums.length; count++) {
+            paramNums[count] = paramNumList.get(count);
+        }
+
+        return new Template(
+            templateStr,
+            literalList.toArray(new String[literalList.size()]),
+            paramNums,
+            placeholderList.toArray(new String[placeholderList.size()]));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public String getTemplateStr() {
+        return templateStr;
+    }
+
+    /**
+     * How many placeholders the template has (a param used twice counts twice).
+     */
+    public int getPlaceholderCount() {
+        return paramNums.length;
+    }
+
+    /**
+     * Appends the template to [out], with %1 replaced by params[0], %2 by params[1], etc.
+     * Only the first [paramCount] params are used, so a params array can be reused between rows.
+     */
+    public StringBuilder render(StringBuilder out, CharSequence[] params, int paramCount) {
+
+        out.append(literals[0]);
+
+        for (int count = 0; count < paramNums.length; count++) {
+
+            int paramIndex = paramNums[count] - 1;
+
+            if (paramIndex < paramCount) {
+                appendParam(out, params[paramIndex]);
+            } else {
+                out.append(placeholders[count]);
+            }
+
+            out.append(literals[count + 1]);
+        }
+
+        return out;
+    }
+
+    private static void appendParam(StringBuilder out, CharSequence param) {
+
+        if (param instanceof CharSlice) {
+            // Bulk copy straight from the underlying text.
+            CharSlice slice = (CharSlice) param;
+            out.append(slice.text(), slice.start(), slice.end());
+        } else {
+            out.append(param);
+        }
+    }
+
+    public String render(CharSequence... params) {
+        return render(new StringBuilder(templateStr.length() + 16 * params.length), params, params.length).toString();
+    }
+
+    @Override
+    public String toString() {
+        return templateStr;
+    }
+}
@@ -0,0 +1,97 @@
+package com.terheyden.stringtools;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * The one span that differs between two texts, so a document can be changed in place instead of
+ * having all its text replaced.
+ * <pre>
+ *     TextReplacement replacement = TextReplacement.between(before, after);  // any thread
+ *     replacement.applyTo(document);                                         // event thread
+ * </pre>
+ * A text area only re-lays out and repaints the lines a replacement touches, and the document keeps its
+ * line structure for the rest. When most of it changed, what goes in is the after String itself, not a copy.
+ */
+final class TextReplacement {
+
+    private final String before;
+    private final int start;
+    private final int removeLength;
+    private final String insert;
+
+    private TextReplacement(String before, int start, int removeLength, String insert) {
+        this.before = before;
+        this.start = start;
+        this.removeLength = removeLength;
+        this.insert = insert;
+    }
+
+    /**
+     * Trims what before and after have in common at both ends, unless that's only a little.
+     */
+    static TextReplacement between(String before, String after) {
+
+        int maxPrefix = Math.min(before.length(), after.length());
+        int prefix = 0;
+
+        while (prefix < maxPrefix && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+
+        int maxSuffix = maxPrefix - prefix;
+        int suffix = 0;
+
+        while (suffix < maxSuffix
+            && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+
+        // Mostly new text: keeping a few lines at the ends isn't worth copying the rest out of after.
+        if (after.length() - prefix - suffix > after.length() / 2) {
+            return new TextReplacement(before, 0, before.length(), after);
+        }
+
+        return new TextReplacement(before, prefix, before.length() - prefix - suffix,
+            after.substring(prefix, after.length() - suffix));
+    }
+
+    String getBefore() {
+        return before;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int getRemoveLength() {
+        return removeLength;
+    }
+
+    String getInsert() {
+        return insert;
+    }
+
+    /**
+     * @param document must hold the before text; only its length is checked
+     * @throws IllegalStateException if the length is wrong
+     */
+    void applyTo(Document document) throws BadLocationException {
+
+        if (document.getLength() != before.length()) {
+            throw new IllegalStateException("Document changed: " + document.getLength() + " chars, expected " + before.length());
+        }
+
+        if (removeLength == 0 && insert.isEmpty()) {
+            return;
+        }
+
+        if (document instanceof AbstractDocument) {
+            ((AbstractDocument) document).replace(start, removeLength, insert, null);
+        } else {
+            document.remove(start, removeLength);
+            document.insertString(start, insert, null);
+        }
+    }
+}
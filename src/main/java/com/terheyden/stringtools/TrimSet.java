@@ -0,0 +1,137 @@
+package com.terheyden.stringtools;
+
+import java.util.Arrays;
+
+/**
+ * A set of characters to trim, compiled once so each membership test is a table lookup
+ * rather than a scan of the trim string.
+ * <p/>
+ * ASCII chars are looked up in a boolean table; anything else is binary searched in a sorted code point array.
+ * Surrogate pairs are treated as one character, both in the trim string and in the text being trimmed,
+ * so trimming an emoji never leaves half of one behind.
+ */
+public final class TrimSet {
+
+    private final String chars;
+    private final boolean[] ascii = new boolean[128];
+    private final int[] otherCodePoints;
+
+    private TrimSet(String chars) {
+
+        this.chars = chars;
+
+        int[] codePoints = new int[chars.length()];
+        int otherCount = 0;
+
+        for (int index = 0; index < chars.length(); ) {
+
+            int codePoint = Character.codePointAt(chars, index);
+            index += Character.charCount(codePoint);
+
+            if (codePoint < 128) {
+                ascii[codePoint] = true;
+            } else {
+                codePoints[otherCount++] = codePoint;
+            }
+        }
+
+        int[] sorted = Arrays.copyOf(codePoints, otherCount);
+        Arrays.sort(sorted);
+        otherCodePoints = sorted;
+    }
+
+    /**
+     * @param chars every char (or surrogate pair) in here gets trimmed; order and repeats don't matter
+     */
+    public static TrimSet of(String chars) {
+        return new TrimSet(chars);
+    }
+
+    public String getChars() {
+        return chars;
+    }
+
+    public boolean contains(int codePoint) {
+
+        if (codePoint < 128) {
+            return codePoint >= 0 && ascii[codePoint];
+        }
+
+        return otherCodePoints.length > 0 && Arrays.binarySearch(otherCodePoints, codePoint) >= 0;
+    }
+
+    /**
+     * Where text[start, end) begins once chars in this set are trimmed off the front.
+     */
+    public int trimStart(CharSequence text, int start, int end) {
+
+        while (start < end) {
+
+            char c = text.charAt(start);
+
+            if (c < 128) {
+                if (!ascii[c]) {
+                    break;
+                }
+                start++;
+                continue;
+            }
+
+            int codePoint = c;
+            int width = 1;
+
+            if (Character.isHighSurrogate(c) && start + 1 < end && Character.isLowSurrogate(text.charAt(start + 1))) {
+                codePoint = Character.toCodePoint(c, text.charAt(start + 1));
+                width = 2;
+            }
+
+            if (!contains(codePoint)) {
+                break;
+            }
+
+            start += width;
+        }
+
+        return start;
+    }
+
+    /**
+     * Where text[start, end) ends once chars in this set are trimmed off the back.
+     */
+    public int trimEnd(CharSequence text, int start, int end) {
+
+        while (end > start) {
+
+            char c = text.charAt(end - 1);
+
+            if (c < 128) {
+                if (!ascii[c]) {
+                    break;
+                }
+                end--;
+                continue;
+            }
+
+            int codePoint = c;
+            int width = 1;
+
+            if (Character.isLowSurrogate(c) && end - 2 >= start && Character.isHighSurrogate(text.charAt(end - 2))) {
+                codePoint = Character.toCodePoint(text.charAt(end - 2), c);
+                width = 2;
+            }
+
+            if (!contains(codePoint)) {
+                break;
+            }
+
+            end -= width;
+        }
+
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "TrimSet[" + chars + "]";
+    }
+}
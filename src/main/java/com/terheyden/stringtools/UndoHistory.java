@@ -0,0 +1,438 @@
+package com.terheyden.stringtools;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Undo and redo for the whole text, kept within a memory budget.
+ * <p/>
+ * Each step stores only what changed: the block of whole lines that differs between the text before and after,
+ * both ways, so one entry serves undo and redo. A step that rewrites everything (sort, indent, uppercase)
+ * would store the whole text twice, so big blocks are kept deflated whenever that's smaller, which makes
+ * them compressed snapshots. When the steps outgrow the budget the oldest go first, though the newest undo
+ * step is always kept.
+ * <pre>
+ *     UndoHistory history = new UndoHistory(64 * 1024 * 1024);
+ *     history.record(before, after);
+ *     String text = history.undo(after);
+ * </pre>
+ * The history remembers the last text it recorded or returned. If the text has been edited by hand since,
+ * the hand edits are recorded as a step of their own first, so undo takes them back before anything else.
+ * <p/>
+ * Thread-safe, so steps can be prepared and undone off the event thread. If a step is abandoned halfway
+ * (an operation cancelled after {@link #prepare}, an undo whose result was never shown), the text and the history
+ * disagree; the next call sees that as hand edits, and records them.
+ */
+final class UndoHistory {
+
+    /**
+     * Blocks shorter than this are kept as-is; compressing them wouldn't save much.
+     */
+    static final int COMPRESS_MIN_CHARS = 16 * 1024;
+
+    /**
+     * Chars compressed or inflated per pass, so a big block never needs a second full-size buffer.
+     */
+    private static final int CHUNK_CHARS = 32 * 1024;
+
+    /**
+     * Rough object overhead for a step and its two blocks, on top of the blocks' contents.
+     */
+    private static final int STEP_OVERHEAD_BYTES = 96;
+
+    private final long maxBytes;
+    private final Deque<Step> undoSteps = new ArrayDeque<Step>();
+    private final Deque<Step> redoSteps = new ArrayDeque<Step>();
+    private long usedBytes;
+
+    /**
+     * The text as of the last step recorded, undone or redone; null before the first.
+     */
+    private String last;
+
+    /**
+     * @param maxBytes how much memory the steps may take, roughly; the current text itself isn't counted
+     */
+    UndoHistory(long maxBytes) {
+
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Undo memory budget must be positive: " + maxBytes);
+        }
+
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Records that the text went from before to after. Clears redo, unless nothing changed,
+     * in which case nothing is recorded.
+     */
+    synchronized void record(String before, String after) {
+        commit(prepare(before, after));
+    }
+
+    /**
+     * Does the slow part of {@link #record} (diffing and compressing), so it can happen off the event thread,
+     * before the change is known to be wanted. Nothing is recorded until it's committed.
+     */
+    synchronized Change prepare(String before, String after) {
+
+        if (before.equals(after)) {
+            return new Change(last, null, before, null, after);
+        }
+
+        return new Change(last, handEdits(before), before, Step.between(before, after), after);
+    }
+
+    /**
+     * Records a prepared change. Clears redo, unless the change didn't change anything.
+     */
+    synchronized void commit(Change change) {
+
+        // A no-op leaves redo alone; any hand edits before it get picked up by the next call.
+        if (change.step == null) {
+            return;
+        }
+
+        // Something else went first since this was prepared; the hand edits are from there now.
+        Step handEdits = change.last == last ? change.handEdits : handEdits(change.before);
+
+        if (handEdits != null) {
+            push(handEdits);
+        }
+
+        push(change.step);
+        last = change.after;
+
+        for (Step step : redoSteps) {
+            usedBytes -= step.bytes();
+        }
+
+        redoSteps.clear();
+        evict();
+    }
+
+    synchronized boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    synchronized boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /**
+     * @param text the text as it is now
+     * @return the text before the latest step, or null if there's nothing to undo
+     */
+    synchronized String undo(String text) {
+
+        recordHandEdits(text);
+
+        if (undoSteps.isEmpty()) {
+            return null;
+        }
+
+        Step step = undoSteps.pop();
+        redoSteps.push(step);
+
+        last = step.undo(text);
+        return last;
+    }
+
+    /**
+     * @param text the text as it is now; if it was edited by hand since the last undo, there's nothing to redo
+     * @return the text after the latest undone step, or null if there's nothing to redo
+     */
+    synchronized String redo(String text) {
+
+        recordHandEdits(text);
+
+        if (redoSteps.isEmpty()) {
+            return null;
+        }
+
+        Step step = redoSteps.pop();
+        undoSteps.push(step);
+
+        last = step.redo(text);
+        return last;
+    }
+
+    /**
+     * How much memory the steps take, roughly.
+     */
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    synchronized int undoCount() {
+        return undoSteps.size();
+    }
+
+    synchronized int redoCount() {
+        return redoSteps.size();
+    }
+
+    private Step handEdits(String text) {
+        return last == null || last.equals(text) ? null : Step.between(last, text);
+    }
+
+    private void recordHandEdits(String text) {
+        if (last != null && !last.equals(text)) {
+            record(last, text);
+        }
+    }
+
+    private void push(Step step) {
+        undoSteps.push(step);
+        usedBytes += step.bytes();
+    }
+
+    /**
+     * Drops the steps furthest from the current text: the oldest undo steps, then the last redo steps.
+     */
+    private void evict() {
+
+        while (usedBytes > maxBytes && undoSteps.size() > 1) {
+            usedBytes -= undoSteps.removeLast().bytes();
+        }
+
+        while (usedBytes > maxBytes && !redoSteps.isEmpty()) {
+            usedBytes -= redoSteps.removeLast().bytes();
+        }
+    }
+
+    /**
+     * A step, ready to commit, plus the hand edits that came before it, if any.
+     * The step is null if before and after are the same.
+     */
+    static final class Change {
+
+        private final String last;
+        private final Step handEdits;
+        private final String before;
+        private final Step step;
+        private final String after;
+
+        private Change(String last, Step handEdits, String before, Step step, String after) {
+            this.last = last;
+            this.handEdits = handEdits;
+            this.before = before;
+            this.step = step;
+            this.after = after;
+        }
+    }
+
+    /**
+     * The lines at [start, start + removed.length) in the text before were replaced by inserted.
+     */
+    static final class Step {
+
+        private final int start;
+        private final Block removed;
+        private final Block inserted;
+
+        private Step(int start, Block removed, Block inserted) {
+            this.start = start;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        /**
+         * Trims the lines before and after have in common at both ends.
+         */
+        static Step between(String before, String after) {
+
+            int maxPrefix = Math.min(before.length(), after.length());
+            int prefix = 0;
+
+            while (prefix < maxPrefix && before.charAt(prefix) == after.charAt(prefix)) {
+                prefix++;
+            }
+
+            // Back up to the start of the line the first difference is on.
+            while (prefix > 0 && !LineCursor.isLineBreak(before.charAt(prefix - 1))) {
+                prefix--;
+            }
+
+            int maxSuffix = maxPrefix - prefix;
+            int suffix = 0;
+
+            while (suffix < maxSuffix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+                suffix++;
+            }
+
+            // And forward to the start of the line after the last difference.
+            while (suffix > 0 && before.length() - suffix - 1 >= 0
+                && !LineCursor.isLineBreak(before.charAt(before.length() - suffix - 1))) {
+                suffix--;
+            }
+
+            return new Step(prefix,
+                Block.of(before, prefix, before.length() - suffix),
+                Block.of(after, prefix, after.length() - suffix));
+        }
+
+        String undo(String after) {
+            return replace(after, inserted.length, removed);
+        }
+
+        String redo(String before) {
+            return replace(before, removed.length, inserted);
+        }
+
+        private String replace(String text, int oldLength, Block block) {
+
+            int tailStart = start + oldLength;
+
+            if (tailStart > text.length()) {
+                throw new IllegalStateException("Undo step doesn't fit the text: " + tailStart + " > " + text.length());
+            }
+
+            char[] result = new char[text.length() - oldLength + block.length];
+            text.getChars(0, start, result, 0);
+            block.getChars(result, start);
+            text.getChars(tailStart, text.length(), result, start + block.length);
+
+            return new String(result);
+        }
+
+        long bytes() {
+            return STEP_OVERHEAD_BYTES + removed.bytes() + inserted.bytes();
+        }
+
+        boolean isCompressed() {
+            return removed.deflated != null || inserted.deflated != null;
+        }
+    }
+
+    /**
+     * Some text, either as-is or deflated as UTF-16. UTF-8 would be smaller, but would lose unpaired surrogates.
+     */
+    private static final class Block {
+
+        private final int length;
+        private final String plain;
+        private final byte[] deflated;
+
+        private Block(int length, String plain, byte[] deflated) {
+            this.length = length;
+            this.plain = plain;
+            this.deflated = deflated;
+        }
+
+        static Block of(String text, int start, int end) {
+
+            int length = end - start;
+
+            if (length >= COMPRESS_MIN_CHARS) {
+
+                byte[] deflated = deflate(text, start, end);
+
+                if (deflated.length < length * 2) {
+                    return new Block(length, null, deflated);
+                }
+            }
+
+            return new Block(length, text.substring(start, end), null);
+        }
+
+        long bytes() {
+            return deflated != null ? deflated.length : length * 2L;
+        }
+
+        void getChars(char[] dest, int destStart) {
+
+            if (plain != null) {
+                plain.getChars(0, length, dest, destStart);
+            } else {
+                inflate(deflated, dest, destStart, length);
+            }
+        }
+
+        private static byte[] deflate(String text, int start, int end) {
+
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            byte[] in = new byte[CHUNK_CHARS * 2];
+            byte[] out = new byte[CHUNK_CHARS * 2];
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+            try {
+
+                for (int chunkStart = start; chunkStart < end; chunkStart += CHUNK_CHARS) {
+
+                    int chunkEnd = Math.min(end, chunkStart + CHUNK_CHARS);
+                    int inLength = 0;
+
+                    for (int pos = chunkStart; pos < chunkEnd; pos++) {
+                        char c = text.charAt(pos);
+                        in[inLength++] = (byte) (c >>> 8);
+                        in[inLength++] = (byte) c;
+                    }
+
+                    deflater.setInput(in, 0, inLength);
+
+                    while (!deflater.needsInput()) {
+                        result.write(out, 0, deflater.deflate(out));
+                    }
+                }
+
+                deflater.finish();
+
+                while (!deflater.finished()) {
+                    result.write(out, 0, deflater.deflate(out));
+                }
+
+                return result.toByteArray();
+
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private static void inflate(byte[] deflated, char[] dest, int destStart, int length) {
+
+            Inflater inflater = new Inflater();
+            inflater.setInput(deflated);
+            byte[] out = new byte[CHUNK_CHARS * 2];
+            int destPos = destStart;
+            int destEnd = destStart + length;
+
+            try {
+
+                // A char's two bytes can straddle passes, so carry a dangling high byte over.
+                int high = -1;
+
+                while (destPos < destEnd) {
+
+                    int read = inflater.inflate(out);
+
+                    if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IllegalStateException("Undo step is truncated");
+                    }
+
+                    for (int pos = 0; pos < read; pos++) {
+
+                        int b = out[pos] & 0xff;
+
+                        if (high < 0) {
+                            high = b;
+                        } else {
+                            dest[destPos++] = (char) (high << 8 | b);
+                            high = -1;
+                        }
+                    }
+                }
+
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Undo step is corrupt", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.terheyden.stringtools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates UUIDs in bulk, e.g. millions of test fixture IDs.
+ * <p/>
+ * Unlike UUID.randomUUID(), every thread gets its own random source, so there's no shared lock, and
+ * UUIDs are formatted as hex straight into a char buffer rather than through toString(), toUpperCase()
+ * and replace(). {@link #write(Writer, long, Format)} streams them out a buffer at a time.
+ * <p/>
+ * Random (version 4) UUIDs are the default. Time-ordered (version 7) UUIDs start with a millisecond
+ * timestamp, so they sort in creation order; within one generator they're strictly increasing,
+ * even across threads.
+ */
+public final class UuidGenerator {
+
+    /**
+     * Where the random bits come from.
+     */
+    public enum Source {
+
+        /**
+         * A SecureRandom per thread. Unguessable, same as UUID.randomUUID().
+         */
+        SECURE,
+
+        /**
+         * A SplittableRandom per thread. Much faster, but predictable; only for test data.
+         */
+        FAST
+    }
+
+    public enum Version {
+
+        /**
+         * Version 4: 122 random bits.
+         */
+        RANDOM,
+
+        /**
+         * Version 7: a 48-bit Unix millisecond timestamp, then random bits.
+         */
+        TIME_ORDERED
+    }
+
+    public enum Format {
+
+        /**
+         * 123e4567-e89b-42d3-a456-426614174000
+         */
+        LOWER(true, false),
+
+        /**
+         * 123E4567-E89B-42D3-A456-426614174000
+         */
+        UPPER(true, true),
+
+        /**
+         * 123e4567e89b42d3a456426614174000
+         */
+        LOWER_DASHLESS(false, false),
+
+        /**
+         * 123E4567E89B42D3A456426614174000
+         */
+        UPPER_DASHLESS(false, true);
+
+        private final boolean dashes;
+        private final boolean upperCase;
+
+        Format(boolean dashes, boolean upperCase) {
+            this.dashes = dashes;
+            this.upperCase = upperCase;
+        }
+
+        public int length() {
+            return dashes ? 36 : 32;
+        }
+    }
+
+    private static final char[] LOWER_HEX = "0123456789abcdef".toCharArray();
+    private static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * How many UUIDs {@link #write(Writer, long, Format)} formats before each Writer call.
+     */
+    private static final int WRITE_BATCH = 256;
+
+    /**
+     * Size of each thread's SecureRandom byte buffer: 64 UUIDs' worth of random bits per call.
+     */
+    private static final int SECURE_BUFFER_BYTES = 64 * 16;
+
+    // Bits 12-15 of the most significant half.
+    private static final long VERSION_MASK = 0xF000L;
+    // Bits 62-63 of the least significant half.
+    private static final long VARIANT_MASK = 0xC000000000000000L;
+    private static final long VARIANT_RFC = 0x8000000000000000L;
+
+    private final Source source;
+    private final Version version;
+
+    private final ThreadLocal<RandomBits> randomBits = new ThreadLocal<RandomBits>() {
+        @Override
+        protected RandomBits initialValue() {
+            return newRandomBits();
+        }
+    };
+
+    // Seeds the per-thread SplittableRandoms. split() isn't thread-safe, so it's only called while synchronized.
+    private final SplittableRandom rootRandom;
+
+    // v7 only: the last (timestamp << 12 | counter) handed out.
+    private final AtomicLong lastTimeAndCounter = new AtomicLong();
+
+    public UuidGenerator(Source source, Version version) {
+        this.source = source;
+        this.version = version;
+        this.rootRandom = source == Source.FAST ? new SplittableRandom(new SecureRandom().nextLong()) : null;
+    }
+
+    /**
+     * Random (v4) UUIDs from a SecureRandom, like UUID.randomUUID().
+     */
+    public UuidGenerator() {
+        this(Source.SECURE, Version.RANDOM);
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public Version getVersion() {
+        return version;
+    }
+
+    public UUID next() {
+
+        RandomBits bits = randomBits.get();
+        long msb = nextMostSigBits(bits);
+        long lsb = nextLeastSigBits(bits);
+
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * The next UUID, formatted.
+     */
+    public String nextString(Format format) {
+
+        char[] buf = new char[format.length()];
+        RandomBits bits = randomBits.get();
+        long msb = nextMostSigBits(bits);
+        long lsb = nextLeastSigBits(bits);
+
+        format(msb, lsb, format, buf, 0);
+        return new String(buf);
+    }
+
+    /**
+     * Writes [count] UUIDs to [out], one per line (each followed by '\n'). Doesn't flush or close [out].
+     */
+    public void write(Writer out, long count, Format format) throws IOException {
+
+        if (count < 0) {
+            throw new IllegalArgumentException("Count can't be negative: " + count);
+        }
+
+        int lineLength = format.length() + 1;
+        char[] buf = new char[(int) Math.min(count, WRITE_BATCH) * lineLength];
+        RandomBits bits = randomBits.get();
+        long remaining = count;
+
+        while (remaining > 0) {
+
+            int batch = (int) Math.min(remaining, WRITE_BATCH);
+            int pos = 0;
+
+            for (int index = 0; index < batch; index++) {
+
+                long msb = nextMostSigBits(bits);
+                long lsb = nextLeastSigBits(bits);
+
+                pos = format(msb, lsb, format, buf, pos);
+                buf[pos++] = '\n';
+            }
+
+            out.write(buf, 0, pos);
+            remaining -= batch;
+        }
+    }
+
+    /**
+     * Formats a UUID into buf, starting at offset.
+     * @return the offset just past the last char written
+     */
+    public static int format(UUID uuid, Format format, char[] buf, int offset) {
+        return format(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), format, buf, offset);
+    }
+
+    private static int format(long msb, long lsb, Format format, char[] buf, int offset) {
+
+        char[] hex = format.upperCase ? UPPER_HEX : LOWER_HEX;
+        int pos = offset;
+
+        // 8-4-4-4-12 hex digits.
+        pos = hex(msb >>> 32, 8, hex, buf, pos);
+        pos = dash(format, buf, pos);
+        pos = hex(msb >>> 16, 4, hex, buf, pos);
+        pos = dash(format, buf, pos);
+        pos = hex(msb, 4, hex, buf, pos);
+        pos = dash(format, buf, pos);
+        pos = hex(lsb >>> 48, 4, hex, buf, pos);
+        pos = dash(format, buf, pos);
+        pos = hex(lsb, 12, hex, buf, pos);
+
+        return pos;
+    }
+
+    /**
+     * Writes the low [digits] hex digits of value, most significant first.
+     */
+    private static int hex(long value, int digits, char[] hex, char[] buf, int pos) {
+
+        for (int index = digits - 1; index >= 0; index--) {
+            buf[pos + index] = hex[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+
+        return pos + digits;
+    }
+
+    private static int dash(Format format, char[] buf, int pos) {
+
+        if (format.dashes) {
+            buf[pos++] = '-';
+        }
+
+        return pos;
+    }
+
+    private long nextMostSigBits(RandomBits bits) {
+
+        if (version == Version.RANDOM) {
+            return (bits.nextLong() & ~VERSION_MASK) | 0x4000L;
+        }
+
+        // 48-bit timestamp, version 7, then a 12-bit counter.
+        long timeAndCounter = nextTimeAndCounter();
+        return (timeAndCounter >>> 12) << 16 | 0x7000L | (timeAndCounter & 0xFFFL);
+    }
+
+    private static long nextLeastSigBits(RandomBits bits) {
+        return (bits.nextLong() & ~VARIANT_MASK) | VARIANT_RFC;
+    }
+
+    /**
+     * The current millisecond in the top bits, and a counter in the low 12 bits that keeps UUIDs from the same
+     * millisecond in order. If the counter runs out, we borrow the next millisecond early.
+     */
+    private long nextTimeAndCounter() {
+
+        long now = System.currentTimeMillis() << 12;
+
+        while (true) {
+
+            long last = lastTimeAndCounter.get();
+            long next = Math.max(now, last + 1);
+
+            if (lastTimeAndCounter.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    private RandomBits newRandomBits() {
+
+        if (source == Source.SECURE) {
+            return new SecureBits();
+        }
+
+        synchronized (rootRandom) {
+            return new FastBits(rootRandom.split());
+        }
+    }
+
+    /**
+     * One thread's random source.
+     */
+    private interface RandomBits {
+        long nextLong();
+    }
+
+    private static final class FastBits implements RandomBits {
+
+        private final SplittableRandom random;
+
+        FastBits(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public long nextLong() {
+            return random.nextLong();
+        }
+    }
+
+    /**
+     * Reads SecureRandom bytes a buffer at a time rather than a UUID at a time.
+     */
+    private static final class SecureBits implements RandomBits {
+
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] buffer = new byte[SECURE_BUFFER_BYTES];
+        private int pos = buffer.length;
+
+        @Override
+        public long nextLong() {
+
+            if (pos == buffer.length) {
+                random.nextBytes(buffer);
+                pos = 0;
+            }
+
+            long value = 0;
+            for (int index = 0; index < 8; index++) {
+                value = value << 8 | (buffer[pos++] & 0xFF);
+            }
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class AhoCorasickTest {
+
+    @Test
+    public void testFindsOverlappingMatches() {
+
+        AhoCorasick automaton = new AhoCorasick(new String[] { "he", "she", "his", "hers" });
+        final List<String> matchList = new ArrayList<String>();
+
+        automaton.findAll("ushers", 0, 6, new AhoCorasick.MatchListener() {
+            @Override
+            public boolean onMatch(int patternIndex, int start, int end) {
+                matchList.add(patternIndex + "@" + start + "-" + end);
+                return true;
+            }
+        });
+
+        // "she" and "he" both end at 4, "hers" ends at 6.
+        assertEquals(matchList, Arrays.asList("1@1-4", "0@2-4", "3@2-6"));
+    }
+
+    @Test
+    public void testLiteralAndNonAscii() {
+
+        AhoCorasick automaton = new AhoCorasick(new String[] { "a.b", "", "café" });
+
+        assertTrue(automaton.containsAny("x a.b y", 0, 7));
+        assertFalse(automaton.containsAny("x axb y", 0, 7));
+        assertTrue(automaton.containsAny("un café", 0, 7));
+        assertFalse(automaton.containsAny("un cafe", 0, 7));
+
+        // Only the given range is searched:
+        assertFalse(automaton.containsAny("a.b", 1, 3));
+    }
+
+    @Test
+    public void testStopsWhenAsked() {
+
+        AhoCorasick automaton = new AhoCorasick(new String[] { "a" });
+        final int[] matchCount = { 0 };
+
+        automaton.findAll("aaaa", 0, 4, new AhoCorasick.MatchListener() {
+            @Override
+            public boolean onMatch(int patternIndex, int start, int end) {
+                return ++matchCount[0] < 2;
+            }
+        });
+
+        assertEquals(matchCount[0], 2);
+    }
+}
@@ -0,0 +1,64 @@
+package com.terheyden.stringtools;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class DuplicateLineFilterTest {
+
+    @Test
+    public void testCaseSensitive() {
+
+        DuplicateLineFilter filter = new DuplicateLineFilter(false);
+
+        assertTrue(filter.add("line"));
+        assertTrue(filter.add("LINE"));
+        assertFalse(filter.add("line"));
+        assertEquals(filter.size(), 2);
+    }
+
+    @Test
+    public void testIgnoreCase() {
+
+        DuplicateLineFilter filter = new DuplicateLineFilter(true);
+
+        assertTrue(filter.add("Hello World"));
+        assertFalse(filter.add("hello world"));
+        assertFalse(filter.add("HELLO WORLD"));
+        assertTrue(filter.add("hello world!"));
+        assertTrue(filter.add(""));
+        assertFalse(filter.add(""));
+    }
+
+    @Test
+    public void testIgnoreCaseMixesAsciiAndNonAscii() {
+
+        DuplicateLineFilter filter = new DuplicateLineFilter(true);
+
+        // ASCII lines are folded lazily, non-ASCII lines are lowercased up front. They must still match.
+        assertTrue(filter.add("café OPEN"));
+        assertFalse(filter.add("CAFÉ open"));
+        assertTrue(filter.add("cafe open"));
+        assertFalse(filter.add("CAFE OPEN"));
+        assertEquals(filter.size(), 2);
+    }
+
+    @Test
+    public void testMatchesToLowerCaseSemantics() {
+
+        String[] lines = { "ABC", "abc", "İ", "i̇", "I", "i", "Σ", "σ", "ß", "SS", "ss" };
+
+        for (String first : lines) {
+            for (String second : lines) {
+
+                DuplicateLineFilter filter = new DuplicateLineFilter(true);
+                filter.add(first);
+
+                boolean expectDupe = first.toLowerCase().equals(second.toLowerCase());
+                assertEquals(!filter.add(second), expectDupe, first + " vs " + second);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.terheyden.stringtools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class ExternalDedupeTest {
+
+    @Test
+    public void testInMemory() throws IOException {
+
+        String text = "i am\ndupe\nlooking for\ndupe\nDUPE";
+
+        assertEquals(dedupe(text, false, ExternalDedupe.DEFAULT_MEMORY_BUDGET), "i am\ndupe\nlooking for\nDUPE\n");
+        assertEquals(dedupe(text, true, ExternalDedupe.DEFAULT_MEMORY_BUDGET), "i am\ndupe\nlooking for\n");
+    }
+
+    @Test
+    public void testSpillsToDisk() throws IOException {
+
+        String text = randomLines(20000, 3000);
+
+        // A 4KB budget forces a spill almost immediately, and re-partitioning of the bigger partitions.
+        assertEquals(dedupe(text, false, 4 * 1024), StringTools.removeDuplicateLines(text) + "\n");
+        assertEquals(dedupe(text, true, 4 * 1024), StringTools.removeDuplicateLines(text, true) + "\n");
+    }
+
+    @Test
+    public void testOddCharsSurviveSpill() throws IOException {
+
+        String text = "café\n😀 smile\nbroken \ud83d\ncafé\nline sep\n😀 smile";
+        String result = "café\n😀 smile\nbroken \ud83d\nline sep\n";
+
+        assertEquals(dedupe(text, false, 1), result);
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+
+        File inFile = File.createTempFile("dedupe-in", ".txt");
+        File outFile = File.createTempFile("dedupe-out", ".txt");
+
+        try {
+            String text = randomLines(5000, 500);
+            Files.write(inFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+            long lineCount = StringTools.removeDuplicateLines(inFile, outFile, false, 1024);
+            String result = new String(Files.readAllBytes(outFile.toPath()), StandardCharsets.UTF_8);
+
+            assertEquals(result, StringTools.removeDuplicateLines(text) + "\n");
+            assertEquals(lineCount, StringTools.split(result).length);
+        } finally {
+            inFile.delete();
+            outFile.delete();
+        }
+    }
+
+    private static String dedupe(String text, boolean ignoreCase, long budget) throws IOException {
+        StringWriter out = new StringWriter();
+        new ExternalDedupe(budget).dedupe(new StringReader(text), out, ignoreCase);
+        return out.toString();
+    }
+
+    /**
+     * Lines like "Line 42" / "LINE 42", picked from a small pool so there are plenty of dupes.
+     */
+    private static String randomLines(int lineCount, int distinct) {
+
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+
+        for (int count = 0; count < lineCount; count++) {
+            if (count > 0) {
+                builder.append('\n');
+            }
+            builder.append(random.nextBoolean() ? "Line " : "LINE ").append(random.nextInt(distinct));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.terheyden.stringtools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class ExternalSorterTest {
+
+    @Test
+    public void testInMemory() throws IOException {
+
+        String text = "carrot\nBanana\napple";
+
+        assertEquals(sort(text, false, false, ExternalSorter.DEFAULT_MEMORY_BUDGET), "Banana\napple\ncarrot\n");
+        assertEquals(sort(text, true, false, ExternalSorter.DEFAULT_MEMORY_BUDGET), "apple\nBanana\ncarrot\n");
+        assertEquals(sort(text, false, true, ExternalSorter.DEFAULT_MEMORY_BUDGET), "carrot\napple\nBanana\n");
+        assertEquals(sort(text, true, true, ExternalSorter.DEFAULT_MEMORY_BUDGET), "carrot\nBanana\napple\n");
+    }
+
+    @Test
+    public void testSpilledRunsMatchInMemorySort() throws IOException {
+
+        String text = randomLines(8000);
+
+        // 2KB per run gives hundreds of runs, so the merge needs more than one pass.
+        for (int variant = 0; variant < 4; variant++) {
+
+            boolean ignoreCase = (variant & 1) != 0;
+            boolean reverse = (variant & 2) != 0;
+
+            String expected = reverse ? StringTools.sortAlphaReverse(text, ignoreCase) : StringTools.sortAlpha(text, ignoreCase);
+            assertEquals(sort(text, ignoreCase, reverse, 2 * 1024), expected + "\n");
+        }
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+
+        File inFile = File.createTempFile("sort-in", ".txt");
+        File outFile = File.createTempFile("sort-out", ".txt");
+
+        try {
+            String text = randomLines(3000);
+            Files.write(inFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(StringTools.sortAlphaReverse(inFile, outFile, true, 1024), 3000);
+            String result = new String(Files.readAllBytes(outFile.toPath()), StandardCharsets.UTF_8);
+            assertEquals(result, StringTools.sortAlphaReverse(text, true) + "\n");
+        } finally {
+            inFile.delete();
+            outFile.delete();
+        }
+    }
+
+    private static String sort(String text, boolean ignoreCase, boolean reverse, long budget) throws IOException {
+        StringWriter out = new StringWriter();
+        new ExternalSorter(budget).sort(new StringReader(text), out, ignoreCase, reverse);
+        return out.toString();
+    }
+
+    /**
+     * Mixed-case lines with plenty of ties when ignoring case, to check the sort is stable.
+     */
+    private static String randomLines(int lineCount) {
+
+        Random random = new Random(7);
+        String[] prefixes = { "apple ", "Apple ", "APPLE ", "banana ", "Banana ", "émile ", "zebra " };
+        StringBuilder builder = new StringBuilder();
+
+        for (int count = 0; count < lineCount; count++) {
+            if (count > 0) {
+                builder.append('\n');
+            }
+            builder.append(prefixes[random.nextInt(prefixes.length)]).append(random.nextInt(200));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class LineCursorTest {
+
+    @Test
+    public void testLineBreaks() {
+
+        assertEquals(lines(new LineCursor("a\nb\r\nc\rd")), list("a", "b", "c", "d"));
+
+        // "\n\r" is two line breaks, "\r\n" is one:
+        assertEquals(lines(new LineCursor("a\n\rb")), list("a", "", "b"));
+        assertEquals(lines(new LineCursor("a\r\n\r\nb")), list("a", "", "b"));
+    }
+
+    @Test
+    public void testEnds() {
+
+        assertEquals(lines(new LineCursor("")), list(""));
+        assertEquals(lines(new LineCursor("a")), list("a"));
+        assertEquals(lines(new LineCursor("a\n")), list("a"));
+        assertEquals(lines(new LineCursor("a\r\n")), list("a"));
+        assertEquals(lines(new LineCursor("\n")), list(""));
+        assertEquals(lines(new LineCursor("\na\n\n")), list("", "a", ""));
+    }
+
+    @Test
+    public void testWithoutTrailingEmptyLines() {
+
+        assertEquals(lines(LineCursor.withoutTrailingEmptyLines("")), list(""));
+        assertEquals(lines(LineCursor.withoutTrailingEmptyLines("\r\n\n")), list());
+        assertEquals(lines(LineCursor.withoutTrailingEmptyLines("\na\r\n\r\n\n")), list("", "a"));
+        assertEquals(LineCursor.contentEnd("ab\r\n"), 2);
+    }
+
+    @Test
+    public void testOffsets() {
+
+        String text = "xx\r\nyyy";
+        LineCursor cursor = new LineCursor(text);
+
+        cursor.next();
+        assertEquals(cursor.start(), 0);
+        assertEquals(cursor.end(), 2);
+        assertEquals(cursor.nextStart(), 4);
+
+        cursor.next();
+        assertEquals(cursor.start(), 4);
+        assertEquals(cursor.length(), 3);
+        assertEquals(cursor.line().toString(), "yyy");
+        assertEquals(cursor.line().subSequence(1, 3).toString(), "yy");
+
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testRange() {
+        assertEquals(lines(new LineCursor("skip\na\nb\nskip", 5, 9)), list("a", "b"));
+    }
+
+    private static List<String> lines(LineCursor cursor) {
+
+        List<String> lineList = new ArrayList<String>();
+
+        while (cursor.next()) {
+            lineList.add(cursor.line().toString());
+        }
+
+        return lineList;
+    }
+
+    private static List<String> list(String... lines) {
+
+        List<String> lineList = new ArrayList<String>();
+
+        for (String line : lines) {
+            lineList.add(line);
+        }
+
+        return lineList;
+    }
+}
@@ -0,0 +1,186 @@
+package com.terheyden.stringtools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class LinePipelineTest {
+
+    @Test
+    public void testChainMatchesSeparateCalls() {
+
+        String text = " * item1\n   * item2\n        *****     item3\nother";
+
+        String expected = StringTools.trimChars(text, " *", "beginning");
+        expected = StringTools.addIndent(expected, 2);
+        expected = StringTools.insertText(expected, "- ", "beginning");
+        expected = StringTools.capitalize(expected);
+
+        LinePipeline pipeline = new LinePipeline()
+            .trimChars(" *", "beginning")
+            .indent(2)
+            .insert("- ", "beginning")
+            .capitalize();
+
+        assertEquals(pipeline.apply(text), expected);
+        assertEquals(pipeline.apply(text), "-   item1\n-   item2\n-   item3\n-   other");
+    }
+
+    @Test
+    public void testFilterAndBullets() {
+
+        String text = "* keep 1\n** drop\n** keep 2\n* drop too";
+
+        LinePipeline pipeline = new LinePipeline()
+            .removeLinesContaining(true, "keep")
+            .convertBullets("* |** |*** ", "- |  - |    - ", 0)
+            .insert(";", "end");
+
+        assertEquals(pipeline.apply(text), "- keep 1;\n  - keep 2;");
+    }
+
+    @Test
+    public void testCustomStage() {
+
+        LinePipeline pipeline = new LinePipeline()
+            .add(new LineStage() {
+                @Override
+                public boolean apply(StringBuilder line) {
+                    line.reverse();
+                    return line.length() > 1;
+                }
+            })
+            .indent(-1);
+
+        assertEquals(pipeline.apply("abc\nx\n de"), "cba\ned");
+    }
+
+    @Test
+    public void testEmptyPipelineJustJoinsLines() {
+        assertEquals(new LinePipeline().apply("a\nb\n\n"), "a\nb");
+        assertEquals(StringTools.addIndent("a\nb", 0), "a\nb");
+    }
+
+    @Test
+    public void testStreamingMatchesApply() throws IOException {
+
+        LinePipeline pipeline = new LinePipeline()
+            .removeLinesContaining(false, "drop")
+            .trimChars(" ", "begin + end")
+            .insert("> ", "beginning");
+
+        String[] texts = { "", "a", "a\n", " a \r\n b\rdrop\n\nc ", "x\r", "\r\n\r\n", "drop me\nkeep\r\n" };
+
+        for (String text : texts) {
+
+            // One char per read, so a "\r\n" always gets split across reads.
+            StringWriter out = new StringWriter();
+            pipeline.apply(new OneCharReader(text), out);
+
+            // Same lines as LineCursor, except that "" has none.
+            StringBuilder expected = new StringBuilder();
+            LineCursor cursor = new LineCursor(text);
+            while (!text.isEmpty() && cursor.next()) {
+                String line = cursor.lineString();
+                if (!line.contains("drop")) {
+                    expected.append("> ").append(line.trim()).append('\n');
+                }
+            }
+
+            assertEquals(out.toString(), expected.toString(), text);
+        }
+    }
+
+    @Test
+    public void testStreamingLongLines() throws IOException {
+
+        StringBuilder text = new StringBuilder();
+        for (int count = 0; count < 3; count++) {
+            for (int index = 0; index < 100000; index++) {
+                text.append((char) ('a' + count));
+            }
+            text.append("\r\n");
+        }
+
+        StringWriter out = new StringWriter();
+        long written = new LinePipeline().insert("-", "end").apply(new StringReader(text.toString()), out);
+
+        assertEquals(written, 3);
+        assertEquals(out.toString(), text.toString().replace("\r\n", "-\n"));
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+
+        // Every kind of line break, blank lines, and long runs of dropped lines so whole chunks come back empty.
+        String[] breaks = { "\n", "\r\n", "\r", "\n\n", "\r\n\r\n" };
+        StringBuilder text = new StringBuilder();
+        for (int count = 0; text.length() < LinePipeline.PARALLEL_THRESHOLD * 3; count++) {
+            text.append(count % 5000 < 3000 ? " * drop " : " ** keep ").append(count).append(breaks[count % breaks.length]);
+        }
+
+        String[] texts = { text.toString(), text + "\r\n\n\r", "\r\n" + text + "tail" };
+
+        for (String input : texts) {
+
+            LinePipeline sequential = new LinePipeline()
+                .removeLinesContaining(false, "drop")
+                .convertBullets(" * | ** ", "- |  - ", 0)
+                .insert(";", "end");
+
+            LinePipeline parallel = new LinePipeline()
+                .removeLinesContaining(false, "drop")
+                .convertBullets(" * | ** ", "- |  - ", 0)
+                .insert(";", "end")
+                .parallel();
+
+            assertFalse(sequential.runsInParallel(input.length()));
+            assertEquals(parallel.apply(input), sequential.apply(input));
+            assertEquals(parallel.applyParallel(input), sequential.apply(input));
+        }
+
+        // Nothing but line breaks, and nothing kept at all.
+        String breaksOnly = text.toString().replaceAll("[^\r\n]", "");
+        assertEquals(new LinePipeline().applyParallel(breaksOnly), "");
+        assertEquals(new LinePipeline().removeLinesContaining(true, "nothing").applyParallel(text), "");
+        assertEquals(new LinePipeline().applyParallel("a"), "a");
+
+        assertEquals(StringTools.trimChars(text.toString(), " *", "beginning"),
+            new LinePipeline().trimChars(" *", "beginning").apply(text));
+
+        // A budget covers the whole run, so a budgeted filter stays on one thread.
+        assertFalse(new LinePipeline().removeLinesContaining(true, "keep", RegexBudget.ofMillis(10000)).parallel()
+            .runsInParallel(text.length()));
+    }
+
+    private static final class OneCharReader extends Reader {
+
+        private final String text;
+        private int pos;
+
+        OneCharReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+
+            if (pos == text.length()) {
+                return -1;
+            }
+
+            cbuf[off] = text.charAt(pos++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
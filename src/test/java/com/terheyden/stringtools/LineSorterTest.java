@@ -0,0 +1,151 @@
+package com.terheyden.stringtools;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class LineSorterTest {
+
+    /**
+     * Case pairs, chars whose folding isn't simple (µ, ÿ, ß, dotted/dotless i, Greek sigmas, Kelvin sign),
+     * and shared prefixes so the sort goes deep.
+     */
+    private static final String ALPHABET = "aAbBzZ09 _-µÿŸßİıiIΣσςKkKé";
+
+    @Test
+    public void testMatchesComparatorSort() {
+
+        Random random = new Random(42);
+
+        for (int size : new int[] { 0, 1, 2, 13, 100, 5000 }) {
+            for (boolean parallel : new boolean[] { false, true }) {
+                checkAllOrders(randomLines(random, size), parallel);
+            }
+        }
+    }
+
+    @Test
+    public void testManyDuplicates() {
+
+        Random random = new Random(7);
+        String[] lines = new String[LineSorter.PARALLEL_THRESHOLD + 1000];
+
+        // Few distinct lines, mostly case variants of each other, so ties need their input order kept.
+        for (int count = 0; count < lines.length; count++) {
+            String line = "prefix/shared/" + (random.nextInt(50));
+            lines[count] = random.nextBoolean() ? line.toUpperCase() : line;
+        }
+
+        checkAllOrders(lines, true);
+    }
+
+    @Test
+    public void testFallbacks() {
+
+        assertEquals(LineSorter.fold('A'), 'a');
+        assertEquals(LineSorter.fold('µ'), 'μ');
+        assertEquals(LineSorter.fold('_'), '_');
+
+        // Surrogates when ignoring case, and nulls, go through the comparator.
+        checkAllOrders(new String[] { "b𐐀", "B𐐨", "a", "𐐀" }, false);
+        checkAllOrders(new String[] { "b", null, "a", null }, false);
+    }
+
+    @Test
+    public void testNatural() {
+
+        assertEquals(StringTools.sortNatural("file10\nfile2\nfile1\nfile02\nfile\n10\n9", false, false),
+            "9\n10\nfile\nfile1\nfile02\nfile2\nfile10");
+        assertEquals(StringTools.sortNatural("b2\nA10\na2\nB1", true, false), "a2\nA10\nB1\nb2");
+        assertEquals(StringTools.sortNatural("x99999999999999999999\nx100000000000000000000\nx7", false, true),
+            "x100000000000000000000\nx99999999999999999999\nx7");
+
+        Random random = new Random(3);
+        for (boolean parallel : new boolean[] { false, true }) {
+            checkKeyedOrders(randomLines(random, 3000), parallel, false);
+        }
+    }
+
+    @Test
+    public void testCollated() {
+
+        assertEquals(StringTools.sortCollated("zebra\nÄpfel\nApfel\nbanana", Locale.GERMAN, false, false),
+            "Apfel\nÄpfel\nbanana\nzebra");
+        assertEquals(StringTools.sortCollated("b\nB\na\nA", Locale.ENGLISH, true, false), "a\nA\nb\nB");
+
+        Random random = new Random(4);
+        for (boolean parallel : new boolean[] { false, true }) {
+            checkKeyedOrders(randomLines(random, 3000), parallel, true);
+        }
+    }
+
+    /**
+     * Keys computed once must give the same stable order as the comparator itself.
+     */
+    private static void checkKeyedOrders(String[] lines, boolean parallel, boolean collated) {
+
+        for (int variant = 0; variant < 4; variant++) {
+
+            boolean ignoreCase = (variant & 1) != 0;
+            boolean reverse = (variant & 2) != 0;
+
+            checkOrder(lines, collated
+                ? LineComparators.collated(Locale.FRENCH, ignoreCase, reverse)
+                : LineComparators.natural(ignoreCase, reverse), parallel);
+        }
+    }
+
+    private static void checkAllOrders(String[] lines, boolean parallel) {
+        for (int variant = 0; variant < 4; variant++) {
+            checkOrder(lines, LineComparators.alpha((variant & 1) != 0, (variant & 2) != 0), parallel);
+        }
+    }
+
+    private static void checkOrder(String[] lines, Comparator<String> order, boolean parallel) {
+
+        // Compare positions, not strings, so a tie put in the wrong order shows up.
+        Integer[] expected = new Integer[lines.length];
+        for (int count = 0; count < expected.length; count++) {
+            expected[count] = count;
+        }
+
+        final String[] lineArr = lines;
+        final Comparator<String> lineOrder = order;
+        Arrays.sort(expected, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return lineOrder.compare(lineArr[o1], lineArr[o2]);
+            }
+        });
+
+        int[] actual = LineSorter.sortedOrder(lines, order, parallel);
+        assertEquals(actual.length, expected.length);
+        for (int count = 0; count < actual.length; count++) {
+            assertEquals(actual[count], (int) expected[count], order.toString());
+        }
+    }
+
+    private static String[] randomLines(Random random, int count) {
+
+        String[] lines = new String[count];
+
+        for (int index = 0; index < count; index++) {
+
+            StringBuilder line = new StringBuilder(random.nextBoolean() ? "common prefix " : "");
+            int length = random.nextInt(6);
+
+            for (int pos = 0; pos < length; pos++) {
+                line.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+
+            lines[index] = line.toString();
+        }
+
+        return lines;
+    }
+}
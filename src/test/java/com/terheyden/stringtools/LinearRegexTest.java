@@ -0,0 +1,186 @@
+package com.terheyden.stringtools;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class LinearRegexTest {
+
+    private static final String[] SUPPORTED = {
+        "", "a", "abc", "a|b|", "a*", "a+b", "a?b?c", "(ab)+c", "(?:ab|a)*b", "(?<name>x+)y",
+        "a{3}", "a{2,}", "a{1,3}b", "a{0,2}?c", "(a|b){2,3}", "x*?y+?z??",
+        ".", ".+", "a.c", "[abc]", "[^abc]", "[a-c]+", "[-a]", "[a-]", "[a-z0-9_]+", "[^\\s]+", "[\\d.]+",
+        "\\d+", "\\D", "\\w+", "\\W", "\\s", "\\S+", "\\t", "\\x41", "\\u00e9", "\\.", "\\[\\]", "\\Q.*\\E",
+        "^", "$", "^a", "a$", "^$", "^a|b$", "(^a)|(b$)", "a$\\n", "a$\\r\\n", "x$", "é+", "[é-ÿ]",
+        "(a|a)*?b", "(a*)*b", "((a|b)*)*c", "(x+x+)+y", "()*", "(|a)+b", "a{0}", "[^a]", "[^a]$",
+        "😀", "[^😀]", "[^😀]$", "^[^a]$", "^.$", "\\W$", "[\\uD000-\\uE000]", "^[\\uD000-\\uE000]",
+    };
+
+    private static final String[] UNSUPPORTED = {
+        "(a)\\1", "(?=a)", "(?!a)", "(?<=a)b", "(?<!a)b", "\\bword\\b", "a*+", "a++b", "(?i)abc", "(?>a)",
+        "[a[b]]", "[a&&b]", "\\p{Alpha}", "\\Ax", "x\\z", "\\G", "\\R", "\\0101", "\\x{41}", "\\cA", "a{2}{3}",
+        "\\Qab\\E*", "a{5000}",
+    };
+
+    private static final String[] TEXTS = {
+        "", "a", "b", "ab", "aab", "aaab", "abc", "abcabc", "xxy", "xyz", "xxxyz", "ac", "aaac", "bbc",
+        "a\n", "a\r\n", "a\r", "a\n\n", "a\r\r\n", "x\u0085", "x ", "x ", "\n", "\r\n", "a\rb",
+        "hello world", "  tabs\tand spaces  ", "1.25", "[]", ".*", "été", "café",
+        "😀", "a😀", "😀b", "\ud83d", "\ude00", "a\ud83db", "A", "_", "-",
+    };
+
+    @Test
+    public void testSameAnswersAsJava() {
+
+        for (String regex : SUPPORTED) {
+
+            assertTrue(LinearRegex.isSupported(regex), regex);
+
+            LinearRegex.Searcher searcher = LinearRegex.compile(regex).searcher();
+            LineFilter autoFilter = LineFilter.compile(regex, RegexEngine.AUTO, RegexBudget.UNLIMITED);
+            Pattern pattern = Pattern.compile(regex);
+
+            for (String text : TEXTS) {
+
+                boolean javaFound = pattern.matcher(text).find();
+                String message = "/" + regex + "/ on \"" + text + "\"";
+
+                // AUTO always agrees; the linear engine itself does for text without surrogates.
+                assertEquals(autoFilter.find(text), javaFound, message);
+
+                if (!hasSurrogate(text)) {
+                    assertEquals(searcher.find(text), javaFound, message);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCodePoints() {
+
+        String smile = "\ud83d\ude00";
+
+        assertTrue(LinearRegex.compile("^.$").searcher().find(smile));
+        assertTrue(LinearRegex.compile("^[^a]$").searcher().find(smile));
+        assertTrue(LinearRegex.compile("^" + smile + "+$").searcher().find(smile + smile));
+        assertFalse(LinearRegex.compile("[\\uD000-\\uE000]").searcher().find(smile));
+        assertTrue(LinearRegex.compile("[\\uD000-\\uE000]").searcher().find("\ude00"));
+    }
+
+    @Test
+    public void testUnsupported() {
+
+        for (String regex : UNSUPPORTED) {
+
+            assertFalse(LinearRegex.isSupported(regex), regex);
+
+            try {
+                LinearRegex.compile(regex);
+                fail("Should have been unsupported: " + regex);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+
+        // Invalid, so not supported either:
+        assertFalse(LinearRegex.isSupported("(a"));
+    }
+
+    @Test
+    public void testRandomTexts() {
+
+        String[] regexes = { "a(b|c)*d", "[ab]+c?$", "^(ab|a)(bc|c)", ".a.b", "\\w+\\s\\d{2,3}", "[^a-c]x*$" };
+        char[] alphabet = { 'a', 'b', 'c', 'd', 'x', ' ', '1', '2', '\n', 'é' };
+        Random random = new Random(42);
+
+        for (String regex : regexes) {
+
+            LinearRegex.Searcher searcher = LinearRegex.compile(regex).searcher();
+            Pattern pattern = Pattern.compile(regex);
+
+            for (int count = 0; count < 2000; count++) {
+
+                char[] chars = new char[random.nextInt(12)];
+                for (int index = 0; index < chars.length; index++) {
+                    chars[index] = alphabet[random.nextInt(alphabet.length)];
+                }
+
+                String text = new String(chars);
+                assertEquals(searcher.find(text), pattern.matcher(text).find(), "/" + regex + "/ on \"" + text + "\"");
+            }
+        }
+    }
+
+    @Test
+    public void testManyDfaStates() {
+
+        // Needs 2^13 DFA states, well past the cache limit, so the cache gets thrown away and rebuilt.
+        String regex = "(a|b)*a(a|b){12}c";
+        LinearRegex.Searcher searcher = LinearRegex.compile(regex).searcher();
+        Pattern pattern = Pattern.compile(regex);
+        Random random = new Random(7);
+
+        for (int count = 0; count < 200; count++) {
+
+            char[] chars = new char[200];
+            for (int index = 0; index < chars.length; index++) {
+                chars[index] = random.nextInt(100) == 0 ? 'c' : random.nextBoolean() ? 'a' : 'b';
+            }
+
+            String text = new String(chars);
+            assertEquals(searcher.find(text), pattern.matcher(text).find(), text);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testPathologicalRegexIsLinear() {
+
+        StringBuilder text = new StringBuilder();
+        for (int count = 0; count < 100000; count++) {
+            text.append('a');
+        }
+
+        // Would take longer than the universe has left on java.util.regex:
+        assertFalse(LinearRegex.compile("(a|a)*?b").searcher().find(text));
+        assertFalse(LinearRegex.compile("(a|aa)+$x").searcher().find(text));
+        assertTrue(LinearRegex.compile("(a|a)*?$").searcher().find(text));
+    }
+
+    @Test
+    public void testEngineChoice() {
+
+        assertEquals(LineFilter.compile("a+b", RegexEngine.AUTO, RegexBudget.UNLIMITED).getEngine(), RegexEngine.LINEAR);
+        assertEquals(LineFilter.compile("(a)\\1", RegexEngine.AUTO, RegexBudget.UNLIMITED).getEngine(), RegexEngine.BACKTRACKING);
+        assertEquals(LineFilter.compile("a+b", RegexEngine.BACKTRACKING, RegexBudget.UNLIMITED).getEngine(), RegexEngine.BACKTRACKING);
+
+        try {
+            LineFilter.compile("(a)\\1", RegexEngine.LINEAR, RegexBudget.UNLIMITED);
+            fail("Backreferences can't run in linear time");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        String text = "aab\nabab\nba\nbb";
+        for (RegexEngine engine : new RegexEngine[] { RegexEngine.BACKTRACKING, RegexEngine.LINEAR }) {
+            assertEquals(StringTools.removeLinesContaining(false, text, "a+b$", RegexBudget.UNLIMITED, engine), "ba\nbb");
+            assertEquals(StringTools.removeLinesContaining(true, text, "^b", RegexBudget.UNLIMITED, engine), "ba\nbb");
+        }
+    }
+
+    private static boolean hasSurrogate(String text) {
+
+        for (int index = 0; index < text.length(); index++) {
+            if (Character.isSurrogate(text.charAt(index))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,159 @@
+package com.terheyden.stringtools;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class OperationMetricsTest {
+
+    @AfterMethod
+    public void turnOff() {
+        OperationMetrics.setEnabled(false);
+        OperationMetrics.reset();
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+
+        // Every value lands in a bucket that starts at most 1/64 below it.
+        Random random = new Random(3);
+        for (int count = 0; count < 100000; count++) {
+
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            value = Math.min(value, LatencyHistogram.MAX_VALUE);
+
+            long start = LatencyHistogram.bucketStart(LatencyHistogram.bucketIndex(value));
+            assertTrue(start <= value && value - start <= value / LatencyHistogram.SUB_BUCKETS, value + " in " + start);
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.valueAtPercentile(50), 0);
+
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertNear(histogram.valueAtPercentile(50), 500000);
+        assertNear(histogram.valueAtPercentile(99), 990000);
+        assertNear(histogram.max(), 1000000);
+        assertEquals(histogram.total(), 500500000L);
+
+        // Way too long, or negative from a clock going backwards: clamped, not lost.
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertNear(histogram.max(), LatencyHistogram.MAX_VALUE);
+        assertEquals(histogram.valueAtPercentile(0), 0);
+    }
+
+    @Test
+    public void testRecordsOperations() {
+
+        OperationMetrics.reset();
+        OperationMetrics.setEnabled(true);
+
+        StringTools.sortAlpha("b\na\nc\n");
+        StringTools.sortAlpha("y\nx", true);
+        StringTools.smartReplaceText("myName", "myName", "yourName");
+
+        try {
+            StringTools.removeLinesContaining(true, "aa\n", "(a)\\1", RegexBudget.UNLIMITED, RegexEngine.LINEAR);
+            fail("Backreferences can't run on the linear engine");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        OperationStats sort = stats("sortAlpha");
+        assertEquals(sort.getCount(), 2);
+        assertEquals(sort.getErrors(), 0);
+        assertEquals(sort.getInputChars(), 9);
+        assertEquals(sort.getInputLines(), 5);
+        assertEquals(sort.getOutputChars(), 8);
+        assertEquals(sort.getOutputLines(), 5);
+        assertTrue(sort.getMaxMillis() >= sort.getP50Millis());
+        assertTrue(sort.getTotalMillis() > 0);
+
+        OperationStats remove = stats("removeLinesContaining");
+        assertEquals(remove.getCount(), 1);
+        assertEquals(remove.getErrors(), 1);
+
+        // Operations calling each other inside only count once.
+        assertNull(stats("split"));
+        assertNull(stats("capitalize"));
+        assertEquals(stats("smartReplaceText").getCount(), 1);
+
+        String dump = OperationMetrics.dump();
+        assertTrue(dump.contains("sortAlpha "), dump);
+        assertFalse(dump.contains("off"), dump);
+
+        OperationMetrics.reset();
+        assertNull(stats("sortAlpha"));
+    }
+
+    @Test
+    public void testOffRecordsNothing() {
+
+        OperationMetrics.reset();
+        assertFalse(OperationMetrics.isEnabled());
+
+        StringTools.sortAlpha("b\na\n");
+        StringTools.addIndent("a\n", 2);
+
+        assertTrue(OperationMetrics.getOperations().isEmpty());
+        assertTrue(OperationMetrics.dump().contains("Metrics are off"));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+
+        OperationMetrics.registerMBean();
+        OperationMetrics.registerMBean();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OperationMetrics.OBJECT_NAME);
+
+        server.setAttribute(name, new Attribute("Enabled", true));
+        assertTrue(OperationMetrics.isEnabled());
+
+        StringTools.capitalize("hello");
+
+        CompositeData[] operations = (CompositeData[]) server.getAttribute(name, "Operations");
+        assertEquals(operations.length, 1);
+        assertEquals(operations[0].get("name"), "capitalize");
+        assertEquals(operations[0].get("count"), 1L);
+        assertEquals(operations[0].get("outputChars"), 5L);
+
+        String dump = (String) server.invoke(name, "dump", new Object[0], new String[0]);
+        assertTrue(dump.contains("capitalize"), dump);
+
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertTrue(OperationMetrics.getOperations().isEmpty());
+    }
+
+    private static OperationStats stats(String name) {
+
+        for (OperationStats stats : OperationMetrics.getOperations()) {
+            if (stats.getName().equals(name)) {
+                return stats;
+            }
+        }
+
+        return null;
+    }
+
+    private static void assertNear(long actual, long expected) {
+        assertTrue(actual <= expected && expected - actual <= expected / LatencyHistogram.SUB_BUCKETS,
+            actual + " isn't near " + expected);
+    }
+}
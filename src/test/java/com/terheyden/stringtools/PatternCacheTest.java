@@ -0,0 +1,79 @@
+package com.terheyden.stringtools;
+
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class PatternCacheTest {
+
+    @Test
+    public void testHitsAndMisses() {
+
+        PatternCache cache = new PatternCache(10);
+
+        Pattern pat = cache.compile("a+b");
+        assertSame(cache.compile("a+b"), pat);
+        assertSame(cache.compile("a+b", 0), pat);
+
+        // Flags are part of the key:
+        Pattern ciPat = cache.compile("a+b", Pattern.CASE_INSENSITIVE);
+        assertNotSame(ciPat, pat);
+        assertEquals(ciPat.flags(), Pattern.CASE_INSENSITIVE);
+
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+
+        PatternCache cache = new PatternCache(2);
+
+        Pattern first = cache.compile("first");
+        cache.compile("second");
+
+        // Touch "first" so "second" is the least recently used:
+        cache.compile("first");
+        cache.compile("third");
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getEvictionCount(), 1);
+        assertSame(cache.compile("first"), first);
+
+        long missCount = cache.getMissCount();
+        cache.compile("second");
+        assertEquals(cache.getMissCount(), missCount + 1);
+    }
+
+    @Test
+    public void testClear() {
+
+        PatternCache cache = new PatternCache(2);
+        cache.compile("x");
+        cache.compile("x");
+        cache.clear();
+
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getHitCount(), 0);
+        assertEquals(cache.getMissCount(), 0);
+    }
+
+    @Test
+    public void testStringToolsUsesSharedCache() {
+
+        PatternCache shared = PatternCache.getShared();
+        String regex = "PatternCacheTest[0-9]+";
+
+        StringTools.removeLinesContaining(false, "PatternCacheTest1\nother", regex);
+        long hitCount = shared.getHitCount();
+        StringTools.removeLinesContaining(false, "PatternCacheTest1\nother", regex);
+
+        assertTrue(shared.getHitCount() > hitCount);
+    }
+}
@@ -0,0 +1,251 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.GapContent;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class PieceTableContentTest {
+
+    @Test
+    public void testMatchesGapContent() throws BadLocationException {
+
+        Random random = new Random(11);
+        PlainDocument expected = new PlainDocument(new GapContent());
+        PlainDocument actual = new PlainDocument(new PieceTableContent());
+
+        List<Position> expectedPositions = new ArrayList<Position>();
+        List<Position> actualPositions = new ArrayList<Position>();
+
+        for (int count = 0; count < 5000; count++) {
+
+            int length = expected.getLength();
+            int where = random.nextInt(length + 1);
+            int op = random.nextInt(10);
+
+            if (op < 5) {
+                // Mostly typing, sometimes pastes too big for the append buffer.
+                int strLength = random.nextInt(20) == 0 ? PieceTableContent.SMALL_INSERT * 2 : 1 + random.nextInt(8);
+                String str = randomText(random, strLength);
+                expected.insertString(where, str, null);
+                actual.insertString(where, str, null);
+            } else if (op < 8) {
+                int removeLength = random.nextInt(Math.min(length - where, 40) + 1);
+                expected.remove(where, removeLength);
+                actual.remove(where, removeLength);
+            } else if (op < 9) {
+                expectedPositions.add(expected.createPosition(where));
+                actualPositions.add(actual.createPosition(where));
+            } else {
+                assertEquals(actual.getText(0, actual.getLength()), expected.getText(0, expected.getLength()));
+            }
+
+            assertEquals(actual.getLength(), expected.getLength());
+        }
+
+        assertEquals(actual.getText(0, actual.getLength()), expected.getText(0, expected.getLength()));
+
+        for (int index = 0; index < expectedPositions.size(); index++) {
+            assertEquals(actualPositions.get(index).getOffset(), expectedPositions.get(index).getOffset(), "position " + index);
+        }
+
+        // The lines come from positions too.
+        Element expectedRoot = expected.getDefaultRootElement();
+        Element actualRoot = actual.getDefaultRootElement();
+        assertEquals(actualRoot.getElementCount(), expectedRoot.getElementCount());
+
+        for (int index = 0; index < expectedRoot.getElementCount(); index++) {
+            assertEquals(actualRoot.getElement(index).getStartOffset(), expectedRoot.getElement(index).getStartOffset());
+            assertEquals(actualRoot.getElement(index).getEndOffset(), expectedRoot.getElement(index).getEndOffset());
+        }
+    }
+
+    @Test
+    public void testNoCopies() throws BadLocationException {
+
+        StringBuilder builder = new StringBuilder();
+        for (int count = 0; count < 10000; count++) {
+            builder.append("line ").append(count).append('\n');
+        }
+
+        String text = builder.toString();
+        PieceTableContent content = new PieceTableContent();
+        PlainDocument document = new PlainDocument(content);
+
+        // Whatever goes in comes straight back out.
+        document.insertString(0, text, null);
+        assertSame(document.getText(0, document.getLength()), text);
+        assertEquals(document.getDefaultRootElement().getElementCount(), 10001);
+
+        // After an edit it's copied out once, and the copy comes back after that.
+        document.insertString(5, "typed", null);
+        String edited = document.getText(0, document.getLength());
+        assertEquals(edited, text.substring(0, 5) + "typed" + text.substring(5));
+        assertSame(document.getText(0, document.getLength()), edited);
+        assertEquals(content.pieceCount(), 2);
+
+        Segment segment = new Segment();
+        document.getText(4, 8, segment);
+        assertEquals(segment.toString(), " typed0\n");
+
+        // A line within one piece is read in place.
+        document.getText(20, 7, segment);
+        char[] array = segment.array;
+        document.getText(30, 7, segment);
+        assertSame(segment.array, array);
+        assertEquals(segment.toString(), text.substring(25, 32));
+    }
+
+    @Test
+    public void testCompaction() throws BadLocationException {
+
+        PieceTableContent content = new PieceTableContent();
+        PlainDocument document = new PlainDocument(content);
+        StringBuilder expected = new StringBuilder();
+
+        // Typing in a different place each time makes a new piece each time.
+        for (int count = 0; count < PieceTableContent.MAX_PIECES * 2; count++) {
+            int where = count % 2 == 0 ? 0 : expected.length();
+            document.insertString(where, "ab", null);
+            expected.insert(where, "ab");
+            assertTrue(content.pieceCount() <= PieceTableContent.MAX_PIECES + 1, String.valueOf(content.pieceCount()));
+        }
+
+        assertEquals(document.getText(0, document.getLength()), expected.toString());
+    }
+
+    @Test
+    public void testUndoableEdits() throws BadLocationException {
+
+        PieceTableContent content = new PieceTableContent();
+        content.insertString(0, "hello world");
+
+        UndoableEdit remove = content.remove(5, 6);
+        UndoableEdit insert = content.insertString(5, ", there");
+        assertEquals(content.getString(0, content.length() - 1), "hello, there");
+
+        insert.undo();
+        remove.undo();
+        assertEquals(content.getString(0, content.length() - 1), "hello world");
+
+        remove.redo();
+        insert.redo();
+        assertEquals(content.getString(0, content.length() - 1), "hello, there");
+    }
+
+    @Test
+    public void testUndoRestoresPositions() throws BadLocationException {
+
+        PlainDocument document = new PlainDocument(new PieceTableContent());
+        UndoManager undoManager = new UndoManager();
+        document.addUndoableEditListener(undoManager);
+
+        document.insertString(0, "one\ntwo\nthree", null);
+        Position two = document.createPosition(4);
+        Position wo = document.createPosition(5);
+        Position three = document.createPosition(8);
+
+        // "e\ntwo\n" goes, leaving "onthree"; the positions in it, and the one just after it, collapse.
+        document.remove(2, 6);
+        assertEquals(two.getOffset(), 2);
+        assertEquals(wo.getOffset(), 2);
+        assertEquals(three.getOffset(), 2);
+        assertLines(document, 0);
+
+        undoManager.undo();
+        assertEquals(document.getText(0, document.getLength()), "one\ntwo\nthree");
+        assertEquals(two.getOffset(), 4);
+        assertEquals(wo.getOffset(), 5);
+        assertEquals(three.getOffset(), 8);
+        assertLines(document, 0, 4, 8);
+
+        // And again, for the positions inserted text had.
+        undoManager.redo();
+        undoManager.undo();
+        assertLines(document, 0, 4, 8);
+
+        undoManager.undo();
+        assertLines(document, 0);
+
+        undoManager.redo();
+        assertEquals(two.getOffset(), 4);
+        assertEquals(wo.getOffset(), 5);
+        assertEquals(three.getOffset(), 8);
+        assertLines(document, 0, 4, 8);
+    }
+
+    /**
+     * @param starts where each line starts; the last one ends at the end of the content
+     */
+    private static void assertLines(PlainDocument document, int... starts) {
+
+        Element root = document.getDefaultRootElement();
+        assertEquals(root.getElementCount(), starts.length);
+
+        for (int index = 0; index < starts.length; index++) {
+
+            Element line = root.getElement(index);
+            int end = index + 1 < starts.length ? starts[index + 1] : document.getLength() + 1;
+
+            assertEquals(line.getStartOffset(), starts[index], "start of line " + index);
+            assertEquals(line.getEndOffset(), end, "end of line " + index);
+        }
+    }
+
+    @Test
+    public void testReplacement() throws BadLocationException {
+
+        PlainDocument document = new PlainDocument(new PieceTableContent());
+        String before = "alpha\nbeta\ngamma\n";
+        document.insertString(0, before, null);
+
+        Position gamma = document.createPosition(before.indexOf("gamma"));
+
+        TextReplacement replacement = TextReplacement.between(before, "alpha\nBETA!\ngamma\n");
+        assertEquals(replacement.getStart(), 6);
+        assertEquals(replacement.getRemoveLength(), 4);
+        assertEquals(replacement.getInsert(), "BETA!");
+
+        replacement.applyTo(document);
+        assertEquals(document.getText(0, document.getLength()), "alpha\nBETA!\ngamma\n");
+
+        // Only the changed span moved; the rest of the document is the same lines in the same places.
+        assertEquals(gamma.getOffset(), 12);
+
+        StringBuilder different = new StringBuilder();
+        while (different.length() <= PieceTableContent.SMALL_INSERT) {
+            different.append("completely different\n");
+        }
+
+        String after = different.toString();
+        replacement = TextReplacement.between(document.getText(0, document.getLength()), after);
+        assertSame(replacement.getInsert(), after);
+        replacement.applyTo(document);
+        assertSame(document.getText(0, document.getLength()), after);
+    }
+
+    private static String randomText(Random random, int length) {
+
+        String alphabet = "abc \n\r\n";
+        StringBuilder builder = new StringBuilder();
+
+        for (int count = 0; count < length; count++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package com.terheyden.stringtools;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class RegexBudgetTest {
+
+    // Catastrophic backtracking: 2^n ways to match the a's before failing on the missing 'b'.
+    // (Newer JDKs memoize simpler cases like "(a+)+b", but not this one.)
+    private static final String EVIL_REGEX = "(a|a)*?b";
+    private static final String EVIL_TEXT = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaac";
+
+    @Test
+    public void testStepLimit() {
+
+        try {
+            StringTools.regexReplaceText(EVIL_TEXT, EVIL_REGEX, "x", RegexBudget.ofSteps(100000));
+            fail("Should have run out of steps");
+        } catch (RegexBudgetExceededException e) {
+            assertEquals(e.getSteps(), 100001);
+            assertEquals(e.getBudget().getMaxSteps(), 100000);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testTimeLimit() {
+
+        try {
+            StringTools.getRegexInfo(EVIL_TEXT, EVIL_REGEX, 0, RegexBudget.ofMillis(50));
+            fail("Should have run out of time");
+        } catch (RegexBudgetExceededException e) {
+            assertTrue(e.getElapsedMillis() >= 50, String.valueOf(e.getElapsedMillis()));
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testBudgetCoversAllLines() {
+
+        // Each line alone fits in the budget; all of them together don't.
+        StringBuilder text = new StringBuilder();
+        for (int count = 0; count < 200; count++) {
+            text.append("aaaaaaaaaaaac\n");
+        }
+
+        long oneLineSteps = stepsFor(EVIL_REGEX, "aaaaaaaaaaaac");
+        RegexBudget budget = RegexBudget.ofSteps(oneLineSteps * 10);
+
+        // The linear engine would never get near the budget, so force the backtracking one.
+        try {
+            StringTools.removeLinesContaining(false, text.toString(), EVIL_REGEX, budget, RegexEngine.BACKTRACKING);
+            fail("Should have run out of steps");
+        } catch (RegexBudgetExceededException e) {
+            // Expected.
+        }
+
+        // The same budget is fine again for the next call:
+        assertEquals(
+            StringTools.removeLinesContaining(false, "aaaaaaaaaaaac\nb", EVIL_REGEX, budget, RegexEngine.BACKTRACKING),
+            "aaaaaaaaaaaac");
+    }
+
+    @Test
+    public void testNormalRegexesPass() {
+
+        RegexBudget budget = RegexBudget.of(5000, 100000);
+
+        assertEquals(StringTools.regexReplaceText("a1b22c", "\\d+", "#", budget), "a#b#c");
+        assertEquals(StringTools.getRegexInfo("ab", "(b)", 0, budget), "Matches: 1\n  Match: \"b\"\n  Group 1: \"b\"\n\n");
+        assertEquals(StringTools.removeLinesContaining(true, "a1\nb\nc3", "\\d", budget), "a1\nc3");
+    }
+
+    @Test
+    public void testReplaceOnlyChargesMatching() {
+
+        StringBuilder builder = new StringBuilder();
+        for (int count = 0; count < 1000; count++) {
+            builder.append("key").append(count).append(" = value, ");
+        }
+
+        String text = builder.toString();
+        Pattern pattern = Pattern.compile("(?<key>key(\\d+))( = )(x)?");
+
+        // Same output as Matcher.replaceAll(), whatever the replacement refers to.
+        String[] replacements = { "", "$0!", "$2:$1", "$10", "${key}$4", "\\$1\\\\", "[$3]" };
+        for (String replacement : replacements) {
+            RegexBudget.Guard guard = RegexBudget.ofSteps(Long.MAX_VALUE - 1).start();
+            assertEquals(guard.replaceAll(pattern, text, replacement), pattern.matcher(text).replaceAll(replacement));
+        }
+
+        // And it costs what finding the matches does, however much gets copied.
+        RegexBudget.Guard findGuard = RegexBudget.ofSteps(Long.MAX_VALUE - 1).start();
+        Matcher mat = pattern.matcher(findGuard.wrap(text));
+        while (mat.find()) {
+            // Just matching.
+        }
+
+        RegexBudget.Guard replaceGuard = RegexBudget.ofSteps(Long.MAX_VALUE - 1).start();
+        replaceGuard.replaceAll(pattern, text, "$0$0$0$0");
+        assertEquals(replaceGuard.getSteps(), findGuard.getSteps());
+    }
+
+    @Test
+    public void testUnlimitedDoesNotWrap() {
+
+        String text = "abc";
+        assertTrue(RegexBudget.UNLIMITED.start().wrap(text) == text);
+    }
+
+    private static long stepsFor(String regex, String text) {
+
+        RegexBudget.Guard guard = RegexBudget.ofSteps(Long.MAX_VALUE - 1).start();
+        Pattern.compile(regex).matcher(guard.wrap(text)).find();
+        return guard.getSteps();
+    }
+}
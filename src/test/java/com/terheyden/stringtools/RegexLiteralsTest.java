@@ -0,0 +1,144 @@
+package com.terheyden.stringtools;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class RegexLiteralsTest {
+
+    @Test
+    public void testExact() {
+
+        assertExact("ERROR", "ERROR");
+        assertExact("ERROR|WARN|FATAL", "ERROR", "WARN", "FATAL");
+        assertExact("(?:ERR|WARN)ING", "ERRING", "WARNING");
+        assertExact("colou?r", "color", "colour");
+        assertExact("v[12]\\.0", "v1.0", "v2.0");
+        assertExact("\\Q.*\\E", ".*");
+        assertExact("a{3}", "aaa");
+        assertExact("a|", "a", "");
+
+        // Not just literals:
+        assertNull(RegexLiterals.analyze("^ERROR").getExact());
+        assertNull(RegexLiterals.analyze("ERROR\\b").getExact());
+        assertNull(RegexLiterals.analyze("ERR.R").getExact());
+        assertNull(RegexLiterals.analyze("a+").getExact());
+        assertNull(RegexLiterals.analyze("[a-z]").getExact());
+        assertNull(RegexLiterals.analyze("(?i)error").getExact());
+        assertNull(RegexLiterals.analyze("😀").getExact());
+    }
+
+    @Test
+    public void testRequired() {
+
+        assertRequired("^ERROR", "ERROR");
+        assertRequired("ERROR.*timed out", "timed out");
+        assertRequired("(ERROR|FATAL) \\d+", "ERROR ", "FATAL ");
+        assertRequired("\\d+ms", "ms");
+        assertRequired("(foo)+bar", "foo");
+        assertRequired("\\bword\\b", "word");
+        assertRequired("(\\w+) \\1 again", " again");
+        assertRequired("(?<=user=)\\w+@example\\.com", "@example.com");
+        assertRequired("id=[\\p{Alpha}]+;", "id=");
+
+        // Nothing's required:
+        assertNull(RegexLiterals.analyze("a*").getRequired());
+        assertNull(RegexLiterals.analyze("(foo)?bar|.*").getRequired());
+        assertNull(RegexLiterals.analyze("(?i)error").getRequired());
+        assertNull(RegexLiterals.analyze("\\w+").getRequired());
+    }
+
+    @Test
+    public void testPossessive() {
+
+        // The repeat keeps its "a", so there's none left for the last one; neither regex matches anything.
+        assertNull(RegexLiterals.analyze("a?+a").getExact());
+        assertNull(RegexLiterals.analyze("a{0,2}+a").getExact());
+        assertNull(RegexLiterals.analyze("(?:ab)?+ab").getExact());
+
+        // But a match, if there is one, still has what a greedy one would.
+        assertRequired("x{1,2}+yz", "yz");
+        assertRequired("(?:ab)?+cd", "cd");
+
+        assertEquals(StringTools.removeLinesContaining(false, "a\nb", "a?+a"), "a\nb");
+        assertEquals(StringTools.removeLinesContaining(false, "a\nb", "a{0,2}+a"), "a\nb");
+        assertEquals(StringTools.removeLinesContaining(true, "xx\nx", "x{1,2}+x"), "");
+    }
+
+    @Test
+    public void testFilterChoice() {
+
+        assertTrue(filter("ERROR").startsWith("LiteralFilter"));
+        assertTrue(filter("ERROR|FATAL").startsWith("MultiLiteralFilter"));
+        assertTrue(filter("ERROR.*timed out").startsWith("PrefilteredFilter[LiteralFilter[timed out]"));
+        assertTrue(filter("(\\w+) \\1 again").startsWith("PrefilteredFilter"));
+        assertEquals(LineFilter.compile("(\\w+) \\1 again", RegexEngine.AUTO, RegexBudget.UNLIMITED).getEngine(),
+            RegexEngine.BACKTRACKING);
+
+        // Too short to be worth it:
+        assertTrue(filter("a+b").startsWith("AutoFilter"));
+
+        // Explicit engines always run the regex.
+        assertTrue(LineFilter.compile("ERROR", RegexEngine.BACKTRACKING, RegexBudget.UNLIMITED).toString()
+            .startsWith("BacktrackingFilter"));
+    }
+
+    @Test
+    public void testSameAnswersAsJava() {
+
+        String[] regexes = {
+            "ab", "ab|ba", "abc|b", "a?b", "(ab)+", "a.b", "^ab", "ab$", "\\bab\\b", "(a)\\1b", "(?=ab)", "a(?!b)c",
+            "(?<=a)bc", "[ab]c|ca", "c[\\p{L}]a", "x{0}ab", "(ab|)c", "a++b", "(?>ab|a)c", "\\Qa.b\\E", "\\x61b",
+            "a?+a", "a{0,2}+a", "b{1,2}+b", "(?:ab)?+ab", "a?+b",
+        };
+        char[] alphabet = { 'a', 'b', 'c', '.', ' ', '\n', '\ud83d', '\ude00' };
+        Random random = new Random(15);
+
+        for (String regex : regexes) {
+
+            Pattern pattern = Pattern.compile(regex);
+            LineFilter filter = LineFilter.compile(regex, RegexEngine.AUTO, RegexBudget.UNLIMITED);
+
+            for (int count = 0; count < 2000; count++) {
+
+                char[] chars = new char[random.nextInt(10)];
+                for (int index = 0; index < chars.length; index++) {
+                    chars[index] = alphabet[random.nextInt(alphabet.length)];
+                }
+
+                String text = new String(chars);
+                String message = "/" + regex + "/ on \"" + text + "\"";
+
+                assertEquals(filter.find(text), pattern.matcher(text).find(), message);
+                assertEquals(filter.find(new StringBuilder(text)), pattern.matcher(text).find(), message);
+            }
+        }
+    }
+
+    private static void assertExact(String regex, String... strings) {
+        assertSameStrings(RegexLiterals.analyze(regex).getExact(), strings, regex);
+    }
+
+    private static void assertRequired(String regex, String... strings) {
+        assertSameStrings(RegexLiterals.analyze(regex).getRequired(), strings, regex);
+    }
+
+    /**
+     * In any order.
+     */
+    private static void assertSameStrings(Set<String> actual, String[] expected, String regex) {
+        assertTrue(new HashSet<String>(Arrays.asList(expected)).equals(actual), regex + ": " + actual);
+    }
+
+    private static String filter(String regex) {
+        return LineFilter.compile(regex, RegexEngine.AUTO, RegexBudget.UNLIMITED).toString();
+    }
+}
@@ -0,0 +1,179 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RegexTesterTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private Recorder recorder;
+    private RegexTester tester;
+
+    @BeforeMethod
+    public void createTester() {
+        recorder = new Recorder();
+        tester = new RegexTester(recorder, DIRECT, 0, 100);
+    }
+
+    @AfterMethod
+    public void closeTester() {
+        tester.close();
+    }
+
+    @Test
+    public void testMatchesGetRegexInfo() throws InterruptedException {
+
+        StringBuilder text = new StringBuilder();
+        for (int count = 0; count < 90; count++) {
+            text.append("key").append(count).append(" = value").append(count % 7).append('\n');
+        }
+
+        String regex = "(\\w+) = (value)?(\\d)";
+        tester.test(text.toString(), regex, 0);
+        recorder.await();
+
+        // Same output, just in batches and with the header last.
+        assertEquals("Matches: " + recorder.matchCount + "\n" + recorder.matches(),
+            StringTools.getRegexInfo(text.toString(), regex, 0));
+        assertEquals(recorder.shownCount, 90);
+        assertTrue(recorder.batches.size() > 1, recorder.batches.toString());
+    }
+
+    @Test
+    public void testCapsShownMatches() throws InterruptedException {
+
+        StringBuilder text = new StringBuilder();
+        for (int count = 0; count < 1000; count++) {
+            text.append("x").append(count).append(' ');
+        }
+
+        tester.test(text.toString(), "x\\d+", 0);
+        recorder.await();
+
+        assertEquals(recorder.matchCount, 1000);
+        assertEquals(recorder.shownCount, 100);
+        assertEquals(recorder.matches().split("Match: ").length - 1, 100);
+    }
+
+    @Test
+    public void testSupersededRunStops() throws InterruptedException {
+
+        // Backtracks for far longer than the test runs, unless the newer test stops it.
+        StringBuilder evil = new StringBuilder();
+        for (int count = 0; count < 64; count++) {
+            evil.append('a');
+        }
+
+        // Wait for it to be running, so the newer test has something to stop.
+        tester.test(evil.toString(), "(a|a)*?b", 0);
+        recorder.awaitStarted();
+
+        tester.test("abc", "b", 0);
+        recorder.await();
+
+        assertEquals(recorder.matchCount, 1);
+        assertEquals(recorder.matches(), "  Match: \"b\"\n\n");
+    }
+
+    @Test
+    public void testDebounce() throws InterruptedException {
+
+        tester.close();
+        tester = new RegexTester(recorder, DIRECT, 200, 100);
+
+        // Only the last keystroke's regex is ever run.
+        tester.test("abc", "a", 0);
+        tester.test("abc", "ab", 0);
+        tester.test("abc", "abc", 0);
+        recorder.await();
+
+        assertEquals(recorder.startCount, 1);
+        assertEquals(recorder.matches(), "  Match: \"abc\"\n\n");
+    }
+
+    @Test
+    public void testBadRegex() throws InterruptedException {
+
+        tester.test("abc", "(unclosed", 0);
+        recorder.await();
+        assertTrue(recorder.failure.contains("(unclosed"), recorder.failure);
+
+        recorder = new Recorder();
+        tester.close();
+        tester = new RegexTester(recorder, DIRECT, 0, 100);
+
+        tester.test("", "a", 0);
+        recorder.await();
+        assertEquals(recorder.matchCount, 0);
+    }
+
+    private static final class Recorder implements RegexTester.Listener {
+
+        private final CountDownLatch firstStarted = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final List<String> batches = Collections.synchronizedList(new ArrayList<String>());
+
+        private volatile int startCount;
+        private volatile int matchCount;
+        private volatile int shownCount;
+        private volatile String failure;
+
+        @Override
+        public void started() {
+            startCount++;
+            batches.clear();
+            firstStarted.countDown();
+        }
+
+        @Override
+        public void matched(String matches) {
+            batches.add(matches);
+        }
+
+        @Override
+        public void finished(int matchCount, int shownCount) {
+            this.matchCount = matchCount;
+            this.shownCount = shownCount;
+            done.countDown();
+        }
+
+        @Override
+        public void failed(String message) {
+            failure = message;
+            done.countDown();
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(firstStarted.await(10, TimeUnit.SECONDS), "timed out");
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS), "timed out");
+        }
+
+        String matches() {
+            StringBuilder builder = new StringBuilder();
+            for (String batch : batches) {
+                builder.append(batch);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.terheyden.stringtools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class StringToolsCliTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    public void testLineCommands() {
+
+        String text = "b line\r\nERROR a\n  c  \nERROR a\n";
+
+        assertEquals(run(text, "keep", "ERROR"), "ERROR a\nERROR a\n");
+        assertEquals(run(text, "remove", "ERR(OR|)", "--engine", "linear"), "b line\n  c  \n");
+        assertEquals(run(text, "trim", " ", "--from", "begin"), "b line\nERROR a\nc  \nERROR a\n");
+        assertEquals(run(text, "indent", "2"), "  b line\n  ERROR a\n    c  \n  ERROR a\n");
+        assertEquals(run(text, "insert", ";", "--end"), "b line;\nERROR a;\n  c  ;\nERROR a;\n");
+        assertEquals(run(text, "sort", "--reverse"), "b line\nERROR a\nERROR a\n  c  \n");
+        assertEquals(run(text, "dedupe"), "b line\nERROR a\n  c  \n");
+        assertEquals(run("v10\nv9\nV1\n", "sort", "--natural", "--ignore-case"), "V1\nv9\nv10\n");
+        assertEquals(run("b\nä\na\n", "sort", "--locale", "de-DE"), "a\nä\nb\n");
+        assertEquals(run("a\nb", "capitalize", "-"), "A\nB\n");
+    }
+
+    @Test
+    public void testWholeDocumentCommands() {
+
+        assertEquals(run("a1 b22", "replace", "\\d+", "#"), "a# b#\n");
+        assertEquals(run("x;y\n\nz;w", "template", "%2=%1"), StringTools.insertTemplateText("%2=%1", "x;y\n\nz;w") + "\n");
+        assertEquals(run("", "replace", "a", "b"), "");
+    }
+
+    @Test
+    public void testUuids() {
+
+        String[] lines = run("", "uuid", "3", "--format", "upper-dashless", "--fast").split("\n");
+
+        assertEquals(lines.length, 3);
+        for (String line : lines) {
+            assertTrue(line.matches("[0-9A-F]{12}4[0-9A-F]{19}"), line);
+        }
+    }
+
+    @Test
+    public void testFileInput() throws IOException {
+
+        File file = File.createTempFile("cli-in", ".txt");
+
+        try {
+            Files.write(file.toPath(), "zeta\nalpha\ncafé\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(run("ignored", "sort", file.getPath()), "alpha\ncafé\nzeta\n");
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testExitCodes() {
+
+        assertEquals(exitCode("", "help"), StringToolsCli.EXIT_OK);
+        assertTrue(out.toString().contains("keep REGEX"));
+
+        assertEquals(exitCode(""), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "frobnicate"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "keep"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "keep", "a", "b", "c"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "keep", "(a"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "keep", "(a)\\1", "--engine", "linear"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "keep", "a", "--engine", "fastest"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "sort", "--colour"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "sort", "--natural", "--locale", "en"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "uuid", "many"), StringToolsCli.EXIT_USAGE);
+        assertEquals(exitCode("", "sort", "/no/such/file"), StringToolsCli.EXIT_IO);
+
+        StringBuilder evil = new StringBuilder();
+        for (int count = 0; count < 30; count++) {
+            evil.append('a');
+        }
+        assertEquals(exitCode(evil.toString(), "keep", "(a|a)*?b", "--engine", "backtracking", "--budget-ms", "50"),
+            StringToolsCli.EXIT_REGEX_BUDGET);
+        assertTrue(err.toString().startsWith("stringtools: Regex ran past its budget"), err.toString());
+    }
+
+    @Test
+    public void testMappedFileReader() throws IOException {
+
+        // Multi-byte chars and surrogate pairs land on every possible window boundary.
+        StringBuilder text = new StringBuilder();
+        for (int count = 0; count < 500; count++) {
+            text.append("aé€😀").append(count);
+        }
+
+        File file = File.createTempFile("mapped", ".txt");
+
+        try {
+
+            Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+            for (int windowBytes = 16; windowBytes < 40; windowBytes++) {
+
+                MappedFileReader reader = new MappedFileReader(file, StandardCharsets.UTF_8, windowBytes);
+                StringWriter copy = new StringWriter();
+                char[] buf = new char[windowBytes % 3 + 1];
+                int read;
+
+                while ((read = reader.read(buf, 0, buf.length)) >= 0) {
+                    copy.write(buf, 0, read);
+                }
+
+                reader.close();
+                assertEquals(copy.toString(), text.toString(), "window " + windowBytes);
+            }
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+
+        OperationMetrics.reset();
+        OperationMetrics.setEnabled(true);
+
+        try {
+
+            run("b\na\nc", "sort");
+            run("x y\n", "replace", "y", "z");
+
+            String dump = run("", "metrics", "--reset");
+            assertTrue(dump.contains("cli sort "), dump);
+            assertTrue(dump.contains("cli replace "), dump);
+            assertTrue(dump.contains("regexReplaceText "), dump);
+            assertFalse(dump.contains("cli metrics"), dump);
+
+            assertTrue(OperationMetrics.getOperations().isEmpty());
+
+            run("b\na\nc", "sort");
+            OperationStats sort = OperationMetrics.getOperations().get(0);
+            assertEquals(sort.getName(), "cli sort");
+            assertEquals(sort.getInputChars(), 5);
+            assertEquals(sort.getInputLines(), 3);
+            assertEquals(sort.getOutputChars(), 6);
+            assertEquals(sort.getOutputLines(), 3);
+
+        } finally {
+            OperationMetrics.setEnabled(false);
+            OperationMetrics.reset();
+        }
+    }
+
+    private String run(String input, String... args) {
+
+        int exitCode = exitCode(input, args);
+        assertEquals(exitCode, StringToolsCli.EXIT_OK, err.toString());
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private int exitCode(String input, String... args) {
+
+        out.reset();
+        err.reset();
+
+        return StringToolsCli.run(args, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out, new PrintStream(err));
+    }
+}
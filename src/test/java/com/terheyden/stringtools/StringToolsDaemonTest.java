@@ -0,0 +1,177 @@
+package com.terheyden.stringtools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class StringToolsDaemonTest {
+
+    private File dir;
+    private File infoFile;
+    private StringToolsDaemon daemon;
+
+    @BeforeMethod
+    public void startDaemon() throws IOException {
+        dir = Files.createTempDirectory("daemon").toFile();
+        infoFile = new File(dir, "daemon.properties");
+        daemon = new StringToolsDaemon(0, 2, infoFile);
+        daemon.start();
+    }
+
+    @AfterMethod
+    public void stopDaemon() {
+        daemon.close();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testRun() {
+
+        assertTrue(infoFile.isFile());
+        assertEquals(run("b\nERROR a\nc\n", "keep", "ERROR"), "ERROR a\n");
+        assertEquals(run("b\na\n", "sort"), "a\nb\n");
+
+        // Output doesn't wait for input to end, and input the command never reads is fine.
+        assertEquals(run("ignored", "uuid", "2").split("\n").length, 2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(StringToolsClient.run(new String[] { "frobnicate" }, dir, input(""), out, err, infoFile),
+            StringToolsCli.EXIT_USAGE);
+        assertTrue(err.toString().contains("frobnicate"), err.toString());
+
+        assertEquals(StringToolsClient.run(new String[] { "daemon" }, dir, input(""), out, err, infoFile),
+            StringToolsCli.EXIT_USAGE);
+    }
+
+    @Test
+    public void testBigInput() {
+
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int count = 0; count < 100000; count++) {
+            boolean error = count % 7 == 0;
+            text.append("line ").append(error ? "ERROR " : "").append(count).append('\n');
+            if (!error) {
+                expected.append("line ").append(count).append('\n');
+            }
+        }
+
+        assertEquals(run(text.toString(), "remove", "ERROR"), expected.toString());
+    }
+
+    @Test
+    public void testParallelClients() throws Exception {
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+
+        try {
+
+            List<Future<String>> results = new ArrayList<>();
+
+            for (int count = 0; count < 32; count++) {
+                final String line = "line" + count;
+                results.add(clients.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return run("x\n" + line + "\ny\n", "keep", line);
+                    }
+                }));
+            }
+
+            for (int count = 0; count < results.size(); count++) {
+                assertEquals(results.get(count).get(), "line" + count + "\n");
+            }
+
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void testWorkingDir() throws IOException {
+
+        Files.write(new File(dir, "in.txt").toPath(), "b\na\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(run("ignored", "sort", "in.txt"), "a\nb\n");
+    }
+
+    @Test
+    public void testBadToken() throws IOException {
+
+        Properties info = new Properties();
+        try (InputStream in = new FileInputStream(infoFile)) {
+            info.load(in);
+        }
+
+        File badInfoFile = new File(dir, "bad.properties");
+        info.setProperty("token", "guess");
+        try (OutputStream out = new FileOutputStream(badInfoFile)) {
+            info.store(out, null);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        assertEquals(StringToolsClient.run(new String[] { "sort" }, dir, input("b\na\n"), out, err, badInfoFile),
+            StringToolsCli.EXIT_USAGE);
+        assertEquals(out.size(), 0);
+        assertTrue(err.toString().contains("token"), err.toString());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        assertEquals(StringToolsClient.run(new String[] { "--stop" }, dir, input(""), out, err, infoFile),
+            StringToolsCli.EXIT_OK);
+
+        daemon.awaitClose();
+        assertFalse(infoFile.exists());
+
+        assertEquals(StringToolsClient.run(new String[] { "sort" }, dir, input(""), out, err, infoFile),
+            StringToolsCli.EXIT_IO);
+        assertTrue(err.toString().contains("no daemon"), err.toString());
+    }
+
+    private String run(String input, String... args) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int exitCode = StringToolsClient.run(args, dir, input(input), out, err, infoFile);
+        assertEquals(exitCode, StringToolsCli.EXIT_OK, err.toString());
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static InputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -88,6 +88,15 @@ public class StringToolsTest {
         assertEquals(StringTools.trimChars(text, "123);", "end"), "item\nitem\nitem");
     }
 
+    @Test
+    public void testWindowsLineBreaks() {
+
+        // "\r\n" is one line break, not a line break plus an empty line.
+        assertEquals(StringTools.addIndent("a\r\nb", 1), " a\n b");
+        assertEquals(StringTools.removeDuplicateLines("a\r\nb\r\na\r\n"), "a\nb");
+        assertEquals(StringTools.insertTemplateText("<%1>", "a; x\r\n\r\nb\r\n"), "<a>\n<b>");
+    }
+
     @Test
     public void testInsertTemplateText() {
 
@@ -166,6 +175,17 @@ public class StringToolsTest {
         String text = "i am\ndupe\nlooking for\ndupe";
         String result = "i am\ndupe\nlooking for";
         assertEquals(StringTools.removeDuplicateLines(text), result);
+
+        // Test casing - first occurrence wins:
+
+        text = "Dupe\nother\nDUPE\ndupe\nOther";
+        assertEquals(StringTools.removeDuplicateLines(text), text);
+        assertEquals(StringTools.removeDuplicateLines(text, true), "Dupe\nother");
+
+        // Non-ASCII lines are compared the same way as ASCII ones:
+
+        text = "Stra\u00dfe\n\u00c4rger\nSTRA\u00dfE\n\u00e4rger";
+        assertEquals(StringTools.removeDuplicateLines(text, true), "Stra\u00dfe\n\u00c4rger");
     }
 
     @Test
@@ -209,6 +229,20 @@ public class StringToolsTest {
         String replace = "userAddr";
 
         assertEquals(StringTools.smartReplaceText(text, find, replace), result);
+
+        // Find and replace are literal, not regex:
+
+        text = "a.b = axb; A.B = $1;";
+        result = "c$1 = axb; C$1 = $1;";
+        assertEquals(StringTools.smartReplaceText(text, "a.b", "c$1"), result);
+
+        // Earlier variants win overlaps, and replacements aren't searched again by later variants:
+
+        assertEquals(StringTools.smartReplaceText("Aab", "ab", "ba"), "Aba");
+        assertEquals(StringTools.smartReplaceText("fooBar FOOBAR", "fooBar", "baz"), "baz BAZ");
+
+        // Empty find text leaves the text alone:
+        assertEquals(StringTools.smartReplaceText("abc", "", "x"), "abc");
     }
 
     @Test
@@ -300,6 +334,35 @@ public class StringToolsTest {
         assertEquals(StringTools.javaCopyVarDocs(result), result);
     }
 
+    @Test
+    public void testCopyJavaDocsPicksLongestVarName() {
+
+        String input =
+            "    /** The user. */\n" +
+            "    private User user;\n" +
+            "    /** The user's name. */\n" +
+            "    private String userName;\n" +
+            "\n" +
+            "    public String getUserName() {\n" +
+            "    public User getUser() {\n" +
+            "    public boolean isUserNameSet() {";
+
+        String result =
+            "    /** The user. */\n" +
+            "    private User user;\n" +
+            "    /** The user's name. */\n" +
+            "    private String userName;\n" +
+            "\n" +
+            "    /** The user's name. */\n" +
+            "    public String getUserName() {\n" +
+            "    /** The user. */\n" +
+            "    public User getUser() {\n" +
+            "    /** The user's name. */\n" +
+            "    public boolean isUserNameSet() {";
+
+        assertEquals(StringTools.javaCopyVarDocs(input), result);
+    }
+
     @Test
     public void testCopyFlexDocs() {
 
@@ -0,0 +1,66 @@
+package com.terheyden.stringtools;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class TemplateTest {
+
+    @Test
+    public void testRender() {
+
+        Template template = Template.compile("<a href=\"%2\">%1 (%2)</a>");
+
+        assertEquals(template.getPlaceholderCount(), 3);
+        assertEquals(template.render("Google", "google.com"), "<a href=\"google.com\">Google (google.com)</a>");
+    }
+
+    @Test
+    public void testTenOrMoreParams() {
+
+        Template template = Template.compile("%1-%10-%2");
+
+        assertEquals(template.render("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"), "a-j-b");
+
+        // %10 is never "%1" + "0", even when there's no 10th param:
+        assertEquals(template.render("a", "b"), "a-%10-b");
+    }
+
+    @Test
+    public void testParamsAreLiteral() {
+
+        Template template = Template.compile("%1 costs %2");
+
+        assertEquals(template.render("$1", "\\\\ %2 $0"), "$1 costs \\\\ %2 $0");
+    }
+
+    @Test
+    public void testPlainPercents() {
+
+        Template template = Template.compile("100% of %0 is %1%");
+
+        assertEquals(template.getPlaceholderCount(), 1);
+        assertEquals(template.render("x"), "100% of %0 is x%");
+    }
+
+    @Test
+    public void testReusedParamArray() {
+
+        Template template = Template.compile("(%1, %2)");
+        StringBuilder builder = new StringBuilder();
+        String[] params = { "a", "b", "stale" };
+
+        template.render(builder, params, 1);
+
+        assertEquals(builder.toString(), "(a, %2)");
+    }
+
+    @Test
+    public void testInsertTemplateTextWithManyParams() {
+
+        String text = "1;2;3;4;5;6;7;8;9;ten\n$x;\\y";
+        String template = "%10/%1/%2";
+
+        assertEquals(StringTools.insertTemplateText(template, text), "ten/1/2\n%10/$x/\\y");
+    }
+}
@@ -0,0 +1,69 @@
+package com.terheyden.stringtools;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TrimSetTest {
+
+    @Test
+    public void testContains() {
+
+        TrimSet trimSet = TrimSet.of(" *é😀");
+
+        assertTrue(trimSet.contains(' '));
+        assertTrue(trimSet.contains('*'));
+        assertTrue(trimSet.contains('é'));
+        assertTrue(trimSet.contains(0x1F600));
+        assertFalse(trimSet.contains('x'));
+        assertFalse(trimSet.contains('è'));
+
+        // The pair is one char, not two:
+        assertFalse(trimSet.contains('\ud83d'));
+    }
+
+    @Test
+    public void testTrim() {
+
+        TrimSet trimSet = TrimSet.of("-=");
+        String text = "==--abc-=";
+
+        assertEquals(trimSet.trimStart(text, 0, text.length()), 4);
+        assertEquals(trimSet.trimEnd(text, 0, text.length()), 7);
+
+        // Within a range:
+        assertEquals(trimSet.trimStart(text, 5, 7), 5);
+        assertEquals(trimSet.trimEnd(text, 0, 3), 0);
+    }
+
+    @Test
+    public void testSurrogatePairs() {
+
+        String smile = "😀";
+        String frown = "🙁";
+        TrimSet trimSet = TrimSet.of(smile);
+
+        String text = smile + smile + "a" + frown;
+        assertEquals(trimSet.trimStart(text, 0, text.length()), 4);
+
+        // Frown shares its high surrogate with smile, but isn't in the set:
+        assertEquals(trimSet.trimEnd(text, 0, text.length()), text.length());
+    }
+
+    @Test
+    public void testLongPadding() {
+
+        StringBuilder padding = new StringBuilder();
+        for (int count = 0; count < 10000; count++) {
+            padding.append(count % 2 == 0 ? ' ' : '.');
+        }
+
+        String line = padding + "value" + padding;
+        String text = line + "\n" + line;
+
+        assertEquals(StringTools.trimChars(text, ". ", "begin + end"), "value\nvalue");
+        assertEquals(StringTools.trimChars(text, ". ", "end"), padding + "value\n" + padding + "value");
+    }
+}
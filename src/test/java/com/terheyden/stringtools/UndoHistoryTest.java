@@ -0,0 +1,206 @@
+package com.terheyden.stringtools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class UndoHistoryTest {
+
+    @Test
+    public void testUndoRedo() {
+
+        UndoHistory history = new UndoHistory(1024 * 1024);
+        List<String> texts = new ArrayList<String>();
+        texts.add("alpha\nbeta\ngamma\n");
+        texts.add("alpha\nBETA\ngamma\n");
+        texts.add("  alpha\n  BETA\n  gamma\n");
+        texts.add("");
+        texts.add("one line, no break");
+        texts.add("one line, no break\r\nand another\r\n");
+        texts.add("\uD800 unpaired\n\uDC00 surrogates");
+
+        for (int count = 1; count < texts.size(); count++) {
+            history.record(texts.get(count - 1), texts.get(count));
+        }
+
+        String text = texts.get(texts.size() - 1);
+
+        for (int count = texts.size() - 2; count >= 0; count--) {
+            text = history.undo(text);
+            assertEquals(text, texts.get(count));
+        }
+
+        assertFalse(history.canUndo());
+        assertNull(history.undo(text));
+
+        for (int count = 1; count < texts.size(); count++) {
+            text = history.redo(text);
+            assertEquals(text, texts.get(count));
+        }
+
+        assertNull(history.redo(text));
+    }
+
+    @Test
+    public void testCommonEnds() {
+
+        // The whole of before matches the end of after, or all of it.
+        String[][] pairs = { { "abc", "abc" }, { "abc", "xabc" }, { "line", "new line" }, { "new line", "line" },
+            { "a\nb\n", "x\na\nb\n" }, { "", "" } };
+
+        for (String[] pair : pairs) {
+
+            UndoHistory.Step step = UndoHistory.Step.between(pair[0], pair[1]);
+            assertEquals(step.undo(pair[1]), pair[0]);
+            assertEquals(step.redo(pair[0]), pair[1]);
+
+            UndoHistory history = new UndoHistory(1024 * 1024);
+            history.record(pair[0], pair[1]);
+            assertEquals(history.canUndo(), !pair[0].equals(pair[1]));
+
+            if (history.canUndo()) {
+                assertEquals(history.undo(pair[1]), pair[0]);
+                assertEquals(history.redo(pair[0]), pair[1]);
+            }
+        }
+    }
+
+    @Test
+    public void testNoOpKeepsRedo() {
+
+        UndoHistory history = new UndoHistory(1024 * 1024);
+        history.record("b\na\n", "a\nb\n");
+
+        String text = history.undo("a\nb\n");
+        assertEquals(text, "b\na\n");
+
+        // E.g. trimming text that has nothing to trim.
+        history.record(text, text);
+        history.commit(history.prepare(text, text));
+        assertEquals(history.undoCount(), 0);
+        assertEquals(history.redo(text), "a\nb\n");
+    }
+
+    @Test
+    public void testDeltasAreSmall() {
+
+        StringBuilder builder = new StringBuilder();
+        for (int count = 0; count < 100000; count++) {
+            builder.append("line ").append(count).append('\n');
+        }
+
+        String before = builder.toString();
+        String after = before.replace("line 5000\n", "line five thousand\n");
+
+        UndoHistory.Step step = UndoHistory.Step.between(before, after);
+        assertFalse(step.isCompressed());
+        assertTrue(step.bytes() < 200, String.valueOf(step.bytes()));
+
+        assertEquals(step.undo(after), before);
+        assertEquals(step.redo(before), after);
+    }
+
+    @Test
+    public void testRewritesAreCompressed() {
+
+        StringBuilder builder = new StringBuilder();
+        for (int count = 0; count < 100000; count++) {
+            builder.append("log line number ").append(count).append(" says hello\n");
+        }
+
+        String before = builder.toString();
+        String after = StringTools.addIndent(before, 4);
+
+        UndoHistory.Step step = UndoHistory.Step.between(before, after);
+        assertTrue(step.isCompressed());
+        assertTrue(step.bytes() < (before.length() + after.length()) / 4, String.valueOf(step.bytes()));
+
+        assertEquals(step.undo(after), before);
+        assertEquals(step.redo(before), after);
+
+        // Random chars don't compress, so they're kept as-is.
+        Random random = new Random(5);
+        char[] noise = new char[UndoHistory.COMPRESS_MIN_CHARS * 2];
+        for (int count = 0; count < noise.length; count++) {
+            noise[count] = (char) random.nextInt(Character.MAX_VALUE + 1);
+        }
+
+        String noiseText = new String(noise);
+        step = UndoHistory.Step.between("", noiseText);
+        assertFalse(step.isCompressed());
+        assertEquals(step.redo(""), noiseText);
+    }
+
+    @Test
+    public void testBudgetEvictsOldest() {
+
+        UndoHistory history = new UndoHistory(10000);
+        String text = "";
+
+        // Each step adds a 1000-char line that doesn't compress.
+        Random random = new Random(9);
+        for (int count = 0; count < 50; count++) {
+
+            StringBuilder line = new StringBuilder();
+            for (int pos = 0; pos < 1000; pos++) {
+                line.append((char) ('a' + random.nextInt(26)));
+            }
+
+            String after = text + line + "\n";
+            history.record(text, after);
+            text = after;
+        }
+
+        assertTrue(history.usedBytes() <= 10000, String.valueOf(history.usedBytes()));
+        assertEquals(history.undoCount(), 4);
+
+        for (int count = 0; count < 4; count++) {
+            text = history.undo(text);
+        }
+
+        assertEquals(text.length(), 46 * 1001);
+        assertNull(history.undo(text));
+
+        // One step bigger than the whole budget is still kept, so the last operation can always be undone.
+        StringBuilder big = new StringBuilder(text);
+        for (int pos = 0; pos < 20000; pos++) {
+            big.append((char) random.nextInt(Character.MAX_VALUE + 1));
+        }
+
+        history.record(text, big.toString());
+        assertTrue(history.usedBytes() > 10000, String.valueOf(history.usedBytes()));
+        assertEquals(history.undoCount(), 1);
+        assertEquals(history.undo(big.toString()), text);
+    }
+
+    @Test
+    public void testHandEdits() {
+
+        UndoHistory history = new UndoHistory(1024 * 1024);
+
+        history.record("a\nb\n", "A\nB\n");
+
+        // Typed over since; the next operation's before doesn't match the last after.
+        history.record("A\nB\nC\n", "sorted\n");
+
+        String text = history.undo("sorted\n");
+        assertEquals(text, "A\nB\nC\n");
+        text = history.undo(text);
+        assertEquals(text, "A\nB\n");
+        text = history.undo(text);
+        assertEquals(text, "a\nb\n");
+
+        // Typing after an undo is undone first, and leaves nothing to redo.
+        text = history.redo(text);
+        assertEquals(text, "A\nB\n");
+        assertNull(history.redo("A\nB\ntyped\n"));
+        assertEquals(history.undo("A\nB\ntyped\n"), "A\nB\n");
+    }
+}
@@ -0,0 +1,101 @@
+package com.terheyden.stringtools;
+
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class UuidGeneratorTest {
+
+    @Test
+    public void testFormats() {
+
+        UUID uuid = UUID.fromString("123e4567-e89b-42d3-a456-426614174000");
+        char[] buf = new char[40];
+
+        int end = UuidGenerator.format(uuid, UuidGenerator.Format.LOWER, buf, 2);
+        assertEquals(new String(buf, 2, end - 2), "123e4567-e89b-42d3-a456-426614174000");
+
+        end = UuidGenerator.format(uuid, UuidGenerator.Format.UPPER, buf, 0);
+        assertEquals(new String(buf, 0, end), "123E4567-E89B-42D3-A456-426614174000");
+
+        end = UuidGenerator.format(uuid, UuidGenerator.Format.LOWER_DASHLESS, buf, 0);
+        assertEquals(new String(buf, 0, end), "123e4567e89b42d3a456426614174000");
+
+        end = UuidGenerator.format(uuid, UuidGenerator.Format.UPPER_DASHLESS, buf, 0);
+        assertEquals(new String(buf, 0, end), "123E4567E89B42D3A456426614174000");
+    }
+
+    @Test
+    public void testRandom() {
+
+        for (UuidGenerator.Source source : UuidGenerator.Source.values()) {
+
+            UuidGenerator generator = new UuidGenerator(source, UuidGenerator.Version.RANDOM);
+            Set<UUID> uuidSet = new HashSet<UUID>();
+
+            for (int count = 0; count < 1000; count++) {
+
+                UUID uuid = generator.next();
+                assertEquals(uuid.version(), 4);
+                assertEquals(uuid.variant(), 2);
+                assertTrue(uuidSet.add(uuid));
+            }
+        }
+    }
+
+    @Test
+    public void testTimeOrdered() {
+
+        UuidGenerator generator = new UuidGenerator(UuidGenerator.Source.FAST, UuidGenerator.Version.TIME_ORDERED);
+        long before = System.currentTimeMillis();
+        String last = "";
+
+        // Way more than 4096 per millisecond, so the counter has to roll over:
+        for (int count = 0; count < 20000; count++) {
+
+            String uuidStr = generator.nextString(UuidGenerator.Format.LOWER);
+            UUID uuid = UUID.fromString(uuidStr);
+
+            assertEquals(uuid.version(), 7);
+            assertEquals(uuid.variant(), 2);
+            assertTrue(uuidStr.compareTo(last) > 0, uuidStr + " <= " + last);
+            assertTrue(uuid.getMostSignificantBits() >>> 16 >= before);
+
+            last = uuidStr;
+        }
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+
+        StringWriter writer = new StringWriter();
+        new UuidGenerator(UuidGenerator.Source.FAST, UuidGenerator.Version.RANDOM)
+            .write(writer, 1000, UuidGenerator.Format.UPPER_DASHLESS);
+
+        String[] lines = writer.toString().split("\n", -1);
+
+        assertEquals(lines.length, 1001);
+        assertEquals(lines[1000], "");
+        assertTrue(lines[0].matches("[0-9A-F]{12}4[0-9A-F]{3}[89AB][0-9A-F]{15}"), lines[0]);
+    }
+
+    @Test
+    public void testGenerateUUIDs() {
+
+        String[] lines = StringTools.generateUUIDs(3).split("\n", -1);
+
+        assertEquals(lines.length, 12);
+        assertTrue(lines[0].matches("[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}"), lines[0]);
+        assertEquals(lines[3], "");
+        assertTrue(lines[4].matches("[0-9A-F]{8}-[0-9A-F]{4}-4[0-9A-F]{3}-[89AB][0-9A-F]{3}-[0-9A-F]{12}"), lines[4]);
+        assertEquals(lines[7], "");
+        assertTrue(lines[8].matches("[0-9A-F]{32}"), lines[8]);
+        assertEquals(lines[11], "");
+    }
+}